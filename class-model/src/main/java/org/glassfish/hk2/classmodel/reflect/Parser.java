@@ -43,18 +43,25 @@ package org.glassfish.hk2.classmodel.reflect;
 import org.glassfish.hk2.classmodel.reflect.impl.TypeProxy;
 import org.glassfish.hk2.classmodel.reflect.impl.TypesCtr;
 import org.glassfish.hk2.classmodel.reflect.util.DirectoryArchive;
+import org.glassfish.hk2.classmodel.reflect.util.ClassEvents;
+import org.glassfish.hk2.classmodel.reflect.util.ClassModelIndex;
 import org.glassfish.hk2.classmodel.reflect.util.JarArchive;
+import org.glassfish.hk2.classmodel.reflect.util.MappedJarArchive;
 import org.glassfish.hk2.classmodel.reflect.util.ResourceLocator;
 import org.glassfish.hk2.external.org.objectweb.asm.ClassReader;
+import org.glassfish.hk2.external.org.objectweb.asm.ClassVisitor;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
@@ -68,6 +75,9 @@ import java.util.logging.Logger;
 public class Parser implements Closeable {
 
     public static final String DEFAULT_WAIT_SYSPROP = "hk2.parser.timeout";
+    public static final String DEFAULT_THREADS_SYSPROP = "hk2.parser.threads";
+    public static final String DEFAULT_INDEX_SYSPROP = "hk2.parser.index";
+    public static final String DEFAULT_MAPPED_SYSPROP = "hk2.parser.mapped";
       
     private final ParsingContext context;
     private final Map<String, Types> processedURI = Collections.synchronizedMap(new HashMap<String, Types>());
@@ -80,12 +90,35 @@ public class Parser implements Closeable {
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
     private final int DEFAULT_TIMEOUT = Integer.getInteger(DEFAULT_WAIT_SYSPROP, 100);
+    private final int DEFAULT_THREADS = Integer.getInteger(DEFAULT_THREADS_SYSPROP, Runtime.getRuntime().availableProcessors());
+
+    // classes of one archive queued beyond this are visited by the reading thread itself
+    private static final int MAX_QUEUED_CLASSES = 256;
+
+    // the number of threads that may help visit the classes of one archive
+    private final int maxHelpers;
+
+    // persistent index of the parsed jars, null if not enabled
+    private final ClassModelIndex index;
+
+    // jar files are read through a MappedJarArchive instead of a JarArchive
+    private final boolean mappedArchives;
     
     
     public Parser(ParsingContext context) {
         this.context = context;
         executorService = (context.executorService==null?createExecutorService():context.executorService);
         ownES = context.executorService==null;
+        maxHelpers = threadsOf(executorService) - 1;
+        String indexDirectory = System.getProperty(DEFAULT_INDEX_SYSPROP);
+        if (context.indexDirectory!=null) {
+            index = new ClassModelIndex(context.indexDirectory, context.logger);
+        } else if (indexDirectory!=null) {
+            index = new ClassModelIndex(new File(indexDirectory), context.logger);
+        } else {
+            index = null;
+        }
+        mappedArchives = context.mappedArchives || Boolean.getBoolean(DEFAULT_MAPPED_SYSPROP);
     }
     
     public Exception[] awaitTermination() throws InterruptedException {
@@ -244,9 +277,18 @@ public class Parser implements Closeable {
     private ArchiveAdapter createArchiveAdapter(File source, Runnable doneHook)
             throws IOException {
       try {
-        ArchiveAdapter aa = source.isFile()?new JarArchive(this, source.toURI()):
-                                            new DirectoryArchive(this, source);
-        return aa;
+        if (!source.isFile()) {
+          return new DirectoryArchive(this, source);
+        }
+        if (mappedArchives) {
+          try {
+            // entries are read, inflated and visited by the executor threads
+            return new MappedJarArchive(this, source, executorService, maxHelpers);
+          } catch (IOException e) {
+            context.logger.log(Level.FINE, "Reading " + source + " as a jar file", e);
+          }
+        }
+        return new JarArchive(this, source.toURI());
       } catch (IOException e) {
         if (doneHook!=null) {
           doneHook.run();
@@ -342,30 +384,61 @@ public class Parser implements Closeable {
                 logger.log(Level.FINE, "Parsing file {0}", uri.getPath());
             }
 
-            adapter.onSelectedEntries(
-                    new ArchiveAdapter.Selector() {
-                        @Override
-                        public boolean isSelected(ArchiveAdapter.Entry entry) {
-                            return entry.name.endsWith(".class");
-                        }
-                    },
-                    new ArchiveAdapter.EntryTask() {
-                        @Override
-                        public void on(ArchiveAdapter.Entry entry, InputStream is) throws IOException {
-                            if (logger.isLoggable(Level.FINER)) {
-                                logger.log(Level.FINER, "Parsing class " + entry.name);
+            // unchanged jars are replayed from their index, the others recorded into it
+            ClassModelIndex.Archive indexed = (index==null?null:index.getArchive(uri));
+            Map<String, ByteBuffer> indexedClasses = (indexed==null?null:indexed.load());
+
+            // the archive may read its entries on several threads, the classes may be visited on others
+            final ClassVisits visits = new ClassVisits(uri, indexedClasses==null?indexed:null);
+            if (indexedClasses!=null) {
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.log(Level.FINE, "Loading {0} from {1}", new Object[] { uri.getPath(), indexed.getIndexFile() });
+                }
+                for (Map.Entry<String, ByteBuffer> indexedClass : indexedClasses.entrySet()) {
+                    visits.add(new ArchiveAdapter.Entry(indexedClass.getKey(), indexedClass.getValue().remaining()),
+                            indexedClass.getValue());
+                }
+            } else {
+                adapter.onSelectedEntries(
+                        new ArchiveAdapter.Selector() {
+                            @Override
+                            public boolean isSelected(ArchiveAdapter.Entry entry) {
+                                return entry.name.endsWith(".class");
                             }
-                            try {
-                                ClassReader cr = new ClassReader(is);
-                                cr.accept(context.getClassVisitor(uri, entry.name, true), ClassReader.SKIP_DEBUG);
-                            } catch (Throwable e) {
-                                logger.log(Level.SEVERE, "Exception while visiting " + entry.name
-                                        + " of size " + entry.size, e);
+                        },
+                        new ArchiveAdapter.EntryTask() {
+                            @Override
+                            public void on(ArchiveAdapter.Entry entry, InputStream is) throws IOException {
+                                if (logger.isLoggable(Level.FINER)) {
+                                    logger.log(Level.FINER, "Parsing class " + entry.name);
+                                }
+                                byte[] bytes;
+                                try {
+                                    bytes = readFully(is, entry.size);
+                                } catch (Throwable e) {
+                                    logger.log(Level.SEVERE, "Exception while reading " + entry.name
+                                            + " of size " + entry.size, e);
+                                    visits.failed = true;
+                                    return;
+                                }
+                                visits.add(entry, bytes);
                             }
-                        }
-                    },
-                    logger
-            );
+                        },
+                        logger
+                );
+            }
+            visits.finish();
+            if (indexed!=null && indexedClasses==null) {
+                if (visits.failed) {
+                    logger.log(Level.FINE, "Not indexing {0} which could not be entirely visited", uri);
+                } else {
+                    try {
+                        indexed.save();
+                    } catch (IOException e) {
+                        logger.log(Level.WARNING, "Cannot save index " + indexed.getIndexFile(), e);
+                    }
+                }
+            }
             saveResult(uri, context.getTypes());
         }
         if (logger.isLoggable(Level.FINE)) {
@@ -383,6 +456,158 @@ public class Parser implements Closeable {
         }
     }
 
+    private int threadsOf(ExecutorService es) {
+        if (ownES) {
+            return Math.max(DEFAULT_THREADS, 1);
+        }
+        if (es instanceof ThreadPoolExecutor) {
+            return Math.min(((ThreadPoolExecutor) es).getMaximumPoolSize(), Runtime.getRuntime().availableProcessors() * 4);
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    private boolean visit(URI uri, ClassBytes classBytes, ClassModelIndex.Archive recording) {
+        ArchiveAdapter.Entry entry = classBytes.entry;
+        try {
+            ClassVisitor visitor = context.getClassVisitor(uri, entry.name, true);
+            if (classBytes.events!=null) {
+                ClassEvents.replay(classBytes.events, visitor);
+            } else if (recording!=null) {
+                ClassEvents.Recorder recorder = ClassEvents.record(visitor);
+                new ClassReader(classBytes.bytes).accept(recorder, ClassReader.SKIP_DEBUG);
+                recording.add(classBytes.sequence, entry.name, recorder.toByteArray());
+            } else {
+                new ClassReader(classBytes.bytes).accept(visitor, ClassReader.SKIP_DEBUG);
+            }
+            return true;
+        } catch (Throwable e) {
+            context.logger.log(Level.SEVERE, "Exception while visiting " + entry.name
+                    + " of size " + entry.size, e);
+            return false;
+        }
+    }
+
+    private static byte[] readFully(InputStream is, long size) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(size>0 && size<Integer.MAX_VALUE?(int) size:4096);
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = is.read(buffer))!=-1) {
+            baos.write(buffer, 0, read);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * The classes of one archive waiting to be visited. The threads reading the
+     * archive queue each class and ask the executor service for helpers, which
+     * visit queued classes until there are none left. Once the archive is read
+     * the parsing thread visits whatever is still queued and only waits for the
+     * helpers that are visiting, so it never waits on a task queued behind itself.
+     */
+    private class ClassVisits implements Runnable {
+        private final URI uri;
+        private final ClassModelIndex.Archive recording;
+        private final ConcurrentLinkedQueue<ClassBytes> queue = new ConcurrentLinkedQueue<ClassBytes>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger helpers = new AtomicInteger();
+        private final AtomicInteger sequence = new AtomicInteger();
+        private int running = 0;
+        volatile boolean failed = false;
+
+        private ClassVisits(URI uri, ClassModelIndex.Archive recording) {
+            this.uri = uri;
+            this.recording = recording;
+        }
+
+        void add(ArchiveAdapter.Entry entry, byte[] bytes) {
+            add(new ClassBytes(sequence.getAndIncrement(), entry, bytes, null));
+        }
+
+        void add(ArchiveAdapter.Entry entry, ByteBuffer events) {
+            add(new ClassBytes(sequence.getAndIncrement(), entry, null, events));
+        }
+
+        private void add(ClassBytes classBytes) {
+            queue.add(classBytes);
+            int nowQueued = queued.incrementAndGet();
+
+            if (helpers.incrementAndGet()<=maxHelpers) {
+                try {
+                    executorService.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // shut down, this thread will visit the classes
+                    helpers.decrementAndGet();
+                }
+            } else {
+                helpers.decrementAndGet();
+            }
+
+            // keeps the bytes held in memory bounded when the helpers fall behind
+            if (nowQueued>MAX_QUEUED_CLASSES) {
+                visitNext();
+            }
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                running++;
+            }
+            try {
+                while (visitNext()) {
+                    // keep going
+                }
+            } finally {
+                synchronized (this) {
+                    running--;
+                    notifyAll();
+                }
+                helpers.decrementAndGet();
+            }
+        }
+
+        private boolean visitNext() {
+            ClassBytes next = queue.poll();
+            if (next==null) {
+                return false;
+            }
+            queued.decrementAndGet();
+            if (!visit(uri, next, recording)) {
+                failed = true;
+            }
+            return true;
+        }
+
+        void finish() throws InterruptedException {
+            while (visitNext()) {
+                // keep going
+            }
+            synchronized (this) {
+                while (running>0) {
+                    wait();
+                }
+            }
+        }
+    }
+
+    /**
+     * A class waiting to be visited, either its class file or the
+     * events recorded in the index
+     */
+    private static class ClassBytes {
+        final int sequence;
+        final ArchiveAdapter.Entry entry;
+        final byte[] bytes;
+        final ByteBuffer events;
+
+        ClassBytes(int sequence, ArchiveAdapter.Entry entry, byte[] bytes, ByteBuffer events) {
+            this.sequence = sequence;
+            this.entry = entry;
+            this.bytes = bytes;
+            this.events = events;
+        }
+    }
+
     /**
      * Returns the context this parser instance was initialized with during
      * the call to {@link Parser#Parser(ParsingContext)}
@@ -395,13 +620,10 @@ public class Parser implements Closeable {
     }
 
     private ExecutorService createExecutorService() {
-        // TODO: may have to dumb this down since there appears to be issues in ZipFile processing when there is contention on the same file or directory
-        // FIXME: anything other than 1 is not stable since the class-model framework is not thread safe (visitors are shared)
-//        Runtime runtime = Runtime.getRuntime();
-//        int nbOfProcessors = runtime.availableProcessors();
-        int nbOfProcessors = 1;
-        
-        return Executors.newFixedThreadPool(nbOfProcessors, new ThreadFactory() {
+        // each archive is only ever read by one thread, the others just visit the bytes of its classes
+        int nbOfThreads = Math.max(DEFAULT_THREADS, 1);
+
+        return Executors.newFixedThreadPool(nbOfThreads, new ThreadFactory() {
             @Override
             public Thread newThread(Runnable r) {
                 Thread t = new Thread(r);
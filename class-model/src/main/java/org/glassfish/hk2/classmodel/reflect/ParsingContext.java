@@ -49,10 +49,11 @@ import org.glassfish.hk2.classmodel.reflect.util.ParsingConfig;
 import org.glassfish.hk2.classmodel.reflect.util.ResourceLocator;
 import org.glassfish.hk2.external.org.objectweb.asm.ClassVisitor;
 
+import java.io.File;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.net.URI;
 import java.util.logging.Logger;
@@ -73,6 +74,8 @@ public class ParsingContext {
         ArchiveSelector archiveSelector=null;
         ParsingConfig config=null;
         ResourceLocator locator=null;
+        File indexDirectory=null;
+        boolean mappedArchives=false;
 
         /**
          * Returns the configured or default logger for the class-model library.
@@ -154,6 +157,37 @@ public class ParsingContext {
             return this;
         }
 
+        /**
+         * Sets the directory of the persistent index of the parsed jars. A jar
+         * that did not change since it was last parsed with the same index
+         * directory is loaded from the index instead of being visited again.
+         * The {@link Parser#DEFAULT_INDEX_SYSPROP} system property sets the
+         * directory when none is set here.
+         *
+         * @param directory the index directory, created if necessary
+         * @return itself
+         */
+        public Builder indexDirectory(File directory) {
+            this.indexDirectory = directory;
+            return this;
+        }
+
+        /**
+         * Sets whether jar files are read through a memory mapping of the
+         * file, with their entries visited by several threads of the
+         * executor service. A mapped jar stays open until the mapping is
+         * garbage collected, so this is off by default and the
+         * {@link Parser#DEFAULT_MAPPED_SYSPROP} system property turns it on
+         * when it is not set here.
+         *
+         * @param mapped true to read jar files through a memory mapping
+         * @return itself
+         */
+        public Builder mappedArchives(boolean mapped) {
+            this.mappedArchives = mapped;
+            return this;
+        }
+
         /**
          * Build the final ParsingContext with the provided configuration.
          *
@@ -172,6 +206,8 @@ public class ParsingContext {
     final Logger logger;
     final ParsingConfig config;
     final ResourceLocator locator;
+    final File indexDirectory;
+    final boolean mappedArchives;
 
     private ParsingContext(Builder builder) {
 //        Runtime runtime = Runtime.getRuntime();
@@ -179,6 +215,8 @@ public class ParsingContext {
         this.archiveSelector = builder.archiveSelector;
         this.logger = builder.logger;
         this.locator = builder.locator;
+        this.indexDirectory = builder.indexDirectory;
+        this.mappedArchives = builder.mappedArchives;
         this.config = builder.config!=null?builder.config:new ParsingConfig() {
             final Set<String> emptyList = Collections.emptySet();
             @Override
@@ -199,13 +237,22 @@ public class ParsingContext {
     }
 
 
-    Map<URI, TypeBuilder> builders = new HashMap<URI, TypeBuilder>();
+    // every class visitor asks for its builder, so the parsing threads must not contend here
+    final ConcurrentMap<URI, TypeBuilder> builders = new ConcurrentHashMap<URI, TypeBuilder>();
+    // the concurrent map does not take null keys
+    final TypeBuilder noURIBuilder = new TypesImpl(types, null);
 
-    public synchronized TypeBuilder getTypeBuilder(URI definingURI) {
+    public TypeBuilder getTypeBuilder(URI definingURI) {
+        if (definingURI==null) {
+            return noURIBuilder;
+        }
         TypeBuilder builder = builders.get(definingURI);
         if (builder==null) {
             builder = new TypesImpl(types, definingURI);
-            builders.put(definingURI, builder);
+            TypeBuilder old = builders.putIfAbsent(definingURI, builder);
+            if (old!=null) {
+                builder = old;
+            }
         }
         return builder;
     }
@@ -52,7 +52,7 @@ import java.util.*;
  */
 public class TypeProxy<T extends Type> {
 
-    private T value = null;
+    private volatile T value = null;
     private volatile boolean visited = false;
     private final String name;
     private final Notifier<T> notifier;
@@ -76,6 +76,26 @@ public class TypesCtr implements Types {
 
     public TypeProxy<Type> getHolder(String name) {
         if (name.equals("java.lang.Object")) return null;
+        TypeProxy<Type> typeProxy = findHolder(name);
+        if (typeProxy!=null) {
+            return typeProxy;
+        }
+        synchronized (getLock(name)) {
+            // a typed holder may have been added since we looked
+            typeProxy = findHolder(name);
+            if (typeProxy!=null) {
+                return typeProxy;
+            }
+            // ok we don't have and since we don't know its type
+            // let's put it in the unknown storage pool.
+            typeProxy = new TypeProxy<Type>(null, name);
+            unknownTypesStorage.put(name, typeProxy);
+            nonVisited.push(typeProxy);
+            return typeProxy;
+        }
+    }
+
+    private TypeProxy<Type> findHolder(String name) {
         // we look first in our storage pools.
         for (Map<String, TypeProxy<Type>> map : storage.values()) {
             TypeProxy<Type> proxy = map.get(name);
@@ -84,18 +104,16 @@ public class TypesCtr implements Types {
             }
         }
         // ok let's look in our unknown storage pool.
-        if (unknownTypesStorage.containsKey(name)) {
-            return unknownTypesStorage.get(name);
-        }
-        // ok we don't have and since we don't know its type
-        // let's put it in the unknown storage pool.
-        TypeProxy<Type> typeProxy = new TypeProxy<Type>(null, name);
-        TypeProxy<Type> old = unknownTypesStorage.putIfAbsent(name, typeProxy);
-        if (old==null) {
-            nonVisited.push(typeProxy);
-            return typeProxy;
-        }
-        return old;
+        return unknownTypesStorage.get(name);
+    }
+
+    /**
+     * Holders are only created or moved out of the unknown storage pool
+     * with the lock of their name held, so that the parsing threads
+     * never create two holders for the same name
+     */
+    private Object getLock(String name) {
+        return locks[(name.hashCode() & 0x7fffffff) % locks.length];
     }
 
     public <T extends Type> TypeProxy<Type> getHolder(String name, Class<T> type) {
@@ -110,34 +128,25 @@ public class TypesCtr implements Types {
             }
         }
         TypeProxy<Type> typeProxy = typeStorage.get(name);
-        if (typeProxy ==null) {
-            // in our unknown type pool ? 
-            TypeProxy<Type> tmp = unknownTypesStorage.get(name);
+        if (typeProxy!=null) {
+            return typeProxy;
+        }
+        synchronized (getLock(name)) {
+            typeProxy = typeStorage.get(name);
+            if (typeProxy!=null) {
+                return typeProxy;
+            }
             // in our unknown type pool ?
-            if (tmp!=null) {
-                synchronized (unknownTypesStorage) {
-                    typeProxy = unknownTypesStorage.remove(name);
-                    if (typeProxy == null) { 
-                        typeProxy = tmp; 
-                     }
-                }
-                if (typeProxy!=null) {
-                    TypeProxy<Type> old = typeStorage.putIfAbsent(name, typeProxy);
-                    if (old!=null) {
-                        typeProxy = old;
-                    }
-                }
-            } else {
+            typeProxy = unknownTypesStorage.get(name);
+            if (typeProxy==null) {
                 typeProxy = new TypeProxy<Type>(null, name);
-                TypeProxy<Type> old = typeStorage.putIfAbsent(name, typeProxy);
-                if (old==null) {
-                    nonVisited.push(typeProxy);
-                } else {
-                    typeProxy=old;
-                }
+                nonVisited.push(typeProxy);
             }
+            // added before being removed so readers that do not lock always find it
+            typeStorage.put(name, typeProxy);
+            unknownTypesStorage.remove(name);
+            return typeProxy;
         }
-        return typeProxy;
     }
 
     public interface ProxyTask {
@@ -186,6 +195,15 @@ public class TypesCtr implements Types {
      * Map of encountered types which we don't know if it is an interface, class or annotation
      */
     private final ConcurrentMap<String, TypeProxy<Type>> unknownTypesStorage = new ConcurrentHashMap<String, TypeProxy<Type>>();
+    /**
+     * Locks guarding the creation of holders, chosen by the hash of the type name
+     */
+    private final Object[] locks = new Object[32];
+    {
+        for (int i=0;i<locks.length;i++) {
+            locks[i] = new Object();
+        }
+    }
     /**
      * Stack on type proxy as they have been instantiated in FILO order.
      */
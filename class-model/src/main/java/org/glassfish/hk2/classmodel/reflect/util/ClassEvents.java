@@ -0,0 +1,604 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.classmodel.reflect.util;
+
+import org.glassfish.hk2.external.org.objectweb.asm.AnnotationVisitor;
+import org.glassfish.hk2.external.org.objectweb.asm.ClassVisitor;
+import org.glassfish.hk2.external.org.objectweb.asm.FieldVisitor;
+import org.glassfish.hk2.external.org.objectweb.asm.MethodVisitor;
+import org.glassfish.hk2.external.org.objectweb.asm.Opcodes;
+import org.glassfish.hk2.external.org.objectweb.asm.Type;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact recording of the visits of one class that the class-model is built
+ * from, that is the class declaration, the annotations and their values and
+ * the fields and methods with their annotations. Replaying a recording into a
+ * class visitor builds the same model as visiting the class file itself, without
+ * reading the byte code.
+ *
+ * Only what the model visitors use is recorded, enum and nested annotation
+ * values or the elements of arrays of non primitive values are not.
+ */
+public final class ClassEvents {
+
+    private static final byte END = 0;
+    private static final byte CLASS = 1;
+    private static final byte ANNOTATION = 2;
+    private static final byte FIELD = 3;
+    private static final byte METHOD = 4;
+    private static final byte ANNOTATION_DEFAULT = 5;
+    private static final byte VALUE = 6;
+    private static final byte ARRAY = 7;
+
+    private ClassEvents() {
+    }
+
+    /**
+     * Returns a class visitor that records the visits it forwards to
+     * the given visitor.
+     *
+     * @param delegate the visitor building the model, may be null
+     * @return the recording visitor
+     */
+    public static Recorder record(ClassVisitor delegate) {
+        return new Recorder(delegate);
+    }
+
+    /**
+     * Replays a recording into a class visitor.
+     *
+     * @param events the recording, read from its position to its limit
+     * @param visitor the visitor to replay the recording into
+     * @throws IOException if the recording is truncated or corrupted
+     */
+    public static void replay(ByteBuffer events, ClassVisitor visitor) throws IOException {
+        new Player(events).play(visitor);
+    }
+
+    /**
+     * Class visitor recording the visits of one class
+     */
+    public static class Recorder extends ClassVisitor {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+        private Recorder(ClassVisitor delegate) {
+            super(Opcodes.ASM6, delegate);
+        }
+
+        /**
+         * Returns the recording, complete once visitEnd was called
+         *
+         * @return the recorded visits
+         */
+        public byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            tag(CLASS);
+            writeInt(version);
+            writeInt(access);
+            writeString(name);
+            writeString(signature);
+            writeString(superName);
+            writeInt(interfaces==null?-1:interfaces.length);
+            if (interfaces!=null) {
+                for (String intf : interfaces) {
+                    writeString(intf);
+                }
+            }
+            super.visit(version, access, name, signature, superName, interfaces);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+            return recordAnnotation(desc, visible, super.visitAnnotation(desc, visible));
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+            tag(FIELD);
+            writeInt(access);
+            writeString(name);
+            writeString(desc);
+            writeString(signature);
+            return new RecordingFieldVisitor(super.visitField(access, name, desc, signature, value));
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+            tag(METHOD);
+            writeInt(access);
+            writeString(name);
+            writeString(desc);
+            writeString(signature);
+            return new RecordingMethodVisitor(super.visitMethod(access, name, desc, signature, exceptions));
+        }
+
+        @Override
+        public void visitEnd() {
+            tag(END);
+            super.visitEnd();
+        }
+
+        private AnnotationVisitor recordAnnotation(String desc, boolean visible, AnnotationVisitor delegate) {
+            tag(ANNOTATION);
+            writeString(desc);
+            writeInt(visible?1:0);
+            return new RecordingAnnotationVisitor(delegate);
+        }
+
+        private void tag(byte tag) {
+            try {
+                out.writeByte(tag);
+            } catch (IOException e) {
+                // cannot happen with a byte array
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void writeInt(int value) {
+            try {
+                out.writeInt(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void writeString(String value) {
+            try {
+                if (value==null) {
+                    out.writeInt(-1);
+                    return;
+                }
+                Integer index = strings.get(value);
+                if (index!=null) {
+                    out.writeInt(index);
+                    return;
+                }
+                strings.put(value, strings.size());
+                out.writeInt(-2);
+                out.writeUTF(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void writeValue(Object value) {
+            try {
+                if (value instanceof String) {
+                    out.writeByte('s');
+                    writeString((String) value);
+                } else if (value instanceof Type) {
+                    out.writeByte('c');
+                    writeString(((Type) value).getDescriptor());
+                } else if (value instanceof Integer) {
+                    out.writeByte('I');
+                    out.writeInt((Integer) value);
+                } else if (value instanceof Boolean) {
+                    out.writeByte('Z');
+                    out.writeBoolean((Boolean) value);
+                } else if (value instanceof Long) {
+                    out.writeByte('J');
+                    out.writeLong((Long) value);
+                } else if (value instanceof Byte) {
+                    out.writeByte('B');
+                    out.writeByte((Byte) value);
+                } else if (value instanceof Character) {
+                    out.writeByte('C');
+                    out.writeChar((Character) value);
+                } else if (value instanceof Short) {
+                    out.writeByte('S');
+                    out.writeShort((Short) value);
+                } else if (value instanceof Float) {
+                    out.writeByte('F');
+                    out.writeFloat((Float) value);
+                } else if (value instanceof Double) {
+                    out.writeByte('D');
+                    out.writeDouble((Double) value);
+                } else if (value instanceof int[]) {
+                    int[] array = (int[]) value;
+                    out.writeByte('[');
+                    out.writeByte('I');
+                    out.writeInt(array.length);
+                    for (int element : array) out.writeInt(element);
+                } else if (value instanceof boolean[]) {
+                    boolean[] array = (boolean[]) value;
+                    out.writeByte('[');
+                    out.writeByte('Z');
+                    out.writeInt(array.length);
+                    for (boolean element : array) out.writeBoolean(element);
+                } else if (value instanceof long[]) {
+                    long[] array = (long[]) value;
+                    out.writeByte('[');
+                    out.writeByte('J');
+                    out.writeInt(array.length);
+                    for (long element : array) out.writeLong(element);
+                } else if (value instanceof byte[]) {
+                    byte[] array = (byte[]) value;
+                    out.writeByte('[');
+                    out.writeByte('B');
+                    out.writeInt(array.length);
+                    out.write(array);
+                } else if (value instanceof char[]) {
+                    char[] array = (char[]) value;
+                    out.writeByte('[');
+                    out.writeByte('C');
+                    out.writeInt(array.length);
+                    for (char element : array) out.writeChar(element);
+                } else if (value instanceof short[]) {
+                    short[] array = (short[]) value;
+                    out.writeByte('[');
+                    out.writeByte('S');
+                    out.writeInt(array.length);
+                    for (short element : array) out.writeShort(element);
+                } else if (value instanceof float[]) {
+                    float[] array = (float[]) value;
+                    out.writeByte('[');
+                    out.writeByte('F');
+                    out.writeInt(array.length);
+                    for (float element : array) out.writeFloat(element);
+                } else if (value instanceof double[]) {
+                    double[] array = (double[]) value;
+                    out.writeByte('[');
+                    out.writeByte('D');
+                    out.writeInt(array.length);
+                    for (double element : array) out.writeDouble(element);
+                } else {
+                    throw new IllegalArgumentException("Unexpected annotation value " + value);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private class RecordingAnnotationVisitor extends AnnotationVisitor {
+
+            private RecordingAnnotationVisitor(AnnotationVisitor delegate) {
+                super(Opcodes.ASM6, delegate);
+            }
+
+            @Override
+            public void visit(String name, Object value) {
+                tag(VALUE);
+                writeString(name);
+                writeValue(value);
+                super.visit(name, value);
+            }
+
+            @Override
+            public AnnotationVisitor visitArray(String name) {
+                tag(ARRAY);
+                writeString(name);
+                return super.visitArray(name);
+            }
+
+            @Override
+            public void visitEnd() {
+                tag(END);
+                super.visitEnd();
+            }
+        }
+
+        private class RecordingFieldVisitor extends FieldVisitor {
+
+            private RecordingFieldVisitor(FieldVisitor delegate) {
+                super(Opcodes.ASM6, delegate);
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                return recordAnnotation(desc, visible, super.visitAnnotation(desc, visible));
+            }
+
+            @Override
+            public void visitEnd() {
+                tag(END);
+                super.visitEnd();
+            }
+        }
+
+        private class RecordingMethodVisitor extends MethodVisitor {
+
+            private RecordingMethodVisitor(MethodVisitor delegate) {
+                super(Opcodes.ASM6, delegate);
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotationDefault() {
+                tag(ANNOTATION_DEFAULT);
+                return new RecordingAnnotationVisitor(super.visitAnnotationDefault());
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                return recordAnnotation(desc, visible, super.visitAnnotation(desc, visible));
+            }
+
+            @Override
+            public void visitEnd() {
+                tag(END);
+                super.visitEnd();
+            }
+        }
+    }
+
+    private static class Player {
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<String>();
+
+        private Player(ByteBuffer events) {
+            in = new DataInputStream(new ByteBufferInputStream(events.duplicate()));
+        }
+
+        void play(ClassVisitor visitor) throws IOException {
+            while (true) {
+                byte tag = in.readByte();
+                switch (tag) {
+                    case CLASS:
+                        int version = in.readInt();
+                        int access = in.readInt();
+                        String name = readString();
+                        String signature = readString();
+                        String superName = readString();
+                        int count = in.readInt();
+                        String[] interfaces = (count==-1?null:new String[count]);
+                        for (int i=0;i<count;i++) {
+                            interfaces[i] = readString();
+                        }
+                        visitor.visit(version, access, name, signature, superName, interfaces);
+                        break;
+                    case ANNOTATION:
+                        playAnnotation(visitor.visitAnnotation(readString(), in.readInt()==1));
+                        break;
+                    case FIELD:
+                        playField(visitor.visitField(in.readInt(), readString(), readString(), readString(), null));
+                        break;
+                    case METHOD:
+                        playMethod(visitor.visitMethod(in.readInt(), readString(), readString(), readString(), null));
+                        break;
+                    case END:
+                        visitor.visitEnd();
+                        return;
+                    default:
+                        throw new IOException("Unexpected class event " + tag);
+                }
+            }
+        }
+
+        private void playField(FieldVisitor visitor) throws IOException {
+            while (true) {
+                byte tag = in.readByte();
+                switch (tag) {
+                    case ANNOTATION:
+                        String desc = readString();
+                        boolean visible = in.readInt()==1;
+                        playAnnotation(visitor==null?null:visitor.visitAnnotation(desc, visible));
+                        break;
+                    case END:
+                        if (visitor!=null) visitor.visitEnd();
+                        return;
+                    default:
+                        throw new IOException("Unexpected field event " + tag);
+                }
+            }
+        }
+
+        private void playMethod(MethodVisitor visitor) throws IOException {
+            while (true) {
+                byte tag = in.readByte();
+                switch (tag) {
+                    case ANNOTATION:
+                        String desc = readString();
+                        boolean visible = in.readInt()==1;
+                        playAnnotation(visitor==null?null:visitor.visitAnnotation(desc, visible));
+                        break;
+                    case ANNOTATION_DEFAULT:
+                        playAnnotation(visitor==null?null:visitor.visitAnnotationDefault());
+                        break;
+                    case END:
+                        if (visitor!=null) visitor.visitEnd();
+                        return;
+                    default:
+                        throw new IOException("Unexpected method event " + tag);
+                }
+            }
+        }
+
+        private void playAnnotation(AnnotationVisitor visitor) throws IOException {
+            while (true) {
+                byte tag = in.readByte();
+                switch (tag) {
+                    case VALUE:
+                        String name = readString();
+                        Object value = readValue();
+                        if (visitor!=null) visitor.visit(name, value);
+                        break;
+                    case ARRAY:
+                        String arrayName = readString();
+                        if (visitor!=null) {
+                            AnnotationVisitor array = visitor.visitArray(arrayName);
+                            if (array!=null) array.visitEnd();
+                        }
+                        break;
+                    case END:
+                        if (visitor!=null) visitor.visitEnd();
+                        return;
+                    default:
+                        throw new IOException("Unexpected annotation event " + tag);
+                }
+            }
+        }
+
+        private String readString() throws IOException {
+            int index = in.readInt();
+            if (index==-1) {
+                return null;
+            }
+            if (index==-2) {
+                String value = in.readUTF();
+                strings.add(value);
+                return value;
+            }
+            if (index<0 || index>=strings.size()) {
+                throw new IOException("Unknown string " + index);
+            }
+            return strings.get(index);
+        }
+
+        private Object readValue() throws IOException {
+            byte type = in.readByte();
+            switch (type) {
+                case 's': return readString();
+                case 'c': return Type.getType(readString());
+                case 'I': return in.readInt();
+                case 'Z': return in.readBoolean();
+                case 'J': return in.readLong();
+                case 'B': return in.readByte();
+                case 'C': return in.readChar();
+                case 'S': return in.readShort();
+                case 'F': return in.readFloat();
+                case 'D': return in.readDouble();
+                case '[': return readArray();
+                default:
+                    throw new IOException("Unexpected annotation value type " + type);
+            }
+        }
+
+        private Object readArray() throws IOException {
+            byte type = in.readByte();
+            int length = in.readInt();
+            switch (type) {
+                case 'I': {
+                    int[] array = new int[length];
+                    for (int i=0;i<length;i++) array[i] = in.readInt();
+                    return array;
+                }
+                case 'Z': {
+                    boolean[] array = new boolean[length];
+                    for (int i=0;i<length;i++) array[i] = in.readBoolean();
+                    return array;
+                }
+                case 'J': {
+                    long[] array = new long[length];
+                    for (int i=0;i<length;i++) array[i] = in.readLong();
+                    return array;
+                }
+                case 'B': {
+                    byte[] array = new byte[length];
+                    in.readFully(array);
+                    return array;
+                }
+                case 'C': {
+                    char[] array = new char[length];
+                    for (int i=0;i<length;i++) array[i] = in.readChar();
+                    return array;
+                }
+                case 'S': {
+                    short[] array = new short[length];
+                    for (int i=0;i<length;i++) array[i] = in.readShort();
+                    return array;
+                }
+                case 'F': {
+                    float[] array = new float[length];
+                    for (int i=0;i<length;i++) array[i] = in.readFloat();
+                    return array;
+                }
+                case 'D': {
+                    double[] array = new double[length];
+                    for (int i=0;i<length;i++) array[i] = in.readDouble();
+                    return array;
+                }
+                default:
+                    throw new IOException("Unexpected annotation array type " + type);
+            }
+        }
+    }
+
+    /**
+     * Reads a byte buffer without copying it, which for a mapped
+     * index means reading the file pages directly
+     */
+    static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining()?buffer.get() & 0xff:-1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len==0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(len, buffer.remaining());
+            buffer.get(b, off, read);
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
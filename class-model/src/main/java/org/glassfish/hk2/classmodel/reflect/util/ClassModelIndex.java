@@ -0,0 +1,315 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.classmodel.reflect.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Persistent index of the classes of jar files, so that a jar that did not
+ * change since it was last parsed is loaded from the {@link ClassEvents}
+ * recorded then rather than visited again.
+ *
+ * Each jar has its own index file in the index directory, keyed by the URI
+ * of the jar, its size, its last modification time and a digest of the names,
+ * sizes and CRCs of its entries. Index files are memory mapped when loaded.
+ * Jars containing other jars are not indexed.
+ */
+public class ClassModelIndex {
+
+    private static final int MAGIC = 0x484b3249;
+    // to be incremented whenever the recorded events or this format change
+    private static final int VERSION = 1;
+
+    private final File directory;
+    private final Logger logger;
+
+    /**
+     * Creates an index stored in the given directory, which is
+     * created the first time an archive index is saved
+     *
+     * @param directory the directory of the index files
+     * @param logger for any logging activity
+     */
+    public ClassModelIndex(File directory, Logger logger) {
+        this.directory = directory;
+        this.logger = logger;
+    }
+
+    /**
+     * Returns the index of an archive
+     *
+     * @param uri the URI of the archive
+     * @return the index of the archive, or null if the archive is not a jar file
+     * that can be indexed
+     */
+    public Archive getArchive(URI uri) {
+        if (!"file".equals(uri.getScheme())) {
+            return null;
+        }
+        File file;
+        try {
+            file = new File(uri);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            long size = file.length();
+            long lastModified = file.lastModified();
+            byte[] digest = digest(file);
+            if (digest==null) {
+                return null;
+            }
+            String name = file.getName().replaceAll("[^A-Za-z0-9._-]", "_") + "-"
+                    + Integer.toHexString(uri.toString().hashCode()) + ".idx";
+            return new Archive(uri, size, lastModified, digest, new File(directory, name));
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Cannot index " + uri, e);
+            return null;
+        }
+    }
+
+    /**
+     * Digests the central directory of a jar, its entries CRCs change with
+     * their content. Returns null if the jar contains other jars.
+     */
+    private static byte[] digest(File file) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        ByteBuffer longs = ByteBuffer.allocate(24);
+        ZipFile zip = new ZipFile(file);
+        try {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.getName().endsWith(".jar")) {
+                    return null;
+                }
+                md.update(entry.getName().getBytes("UTF-8"));
+                longs.clear();
+                longs.putLong(entry.getCrc()).putLong(entry.getSize()).putLong(entry.getCompressedSize());
+                md.update(longs.array());
+            }
+        } finally {
+            zip.close();
+        }
+        return md.digest();
+    }
+
+    /**
+     * The index of one archive
+     */
+    public class Archive {
+        private final URI uri;
+        private final long size;
+        private final long lastModified;
+        private final byte[] digest;
+        private final File indexFile;
+        private final SortedMap<Integer, Object[]> recorded = new TreeMap<Integer, Object[]>();
+
+        private Archive(URI uri, long size, long lastModified, byte[] digest, File indexFile) {
+            this.uri = uri;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.digest = digest;
+            this.indexFile = indexFile;
+        }
+
+        /**
+         * Returns the file this archive index is saved to
+         *
+         * @return the index file
+         */
+        public File getIndexFile() {
+            return indexFile;
+        }
+
+        /**
+         * Loads the classes recorded when the archive was last parsed
+         *
+         * @return the recorded events of each class keyed by entry name, in entry
+         * order, or null if the archive was not indexed or changed since
+         */
+        public Map<String, ByteBuffer> load() {
+            if (!indexFile.isFile()) {
+                return null;
+            }
+            try {
+                RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+                try {
+                    if (!readHeader(file)) {
+                        if (logger.isLoggable(Level.FINE)) {
+                            logger.fine("Index " + indexFile + " is out of date for " + uri);
+                        }
+                        return null;
+                    }
+                    int count = file.readInt();
+                    FileChannel channel = file.getChannel();
+                    long start = file.getFilePointer();
+                    ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, start, channel.size()-start);
+
+                    // all of it is read before returning so a damaged file is never half used
+                    Map<String, ByteBuffer> classes = new LinkedHashMap<String, ByteBuffer>();
+                    DataInputStream in = new DataInputStream(new ClassEvents.ByteBufferInputStream(data));
+                    for (int i=0;i<count;i++) {
+                        String entryName = in.readUTF();
+                        int length = in.readInt();
+                        ByteBuffer events = data.slice();
+                        events.limit(length);
+                        data.position(data.position()+length);
+                        classes.put(entryName, events);
+                    }
+                    if (data.hasRemaining()) {
+                        throw new IOException("Unexpected data at the end of " + indexFile);
+                    }
+                    return classes;
+                } finally {
+                    file.close();
+                }
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Cannot load index " + indexFile + ", parsing " + uri, e);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Cannot load index " + indexFile + ", parsing " + uri, e);
+            }
+            return null;
+        }
+
+        private boolean readHeader(RandomAccessFile file) throws IOException {
+            if (file.readInt()!=MAGIC || file.readInt()!=VERSION) {
+                return false;
+            }
+            if (!uri.toString().equals(file.readUTF())) {
+                return false;
+            }
+            if (file.readLong()!=size || file.readLong()!=lastModified) {
+                return false;
+            }
+            byte[] indexed = new byte[file.readUnsignedShort()];
+            file.readFully(indexed);
+            return Arrays.equals(indexed, digest);
+        }
+
+        /**
+         * Records the events of one class while the archive is parsed, may
+         * be called from several threads
+         *
+         * @param sequence the position of the class in the archive
+         * @param entryName the name of the class entry
+         * @param events the recorded events of the class
+         */
+        public void add(int sequence, String entryName, byte[] events) {
+            synchronized (recorded) {
+                recorded.put(sequence, new Object[] { entryName, events });
+            }
+        }
+
+        /**
+         * Saves the recorded classes, replacing any previous index of the archive
+         *
+         * @throws IOException if the index file cannot be written
+         */
+        public void save() throws IOException {
+            if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+                throw new IOException("Cannot create index directory " + directory);
+            }
+            // written aside then renamed, so a concurrent load never sees a partial file
+            File tmp = File.createTempFile(indexFile.getName(), ".tmp", directory);
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+                try {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeUTF(uri.toString());
+                    out.writeLong(size);
+                    out.writeLong(lastModified);
+                    out.writeShort(digest.length);
+                    out.write(digest);
+                    synchronized (recorded) {
+                        out.writeInt(recorded.size());
+                        for (Object[] entry : recorded.values()) {
+                            byte[] events = (byte[]) entry[1];
+                            out.writeUTF((String) entry[0]);
+                            out.writeInt(events.length);
+                            out.write(events);
+                        }
+                    }
+                } finally {
+                    out.close();
+                }
+                if (!tmp.renameTo(indexFile)) {
+                    indexFile.delete();
+                    if (!tmp.renameTo(indexFile)) {
+                        throw new IOException("Cannot rename " + tmp + " to " + indexFile);
+                    }
+                }
+            } finally {
+                tmp.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,450 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.classmodel.reflect.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.glassfish.hk2.classmodel.reflect.Parser;
+
+/**
+ * Jar archive read through a memory mapping of the jar file. The central
+ * directory is read once, stored entries are handed out without being
+ * copied and deflated entries are inflated with pooled inflaters. Jars
+ * inside the jar are read in place and handed to the parser as archives of
+ * their own, without a parser their entries are processed with the entries
+ * of this archive. Unlike {@link JarArchive}, the entries of a nested jar
+ * handed to the parser are not also given to the entry task of this archive,
+ * and the nested jar itself is never offered to the selector.
+ *
+ * When created with an executor, entries are processed by several threads
+ * at once and the entry task must be thread safe. The calling thread takes
+ * its share of the entries and only waits for the threads already working,
+ * so a busy executor never stalls it.
+ *
+ * The mapping is never unmapped explicitly, it is released by the garbage
+ * collector once neither this archive nor any stream or nested archive taken
+ * from it is reachable. Until then the file stays open, which prevents
+ * deleting or replacing it on some platforms, so the {@link Parser} only
+ * uses this archive when asked to.
+ *
+ * ZIP64 jars, jars larger than 2GB and encrypted entries are not supported,
+ * the constructor fails with an IOException and {@link JarArchive} should be
+ * used instead.
+ */
+public class MappedJarArchive extends AbstractAdapter {
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_HEADER = 0x06054b50;
+    private static final int END_HEADER_SIZE = 22;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    // inflaters are expensive to create and hold native memory until ended
+    private static final int MAX_POOLED_INFLATERS = 16;
+    private static final ConcurrentLinkedQueue<Inflater> inflaters = new ConcurrentLinkedQueue<Inflater>();
+    private static final AtomicInteger pooledInflaters = new AtomicInteger();
+
+    private final Parser parser;
+    private final URI uri;
+    private final ByteBuffer zip;
+    private final List<ZipEntry> entries;
+    private final Executor executor;
+    private final int parallelism;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates an archive processing its entries on the calling thread
+     *
+     * @param file the jar file
+     * @throws IOException if the jar cannot be read by this archive
+     */
+    public MappedJarArchive(File file) throws IOException {
+        this(null, file, null, 0);
+    }
+
+    /**
+     * Creates an archive processing its entries on the calling thread and
+     * on up to parallelism other threads of the executor
+     *
+     * @param file the jar file
+     * @param executor the executor running the other threads, may be null
+     * @param parallelism the number of other threads to use
+     * @throws IOException if the jar cannot be read by this archive
+     */
+    public MappedJarArchive(File file, Executor executor, int parallelism) throws IOException {
+        this(null, file, executor, parallelism);
+    }
+
+    /**
+     * Creates an archive handing its nested jars to the parser and
+     * processing its entries on the calling thread and on up to parallelism
+     * other threads of the executor
+     *
+     * @param parser the parser of the nested jars, may be null
+     * @param file the jar file
+     * @param executor the executor running the other threads, may be null
+     * @param parallelism the number of other threads to use
+     * @throws IOException if the jar cannot be read by this archive
+     */
+    public MappedJarArchive(Parser parser, File file, Executor executor, int parallelism) throws IOException {
+        this(parser, file.toURI(), map(file), executor, parallelism);
+    }
+
+    private MappedJarArchive(Parser parser, URI uri, ByteBuffer zip,
+            Executor executor, int parallelism) throws IOException {
+        this.parser = parser;
+        this.uri = uri;
+        // the content of a stored nested jar is a view of the mapping of its parent
+        this.zip = zip.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.executor = executor;
+        this.parallelism = (executor==null?0:parallelism);
+        this.entries = readCentralDirectory();
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size()>Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to be mapped");
+            }
+            // the mapping stays valid once the file is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Override
+    public URI getURI() {
+        return uri;
+    }
+
+    @Override
+    public Manifest getManifest() throws IOException {
+        checkOpen();
+        for (ZipEntry entry : entries) {
+            if (entry.name.equalsIgnoreCase(JarFile.MANIFEST_NAME)) {
+                InputStream is = new ClassEvents.ByteBufferInputStream(getContent(entry));
+                try {
+                    return new Manifest(is);
+                } finally {
+                    is.close();
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void onSelectedEntries(final Selector selector, final EntryTask task, final Logger logger) throws IOException {
+        checkOpen();
+        final AtomicInteger next = new AtomicInteger();
+        final int[] running = new int[1];
+
+        Runnable helper = new Runnable() {
+            @Override
+            public void run() {
+                synchronized (running) {
+                    running[0]++;
+                }
+                try {
+                    processEntries(next, selector, task, logger);
+                } finally {
+                    synchronized (running) {
+                        running[0]--;
+                        running.notifyAll();
+                    }
+                }
+            }
+        };
+        for (int i=0;i<parallelism && i<entries.size()-1;i++) {
+            try {
+                executor.execute(helper);
+            } catch (RejectedExecutionException e) {
+                // this thread will process the entries
+                break;
+            }
+        }
+
+        processEntries(next, selector, task, logger);
+        synchronized (running) {
+            while (running[0]>0) {
+                try {
+                    running.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while processing " + uri);
+                }
+            }
+        }
+    }
+
+    private void processEntries(AtomicInteger next, Selector selector, EntryTask task, Logger logger) {
+        int index;
+        while ((index = next.getAndIncrement())<entries.size()) {
+            ZipEntry zipEntry = entries.get(index);
+            try {
+                if (zipEntry.name.endsWith(".jar")) {
+                    URI subURI = URI.create("jar:" + uri + "!/" + zipEntry.name);
+                    MappedJarArchive subArchive = new MappedJarArchive(parser, subURI, getContent(zipEntry),
+                            executor, parallelism);
+                    if (parser==null) {
+                        try {
+                            subArchive.onSelectedEntries(selector, task, logger);
+                        } finally {
+                            subArchive.close();
+                        }
+                    } else {
+                        parseNested(subArchive, logger);
+                    }
+                    continue;
+                }
+                Entry entry = new Entry(zipEntry.name, zipEntry.size);
+                if (!selector.isSelected(entry)) {
+                    continue;
+                }
+                InputStream is = new ClassEvents.ByteBufferInputStream(getContent(zipEntry));
+                try {
+                    task.on(entry, is);
+                } finally {
+                    is.close();
+                }
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Exception while processing " + zipEntry.name
+                        + " inside " + uri + " of size " + zipEntry.size, e);
+            }
+        }
+    }
+
+    /**
+     * Submits a nested jar to the parser so its types are defined by its own
+     * URI
+     */
+    private void parseNested(final MappedJarArchive subArchive, final Logger logger) throws IOException {
+        try {
+            parser.parse(subArchive, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        subArchive.close();
+                    } catch (IOException e) {
+                        logger.log(Level.SEVERE, "Cannot close sub archive {0}", subArchive.getURI());
+                    }
+                }
+            });
+        } catch (IOException e) {
+            subArchive.close();
+            throw e;
+        } catch (RuntimeException e) {
+            subArchive.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the content of an entry, a view of the archive if it is stored
+     */
+    private ByteBuffer getContent(ZipEntry entry) throws IOException {
+        ByteBuffer local = zip.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (local.getInt(entry.offset)!=LOCAL_HEADER) {
+            throw new IOException("Bad local header for " + entry.name + " in " + uri);
+        }
+        int start = entry.offset + 30 + (local.getShort(entry.offset+26) & 0xffff)
+                + (local.getShort(entry.offset+28) & 0xffff);
+        local.limit(start + entry.compressedSize);
+        local.position(start);
+        ByteBuffer compressed = local.slice();
+
+        if (entry.method==STORED) {
+            return compressed;
+        }
+        if (entry.method!=DEFLATED) {
+            throw new IOException("Unsupported compression method " + entry.method + " for " + entry.name);
+        }
+
+        // inflaters take arrays, the last byte is the extra one the nowrap mode needs
+        byte[] input = new byte[entry.compressedSize+1];
+        compressed.get(input, 0, entry.compressedSize);
+        byte[] output = new byte[entry.size];
+        Inflater inflater = getInflater();
+        try {
+            inflater.setInput(input);
+            int inflated = 0;
+            while (inflated<output.length) {
+                int read = inflater.inflate(output, inflated, output.length-inflated);
+                if (read==0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated entry " + entry.name + " in " + uri);
+                }
+                inflated += read;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted entry " + entry.name + " in " + uri, e);
+        } finally {
+            releaseInflater(inflater);
+        }
+        return ByteBuffer.wrap(output);
+    }
+
+    private static Inflater getInflater() {
+        Inflater inflater = inflaters.poll();
+        if (inflater==null) {
+            return new Inflater(true);
+        }
+        pooledInflaters.decrementAndGet();
+        return inflater;
+    }
+
+    private static void releaseInflater(Inflater inflater) {
+        if (pooledInflaters.incrementAndGet()<=MAX_POOLED_INFLATERS) {
+            inflater.reset();
+            inflaters.add(inflater);
+        } else {
+            pooledInflaters.decrementAndGet();
+            inflater.end();
+        }
+    }
+
+    private List<ZipEntry> readCentralDirectory() throws IOException {
+        int end = findEndHeader();
+        int count = zip.getShort(end+10) & 0xffff;
+        long size = zip.getInt(end+12) & 0xffffffffL;
+        long offset = zip.getInt(end+16) & 0xffffffffL;
+        if (count==0xffff || offset==0xffffffffL || offset+size>end) {
+            throw new IOException("ZIP64 or damaged archive " + uri);
+        }
+
+        List<ZipEntry> retVal = new ArrayList<ZipEntry>(count);
+        int position = (int) offset;
+        for (int i=0;i<count;i++) {
+            if (zip.getInt(position)!=CENTRAL_HEADER) {
+                throw new IOException("Bad central directory header in " + uri);
+            }
+            int flags = zip.getShort(position+8) & 0xffff;
+            int method = zip.getShort(position+10) & 0xffff;
+            long compressedSize = zip.getInt(position+20) & 0xffffffffL;
+            long uncompressedSize = zip.getInt(position+24) & 0xffffffffL;
+            int nameLength = zip.getShort(position+28) & 0xffff;
+            int extraLength = zip.getShort(position+30) & 0xffff;
+            int commentLength = zip.getShort(position+32) & 0xffff;
+            long localOffset = zip.getInt(position+42) & 0xffffffffL;
+            if ((flags & 1)!=0) {
+                throw new IOException("Encrypted entries are not supported in " + uri);
+            }
+            if (compressedSize>=Integer.MAX_VALUE || uncompressedSize>=Integer.MAX_VALUE
+                    || localOffset>=end) {
+                throw new IOException("ZIP64 or damaged archive " + uri);
+            }
+
+            byte[] name = new byte[nameLength];
+            ByteBuffer names = zip.duplicate();
+            names.position(position+46);
+            names.get(name);
+            String entryName = new String(name, "UTF-8");
+            if (!entryName.endsWith("/")) {
+                retVal.add(new ZipEntry(entryName, method, (int) compressedSize, (int) uncompressedSize, (int) localOffset));
+            }
+            position += 46 + nameLength + extraLength + commentLength;
+        }
+        return Collections.unmodifiableList(retVal);
+    }
+
+    private int findEndHeader() throws IOException {
+        int last = zip.limit() - END_HEADER_SIZE;
+        // the end header is only followed by the archive comment
+        for (int position = last; position>=0 && position>=last-0xffff; position--) {
+            if (zip.getInt(position)==END_HEADER) {
+                return position;
+            }
+        }
+        throw new IOException("No central directory in " + uri);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException(uri + " is closed");
+        }
+    }
+
+    private static class ZipEntry {
+        final String name;
+        final int method;
+        final int compressedSize;
+        final int size;
+        final int offset;
+
+        ZipEntry(String name, int method, int compressedSize, int size, int offset) {
+            this.name = name;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.offset = offset;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.classmodel.reflect.test;
+
+import org.glassfish.hk2.classmodel.reflect.*;
+import org.glassfish.hk2.classmodel.reflect.test.method.SomeAnnotation;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Tests for the persistent index of parsed jars
+ */
+public class IndexTest {
+
+    private File directory;
+    private File jar;
+    private File indexDirectory;
+
+    @Before
+    public void before() throws Exception {
+        directory = File.createTempFile("classmodel", "index");
+        directory.delete();
+        directory.mkdirs();
+        jar = new File(directory, "test classes.jar");
+        indexDirectory = new File(directory, "index");
+
+        File testClasses = new File(IndexTest.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        JarOutputStream jos = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            addClasses(jos, testClasses, "");
+        } finally {
+            jos.close();
+        }
+    }
+
+    @After
+    public void after() {
+        delete(directory);
+    }
+
+    @Test
+    public void unchangedJarIsLoadedFromIndex() throws Exception {
+        List<String> messages = new ArrayList<String>();
+        Map<String, String> parsed = ParallelParsingTest.describe(parse(indexDirectory, messages));
+        Assert.assertTrue(parsed.containsKey(SomeAnnotation.class.getName()));
+        Assert.assertEquals(1, indexDirectory.listFiles().length);
+        Assert.assertFalse(loaded(messages));
+
+        messages.clear();
+        Map<String, String> loaded = ParallelParsingTest.describe(parse(indexDirectory, messages));
+        Assert.assertTrue(loaded(messages));
+        Assert.assertEquals(parsed, loaded);
+
+        // and the same as parsing without an index
+        Assert.assertEquals(parsed, ParallelParsingTest.describe(parse(null, messages)));
+    }
+
+    @Test
+    public void annotationValuesAreLoadedFromIndex() throws Exception {
+        List<String> messages = new ArrayList<String>();
+        parse(indexDirectory, messages);
+        Types types = parse(indexDirectory, messages);
+        Assert.assertTrue(loaded(messages));
+
+        AnnotationType someAnnotation = (AnnotationType) types.getBy(SomeAnnotation.class.getName());
+        Assert.assertEquals("default", someAnnotation.getDefaultValues().get("value"));
+        Assert.assertFalse(someAnnotation.allAnnotatedTypes().isEmpty());
+    }
+
+    @Test
+    public void changedJarIsParsedAgain() throws Exception {
+        List<String> messages = new ArrayList<String>();
+        parse(indexDirectory, messages);
+        File index = indexDirectory.listFiles()[0];
+        long indexed = index.length();
+
+        jar.setLastModified(jar.lastModified() - 60000);
+        messages.clear();
+        parse(indexDirectory, messages);
+        Assert.assertFalse(loaded(messages));
+        Assert.assertEquals(indexed, index.length());
+
+        messages.clear();
+        parse(indexDirectory, messages);
+        Assert.assertTrue(loaded(messages));
+    }
+
+    @Test
+    public void damagedIndexIsIgnored() throws Exception {
+        List<String> messages = new ArrayList<String>();
+        Map<String, String> parsed = ParallelParsingTest.describe(parse(indexDirectory, messages));
+        File index = indexDirectory.listFiles()[0];
+
+        // keep the header, lose most of the classes
+        byte[] bytes = new byte[(int) index.length() / 2];
+        InputStream is = new FileInputStream(index);
+        try {
+            Assert.assertEquals(bytes.length, is.read(bytes));
+        } finally {
+            is.close();
+        }
+        FileOutputStream os = new FileOutputStream(index);
+        try {
+            os.write(bytes);
+        } finally {
+            os.close();
+        }
+
+        messages.clear();
+        Assert.assertEquals(parsed, ParallelParsingTest.describe(parse(indexDirectory, messages)));
+        Assert.assertFalse(loaded(messages));
+    }
+
+    private Types parse(File index, final List<String> messages) throws Exception {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.FINE);
+        logger.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                synchronized (messages) {
+                    messages.add(record.getMessage());
+                }
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+
+        ParsingContext pc = new ParsingContext.Builder().logger(logger).indexDirectory(index).build();
+        Parser parser = new Parser(pc);
+        parser.parse(jar, null);
+        Exception[] exceptions = parser.awaitTermination(100, TimeUnit.SECONDS);
+        if (exceptions!=null) {
+            Assert.assertEquals(0, exceptions.length);
+        }
+        return pc.getTypes();
+    }
+
+    private static boolean loaded(List<String> messages) {
+        synchronized (messages) {
+            for (String message : messages) {
+                if (message.startsWith("Loading ")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void addClasses(JarOutputStream jos, File dir, String prefix) throws IOException {
+        for (File file : dir.listFiles()) {
+            if (file.isDirectory()) {
+                addClasses(jos, file, prefix + file.getName() + "/");
+            } else if (file.getName().endsWith(".class")) {
+                jos.putNextEntry(new JarEntry(prefix + file.getName()));
+                InputStream is = new FileInputStream(file);
+                try {
+                    byte[] buffer = new byte[4096];
+                    int read;
+                    while ((read = is.read(buffer))!=-1) {
+                        jos.write(buffer, 0, read);
+                    }
+                } finally {
+                    is.close();
+                }
+                jos.closeEntry();
+            }
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children!=null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
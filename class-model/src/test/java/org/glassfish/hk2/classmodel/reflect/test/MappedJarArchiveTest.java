@@ -0,0 +1,287 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.classmodel.reflect.test;
+
+import org.glassfish.hk2.classmodel.reflect.ArchiveAdapter;
+import org.glassfish.hk2.classmodel.reflect.Parser;
+import org.glassfish.hk2.classmodel.reflect.ParsingContext;
+import org.glassfish.hk2.classmodel.reflect.Types;
+import org.glassfish.hk2.classmodel.reflect.test.method.SomeAnnotation;
+import org.glassfish.hk2.classmodel.reflect.test.model.Payment;
+import org.glassfish.hk2.classmodel.reflect.util.MappedJarArchive;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+/**
+ * Tests for the memory mapped jar archive
+ */
+public class MappedJarArchiveTest {
+
+    private static final Logger logger = Logger.getLogger(MappedJarArchiveTest.class.getName());
+
+    private File jar;
+    private final Map<String, byte[]> expected = new TreeMap<String, byte[]>();
+
+    @Before
+    public void before() throws IOException {
+        Random random = new Random(42);
+        byte[] nested = createJar(new TreeMap<String, byte[]>() {{
+            put("nested/Stored.txt", new byte[] { 1, 2, 3 });
+            put("nested/Deflated.txt", new byte[10000]);
+        }}, false);
+        expected.put("nested/Stored.txt", new byte[] { 1, 2, 3 });
+        expected.put("nested/Deflated.txt", new byte[10000]);
+
+        Map<String, byte[]> entries = new TreeMap<String, byte[]>();
+        for (int i = 0; i < 200; i++) {
+            byte[] content = new byte[random.nextInt(5000)];
+            random.nextBytes(content);
+            // half of them compress well
+            if (i % 2 == 0) {
+                content = new String(content, "ISO-8859-1").replaceAll("[^a-c]", "a").getBytes("ISO-8859-1");
+            }
+            entries.put("org/entry" + i + ".bin", content);
+        }
+        entries.put("org/empty.bin", new byte[0]);
+        expected.putAll(entries);
+        entries.put("lib/nested.jar", nested);
+
+        jar = File.createTempFile("mapped", ".jar");
+        FileOutputStream fos = new FileOutputStream(jar);
+        try {
+            fos.write(createJar(entries, true));
+        } finally {
+            fos.close();
+        }
+    }
+
+    @After
+    public void after() {
+        jar.delete();
+    }
+
+    @Test
+    public void readsAllEntries() throws IOException {
+        MappedJarArchive archive = new MappedJarArchive(jar);
+        try {
+            assertEntries(archive);
+            Manifest manifest = archive.getManifest();
+            Assert.assertNotNull(manifest);
+            Assert.assertEquals("test", manifest.getMainAttributes().getValue("Created-By"));
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void readsAllEntriesOnSeveralThreads() throws IOException {
+        ExecutorService es = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 10; i++) {
+                assertEntries(new MappedJarArchive(jar, es, 4));
+            }
+        } finally {
+            es.shutdown();
+        }
+    }
+
+    @Test
+    public void shutDownExecutorReadsOnCallingThread() throws IOException {
+        ExecutorService es = Executors.newFixedThreadPool(2);
+        es.shutdown();
+        assertEntries(new MappedJarArchive(jar, es, 2));
+    }
+
+    @Test
+    public void parsesClassesOfNestedJars() throws Exception {
+        Map<String, byte[]> nested = new TreeMap<String, byte[]>();
+        nested.put(resourceName(SomeAnnotation.class), read(SomeAnnotation.class));
+        Map<String, byte[]> outer = new TreeMap<String, byte[]>();
+        outer.put(resourceName(Payment.class), read(Payment.class));
+        outer.put("WEB-INF/lib/nested.jar", createJar(nested, true));
+
+        File classes = File.createTempFile("classes", ".jar");
+        try {
+            FileOutputStream fos = new FileOutputStream(classes);
+            try {
+                fos.write(createJar(outer, true));
+            } finally {
+                fos.close();
+            }
+
+            ParsingContext pc = new ParsingContext.Builder().mappedArchives(true).build();
+            Parser parser = new Parser(pc);
+            parser.parse(classes, null);
+            Exception[] exceptions = parser.awaitTermination(100, TimeUnit.SECONDS);
+            if (exceptions!=null) {
+                Assert.assertEquals(0, exceptions.length);
+            }
+            Types types = pc.getTypes();
+            Assert.assertNotNull(types.getBy(Payment.class.getName()));
+            Assert.assertNotNull(types.getBy(SomeAnnotation.class.getName()));
+            // the nested jar is parsed as an archive of its own
+            Assert.assertEquals(Collections.singletonList(new URI("jar:" + classes.toURI() + "!/WEB-INF/lib/nested.jar")),
+                    new ArrayList<URI>(types.getBy(SomeAnnotation.class.getName()).getDefiningURIs()));
+        } finally {
+            classes.delete();
+        }
+    }
+
+    @Test
+    public void closedArchiveCannotBeRead() throws IOException {
+        MappedJarArchive archive = new MappedJarArchive(jar);
+        archive.close();
+        try {
+            archive.getManifest();
+            Assert.fail("read a closed archive");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private void assertEntries(ArchiveAdapter archive) throws IOException {
+        final Map<String, byte[]> read = new ConcurrentHashMap<String, byte[]>();
+        archive.onSelectedEntries(new ArchiveAdapter.Selector() {
+            @Override
+            public boolean isSelected(ArchiveAdapter.Entry entry) {
+                return !entry.name.startsWith("META-INF");
+            }
+        }, new ArchiveAdapter.EntryTask() {
+            @Override
+            public void on(ArchiveAdapter.Entry entry, InputStream is) throws IOException {
+                byte[] content = readFully(is);
+                Assert.assertEquals(entry.name, entry.size, content.length);
+                Assert.assertNull("read twice " + entry.name, read.put(entry.name, content));
+            }
+        }, logger);
+
+        Assert.assertEquals(expected.keySet(), new TreeMap<String, byte[]>(read).keySet());
+        for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+            Assert.assertArrayEquals(entry.getKey(), entry.getValue(), read.get(entry.getKey()));
+        }
+    }
+
+    /**
+     * Even entries are deflated and odd ones stored
+     */
+    private static byte[] createJar(Map<String, byte[]> entries, boolean withManifest) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        JarOutputStream jos;
+        if (withManifest) {
+            Manifest manifest = new Manifest();
+            manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+            manifest.getMainAttributes().putValue("Created-By", "test");
+            jos = new JarOutputStream(baos, manifest);
+        } else {
+            jos = new JarOutputStream(baos);
+        }
+        try {
+            jos.putNextEntry(new JarEntry("org/"));
+            jos.closeEntry();
+            int i = 0;
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                JarEntry jarEntry = new JarEntry(entry.getKey());
+                if (i++ % 2 == 1) {
+                    CRC32 crc = new CRC32();
+                    crc.update(entry.getValue());
+                    jarEntry.setMethod(ZipEntry.STORED);
+                    jarEntry.setSize(entry.getValue().length);
+                    jarEntry.setCrc(crc.getValue());
+                }
+                jos.putNextEntry(jarEntry);
+                jos.write(entry.getValue());
+                jos.closeEntry();
+            }
+            jos.setComment("a comment at the end of the archive");
+        } finally {
+            jos.close();
+        }
+        return baos.toByteArray();
+    }
+
+    private static String resourceName(Class<?> clazz) {
+        return clazz.getName().replace('.', '/') + ".class";
+    }
+
+    private static byte[] read(Class<?> clazz) throws IOException {
+        InputStream is = clazz.getClassLoader().getResourceAsStream(resourceName(clazz));
+        try {
+            return readFully(is);
+        } finally {
+            is.close();
+        }
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = is.read(buffer))!=-1) {
+            baos.write(buffer, 0, read);
+        }
+        return baos.toByteArray();
+    }
+}
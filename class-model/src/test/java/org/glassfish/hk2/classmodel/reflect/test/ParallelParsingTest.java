@@ -0,0 +1,129 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.classmodel.reflect.test;
+
+import org.glassfish.hk2.classmodel.reflect.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks that parsing with many threads builds the same model as parsing with one
+ */
+public class ParallelParsingTest {
+
+    private static final int THREADS = 8;
+
+    @Test
+    public void parallelModelMatchesSequentialModel() throws Exception {
+        File testClasses = new File(ParallelParsingTest.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+
+        Map<String, String> sequential = describe(parse(testClasses, 1));
+        Assert.assertTrue(sequential.containsKey(ParallelParsingTest.class.getName()));
+
+        // a few rounds since any race would only show up some of the time
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(sequential, describe(parse(testClasses, THREADS)));
+        }
+    }
+
+    private static Types parse(File location, int threads) throws Exception {
+        ExecutorService es = Executors.newFixedThreadPool(threads);
+        try {
+            ParsingContext pc = new ParsingContext.Builder().executorService(es).build();
+            Parser parser = new Parser(pc);
+            parser.parse(location, null);
+            Exception[] exceptions = parser.awaitTermination(100, TimeUnit.SECONDS);
+            if (exceptions!=null) {
+                Assert.assertEquals(Arrays.toString(exceptions), 0, exceptions.length);
+            }
+            return pc.getTypes();
+        } finally {
+            es.shutdown();
+        }
+    }
+
+    static Map<String, String> describe(Types types) {
+        Map<String, String> retVal = new TreeMap<String, String>();
+        for (Type type : types.getAllTypes()) {
+            StringBuilder sb = new StringBuilder(type.getClass().getSimpleName());
+            sb.append(" methods=").append(names(type.getMethods()));
+            sb.append(" annotations=").append(names(type.getAnnotations()));
+            sb.append(" references=").append(type.getReferences().size());
+            if (type instanceof ExtensibleType) {
+                ExtensibleType<?> et = (ExtensibleType<?>) type;
+                sb.append(" parent=").append(et.getParent()==null?null:et.getParent().getName());
+                sb.append(" interfaces=").append(names(et.getInterfaces()));
+                sb.append(" subTypes=").append(names(et.subTypes()));
+            }
+            if (type instanceof ClassModel) {
+                sb.append(" fields=").append(names(((ClassModel) type).getFields()));
+            }
+            if (type instanceof InterfaceModel) {
+                sb.append(" implementations=").append(names(((InterfaceModel) type).implementations()));
+            }
+            if (type instanceof AnnotationType) {
+                sb.append(" annotated=").append(names(((AnnotationType) type).allAnnotatedTypes()));
+            }
+            retVal.put(type.getName(), sb.toString());
+        }
+        return retVal;
+    }
+
+    private static Set<String> names(Collection<?> elements) {
+        Set<String> retVal = new TreeSet<String>();
+        for (Object element : elements) {
+            if (element instanceof AnnotationModel) {
+                retVal.add(((AnnotationModel) element).getType().getName());
+            } else if (element instanceof AnnotatedElement) {
+                retVal.add(((AnnotatedElement) element).getName());
+            } else {
+                retVal.add(String.valueOf(element));
+            }
+        }
+        return retVal;
+    }
+}
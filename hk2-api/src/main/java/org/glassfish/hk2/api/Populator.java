@@ -57,6 +57,10 @@ public interface Populator {
     /**
      * This method can be used to populate the service locator with files that
      * have been written out using the {@link DescriptorImpl} writeObject method.
+     * <p>
+     * The post-processors are always called on the calling thread, in the order
+     * of the files and of the descriptors in each file, even if the files were
+     * read by more than one thread
      * 
      * @param fileFinder An object that finds files in the environment.  If this is null
      * then the system will look in the service locator for an implementation of
@@ -144,6 +144,52 @@ public interface ServiceLocator {
      */
     public <T> T getService(Type contractOrImpl, String name, Annotation... qualifiers) throws MultiException;
     
+    /**
+     * Gets a supplier of the best service from this locator that implements
+     * this contract or has this implementation.  The supplier remembers the
+     * service it found and keeps returning it from {@link ServiceSupplier#get()}
+     * without looking it up again until the configuration of this locator or of
+     * one of its parents changes, making it suitable for callers that repeatedly
+     * get the same service
+     * <p>
+     * Use this method only if destroying the services is not important,
+     * otherwise use {@link ServiceLocator#getServiceHandle(Class, Annotation...)}
+     * 
+     * @param contractOrImpl May not be null, and is the contract
+     * or concrete implementation to get the best instance of.  May
+     * not be {@link javax.inject.Provider}, {@link IterableProvider}, {@link Iterable}
+     * or {@link org.glassfish.hk2.api.messaging.Topic}
+     * @param qualifiers The set of qualifiers that must match this service
+     * definition
+     * @return A non-null supplier of the service.  The supplier returns null from
+     * get if there is no provider that provides the given implementation or contract
+     * @throws MultiException if there was an error while looking up the service
+     */
+    public <T> ServiceSupplier<T> getServiceSupplier(Class<T> contractOrImpl, Annotation... qualifiers) throws MultiException;
+    
+    /**
+     * Gets a supplier of the best service from this locator that implements
+     * this contract or has this implementation.  The supplier remembers the
+     * service it found and keeps returning it from {@link ServiceSupplier#get()}
+     * without looking it up again until the configuration of this locator or of
+     * one of its parents changes, making it suitable for callers that repeatedly
+     * get the same service
+     * <p>
+     * Use this method only if destroying the services is not important,
+     * otherwise use {@link ServiceLocator#getServiceHandle(Type, Annotation...)}
+     * 
+     * @param contractOrImpl May not be null, and is the contract
+     * or concrete implementation to get the best instance of.  May
+     * not be {@link javax.inject.Provider}, {@link IterableProvider}, {@link Iterable}
+     * or {@link org.glassfish.hk2.api.messaging.Topic}
+     * @param qualifiers The set of qualifiers that must match this service
+     * definition
+     * @return A non-null supplier of the service.  The supplier returns null from
+     * get if there is no provider that provides the given implementation or contract
+     * @throws MultiException if there was an error while looking up the service
+     */
+    public <T> ServiceSupplier<T> getServiceSupplier(Type contractOrImpl, Annotation... qualifiers) throws MultiException;
+    
     /**
      * Gets all services from this locator that implement this contract or have this
      * implementation and have the provided qualifiers
@@ -40,26 +40,59 @@
 package org.glassfish.hk2.internal;
 
 import java.lang.annotation.Annotation;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.glassfish.hk2.api.ActiveDescriptor;
 import org.glassfish.hk2.api.Context;
+import org.glassfish.hk2.api.Descriptor;
 import org.glassfish.hk2.api.DescriptorVisibility;
+import org.glassfish.hk2.api.DynamicConfigurationListener;
+import org.glassfish.hk2.api.Filter;
+import org.glassfish.hk2.api.IndexedFilter;
 import org.glassfish.hk2.api.PerThread;
 import org.glassfish.hk2.api.ServiceHandle;
+import org.glassfish.hk2.api.ServiceLocator;
 import org.glassfish.hk2.api.Visibility;
-import org.glassfish.hk2.utilities.general.Hk2ThreadLocal;
 import org.glassfish.hk2.utilities.reflection.Logger;
 
 /**
+ * The context of the {@link PerThread} scope.
+ * <p>
+ * Every descriptor is given an index the first time it is looked up, and the
+ * instances of a thread are kept in an array at those indexes, so a lookup is
+ * a single {@link ThreadLocal} access and an array access.  The indexes are
+ * keyed by the locator and service ids of the descriptors rather than by the
+ * descriptors, so that the indexes shared by all threads do not keep the
+ * descriptors (and their locators) reachable.  When a descriptor of this
+ * locator is unbound its index is freed and given to the next new descriptor,
+ * and every thread clears the slot of that index the next time it uses
+ * this context.  The index of a descriptor that was never registered is
+ * freed once the descriptor is collected.
+ * <p>
+ * The instances of a thread live until the thread dies or until
+ * {@link #destroyCurrentThread()} is called on that thread, destroying
+ * the {@link ServiceHandle} of a service does nothing.  Threads
+ * of a pool should call {@link #destroyCurrentThread()} at the end of
+ * each task.  A virtual thread runs a single task, so its instances are
+ * scoped to that task and are released with it
+ * 
  * @author jwells
  */
 @Singleton @Visibility(DescriptorVisibility.LOCAL)
-public class PerThreadContext implements Context<PerThread> {
+public class PerThreadContext implements Context<PerThread>, DynamicConfigurationListener {
     private final static boolean LOG_THREAD_DESTRUCTION = AccessController.<Boolean>doPrivileged(new PrivilegedAction<Boolean>() {
 
         @Override
@@ -69,12 +102,27 @@ public class PerThreadContext implements Context<PerThread> {
         
     });
     
-    private final Hk2ThreadLocal<PerContextThreadWrapper> threadMap =
-            new Hk2ThreadLocal<PerContextThreadWrapper>() {
-        public PerContextThreadWrapper initialValue() {
-            return new PerContextThreadWrapper();
-        }
-    };
+    private final ConcurrentHashMap<Long, ConcurrentHashMap<Long, Slot>> indexes =
+            new ConcurrentHashMap<Long, ConcurrentHashMap<Long, Slot>>();
+    private final ConcurrentHashMap<UnregisteredKey, Integer> unregisteredIndexes =
+            new ConcurrentHashMap<UnregisteredKey, Integer>();
+    private final ReferenceQueue<ActiveDescriptor<?>> collectedUnregistered =
+            new ReferenceQueue<ActiveDescriptor<?>>();
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Integer> freeIndexes = new ConcurrentLinkedQueue<Integer>();
+    
+    /** Changed whenever indexes are freed, tells the threads to clear their slots */
+    private volatile int generation;
+    
+    private final ServiceLocator locator;
+    
+    /** Replaced on shutdown, which drops the instances of all threads */
+    private volatile ThreadLocal<PerContextThreadWrapper> threadMap = new ThreadLocal<PerContextThreadWrapper>();
+    
+    @Inject
+    private PerThreadContext(ServiceLocator locator) {
+        this.locator = locator;
+    }
 
     /* (non-Javadoc)
      * @see org.glassfish.hk2.api.Context#getScope()
@@ -91,10 +139,13 @@ public class PerThreadContext implements Context<PerThread> {
     @Override
     public <U> U findOrCreate(ActiveDescriptor<U> activeDescriptor,
             ServiceHandle<?> root) {
-        U retVal = (U) threadMap.get().get(activeDescriptor);
+        int index = getIndex(activeDescriptor);
+        PerContextThreadWrapper wrapper = getWrapper();
+        
+        U retVal = (U) wrapper.get(index, activeDescriptor);
         if (retVal == null) {
             retVal = activeDescriptor.create(root);
-            threadMap.get().put(activeDescriptor, retVal);
+            wrapper.put(index, activeDescriptor, retVal);
         }
         
         return retVal;
@@ -105,7 +156,13 @@ public class PerThreadContext implements Context<PerThread> {
      */
     @Override
     public boolean containsKey(ActiveDescriptor<?> descriptor) {
-        return threadMap.get().has(descriptor);
+        Integer index = findIndex(descriptor);
+        if (index == null) return false;
+        
+        PerContextThreadWrapper wrapper = findWrapper();
+        if (wrapper == null) return false;
+        
+        return wrapper.get(index, descriptor) != null;
     }
 
     /* (non-Javadoc)
@@ -129,9 +186,90 @@ public class PerThreadContext implements Context<PerThread> {
      */
     @Override
     public void shutdown() {
-        threadMap.removeAll();
+        threadMap = new ThreadLocal<PerContextThreadWrapper>();
+        
+        indexes.clear();
+        unregisteredIndexes.clear();
+        freeIndexes.clear();
+    }
+    
+    /**
+     * Frees the indexes of the {@link PerThread} descriptors of this
+     * locator that have been unbound.  Only the descriptors that have
+     * an index are looked for, each by one of its contracts
+     */
+    @Override
+    public synchronized void configurationChanged() {
+        ConcurrentHashMap<Long, Slot> locatorIndexes = indexes.get(locator.getLocatorId());
+        if (locatorIndexes == null || locatorIndexes.isEmpty()) return;
+        
+        boolean freed = false;
+        try {
+            for (Iterator<Map.Entry<Long, Slot>> it = locatorIndexes.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Long, Slot> entry = it.next();
+                if (isBound(entry.getKey(), entry.getValue().contract)) continue;
+                
+                it.remove();
+                freeIndexes.add(entry.getValue().index);
+                freed = true;
+            }
+        }
+        catch (IllegalStateException ise) {
+            // Locator has been shut down
+            return;
+        }
+        
+        if (freed) {
+            generation++;
+            
+            PerContextThreadWrapper wrapper = threadMap.get();
+            if (wrapper != null) clearFreed(wrapper);
+        }
+    }
+
+    private boolean isBound(final long serviceId, final String contract) {
+        final long locatorId = locator.getLocatorId();
+        
+        if (contract == null) {
+            // Not indexed by any contract
+            return !locator.getDescriptors(new Filter() {
+
+                @Override
+                public boolean matches(Descriptor d) {
+                    return isDescriptor(d, locatorId, serviceId);
+                }
+                
+            }).isEmpty();
+        }
+        
+        return locator.getBestDescriptor(new IndexedFilter() {
+
+            @Override
+            public boolean matches(Descriptor d) {
+                return isDescriptor(d, locatorId, serviceId);
+            }
+
+            @Override
+            public String getAdvertisedContract() {
+                return contract;
+            }
+
+            @Override
+            public String getName() {
+                return null;
+            }
+            
+        }) != null;
+    }
+    
+    private static boolean isDescriptor(Descriptor d, long locatorId, long serviceId) {
+        return d.getLocatorId() != null && d.getLocatorId() == locatorId &&
+                d.getServiceId() != null && d.getServiceId() == serviceId;
     }
 
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.api.Context#destroyOne(org.glassfish.hk2.api.ActiveDescriptor)
+     */
     @Override
     public void destroyOne(ActiveDescriptor<?> descriptor) {
         // per-thread instances live for the life of the thread,
@@ -139,26 +277,248 @@ public class PerThreadContext implements Context<PerThread> {
         
     }
     
+    /**
+     * Destroys all of the instances created on the current thread.
+     * The next lookup of a service on this thread will create a
+     * new instance.  This should be called by threads of a pool
+     * at the end of every task
+     */
+    public void destroyCurrentThread() {
+        ThreadLocal<PerContextThreadWrapper> localThreadMap = threadMap;
+        
+        PerContextThreadWrapper wrapper = localThreadMap.get();
+        if (wrapper == null) return;
+        localThreadMap.remove();
+        
+        wrapper.destroyAll();
+    }
+    
+    private PerContextThreadWrapper getWrapper() {
+        ThreadLocal<PerContextThreadWrapper> localThreadMap = threadMap;
+        
+        PerContextThreadWrapper retVal = localThreadMap.get();
+        if (retVal == null) {
+            retVal = new PerContextThreadWrapper(generation);
+            localThreadMap.set(retVal);
+        }
+        else if (retVal.generation != generation) {
+            clearFreed(retVal);
+        }
+        
+        return retVal;
+    }
+    
+    private PerContextThreadWrapper findWrapper() {
+        PerContextThreadWrapper retVal = threadMap.get();
+        if (retVal != null && retVal.generation != generation) {
+            clearFreed(retVal);
+        }
+        
+        return retVal;
+    }
+    
+    /**
+     * Drops the instances of this thread whose descriptors no longer
+     * have the index of their slot
+     */
+    private void clearFreed(PerContextThreadWrapper wrapper) {
+        wrapper.generation = generation;
+        
+        ActiveDescriptor<?>[] descriptors = wrapper.descriptors;
+        for (int lcv = 0; lcv < descriptors.length; lcv++) {
+            ActiveDescriptor<?> descriptor = descriptors[lcv];
+            if (descriptor == null) continue;
+            
+            Integer index = findIndex(descriptor);
+            if (index == null || index != lcv) {
+                wrapper.remove(lcv, descriptor);
+            }
+        }
+    }
+    
+    private Integer findIndex(ActiveDescriptor<?> descriptor) {
+        Long locatorId = descriptor.getLocatorId();
+        Long serviceId = descriptor.getServiceId();
+        if (locatorId == null || serviceId == null) {
+            return unregisteredIndexes.get(new UnregisteredKey(descriptor, null));
+        }
+        
+        ConcurrentHashMap<Long, Slot> locatorIndexes = indexes.get(locatorId);
+        if (locatorIndexes == null) return null;
+        
+        Slot slot = locatorIndexes.get(serviceId);
+        if (slot == null) return null;
+        
+        return slot.index;
+    }
+    
+    private int getIndex(ActiveDescriptor<?> descriptor) {
+        Integer retVal = findIndex(descriptor);
+        if (retVal != null) return retVal;
+        
+        freeCollectedUnregistered();
+        
+        Integer added = freeIndexes.poll();
+        if (added == null) added = nextIndex.getAndIncrement();
+        
+        Long locatorId = descriptor.getLocatorId();
+        Long serviceId = descriptor.getServiceId();
+        if (locatorId == null || serviceId == null) {
+            UnregisteredKey key = new UnregisteredKey(descriptor, collectedUnregistered);
+            retVal = unregisteredIndexes.putIfAbsent(key, added);
+            if (retVal == null) return added;
+            
+            // Never enqueued, so the index it did not get is not freed twice
+            key.clear();
+            freeIndexes.add(added);
+            return retVal;
+        }
+        
+        ConcurrentHashMap<Long, Slot> locatorIndexes = indexes.get(locatorId);
+        if (locatorIndexes == null) {
+            ConcurrentHashMap<Long, Slot> addedIndexes = new ConcurrentHashMap<Long, Slot>();
+            locatorIndexes = indexes.putIfAbsent(locatorId, addedIndexes);
+            if (locatorIndexes == null) locatorIndexes = addedIndexes;
+        }
+        
+        Set<String> contracts = descriptor.getAdvertisedContracts();
+        String contract = contracts.isEmpty() ? null : contracts.iterator().next();
+        
+        Slot slot = locatorIndexes.putIfAbsent(serviceId, new Slot(added, contract));
+        if (slot == null) return added;
+        
+        freeIndexes.add(added);
+        return slot.index;
+    }
+    
+    /**
+     * Frees the indexes of the unregistered descriptors that have been
+     * collected.  No thread can still have an instance in their slots,
+     * since the slots keep the descriptors reachable
+     */
+    private void freeCollectedUnregistered() {
+        Reference<? extends ActiveDescriptor<?>> collected;
+        while ((collected = collectedUnregistered.poll()) != null) {
+            Integer index = unregisteredIndexes.remove(collected);
+            if (index != null) freeIndexes.add(index);
+        }
+    }
+    
+    /**
+     * The index of a registered descriptor, with one of its
+     * contracts to find it by when the configuration changes
+     */
+    private static class Slot {
+        private final int index;
+        private final String contract;
+        
+        private Slot(int index, String contract) {
+            this.index = index;
+            this.contract = contract;
+        }
+    }
+    
+    /**
+     * Weakly refers to a descriptor that has no ids, so that
+     * it is not kept reachable by its index
+     */
+    private static class UnregisteredKey extends WeakReference<ActiveDescriptor<?>> {
+        private final int hash;
+        
+        private UnregisteredKey(ActiveDescriptor<?> descriptor,
+                ReferenceQueue<ActiveDescriptor<?>> queue) {
+            super(descriptor, queue);
+            hash = System.identityHashCode(descriptor);
+        }
+        
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if (!(o instanceof UnregisteredKey)) return false;
+            
+            ActiveDescriptor<?> descriptor = get();
+            return descriptor != null && descriptor == ((UnregisteredKey) o).get();
+        }
+    }
+    
     private static class PerContextThreadWrapper {
-        private final HashMap<ActiveDescriptor<?>, Object> instances =
-                new HashMap<ActiveDescriptor<?>, Object>();
+        private final static int INITIAL_SIZE = 8;
+        
+        private Object[] instances = new Object[INITIAL_SIZE];
+        private ActiveDescriptor<?>[] descriptors = new ActiveDescriptor<?>[INITIAL_SIZE];
         private final long id = Thread.currentThread().getId();
+        private int generation;
+        
+        private PerContextThreadWrapper(int generation) {
+            this.generation = generation;
+        }
         
-        public boolean has(ActiveDescriptor<?> d) {
-            return instances.containsKey(d);
+        /**
+         * The slot may still hold the instance of a descriptor whose
+         * index was freed and given to this one
+         */
+        public Object get(int index, ActiveDescriptor<?> d) {
+            if (index >= instances.length) return null;
+            if (descriptors[index] != d) return null;
+            return instances[index];
         }
         
-        public Object get(ActiveDescriptor<?> d) {
-            return instances.get(d);
+        public void put(int index, ActiveDescriptor<?> d, Object v) {
+            if (index >= instances.length) {
+                int newSize = Math.max(index + 1, instances.length * 2);
+                
+                Object[] newInstances = new Object[newSize];
+                System.arraycopy(instances, 0, newInstances, 0, instances.length);
+                instances = newInstances;
+                
+                ActiveDescriptor<?>[] newDescriptors = new ActiveDescriptor<?>[newSize];
+                System.arraycopy(descriptors, 0, newDescriptors, 0, descriptors.length);
+                descriptors = newDescriptors;
+            }
+            
+            instances[index] = v;
+            descriptors[index] = d;
         }
         
-        public void put(ActiveDescriptor<?> d, Object v) {
-            instances.put(d, v);
+        public Object remove(int index, ActiveDescriptor<?> d) {
+            if (index >= instances.length) return null;
+            if (descriptors[index] != d) return null;
+            
+            Object retVal = instances[index];
+            instances[index] = null;
+            descriptors[index] = null;
+            
+            return retVal;
+        }
+        
+        @SuppressWarnings("unchecked")
+        public void destroyAll() {
+            for (int lcv = instances.length - 1; lcv >= 0; lcv--) {
+                Object killMe = instances[lcv];
+                if (killMe == null) continue;
+                
+                ActiveDescriptor<Object> descriptor = (ActiveDescriptor<Object>) descriptors[lcv];
+                instances[lcv] = null;
+                descriptors[lcv] = null;
+                
+                try {
+                    descriptor.dispose(killMe);
+                }
+                catch (Throwable th) {
+                    Logger.getLogger().debug(getClass().getName(), "destroyAll", th);
+                }
+            }
         }
         
         @Override
         public void finalize() throws Throwable {
-            instances.clear();
+            instances = null;
+            descriptors = null;
             
             if (LOG_THREAD_DESTRUCTION) {
                 Logger.getLogger().debug("Removing PerThreadContext data for thread " + id);
@@ -0,0 +1,399 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.internal;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import javax.inject.Singleton;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.Immediate;
+import org.glassfish.hk2.api.Injectee;
+import org.glassfish.hk2.api.MultiException;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.api.WarmUpReport;
+import org.glassfish.hk2.utilities.BuilderHelper;
+
+/**
+ * Eagerly creates the {@link Singleton} and {@link Immediate} services of
+ * a locator.  The injection points of every service are used to build the
+ * dependency graph between them, and every service is started on the executor
+ * as soon as all of the services it depends on have been created, so that
+ * independent services are created in parallel
+ * <p>
+ * Dependencies on services of other scopes are followed through to the
+ * singletons they in turn depend on.  Dependencies through {@link javax.inject.Provider}
+ * and {@link org.glassfish.hk2.api.IterableProvider} are lazy and are not
+ * considered edges of the graph
+ * 
+ * @author jwells
+ *
+ */
+public class WarmUpHelper {
+    private final ServiceLocator locator;
+    private final Executor executor;
+    private final Object lock = new Object();
+    
+    /** The executor in use for the current warm up */
+    private Executor runOn;
+    
+    /** The nodes not yet completed, protected by lock */
+    private int remaining;
+    /** The nodes given to the executor but not yet completed, protected by lock */
+    private int outstanding;
+    
+    private final WarmUpReportImpl report = new WarmUpReportImpl();
+    
+    /**
+     * Creates a helper that will warm up the given locator
+     * 
+     * @param locator The non-null locator whose services should be created
+     * @param executor The executor on which to create services.  If null a
+     * fixed pool with one thread per available processor is used for the
+     * duration of the warm up
+     */
+    public WarmUpHelper(ServiceLocator locator, Executor executor) {
+        if (locator == null) throw new IllegalArgumentException();
+        
+        this.locator = locator;
+        this.executor = executor;
+    }
+    
+    /**
+     * Creates all of the {@link Singleton} and {@link Immediate} services of
+     * the locator and returns once all of them have either been created or
+     * have failed
+     * 
+     * @return The report of the services that were created
+     * @throws MultiException if the calling thread was interrupted while waiting
+     * for the services to be created
+     */
+    public WarmUpReport warmUp() throws MultiException {
+        long start = System.nanoTime();
+        
+        if (executor != null) {
+            runOn = executor;
+            runAll();
+        }
+        else {
+            ExecutorService pool = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(), new WarmUpThreadFactory());
+            runOn = pool;
+            try {
+                runAll();
+            }
+            finally {
+                pool.shutdown();
+            }
+        }
+        
+        report.elapsedTime = System.nanoTime() - start;
+        return report;
+    }
+    
+    private void runAll() throws MultiException {
+        Map<ActiveDescriptor<?>, Node> nodes = getNodes();
+        
+        for (Node node : nodes.values()) {
+            Set<Node> dependencies = new HashSet<Node>();
+            Set<ActiveDescriptor<?>> visited = new HashSet<ActiveDescriptor<?>>();
+            visited.add(node.descriptor);
+            
+            collectDependencies(node.descriptor, nodes, visited, dependencies);
+            
+            node.waitingOn = dependencies.size();
+            for (Node dependency : dependencies) {
+                dependency.dependents.add(node);
+            }
+        }
+        
+        List<Node> ready = new LinkedList<Node>();
+        synchronized (lock) {
+            remaining = nodes.size();
+            
+            for (Node node : nodes.values()) {
+                if (node.waitingOn == 0) {
+                    node.scheduled = true;
+                    outstanding++;
+                    ready.add(node);
+                }
+            }
+        }
+        
+        for (Node node : ready) {
+            schedule(node);
+        }
+        
+        while (true) {
+            Node cycleBreaker = null;
+            
+            synchronized (lock) {
+                while (remaining > 0 && outstanding > 0) {
+                    try {
+                        lock.wait();
+                    }
+                    catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw new MultiException(ie);
+                    }
+                }
+                
+                if (remaining == 0) break;
+                
+                // Everything left depends on itself through a cycle, so
+                // start one of them and let hk2 sort it out
+                for (Node node : nodes.values()) {
+                    if (!node.scheduled) {
+                        cycleBreaker = node;
+                        break;
+                    }
+                }
+                
+                cycleBreaker.scheduled = true;
+                outstanding++;
+            }
+            
+            schedule(cycleBreaker);
+        }
+    }
+    
+    private Map<ActiveDescriptor<?>, Node> getNodes() {
+        Map<ActiveDescriptor<?>, Node> retVal = new LinkedHashMap<ActiveDescriptor<?>, Node>();
+        long locatorId = locator.getLocatorId();
+        
+        for (ActiveDescriptor<?> candidate : locator.getDescriptors(BuilderHelper.allFilter())) {
+            // Services of the parent are warmed up with the parent
+            Long candidateLocator = candidate.getLocatorId();
+            if (candidateLocator == null || candidateLocator.longValue() != locatorId) continue;
+            
+            String scope = candidate.getScope();
+            if (!Singleton.class.getName().equals(scope) &&
+                    !Immediate.class.getName().equals(scope)) continue;
+            
+            ActiveDescriptor<?> reified;
+            try {
+                reified = locator.reifyDescriptor(candidate);
+            }
+            catch (MultiException me) {
+                report.failed(candidate, me);
+                continue;
+            }
+            
+            retVal.put(reified, new Node(reified));
+        }
+        
+        return retVal;
+    }
+    
+    private void collectDependencies(ActiveDescriptor<?> descriptor,
+            Map<ActiveDescriptor<?>, Node> nodes,
+            Set<ActiveDescriptor<?>> visited,
+            Set<Node> dependencies) {
+        for (Injectee injectee : descriptor.getInjectees()) {
+            ActiveDescriptor<?> dependency;
+            try {
+                dependency = locator.getInjecteeDescriptor(injectee);
+            }
+            catch (MultiException me) {
+                // Will be reported when the service itself is created
+                continue;
+            }
+            
+            if (dependency == null || !visited.add(dependency)) continue;
+            
+            Node node = nodes.get(dependency);
+            if (node != null) {
+                dependencies.add(node);
+                continue;
+            }
+            
+            if (!dependency.isReified()) continue;
+            
+            // Not warmed up itself, but it will be created along with
+            // whatever it is injected into
+            collectDependencies(dependency, nodes, visited, dependencies);
+        }
+    }
+    
+    private void schedule(Node node) {
+        try {
+            runOn.execute(node);
+        }
+        catch (RejectedExecutionException ree) {
+            node.run();
+        }
+    }
+    
+    private void completed(Node node, long time, MultiException error) {
+        List<Node> ready = new LinkedList<Node>();
+        
+        synchronized (lock) {
+            if (error == null) {
+                report.created(node.descriptor, time);
+            }
+            else {
+                report.failed(node.descriptor, error);
+            }
+            
+            outstanding--;
+            remaining--;
+            
+            for (Node dependent : node.dependents) {
+                dependent.waitingOn--;
+                
+                if (dependent.waitingOn == 0 && !dependent.scheduled) {
+                    dependent.scheduled = true;
+                    outstanding++;
+                    ready.add(dependent);
+                }
+            }
+            
+            lock.notifyAll();
+        }
+        
+        for (Node dependent : ready) {
+            schedule(dependent);
+        }
+    }
+    
+    private class Node implements Runnable {
+        private final ActiveDescriptor<?> descriptor;
+        private final List<Node> dependents = new LinkedList<Node>();
+        
+        /** The number of dependencies not yet completed, protected by lock */
+        private int waitingOn;
+        /** Protected by lock */
+        private boolean scheduled;
+        
+        private Node(ActiveDescriptor<?> descriptor) {
+            this.descriptor = descriptor;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            MultiException error = null;
+            
+            try {
+                locator.getServiceHandle(descriptor).getService();
+            }
+            catch (MultiException me) {
+                error = me;
+            }
+            catch (Throwable th) {
+                error = new MultiException(th);
+            }
+            
+            completed(this, System.nanoTime() - start, error);
+        }
+        
+        @Override
+        public String toString() {
+            return "Node(" + descriptor + "," + System.identityHashCode(this) + ")";
+        }
+    }
+    
+    private static class WarmUpReportImpl implements WarmUpReport {
+        private final List<ActiveDescriptor<?>> createdServices = new LinkedList<ActiveDescriptor<?>>();
+        private final Map<ActiveDescriptor<?>, Long> creationTimes = new LinkedHashMap<ActiveDescriptor<?>, Long>();
+        private final Map<ActiveDescriptor<?>, MultiException> failures = new LinkedHashMap<ActiveDescriptor<?>, MultiException>();
+        private volatile long elapsedTime;
+        
+        private synchronized void created(ActiveDescriptor<?> descriptor, long time) {
+            createdServices.add(descriptor);
+            creationTimes.put(descriptor, time);
+        }
+        
+        private synchronized void failed(ActiveDescriptor<?> descriptor, MultiException error) {
+            failures.put(descriptor, error);
+        }
+
+        @Override
+        public synchronized List<ActiveDescriptor<?>> getCreatedServices() {
+            return Collections.unmodifiableList(new LinkedList<ActiveDescriptor<?>>(createdServices));
+        }
+
+        @Override
+        public synchronized long getCreationTime(ActiveDescriptor<?> descriptor) {
+            Long retVal = creationTimes.get(descriptor);
+            if (retVal == null) return -1L;
+            
+            return retVal;
+        }
+
+        @Override
+        public synchronized Map<ActiveDescriptor<?>, MultiException> getFailures() {
+            return Collections.unmodifiableMap(new LinkedHashMap<ActiveDescriptor<?>, MultiException>(failures));
+        }
+
+        @Override
+        public long getElapsedTime() {
+            return elapsedTime;
+        }
+        
+        @Override
+        public synchronized String toString() {
+            return "WarmUpReportImpl(created=" + createdServices.size() + ",failed=" + failures.size() +
+                    ",elapsedTime=" + elapsedTime + "," + System.identityHashCode(this) + ")";
+        }
+    }
+    
+    private static class WarmUpThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread retVal = new Thread(runnable, WarmUpHelper.class.getSimpleName() + "-" + System.currentTimeMillis());
+            retVal.setDaemon(true);
+            
+            return retVal;
+        }
+    }
+}
@@ -0,0 +1,388 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.utilities;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.glassfish.hk2.api.Descriptor;
+import org.glassfish.hk2.api.DescriptorType;
+import org.glassfish.hk2.api.DescriptorVisibility;
+
+/**
+ * A compact binary encoding of the descriptor files found under
+ * META-INF/hk2-locator, an alternative to the text format of
+ * {@link DescriptorImpl#writeObject(java.io.PrintWriter)}.
+ * <p>
+ * A binary file starts with a header of the bytes 0x89 'H' 'K' '2'
+ * followed by a two byte version.  The first byte can never start a
+ * text descriptor file, so readers can tell the formats apart with
+ * {@link #isBinary(InputStream)} and fall back to the text format.
+ * Every string in the file (class names, scopes, names, metadata) is
+ * stored once in a table, and the descriptors refer to the strings by
+ * their index in the table.  Counts and indexes are variable length
+ * integers
+ * 
+ * @author jwells
+ *
+ */
+public final class BinaryDescriptorFormat {
+    /** The version of the binary format written by this class */
+    public final static int VERSION = 1;
+    
+    private final static byte MAGIC[] = { (byte) 0x89, 'H', 'K', '2' };
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+    
+    private final static int PROVIDE_METHOD_FLAG = 0x01;
+    private final static int LOCAL_FLAG = 0x02;
+    private final static int PROXIABLE_SET_FLAG = 0x04;
+    private final static int PROXIABLE_FLAG = 0x08;
+    private final static int PROXY_FOR_SAME_SCOPE_SET_FLAG = 0x10;
+    private final static int PROXY_FOR_SAME_SCOPE_FLAG = 0x20;
+    
+    private BinaryDescriptorFormat() {
+    }
+    
+    /**
+     * Tells if the stream holds a binary descriptor file, leaving the
+     * stream where it was
+     * 
+     * @param in A stream that supports mark and reset, positioned at the
+     * start of a descriptor file
+     * @return true if the stream starts with the binary header
+     * @throws IOException on failure reading the stream
+     * @throws IllegalArgumentException if the stream does not support mark
+     */
+    public static boolean isBinary(InputStream in) throws IOException {
+        if (!in.markSupported()) {
+            throw new IllegalArgumentException("The stream " + in + " does not support mark");
+        }
+        
+        in.mark(MAGIC.length);
+        try {
+            for (int lcv = 0; lcv < MAGIC.length; lcv++) {
+                if (in.read() != (MAGIC[lcv] & 0xFF)) return false;
+            }
+            
+            return true;
+        }
+        finally {
+            in.reset();
+        }
+    }
+    
+    /**
+     * Writes the descriptors in the binary format
+     * 
+     * @param descriptors The descriptors to write.  May not be null
+     * @param out The stream to write to.  It is not closed
+     * @throws IOException on failure writing to the stream
+     */
+    public static void write(Collection<? extends Descriptor> descriptors, OutputStream out) throws IOException {
+        LinkedHashMap<String, Integer> strings = new LinkedHashMap<String, Integer>();
+        for (Descriptor descriptor : descriptors) {
+            intern(strings, descriptor.getImplementation());
+            intern(strings, descriptor.getScope());
+            intern(strings, descriptor.getName());
+            intern(strings, descriptor.getClassAnalysisName());
+            for (String contract : descriptor.getAdvertisedContracts()) {
+                intern(strings, contract);
+            }
+            for (String qualifier : descriptor.getQualifiers()) {
+                intern(strings, qualifier);
+            }
+            for (Map.Entry<String, List<String>> entry : descriptor.getMetadata().entrySet()) {
+                intern(strings, entry.getKey());
+                for (String value : entry.getValue()) {
+                    intern(strings, value);
+                }
+            }
+        }
+        
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        
+        buffer.write(MAGIC);
+        buffer.write(VERSION >>> 8);
+        buffer.write(VERSION);
+        
+        writeInt(buffer, strings.size());
+        for (String string : strings.keySet()) {
+            byte asBytes[] = string.getBytes(UTF8);
+            
+            writeInt(buffer, asBytes.length);
+            buffer.write(asBytes);
+        }
+        
+        writeInt(buffer, descriptors.size());
+        for (Descriptor descriptor : descriptors) {
+            writeString(buffer, strings, descriptor.getImplementation());
+            writeString(buffer, strings, descriptor.getScope());
+            writeString(buffer, strings, descriptor.getName());
+            writeString(buffer, strings, descriptor.getClassAnalysisName());
+            
+            int flags = 0;
+            if (DescriptorType.PROVIDE_METHOD.equals(descriptor.getDescriptorType())) flags |= PROVIDE_METHOD_FLAG;
+            if (DescriptorVisibility.LOCAL.equals(descriptor.getDescriptorVisibility())) flags |= LOCAL_FLAG;
+            
+            Boolean proxiable = descriptor.isProxiable();
+            if (proxiable != null) {
+                flags |= PROXIABLE_SET_FLAG;
+                if (proxiable.booleanValue()) flags |= PROXIABLE_FLAG;
+            }
+            
+            Boolean proxyForSameScope = descriptor.isProxyForSameScope();
+            if (proxyForSameScope != null) {
+                flags |= PROXY_FOR_SAME_SCOPE_SET_FLAG;
+                if (proxyForSameScope.booleanValue()) flags |= PROXY_FOR_SAME_SCOPE_FLAG;
+            }
+            
+            buffer.write(flags);
+            
+            int rank = descriptor.getRanking();
+            writeInt(buffer, (rank << 1) ^ (rank >> 31));
+            
+            writeStrings(buffer, strings, descriptor.getAdvertisedContracts());
+            writeStrings(buffer, strings, descriptor.getQualifiers());
+            
+            Map<String, List<String>> metadata = descriptor.getMetadata();
+            writeInt(buffer, metadata.size());
+            for (Map.Entry<String, List<String>> entry : metadata.entrySet()) {
+                writeString(buffer, strings, entry.getKey());
+                writeStrings(buffer, strings, entry.getValue());
+            }
+        }
+        
+        buffer.writeTo(out);
+    }
+    
+    /**
+     * Reads all of the descriptors from a stream holding a binary
+     * descriptor file
+     * 
+     * @param in The stream to read from.  It is read to the end but not closed
+     * @return The descriptors read, in the order they were written
+     * @throws IOException if the stream could not be read or is not a valid
+     * binary descriptor file
+     */
+    public static List<DescriptorImpl> read(InputStream in) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        
+        byte buffer[] = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            baos.write(buffer, 0, read);
+        }
+        
+        return read(ByteBuffer.wrap(baos.toByteArray()));
+    }
+    
+    /**
+     * Reads all of the descriptors of a binary descriptor file from
+     * the buffer, which may for example be a mapped file
+     * 
+     * @param buffer The buffer positioned at the start of the binary
+     * descriptor file
+     * @return The descriptors read, in the order they were written
+     * @throws IOException if the buffer is not a valid binary descriptor file
+     */
+    public static List<DescriptorImpl> read(ByteBuffer buffer) throws IOException {
+        try {
+            return readDescriptors(buffer);
+        }
+        catch (BufferUnderflowException bue) {
+            throw new IOException("Truncated binary descriptor file");
+        }
+        catch (IndexOutOfBoundsException ioobe) {
+            throw new IOException("Corrupt binary descriptor file: " + ioobe.getMessage());
+        }
+    }
+    
+    private static List<DescriptorImpl> readDescriptors(ByteBuffer buffer) throws IOException {
+        for (int lcv = 0; lcv < MAGIC.length; lcv++) {
+            if (buffer.get() != MAGIC[lcv]) {
+                throw new IOException("Not a binary descriptor file");
+            }
+        }
+        
+        int version = ((buffer.get() & 0xFF) << 8) | (buffer.get() & 0xFF);
+        if (version > VERSION) {
+            throw new IOException("Binary descriptor file version " + version +
+                    " is newer than the supported version " + VERSION);
+        }
+        
+        String strings[] = new String[readCount(buffer)];
+        byte scratch[] = null;
+        for (int lcv = 0; lcv < strings.length; lcv++) {
+            int length = readCount(buffer);
+            
+            if (buffer.hasArray()) {
+                strings[lcv] = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF8);
+                buffer.position(buffer.position() + length);
+            }
+            else {
+                if (scratch == null || scratch.length < length) scratch = new byte[Math.max(length, 256)];
+                
+                buffer.get(scratch, 0, length);
+                strings[lcv] = new String(scratch, 0, length, UTF8);
+            }
+        }
+        
+        int numDescriptors = readCount(buffer);
+        List<DescriptorImpl> retVal = new ArrayList<DescriptorImpl>(numDescriptors);
+        for (int lcv = 0; lcv < numDescriptors; lcv++) {
+            DescriptorImpl descriptor = new DescriptorImpl();
+            
+            descriptor.setImplementation(readString(buffer, strings));
+            descriptor.setScope(readString(buffer, strings));
+            descriptor.setName(readString(buffer, strings));
+            descriptor.setClassAnalysisName(readString(buffer, strings));
+            
+            int flags = buffer.get() & 0xFF;
+            if ((flags & PROVIDE_METHOD_FLAG) != 0) descriptor.setDescriptorType(DescriptorType.PROVIDE_METHOD);
+            if ((flags & LOCAL_FLAG) != 0) descriptor.setDescriptorVisibility(DescriptorVisibility.LOCAL);
+            if ((flags & PROXIABLE_SET_FLAG) != 0) {
+                descriptor.setProxiable((flags & PROXIABLE_FLAG) != 0);
+            }
+            if ((flags & PROXY_FOR_SAME_SCOPE_SET_FLAG) != 0) {
+                descriptor.setProxyForSameScope((flags & PROXY_FOR_SAME_SCOPE_FLAG) != 0);
+            }
+            
+            int zigZagRank = readInt(buffer);
+            descriptor.setRanking((zigZagRank >>> 1) ^ -(zigZagRank & 1));
+            
+            int numContracts = readInt(buffer);
+            for (int inner = 0; inner < numContracts; inner++) {
+                descriptor.addAdvertisedContract(readString(buffer, strings));
+            }
+            
+            int numQualifiers = readInt(buffer);
+            for (int inner = 0; inner < numQualifiers; inner++) {
+                descriptor.addQualifier(readString(buffer, strings));
+            }
+            
+            int numKeys = readInt(buffer);
+            for (int inner = 0; inner < numKeys; inner++) {
+                String key = readString(buffer, strings);
+                
+                int numValues = readInt(buffer);
+                for (int value = 0; value < numValues; value++) {
+                    descriptor.addMetadata(key, readString(buffer, strings));
+                }
+            }
+            
+            retVal.add(descriptor);
+        }
+        
+        return retVal;
+    }
+    
+    private static void intern(Map<String, Integer> strings, String string) {
+        if (string == null || strings.containsKey(string)) return;
+        
+        strings.put(string, strings.size());
+    }
+    
+    private static void writeString(ByteArrayOutputStream out, Map<String, Integer> strings, String string) {
+        // Zero is null, so the index is written plus one
+        writeInt(out, (string == null) ? 0 : strings.get(string) + 1);
+    }
+    
+    private static void writeStrings(ByteArrayOutputStream out, Map<String, Integer> strings, Collection<String> values) {
+        writeInt(out, values.size());
+        for (String value : values) {
+            writeString(out, strings, value);
+        }
+    }
+    
+    private static String readString(ByteBuffer buffer, String strings[]) {
+        int index = readInt(buffer);
+        if (index == 0) return null;
+        
+        return strings[index - 1];
+    }
+    
+    /**
+     * Writes an unsigned int seven bits at a time, low bits first
+     */
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        
+        out.write(value);
+    }
+    
+    /**
+     * Reads a count or length, none of which can be larger than what is
+     * left in the buffer
+     */
+    private static int readCount(ByteBuffer buffer) throws IOException {
+        int retVal = readInt(buffer);
+        if (retVal < 0 || retVal > buffer.remaining()) {
+            throw new IOException("Corrupt binary descriptor file, invalid count " + retVal);
+        }
+        
+        return retVal;
+    }
+    
+    private static int readInt(ByteBuffer buffer) {
+        int retVal = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = buffer.get();
+            
+            retVal |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return retVal;
+        }
+        
+        throw new IndexOutOfBoundsException("variable length integer is too long");
+    }
+}
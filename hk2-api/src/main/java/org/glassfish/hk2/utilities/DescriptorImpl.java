@@ -120,6 +120,11 @@ public class DescriptorImpl implements Descriptor, Externalizable {
 	private Long id;
 	private Long locatorId;
 	
+	/**
+	 * Metadata read with readObject that has not yet been parsed
+	 */
+	private String unparsedMetadata;
+	
 	/**
 	 * For serialization
 	 */
@@ -350,6 +355,7 @@ public class DescriptorImpl implements Descriptor, Externalizable {
 
 	@Override
 	public synchronized Map<String, List<String>> getMetadata() {
+	    parseMetadata();
 	    if (metadatas == null) return EMPTY_METADATAS_MAP;
 		return Collections.unmodifiableMap(metadatas);
 	}
@@ -364,6 +370,7 @@ public class DescriptorImpl implements Descriptor, Externalizable {
 	 * should have
 	 */
 	public synchronized void setMetadata(Map<String, List<String>> metadata) {
+	    unparsedMetadata = null;
 	    if (metadatas == null) {
 	        metadatas = new LinkedHashMap<String, List<String>>();
 	    }
@@ -382,6 +389,7 @@ public class DescriptorImpl implements Descriptor, Externalizable {
 	 * to add to the metadata map
 	 */
 	public synchronized void addMetadata(Map<String, List<String>> metadata) {
+	    parseMetadata();
 	    if (metadatas == null) metadatas = new LinkedHashMap<String, List<String>>();
 	    
         metadatas.putAll(ReflectionHelper.deepCopyMetadata(metadata));
@@ -395,6 +403,7 @@ public class DescriptorImpl implements Descriptor, Externalizable {
 	 * @param value The value to add.  May not be null
 	 */
 	public synchronized void addMetadata(String key, String value) {
+	    parseMetadata();
 	    if (metadatas == null) metadatas = new LinkedHashMap<String, List<String>>();
 	    ReflectionHelper.addMetadata(metadatas, key, value);
 	}
@@ -408,6 +417,7 @@ public class DescriptorImpl implements Descriptor, Externalizable {
 	 * @return true if the value was removed
 	 */
 	public synchronized boolean removeMetadata(String key, String value) {
+	    parseMetadata();
 	    if (metadatas == null) return false;
 	    return ReflectionHelper.removeMetadata(metadatas, key, value);
 	}
@@ -419,6 +429,7 @@ public class DescriptorImpl implements Descriptor, Externalizable {
 	 * @return true if any value was removed
 	 */
 	public synchronized boolean removeAllMetadata(String key) {
+	    parseMetadata();
 	    if (metadatas == null) return false;
 	    return ReflectionHelper.removeAllMetadata(metadatas, key);
 	}
@@ -428,6 +439,26 @@ public class DescriptorImpl implements Descriptor, Externalizable {
      */
     public synchronized void clearMetadata() {
         metadatas = null;
+        unparsedMetadata = null;
+    }
+    
+    /**
+     * Parses the metadata that readObject left unparsed
+     */
+    private synchronized void parseMetadata() {
+        if (unparsedMetadata == null) return;
+        
+        LinkedHashMap<String, List<String>> localMetadatas = new LinkedHashMap<String, List<String>>();
+        try {
+            ReflectionHelper.readMetadataMap(unparsedMetadata, localMetadatas);
+        }
+        catch (IOException ioe) {
+            throw new IllegalStateException("Invalid metadata " + unparsedMetadata +
+                    " of descriptor with implementation " + implementation, ioe);
+        }
+        
+        unparsedMetadata = null;
+        if (!localMetadatas.isEmpty()) metadatas = localMetadatas;
     }
 	
 	/* (non-Javadoc)
@@ -538,6 +569,8 @@ public class DescriptorImpl implements Descriptor, Externalizable {
 	}
 	
 	public int hashCode() {
+	    parseMetadata();
+	    
 	    int retVal = 0;
 	    
 	    if (implementation != null) {
@@ -835,7 +868,10 @@ public class DescriptorImpl implements Descriptor, Externalizable {
             out.println(ANALYSIS_KEY + analysisName);
         }
         
-        if (metadatas != null && !metadatas.isEmpty()) {
+        if (unparsedMetadata != null) {
+            out.println(METADATA_KEY + unparsedMetadata);
+        }
+        else if (metadatas != null && !metadatas.isEmpty()) {
             out.println(METADATA_KEY + ReflectionHelper.writeMetadata(metadatas));
         }
         
@@ -858,6 +894,7 @@ public class DescriptorImpl implements Descriptor, Externalizable {
 	    analysisName = null;
 	    id = null;
 	    locatorId = null;
+	    unparsedMetadata = null;
 	}
 
 	/**
@@ -869,6 +906,22 @@ public class DescriptorImpl implements Descriptor, Externalizable {
 	 * @throws IOException on failure
 	 */
 	public boolean readObject(BufferedReader in) throws IOException {
+	    return readObject(in, false);
+	}
+	
+	/**
+	 * This can be used to read in instances of this object that were previously written out with
+	 * writeObject.  When lazyMetadata is true the metadata is kept as read and only parsed
+	 * the first time it is used, in which case invalid metadata is reported with an
+	 * IllegalStateException from the method using it rather than with an IOException from
+	 * this method
+	 * 
+	 * @param in The reader to read from
+	 * @param lazyMetadata true if the metadata should only be parsed when first used
+	 * @return true if a descriptor was read, false otherwise.  This is useful if reading a file that might have comments at the end
+	 * @throws IOException on failure
+	 */
+	public boolean readObject(BufferedReader in, boolean lazyMetadata) throws IOException {
 	    // Reinitialize all fields
 	    reinitialize();
 	    
@@ -953,9 +1006,14 @@ public class DescriptorImpl implements Descriptor, Externalizable {
                         }
                     }
                     else if (leftHandSide.equals(METADATA_KEY)) {
-                        LinkedHashMap<String, List<String>> localMetadatas = new LinkedHashMap<String, List<String>>();
-                        ReflectionHelper.readMetadataMap(rightHandSide, localMetadatas);
-                        if (!localMetadatas.isEmpty()) metadatas = localMetadatas;
+                        if (lazyMetadata) {
+                            unparsedMetadata = rightHandSide;
+                        }
+                        else {
+                            LinkedHashMap<String, List<String>> localMetadatas = new LinkedHashMap<String, List<String>>();
+                            ReflectionHelper.readMetadataMap(rightHandSide, localMetadatas);
+                            if (!localMetadatas.isEmpty()) metadatas = localMetadatas;
+                        }
                     }
                     else if (leftHandSide.equals(RANKING_KEY)) {
                         rank = Integer.parseInt(rightHandSide);
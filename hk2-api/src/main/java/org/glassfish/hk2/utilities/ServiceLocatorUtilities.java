@@ -51,6 +51,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import javax.inject.Singleton;
 
@@ -75,10 +76,12 @@ import org.glassfish.hk2.api.Populator;
 import org.glassfish.hk2.api.ServiceHandle;
 import org.glassfish.hk2.api.ServiceLocator;
 import org.glassfish.hk2.api.ServiceLocatorFactory;
+import org.glassfish.hk2.api.WarmUpReport;
 import org.glassfish.hk2.api.ImmediateController.ImmediateServiceState;
 import org.glassfish.hk2.internal.ImmediateHelper;
 import org.glassfish.hk2.internal.InheritableThreadContext;
 import org.glassfish.hk2.internal.PerThreadContext;
+import org.glassfish.hk2.internal.WarmUpHelper;
 
 /**
  * This is a set of useful utilities for working with {@link ServiceLocator}.
@@ -111,6 +114,24 @@ public abstract class ServiceLocatorUtilities {
         }
     }
 
+    /**
+     * This method will destroy all of the {@link PerThread} services that
+     * were created on the current thread by the {@link PerThread} scope of
+     * the given locator.  The next lookup of such a service on this thread
+     * will create a new instance.  Threads that are returned to a pool
+     * should call this at the end of every task so that the next task
+     * does not see the services of the previous one.  If the locator has no
+     * {@link PerThread} scope this method does nothing
+     *
+     * @param locator The non-null locator with the PerThread scope
+     */
+    public static void destroyPerThreadServices(ServiceLocator locator) {
+        PerThreadContext context = locator.getService(PerThreadContext.class);
+        if (context == null) return;
+
+        context.destroyCurrentThread();
+    }
+
     /**
      * This method will add the ability to use the {@link InheritableThread}
      * scope to the given locator. If the locator already has a {@link Context}
@@ -171,6 +192,48 @@ public abstract class ServiceLocatorUtilities {
         return locator.getService(ImmediateController.class);
     }
 
+    /**
+     * Creates all of the {@link Singleton} and {@link Immediate} services
+     * of the given locator, in parallel where their dependencies allow.  The
+     * injection points of the services are used to order their creation such
+     * that a service is only started once all of the services it depends on have
+     * been created.  Services that do not depend on each other are created
+     * in parallel.  The services of parent locators are not created
+     * <p>
+     * {@link Immediate} services will fail to be created unless the Immediate
+     * scope has been enabled on the locator
+     *
+     * @param locator The non-null locator whose services should be created
+     * @param executor The executor on which to create the services.  If null
+     * a pool with one thread per available processor is used for the duration
+     * of this call
+     * @return A report of the services created along with the time it took
+     * to create each one, and of the services that failed
+     * @throws MultiException if the calling thread was interrupted while waiting
+     * for the services to be created
+     */
+    public static WarmUpReport warmUp(ServiceLocator locator, Executor executor) throws MultiException {
+        if (locator == null) throw new IllegalArgumentException();
+
+        return new WarmUpHelper(locator, executor).warmUp();
+    }
+
+    /**
+     * Creates all of the {@link Singleton} and {@link Immediate} services
+     * of the given locator, in parallel where their dependencies allow, using
+     * a pool with one thread per available processor
+     *
+     * @param locator The non-null locator whose services should be created
+     * @return A report of the services created along with the time it took
+     * to create each one, and of the services that failed
+     * @throws MultiException if the calling thread was interrupted while waiting
+     * for the services to be created
+     * @see #warmUp(ServiceLocator, Executor)
+     */
+    public static WarmUpReport warmUp(ServiceLocator locator) throws MultiException {
+        return warmUp(locator, null);
+    }
+
     /**
      * This method will bind all of the binders given together in a
      * single config transaction.
@@ -0,0 +1,221 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.tests.api;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Singleton;
+
+import junit.framework.Assert;
+
+import org.glassfish.hk2.api.DescriptorType;
+import org.glassfish.hk2.api.DescriptorVisibility;
+import org.glassfish.hk2.utilities.BinaryDescriptorFormat;
+import org.glassfish.hk2.utilities.DescriptorImpl;
+import org.junit.Test;
+
+/**
+ * Tests for the binary descriptor file format
+ * 
+ * @author jwells
+ *
+ */
+public class BinaryDescriptorFormatTest {
+    private final static String UNICODE_KEY = "clé";
+    private final static String UNICODE_VALUE = "日本,{}=\"";
+    
+    private static byte[] write(List<DescriptorImpl> descriptors) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        BinaryDescriptorFormat.write(descriptors, baos);
+        
+        return baos.toByteArray();
+    }
+    
+    private static void assertSame(DescriptorImpl expected, DescriptorImpl got) {
+        Assert.assertEquals(expected, got);
+        Assert.assertEquals(expected.getRanking(), got.getRanking());
+        Assert.assertEquals(expected.isProxiable(), got.isProxiable());
+        Assert.assertEquals(expected.isProxyForSameScope(), got.isProxyForSameScope());
+        Assert.assertEquals(expected.getClassAnalysisName(), got.getClassAnalysisName());
+        Assert.assertEquals(expected.getDescriptorVisibility(), got.getDescriptorVisibility());
+        Assert.assertEquals(new ArrayList<String>(expected.getAdvertisedContracts()),
+                new ArrayList<String>(got.getAdvertisedContracts()));
+    }
+    
+    /**
+     * Tests that every field of a descriptor survives the binary format
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        DescriptorImpl full = new DescriptorImpl(new FullDescriptorImpl());
+        full.addMetadata(UNICODE_KEY, UNICODE_VALUE);
+        full.setRanking(-13);
+        
+        DescriptorImpl empty = new DescriptorImpl();
+        
+        DescriptorImpl implNotInContracts = new DescriptorImpl();
+        implNotInContracts.setImplementation(BinaryDescriptorFormatTest.class.getName());
+        implNotInContracts.addAdvertisedContract(String.class.getName());
+        implNotInContracts.setScope(Singleton.class.getName());
+        implNotInContracts.setProxiable(Boolean.FALSE);
+        implNotInContracts.setRanking(Integer.MAX_VALUE);
+        
+        List<DescriptorImpl> written = new ArrayList<DescriptorImpl>();
+        written.add(full);
+        written.add(empty);
+        written.add(implNotInContracts);
+        
+        List<DescriptorImpl> read = BinaryDescriptorFormat.read(new ByteArrayInputStream(write(written)));
+        Assert.assertEquals(written.size(), read.size());
+        
+        for (int lcv = 0; lcv < written.size(); lcv++) {
+            assertSame(written.get(lcv), read.get(lcv));
+        }
+        
+        DescriptorImpl readFull = read.get(0);
+        Assert.assertEquals(DescriptorType.PROVIDE_METHOD, readFull.getDescriptorType());
+        Assert.assertEquals(DescriptorVisibility.LOCAL, readFull.getDescriptorVisibility());
+        Assert.assertEquals(UNICODE_VALUE, readFull.getMetadata().get(UNICODE_KEY).get(0));
+        Assert.assertEquals(-13, readFull.getRanking());
+        
+        DescriptorImpl readEmpty = read.get(1);
+        Assert.assertNull(readEmpty.getImplementation());
+        Assert.assertTrue(readEmpty.getAdvertisedContracts().isEmpty());
+        Assert.assertNull(readEmpty.isProxiable());
+    }
+    
+    /**
+     * Tests that strings used by several descriptors are only read once
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testStringsAreShared() throws IOException {
+        List<DescriptorImpl> written = new ArrayList<DescriptorImpl>();
+        for (int lcv = 0; lcv < 2; lcv++) {
+            DescriptorImpl di = new DescriptorImpl();
+            di.setImplementation(BinaryDescriptorFormatTest.class.getName() + lcv);
+            di.addAdvertisedContract(MarkerInterface.class.getName());
+            
+            written.add(di);
+        }
+        
+        List<DescriptorImpl> read = BinaryDescriptorFormat.read(ByteBuffer.wrap(write(written)));
+        
+        Assert.assertSame(read.get(0).getAdvertisedContracts().iterator().next(),
+                read.get(1).getAdvertisedContracts().iterator().next());
+        Assert.assertSame(read.get(0).getScope(), read.get(1).getScope());
+    }
+    
+    /**
+     * Tests that the binary format is told apart from the text format
+     * without moving the stream
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testIsBinary() throws IOException {
+        BufferedInputStream binary = new BufferedInputStream(new ByteArrayInputStream(
+                write(Collections.singletonList(new DescriptorImpl(new FullDescriptorImpl())))));
+        Assert.assertTrue(BinaryDescriptorFormat.isBinary(binary));
+        Assert.assertEquals(1, BinaryDescriptorFormat.read(binary).size());
+        
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        PrintWriter pw = new PrintWriter(baos);
+        new DescriptorImpl(new FullDescriptorImpl()).writeObject(pw);
+        pw.close();
+        
+        BufferedInputStream text = new BufferedInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        Assert.assertFalse(BinaryDescriptorFormat.isBinary(text));
+        Assert.assertEquals('[', text.read());
+        
+        Assert.assertFalse(BinaryDescriptorFormat.isBinary(new BufferedInputStream(new ByteArrayInputStream(new byte[0]))));
+    }
+    
+    /**
+     * Tests that a file written by a newer version of the format is refused
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testNewerVersionIsRefused() throws IOException {
+        byte asBytes[] = write(Collections.singletonList(new DescriptorImpl()));
+        asBytes[5]++;
+        
+        try {
+            BinaryDescriptorFormat.read(ByteBuffer.wrap(asBytes));
+            Assert.fail("A newer version of the format should not have been read");
+        }
+        catch (IOException expected) {
+            Assert.assertTrue(expected.getMessage(), expected.getMessage().contains("version"));
+        }
+    }
+    
+    /**
+     * Tests that corrupt files fail with an IOException
+     */
+    @Test
+    public void testCorruptFile() throws IOException {
+        byte asBytes[] = write(Collections.singletonList(new DescriptorImpl(new FullDescriptorImpl())));
+        
+        for (int length = 0; length < asBytes.length; length++) {
+            ByteBuffer truncated = ByteBuffer.wrap(asBytes, 0, length);
+            
+            try {
+                BinaryDescriptorFormat.read(truncated);
+                Assert.fail("A file truncated to " + length + " bytes should not have been read");
+            }
+            catch (IOException expected) {
+                // Expected
+            }
+        }
+    }
+}
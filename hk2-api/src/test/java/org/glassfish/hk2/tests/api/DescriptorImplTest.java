@@ -679,6 +679,79 @@ public class DescriptorImplTest {
         
     }
     
+    /**
+     * Tests that metadata read lazily is the same as metadata
+     * read eagerly, and is written back out unchanged
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testReadLazyMetadata() throws IOException {
+        DescriptorImpl write = BuilderHelper.createDescriptorFromClass(WriteServiceB.class);
+        write.addMetadata(FullDescriptorImpl.FULL_KEY1, FullDescriptorImpl.FULL_VALUE1);
+        write.addMetadata(KEY_WITH_ESCAPED_CHARACTERS, ESCAPED_VALUE);
+        write.addMetadata(KEY_WITH_ESCAPED_CHARACTERS, NON_ESCAPED_VALUE);
+        
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        PrintWriter pw = new PrintWriter(baos);
+        write.writeObject(pw);
+        pw.close();
+        
+        DescriptorImpl lazy = new DescriptorImpl();
+        Assert.assertTrue(lazy.readObject(new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(baos.toByteArray()))), true));
+        
+        // Writing out before the metadata has been parsed
+        ByteArrayOutputStream rewritten = new ByteArrayOutputStream();
+        pw = new PrintWriter(rewritten);
+        lazy.writeObject(pw);
+        pw.close();
+        
+        Assert.assertEquals(new String(baos.toByteArray()), new String(rewritten.toByteArray()));
+        
+        Assert.assertEquals(write.hashCode(), lazy.hashCode());
+        Assert.assertEquals(write, lazy);
+        Assert.assertEquals(ESCAPED_VALUE, lazy.getMetadata().get(KEY_WITH_ESCAPED_CHARACTERS).get(0));
+        
+        Assert.assertTrue(lazy.removeMetadata(FullDescriptorImpl.FULL_KEY1, FullDescriptorImpl.FULL_VALUE1));
+        Assert.assertNull(lazy.getMetadata().get(FullDescriptorImpl.FULL_KEY1));
+    }
+    
+    /**
+     * Tests that bad metadata read lazily only fails
+     * once the metadata is used
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testReadBadLazyMetadata() throws IOException {
+        String file = "[" + DescriptorImplTest.class.getName() + "]\n" +
+            "metadata=key={unterminated\n";
+        
+        DescriptorImpl lazy = new DescriptorImpl();
+        Assert.assertTrue(lazy.readObject(new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(file.getBytes()))), true));
+        
+        Assert.assertEquals(DescriptorImplTest.class.getName(), lazy.getImplementation());
+        
+        try {
+            lazy.getMetadata();
+            Assert.fail("Bad metadata should have failed when first used");
+        }
+        catch (IllegalStateException ise) {
+            // Expected
+        }
+        
+        try {
+            new DescriptorImpl().readObject(new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(file.getBytes()))), false);
+            Assert.fail("Bad metadata should have failed when read eagerly");
+        }
+        catch (IOException ioe) {
+            // Expected
+        }
+    }
+    
     /**
      * Tests that a bad value cannot come in
      */
@@ -0,0 +1,146 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Singleton;
+
+import org.glassfish.hk2.api.DynamicConfiguration;
+import org.glassfish.hk2.api.DynamicConfigurationService;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.api.ServiceLocatorFactory;
+import org.glassfish.hk2.utilities.BuilderHelper;
+import org.glassfish.hk2.utilities.DescriptorImpl;
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
+
+/**
+ * Builds locators of realistic sizes for the benchmarks.  The bulk of
+ * every locator is made of filler descriptors spread over a thousand
+ * contracts.  Filler descriptors are never looked up and so are never
+ * reified, their implementation classes do not exist
+ * 
+ * @author jwells
+ *
+ */
+public class BenchmarkLocators {
+    /** The number of distinct contracts the filler descriptors are spread over */
+    public final static int FILLER_CONTRACTS = 1000;
+    
+    /** The number of named {@link SingletonTarget} services added to every locator */
+    public final static int NAMED_TARGETS = 100;
+    
+    /** The name of one of the named targets */
+    public final static String A_TARGET_NAME = "target" + (NAMED_TARGETS / 2);
+    
+    private final static String FILLER_CONTRACT = "org.glassfish.hk2.benchmarks.FillerContract";
+    private final static String FILLER_IMPL = "org.glassfish.hk2.benchmarks.FillerImpl";
+    
+    private final static AtomicInteger LOCATOR_NUMBER = new AtomicInteger();
+    
+    /**
+     * Creates a locator with the given number of filler descriptors,
+     * the named targets and the given services
+     * 
+     * @param parent The parent of the new locator, may be null
+     * @param fillers The number of filler descriptors to add
+     * @param services The services to add with
+     * {@link ServiceLocatorUtilities#addClasses(ServiceLocator, Class...)}
+     * @return The new locator
+     */
+    public static ServiceLocator create(ServiceLocator parent, int fillers, Class<?>... services) {
+        ServiceLocator locator = ServiceLocatorFactory.getInstance().create(
+                "BenchmarkLocator" + LOCATOR_NUMBER.incrementAndGet(), parent);
+        
+        DynamicConfiguration config = locator.getService(DynamicConfigurationService.class).createDynamicConfiguration();
+        for (DescriptorImpl filler : createFillers(0, fillers)) {
+            config.bind(filler, false);
+        }
+        
+        for (int lcv = 0; lcv < NAMED_TARGETS; lcv++) {
+            config.bind(BuilderHelper.link(SingletonTarget.class.getName()).
+                to(Target.class.getName()).
+                named("target" + lcv).
+                in(Singleton.class.getName()).build(), false);
+        }
+        
+        config.commit();
+        
+        if (services.length > 0) {
+            ServiceLocatorUtilities.addClasses(locator, services);
+        }
+        
+        return locator;
+    }
+    
+    /**
+     * Creates filler descriptors
+     * 
+     * @param start The number of the first filler
+     * @param count The number of fillers to create
+     * @return The filler descriptors
+     */
+    public static List<DescriptorImpl> createFillers(int start, int count) {
+        List<DescriptorImpl> retVal = new ArrayList<DescriptorImpl>(count);
+        
+        for (int lcv = start; lcv < start + count; lcv++) {
+            retVal.add(BuilderHelper.link(FILLER_IMPL + lcv).
+                to(FILLER_CONTRACT + (lcv % FILLER_CONTRACTS)).
+                named("filler" + lcv).
+                in(Singleton.class.getName()).build());
+        }
+        
+        return retVal;
+    }
+    
+    /**
+     * Shuts down the locator and removes it from the factory
+     * 
+     * @param locator The locator to destroy, may be null
+     */
+    public static void destroy(ServiceLocator locator) {
+        if (locator == null) return;
+        
+        ServiceLocatorFactory.getInstance().destroy(locator);
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.benchmarks;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.DescriptorType;
+import org.glassfish.hk2.api.DescriptorVisibility;
+import org.glassfish.hk2.api.DynamicConfiguration;
+import org.glassfish.hk2.api.DynamicConfigurationService;
+import org.glassfish.hk2.api.ServiceHandle;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.runlevel.RunLevel;
+import org.glassfish.hk2.runlevel.RunLevelServiceUtilities;
+import org.glassfish.hk2.utilities.AbstractActiveDescriptor;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Builds locators of run level services that depend on each other for
+ * the run level benchmarks.  The services are spread over the given number
+ * of levels and each one needs a few services of its own level or of the
+ * level below it, so that threads starting services often have to wait for
+ * a service being started by another thread
+ * 
+ * @author jwells
+ *
+ */
+public class BootServices {
+    private final static int DEPENDENCIES = 3;
+    private final static long WORK = 100;
+    
+    /**
+     * Creates a locator with the run level service and the given
+     * number of run level services
+     * 
+     * @param services The number of run level services to add
+     * @param levels The number of levels to spread them over, starting at 1
+     * @param blockMillis How long each service blocks when it is started, as if
+     * waiting for I/O.  If 0 the services do a little work instead
+     * @return The new locator
+     */
+    public static ServiceLocator create(int services, int levels, long blockMillis) {
+        ServiceLocator locator = BenchmarkLocators.create(null, 0);
+        RunLevelServiceUtilities.enableRunLevelService(locator);
+        
+        ActiveDescriptor<?> added[] = new ActiveDescriptor<?>[services];
+        
+        Random random = new Random(13L);
+        int perLevel = Math.max(1, services / levels);
+        
+        DynamicConfiguration config = locator.getService(DynamicConfigurationService.class).createDynamicConfiguration();
+        for (int lcv = 0; lcv < services; lcv++) {
+            int level = Math.min(lcv / perLevel, levels - 1) + 1;
+            
+            // Services already added are either at this level or the one below
+            int dependencies[] = new int[Math.min(lcv, DEPENDENCIES)];
+            int lowest = Math.max(0, (level - 2) * perLevel);
+            for (int dep = 0; dep < dependencies.length; dep++) {
+                dependencies[dep] = lowest + random.nextInt(lcv - lowest);
+            }
+            
+            added[lcv] = config.addActiveDescriptor(new BootServiceDescriptor(locator, added, level, dependencies, blockMillis));
+        }
+        
+        config.commit();
+        
+        return locator;
+    }
+    
+    /**
+     * A run level service whose creation looks up the services it
+     * depends on, as injection would, and then does a little work
+     * or blocks for a while
+     */
+    private static class BootServiceDescriptor extends AbstractActiveDescriptor<Object> {
+        private static final long serialVersionUID = 2519893370911652052L;
+        
+        private final transient ServiceLocator locator;
+        private final transient ActiveDescriptor<?> added[];
+        private final int dependencies[];
+        private final long blockMillis;
+        
+        private BootServiceDescriptor(ServiceLocator locator,
+                ActiveDescriptor<?> added[],
+                int level,
+                int dependencies[],
+                long blockMillis) {
+            super(Collections.<Type>singleton(Object.class),
+                    RunLevel.class,
+                    null,
+                    Collections.<Annotation>emptySet(),
+                    DescriptorType.CLASS,
+                    DescriptorVisibility.NORMAL,
+                    0,
+                    null,
+                    null,
+                    null,
+                    createMetadata(level));
+            setImplementation(Object.class.getName());
+            
+            this.locator = locator;
+            this.added = added;
+            this.dependencies = dependencies;
+            this.blockMillis = blockMillis;
+        }
+        
+        private static Map<String, List<String>> createMetadata(int level) {
+            Map<String, List<String>> retVal = new HashMap<String, List<String>>();
+            retVal.put(RunLevel.RUNLEVEL_VAL_META_TAG, Collections.singletonList(Integer.toString(level)));
+            
+            return retVal;
+        }
+
+        @Override
+        public Class<?> getImplementationClass() {
+            return Object.class;
+        }
+
+        @Override
+        public Type getImplementationType() {
+            return Object.class;
+        }
+
+        @Override
+        public Object create(ServiceHandle<?> root) {
+            for (int dependency : dependencies) {
+                locator.getService(added[dependency], root, null);
+            }
+            
+            if (blockMillis > 0) {
+                try {
+                    Thread.sleep(blockMillis);
+                }
+                catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            else {
+                Blackhole.consumeCPU(WORK);
+            }
+            
+            return new Object();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.glassfish.hk2.classmodel.reflect.Parser;
+import org.glassfish.hk2.classmodel.reflect.ParsingContext;
+import org.glassfish.hk2.external.org.objectweb.asm.ClassWriter;
+import org.glassfish.hk2.external.org.objectweb.asm.FieldVisitor;
+import org.glassfish.hk2.external.org.objectweb.asm.MethodVisitor;
+import org.glassfish.hk2.external.org.objectweb.asm.Opcodes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing generated jars with the class-model {@link Parser} using
+ * one thread or several, reading them as jar files or through a memory
+ * mapping, and loading them from the persistent index
+ * 
+ * @author jwells
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class ClassModelParserBenchmark {
+    private final static int CONTRACTS = 50;
+    
+    @Param({"1", "8"})
+    private int jars;
+    
+    @Param({"1", "4"})
+    private int threads;
+    
+    @Param({"1000"})
+    private int classesPerJar;
+    
+    @Param({"false", "true"})
+    private boolean mapped;
+    
+    private File directory;
+    private File files[];
+    private File indexDirectory;
+    private ExecutorService executor;
+    
+    @Setup
+    public void setup() throws IOException {
+        directory = File.createTempFile("classmodel", "benchmark");
+        directory.delete();
+        directory.mkdirs();
+        
+        files = new File[jars];
+        for (int lcv = 0; lcv < jars; lcv++) {
+            files[lcv] = new File(directory, "jar" + lcv + ".jar");
+            writeJar(files[lcv], lcv);
+        }
+        
+        executor = Executors.newFixedThreadPool(threads);
+        
+        indexDirectory = new File(directory, "index");
+        try {
+            parse(indexDirectory);
+        }
+        catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+    
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+        
+        for (File file : files) {
+            file.delete();
+        }
+        File indexFiles[] = indexDirectory.listFiles();
+        if (indexFiles != null) {
+            for (File file : indexFiles) {
+                file.delete();
+            }
+        }
+        indexDirectory.delete();
+        directory.delete();
+    }
+    
+    @Benchmark
+    public int parse() throws Exception {
+        return parse(null);
+    }
+    
+    @Benchmark
+    public int parseIndexed() throws Exception {
+        return parse(indexDirectory);
+    }
+    
+    private int parse(File index) throws Exception {
+        ParsingContext context = new ParsingContext.Builder().executorService(executor).indexDirectory(index)
+                .mappedArchives(mapped).build();
+        Parser parser = new Parser(context);
+        try {
+            for (File file : files) {
+                parser.parse(file, null);
+            }
+            
+            Exception errors[] = parser.awaitTermination(100, TimeUnit.SECONDS);
+            if (errors != null && errors.length > 0) {
+                throw errors[0];
+            }
+        }
+        finally {
+            parser.close();
+        }
+        
+        return context.getTypes().getAllTypes().size();
+    }
+    
+    private void writeJar(File file, int jar) throws IOException {
+        JarOutputStream jos = new JarOutputStream(new FileOutputStream(file));
+        try {
+            for (int lcv = 0; lcv < classesPerJar; lcv++) {
+                String name = "org/glassfish/hk2/benchmarks/generated/jar" + jar + "/Service" + lcv;
+                
+                jos.putNextEntry(new JarEntry(name + ".class"));
+                jos.write(createClass(name, lcv));
+                jos.closeEntry();
+            }
+        }
+        finally {
+            jos.close();
+        }
+    }
+    
+    /**
+     * An annotated service class with an injected field, an injected
+     * constructor and a few methods, implementing one of a fixed set of
+     * contracts shared by all the jars
+     */
+    private static byte[] createClass(String name, int index) {
+        String contract = "org/glassfish/hk2/benchmarks/generated/Contract" + (index % CONTRACTS);
+        
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, "java/lang/Object",
+                new String[] { contract });
+        cw.visitAnnotation("Lorg/jvnet/hk2/annotations/Service;", true).visitEnd();
+        cw.visitAnnotation("Ljavax/inject/Singleton;", true).visitEnd();
+        
+        FieldVisitor fv = cw.visitField(Opcodes.ACC_PRIVATE, "dependency", "L" + contract + ";", null, null);
+        fv.visitAnnotation("Ljavax/inject/Inject;", true).visitEnd();
+        fv.visitEnd();
+        
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "(Ljava/lang/String;)V", null, null);
+        mv.visitAnnotation("Ljavax/inject/Inject;", true).visitEnd();
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(1, 2);
+        mv.visitEnd();
+        
+        for (int lcv = 0; lcv < 5; lcv++) {
+            mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "method" + lcv, "(ILjava/lang/String;)Ljava/lang/String;", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            mv.visitInsn(Opcodes.ARETURN);
+            mv.visitMaxs(1, 3);
+            mv.visitEnd();
+        }
+        
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.DynamicConfiguration;
+import org.glassfish.hk2.api.DynamicConfigurationService;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.utilities.BuilderHelper;
+import org.glassfish.hk2.utilities.DescriptorImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Committing configuration changes to locators of different sizes.  Every
+ * operation commits the addition of a descriptor and then commits its
+ * removal, so that the size of the locator stays the same
+ * 
+ * @author jwells
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class CommitBenchmark {
+    @Param({"1000", "10000", "100000"})
+    private int descriptors;
+    
+    @Param({"1", "100"})
+    private int descriptorsPerCommit;
+    
+    private ServiceLocator locator;
+    private DynamicConfigurationService dcs;
+    private DescriptorImpl toAdd[];
+    
+    @Setup
+    public void setup() {
+        locator = BenchmarkLocators.create(null, descriptors, SingletonTarget.class);
+        dcs = locator.getService(DynamicConfigurationService.class);
+        
+        toAdd = BenchmarkLocators.createFillers(descriptors, descriptorsPerCommit).toArray(new DescriptorImpl[descriptorsPerCommit]);
+        
+        // So that lookups have populated the caches that commit invalidates
+        locator.getService(SingletonTarget.class);
+        locator.getAllServices(Target.class);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        BenchmarkLocators.destroy(locator);
+    }
+    
+    @Benchmark
+    public void addAndRemove() {
+        DynamicConfiguration config = dcs.createDynamicConfiguration();
+        
+        ActiveDescriptor<?> added[] = new ActiveDescriptor<?>[toAdd.length];
+        for (int lcv = 0; lcv < toAdd.length; lcv++) {
+            added[lcv] = config.bind(toAdd[lcv], false);
+        }
+        
+        config.commit();
+        
+        config = dcs.createDynamicConfiguration();
+        for (ActiveDescriptor<?> remove : added) {
+            config.addUnbindFilter(BuilderHelper.createSpecificDescriptorFilter(remove));
+        }
+        
+        config.commit();
+    }
+}
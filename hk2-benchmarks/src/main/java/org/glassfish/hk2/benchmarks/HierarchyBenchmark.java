@@ -0,0 +1,117 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.hk2.api.ServiceLocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lookups from the bottom of a chain of locators, of services
+ * that live at the top of the chain.  Every locator in the
+ * chain has its own fillers and named targets
+ * 
+ * @author jwells
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class HierarchyBenchmark {
+    @Param({"1", "4", "16"})
+    private int depth;
+    
+    @Param({"1000"})
+    private int descriptorsPerLocator;
+    
+    private ServiceLocator chain[];
+    private ServiceLocator leaf;
+    
+    @Setup
+    public void setup() {
+        chain = new ServiceLocator[depth];
+        chain[0] = BenchmarkLocators.create(null, descriptorsPerLocator, SingletonTarget.class, PerLookupTarget.class);
+        
+        for (int lcv = 1; lcv < depth; lcv++) {
+            chain[lcv] = BenchmarkLocators.create(chain[lcv - 1], descriptorsPerLocator);
+        }
+        
+        leaf = chain[depth - 1];
+    }
+    
+    @TearDown
+    public void tearDown() {
+        for (int lcv = depth - 1; lcv >= 0; lcv--) {
+            BenchmarkLocators.destroy(chain[lcv]);
+        }
+    }
+    
+    @Benchmark
+    public SingletonTarget getSingleton() {
+        return leaf.getService(SingletonTarget.class);
+    }
+    
+    @Benchmark
+    public PerLookupTarget getPerLookup() {
+        return leaf.getService(PerLookupTarget.class);
+    }
+    
+    @Benchmark
+    public List<Target> getAllServices() {
+        return leaf.getAllServices(Target.class);
+    }
+}
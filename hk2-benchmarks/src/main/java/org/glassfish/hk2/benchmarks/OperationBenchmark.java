@@ -0,0 +1,136 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.extras.ExtrasUtilities;
+import org.glassfish.hk2.extras.operation.OperationHandle;
+import org.glassfish.hk2.extras.operation.OperationManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One thread per processor each running short operations, as a
+ * server does with one operation per request, and each calling
+ * an operation scoped service in a long running operation of
+ * its own
+ * 
+ * @author jwells
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(Threads.MAX)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class OperationBenchmark {
+    private final static BenchmarkOperationScope SCOPE = new BenchmarkOperationScopeImpl();
+    
+    private ServiceLocator locator;
+    private OperationManager manager;
+    private OperationTarget target;
+    
+    @Setup
+    public void setup() {
+        locator = BenchmarkLocators.create(null, 0, BenchmarkOperationContext.class,
+                OperationTarget.class);
+        ExtrasUtilities.enableOperations(locator);
+        
+        manager = locator.getService(OperationManager.class);
+        target = locator.getService(OperationTarget.class);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        BenchmarkLocators.destroy(locator);
+    }
+    
+    @Benchmark
+    public int operation() {
+        OperationHandle<BenchmarkOperationScope> operation = manager.createAndStartOperation(SCOPE);
+        try {
+            return target.increment();
+        }
+        finally {
+            operation.closeOperation();
+        }
+    }
+    
+    @Benchmark
+    public int callInOperation(ThreadOperation threadOperation) {
+        return target.increment();
+    }
+    
+    /**
+     * An operation started on each benchmark thread
+     * 
+     * @author jwells
+     *
+     */
+    @State(Scope.Thread)
+    public static class ThreadOperation {
+        private OperationHandle<BenchmarkOperationScope> operation;
+        
+        @Setup
+        public void setup(OperationBenchmark benchmark) {
+            operation = benchmark.manager.createAndStartOperation(SCOPE);
+        }
+        
+        @TearDown
+        public void tearDown() {
+            operation.closeOperation();
+        }
+    }
+}
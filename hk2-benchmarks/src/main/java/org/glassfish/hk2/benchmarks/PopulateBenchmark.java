@@ -0,0 +1,158 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.DescriptorFileFinder;
+import org.glassfish.hk2.api.DynamicConfigurationService;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.api.ServiceLocatorFactory;
+import org.glassfish.hk2.utilities.BinaryDescriptorFormat;
+import org.glassfish.hk2.utilities.DescriptorImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Populating a new locator from an inhabitants file in the text
+ * or binary format, and only reading the file
+ * 
+ * @author jwells
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class PopulateBenchmark {
+    @Param({"1000", "10000"})
+    private int descriptors;
+    
+    @Param({"text", "binary"})
+    private String format;
+    
+    private byte inhabitants[];
+    
+    @Setup
+    public void setup() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        List<DescriptorImpl> fillers = BenchmarkLocators.createFillers(0, descriptors);
+        
+        if ("binary".equals(format)) {
+            BinaryDescriptorFormat.write(fillers, baos);
+        }
+        else {
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(baos, "UTF-8"));
+            
+            for (DescriptorImpl descriptor : fillers) {
+                descriptor.writeObject(writer);
+            }
+            
+            writer.close();
+        }
+        
+        inhabitants = baos.toByteArray();
+    }
+    
+    /**
+     * Only reads the descriptors from the file, without adding them to a locator
+     */
+    @Benchmark
+    public int read() throws IOException {
+        BufferedInputStream bis = new BufferedInputStream(new ByteArrayInputStream(inhabitants));
+        if (BinaryDescriptorFormat.isBinary(bis)) {
+            return BinaryDescriptorFormat.read(bis).size();
+        }
+        
+        BufferedReader reader = new BufferedReader(new InputStreamReader(bis));
+        
+        int retVal = 0;
+        while (new DescriptorImpl().readObject(reader)) {
+            retVal++;
+        }
+        
+        return retVal;
+    }
+    
+    @Benchmark
+    public int populate() throws IOException {
+        ServiceLocator locator = ServiceLocatorFactory.getInstance().create(null);
+        try {
+            List<ActiveDescriptor<?>> added = locator.getService(DynamicConfigurationService.class).
+                getPopulator().populate(new DescriptorFileFinder() {
+
+                    @Override
+                    public List<InputStream> findDescriptorFiles() throws IOException {
+                        return Collections.<InputStream>singletonList(new ByteArrayInputStream(inhabitants));
+                    }
+                
+                });
+            
+            return added.size();
+        }
+        finally {
+            locator.shutdown();
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.hk2.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The children of a {@link Dom}, in document order.
+ * <p>
+ * A ChildList is never modified once it is published, a {@link Dom}
+ * replaces its ChildList as a whole when its children change.  The
+ * by-name and by-key indexes are therefore built lazily from the list
+ * the first time they are needed and are never invalidated, other than
+ * by {@link #withoutKeys()} when the key of one of the children changes
+ * 
+ * @author jwells
+ *
+ */
+/* package */ final class ChildList {
+    /* package */ static final ChildList EMPTY = new ChildList(Collections.<Dom.Child>emptyList());
+    
+    /** Nodes with fewer children than this are scanned rather than indexed */
+    private static final int INDEX_THRESHOLD = 8;
+    
+    private final List<Dom.Child> children;
+    private volatile Map<String, List<Dom.Child>> byName;
+    private volatile Map<String, List<Dom.NodeChild>> byKey;
+    
+    /**
+     * Creates a ChildList from the given children
+     * 
+     * @param children The children in document order.  The list
+     * is taken over by this object and must not be modified
+     * afterwards
+     */
+    /* package */ ChildList(List<Dom.Child> children) {
+        this(Collections.unmodifiableList(children), null);
+    }
+    
+    private ChildList(List<Dom.Child> children, Map<String, List<Dom.Child>> byName) {
+        this.children = children;
+        this.byName = byName;
+    }
+    
+    /**
+     * Returns the children in document order
+     * 
+     * @return An unmodifiable list of the children
+     */
+    /* package */ List<Dom.Child> getChildren() {
+        return children;
+    }
+    
+    /* package */ int size() {
+        return children.size();
+    }
+    
+    /* package */ boolean isEmpty() {
+        return children.isEmpty();
+    }
+    
+    /**
+     * Returns a modifiable copy of the children, to be
+     * changed and then given to a new ChildList
+     * 
+     * @return A copy of the children in document order
+     */
+    /* package */ List<Dom.Child> copy() {
+        return new ArrayList<Dom.Child>(children);
+    }
+    
+    /**
+     * Returns a ChildList with the same children as this one whose key
+     * index will be built again, used when the key of a child changes
+     * 
+     * @return A ChildList with the same children
+     */
+    /* package */ ChildList withoutKeys() {
+        return new ChildList(children, byName);
+    }
+    
+    /**
+     * Returns the first child with the given element name
+     * 
+     * @param name The element name
+     * @return The first such child or null if there is none
+     */
+    /* package */ Dom.Child first(String name) {
+        if (children.size() < INDEX_THRESHOLD) {
+            for (Dom.Child child : children) {
+                if (child.name.equals(name)) return child;
+            }
+            
+            return null;
+        }
+        
+        List<Dom.Child> named = getByName().get(name);
+        if (named == null) return null;
+        
+        return named.get(0);
+    }
+    
+    /**
+     * Returns all the children with the given element name
+     * 
+     * @param name The element name
+     * @return The children with that name in document order.  May
+     * be empty but will not be null.  Must not be modified
+     */
+    /* package */ List<Dom.Child> named(String name) {
+        if (children.size() < INDEX_THRESHOLD) {
+            List<Dom.Child> retVal = null;
+            for (Dom.Child child : children) {
+                if (!child.name.equals(name)) continue;
+                
+                if (retVal == null) retVal = new ArrayList<Dom.Child>(2);
+                retVal.add(child);
+            }
+            
+            if (retVal == null) return Collections.emptyList();
+            return retVal;
+        }
+        
+        List<Dom.Child> named = getByName().get(name);
+        if (named == null) return Collections.emptyList();
+        
+        return named;
+    }
+    
+    /**
+     * Returns the names of all the children
+     * 
+     * @return A new modifiable set of the element names
+     */
+    /* package */ Set<String> names() {
+        if (children.size() < INDEX_THRESHOLD) {
+            Set<String> retVal = new HashSet<String>();
+            for (Dom.Child child : children) {
+                retVal.add(child.name);
+            }
+            
+            return retVal;
+        }
+        
+        return new HashSet<String>(getByName().keySet());
+    }
+    
+    /**
+     * Returns the node children whose {@link Dom#getKey()} is the given key
+     * 
+     * @param key The key to look for, may not be null
+     * @return The node children with that key in document order.  May
+     * be empty but will not be null.  Must not be modified
+     */
+    /* package */ List<Dom.NodeChild> keyed(String key) {
+        Map<String, List<Dom.NodeChild>> index = byKey;
+        if (index == null) {
+            index = new HashMap<String, List<Dom.NodeChild>>();
+            for (Dom.Child child : children) {
+                if (!(child instanceof Dom.NodeChild)) continue;
+                
+                Dom.NodeChild node = (Dom.NodeChild) child;
+                String childKey = node.dom.getKey();
+                if (childKey == null) continue;
+                
+                add(index, childKey, node);
+            }
+            
+            byKey = index;
+        }
+        
+        List<Dom.NodeChild> retVal = index.get(key);
+        if (retVal == null) return Collections.emptyList();
+        
+        return retVal;
+    }
+    
+    private Map<String, List<Dom.Child>> getByName() {
+        Map<String, List<Dom.Child>> index = byName;
+        if (index != null) return index;
+        
+        index = new HashMap<String, List<Dom.Child>>();
+        for (Dom.Child child : children) {
+            add(index, child.name, child);
+        }
+        
+        byName = index;
+        return index;
+    }
+    
+    private static <T> void add(Map<String, List<T>> index, String key, T value) {
+        List<T> values = index.get(key);
+        if (values == null) {
+            // Most names and nearly all keys have only one child
+            values = new ArrayList<T>(1);
+            index.put(key, values);
+        }
+        
+        values.add(value);
+    }
+    
+    @Override
+    public String toString() {
+        return children.toString();
+    }
+}
@@ -302,8 +302,10 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      *
      * <p>
      * The list is read-only and copy-on-write to support concurrent access.
+     * It also indexes the children by element name and by key, so
+     * that nodes with many children are not scanned on every lookup.
      */
-    private volatile List<Child> children = Collections.emptyList();
+    private volatile ChildList children = ChildList.EMPTY;
     private final Location location;
 
     /**
@@ -352,7 +354,7 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
     public Dom(Dom source, Dom parent) {
         this(source.getHabitat(), source.document, parent, source.model);
         List<Child> newChildren = new ArrayList<Child>();
-        for (Child child : source.children) {
+        for (Child child : source.children.getChildren()) {
             newChildren.add(child.deepCopy(this));
         }
         setChildren(newChildren);
@@ -450,11 +452,7 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      * @Return list of elements names associated with this config instance
      */
     public Set<String> getElementNames() {
-        Set<String> names = new HashSet<String>();
-        for (Child child : children) {
-            names.add(child.name);
-        }
-        return names;
+        return children.names();
     }    
 
     /**
@@ -514,8 +512,10 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
     public void attribute(String name, String value) {
         if (value==null) {
             attributes.remove(name);
+            keyMayHaveChanged('@', name);
         } else {
             attributes.put(name,value);
+            keyMayHaveChanged('@', name);
             // TODO:
             // this re-injection has two problems. First, it forces an instantiation
             // even if that hasn't happened yet. Second, if the component is scoped,
@@ -531,15 +531,10 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      * @return child element
      */
     public Dom element(String name) {
+        Child child = children.first(name);
+        if (child == null) return null;
         
-        List<Child> children = this.children; // fix the snapshot that we'll work with
-
-        for (Child child : children) {
-            if (child.name.equals(name)) {
-                return ((NodeChild) child).dom;
-            }
-        }
-        return null;
+        return ((NodeChild) child).dom;
     }
 
     /**
@@ -583,22 +578,22 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
         if(name.equals("*"))    name=newNode.model.tagName;
         NodeChild newChild = new NodeChild(name, newNode);
 
-        if (children.size()==0) {
-            children = new ArrayList<Child>();
-        }
+        List<Child> newChildren = children.copy();
         if(reference==null) {
-            children.add(0, newChild);
+            newChildren.add(0, newChild);
+            children = new ChildList(newChildren);
             newNode.domDescriptor = addWithAlias(getHabitat(), newNode, newNode.getProxyType(), newNode.getKey());
             return;
         }
 
-        ListIterator<Child> itr = children.listIterator();
+        ListIterator<Child> itr = newChildren.listIterator();
         while(itr.hasNext()) {
             Child child = itr.next();
             if (child instanceof NodeChild) {
                 NodeChild nc = (NodeChild) child;
                 if(nc.dom==reference) {
                     itr.add(newChild);
+                    children = new ChildList(newChildren);
                     newNode.domDescriptor = addWithAlias(getHabitat(), newNode, newNode.getProxyType(), newNode.getKey());
                     
                     return;
@@ -614,7 +609,8 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      * @see #insertAfter(Dom, String, Dom)
      */
     public synchronized void replaceChild(Dom reference, String name, Dom newNode) {
-        ListIterator<Child> itr = children.listIterator();
+        List<Child> newChildren = children.copy();
+        ListIterator<Child> itr = newChildren.listIterator();
         while(itr.hasNext()) {
             Child child = itr.next();   
             if (child instanceof NodeChild) {
@@ -624,6 +620,7 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
                     newNode.domDescriptor = addWithAlias(getHabitat(), newNode,newNode.getProxyType(), newNode.getKey());
                     
                     itr.set(new NodeChild(name,newNode));
+                    children = new ChildList(newChildren);
                     return;
                 }
             }
@@ -636,13 +633,15 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      *
      */
     public synchronized void removeChild(final Dom reference) {
-        ListIterator<Child> itr = children.listIterator();
+        List<Child> newChildren = children.copy();
+        ListIterator<Child> itr = newChildren.listIterator();
         while(itr.hasNext()) {
             Child child = itr.next();
             if (child instanceof NodeChild) {
                 NodeChild nc = (NodeChild) child;
                 if(nc.dom==reference) {
                     itr.remove();
+                    children = new ChildList(newChildren);
                     reference.release();
                     return;
                 }
@@ -653,19 +652,23 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
     }
 
     public synchronized boolean addLeafElement(String xmlName, String value) {
-        if (children.size()==0) {
-            children = new ArrayList<Child>();
-        }
-        return children.add(new LeafChild(xmlName, value));
+        List<Child> newChildren = children.copy();
+        newChildren.add(new LeafChild(xmlName, value));
+        children = new ChildList(newChildren);
         
+        keyMayHaveChanged('<', xmlName);
+        return true;
     }
 
     public synchronized boolean removeLeafElement(String xmlName, String element) {
-        List<Child> children = this.children; // fix the snapshot that we'll work with
-
-        for (Child child : children) {
-            if(child.name.equals(xmlName) && ((LeafChild) child).value.equals(element)) {
-                return children.remove(child);
+        for (Child child : children.named(xmlName)) {
+            if(((LeafChild) child).value.equals(element)) {
+                List<Child> newChildren = children.copy();
+                newChildren.remove(child);
+                children = new ChildList(newChildren);
+                
+                keyMayHaveChanged('<', xmlName);
+                return true;
             }
         }
         return false;
@@ -673,13 +676,14 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
     }
 
     public synchronized boolean changeLeafElement(String xmlName, String oldValue, String newValue) {
-        List<Child> children = this.children; // fix the snapshot that we'll work with
-
-        int len = children.size();
-        for( int i=0; i<len; i++ ) {
-            Child child = children.get(i);
-            if(child.name.equals(xmlName) && ((LeafChild) child).value.equals(oldValue)) {
-                return (children.set(i, new LeafChild(xmlName, newValue))!=null);
+        for (Child child : children.named(xmlName)) {
+            if(((LeafChild) child).value.equals(oldValue)) {
+                List<Child> newChildren = children.copy();
+                newChildren.set(newChildren.indexOf(child), new LeafChild(xmlName, newValue));
+                children = new ChildList(newChildren);
+                
+                keyMayHaveChanged('<', xmlName);
+                return true;
             }
         }
         return false;
@@ -689,17 +693,11 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      * Picks up one leaf-element value without variable expansion.
      */
     public String rawLeafElement(String name) {
-        List<Child> children = this.children; // fix the snapshot that we'll work with
-
-        int len = children.size();
-        for( int i=0; i<len; i++ ) {
-            Child child = children.get(i);
-            if(child.name.equals(name)) {
-                // error check on model guarantees that this works.
-                return ((LeafChild)child).value;
-            }
-        }
-        return null;
+        Child child = children.first(name);
+        if (child == null) return null;
+        
+        // error check on model guarantees that this works.
+        return ((LeafChild)child).value;
     }
 
     /**
@@ -759,14 +757,15 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      * Synchronized so that concurrenct modifications will work correctly.
      */
     public synchronized void setLeafElements(final String name, String... values) {
-        List<Child> newChildren = new ArrayList<Child>(children);
+        List<Child> newChildren = children.copy();
 
         LeafChild[] leaves = new LeafChild[values.length];
         for (int i = 0; i < values.length; i++)
             leaves[i] = new LeafChild(name,values[i]);
 
         stitchList(newChildren,name,Arrays.asList(leaves));
-        children = newChildren;
+        children = new ChildList(newChildren);
+        keyMayHaveChanged('<', name);
 
         // see attribute(String,String) for the issue with this
         getInjector().injectElement(this,name,get());
@@ -778,14 +777,12 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      *      Can be empty but never null.
      */
     public List<String> leafElements(String name) {
-        List<Child> children = this.children; // fix the snapshot that we'll work with
+        List<Child> named = children.named(name); // fix the snapshot that we'll work with
 
-        final List<String> r = new ArrayList<String>();
-        for (Child child : children) {
-            if (child.name.equals(name)) {
-                // error check on model guarantees that this cast works.
-                r.add(t(((LeafChild) child).value));
-            }
+        final List<String> r = new ArrayList<String>(named.size());
+        for (Child child : named) {
+            // error check on model guarantees that this cast works.
+            r.add(t(((LeafChild) child).value));
         }
         return r;
     }
@@ -798,14 +795,12 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      *      can be empty, but never null (even if such element name is not defined in the model.)
      */
     public List<String> rawLeafElements(String name) {
-        List<Child> children = this.children; // fix the snapshot that we'll work with
+        List<Child> named = children.named(name); // fix the snapshot that we'll work with
 
-        final List<String> r = new ArrayList<String>();
-        for (Child child : children) {
-            if (child.name.equals(name)) {
-                // error check on model guarantees that this cast works.
-                r.add(((LeafChild) child).value);
-            }
+        final List<String> r = new ArrayList<String>(named.size());
+        for (Child child : named) {
+            // error check on model guarantees that this cast works.
+            r.add(((LeafChild) child).value);
         }
         return r;
     }
@@ -814,17 +809,11 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      * Picks up one node-element value.
      */
     public Dom nodeElement(String name) {
-        List<Child> children = this.children; // fix the snapshot that we'll work with
-
-        int len = children.size();
-        for( int i=0; i<len; i++ ) {
-            Child child = children.get(i);
-            if(child.name.equals(name)) {
-                // error check on model guarantees that this works.
-                return ((NodeChild)child).dom;
-            }
-        }
-        return null;
+        Child child = children.first(name);
+        if (child == null) return null;
+        
+        // error check on model guarantees that this works.
+        return ((NodeChild)child).dom;
     }
 
     /**
@@ -833,14 +822,14 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      * Synchronized so that concurrenct modifications will work correctly.
      */
     public synchronized void setNodeElements(final String name, Dom... values) {
-        List<Child> newChildren = new ArrayList<Child>(children);
+        List<Child> newChildren = children.copy();
 
         NodeChild[] leaves = new NodeChild[values.length];
         for (int i = 0; i < values.length; i++)
             leaves[i] = new NodeChild(name,values[i]);
 
         List<Child> removed = stitchList(newChildren,name,Arrays.asList(leaves));
-        children = newChildren;
+        children = new ChildList(newChildren);
 
         for (Child c : removed) {
             ((NodeChild) c).dom.release();
@@ -854,20 +843,32 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      * Picks up all node-elements that have the given element name.
      */
     public List<Dom> nodeElements(String elementName) {
-        List<Child> children = this.children; // fix the snapshot that we'll work with
+        List<Child> named = children.named(elementName); // fix the snapshot that we'll work with
 
-        final List<Dom> r = new ArrayList<Dom>();
-        int len = children.size();
-        for( int i=0; i<len; i++ ) {
-            Child child = children.get(i);
-            if(child.name.equals(elementName)) {
-                // error check on model guarantees that this works.
-                r.add(((NodeChild)child).dom);
-            }
+        final List<Dom> r = new ArrayList<Dom>(named.size());
+        for (Child child : named) {
+            // error check on model guarantees that this works.
+            r.add(((NodeChild)child).dom);
         }
         return r;
     }
 
+    /**
+     * Picks up the node-element that has the given element name and key.
+     *
+     * @param elementName the element name of the node
+     * @param key the value of {@link #getKey()} of the node
+     * @return the first such node in document order, or null if there is none
+     */
+    public Dom nodeElementByKey(String elementName, String key) {
+        if (key == null) return null;
+        
+        for (NodeChild child : children.keyed(key)) {
+            if (child.name.equals(elementName)) return child.dom;
+        }
+        return null;
+    }
+
     /**
      * Picks up all node elements that are assignable to the given type,
      * except those who are matched by other named elements in the model.
@@ -876,6 +877,7 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      */
     public  List<Dom> domNodeByTypeElements(Class baseType) {
         List<Dom> r = new ArrayList<Dom>();
+        List<Child> children = this.children.getChildren(); // fix the snapshot that we'll work with
 
         int len = children.size();
         for( int i=0; i<len; i++ ) {
@@ -903,7 +905,28 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
         };
     }
 
+    /**
+     * Picks up the node element that is assignable to the given type and
+     * has the given key, except those who are matched by other named
+     * elements in the model.
+     *
+     * @return the first such node in document order, or null if there is none
+     */
+    public Dom domNodeByTypeElement(Class<?> baseType, String key) {
+        if (key == null) return null;
+        
+        for (NodeChild nc : children.keyed(key)) {
+            if(model.elements.containsKey(nc.name))
+                continue;   // match with named
+            if(baseType.isAssignableFrom(nc.dom.getImplementationClass()))
+                return nc.dom;
+        }
+        return null;
+    }
+
     public <T> T nodeByTypeElement(Class<T> baseType) {
+        List<Child> children = this.children.getChildren(); // fix the snapshot that we'll work with
+        
         int len = children.size();
         for( int i=0; i<len; i++ ) {
             Child child = children.get(i);
@@ -962,7 +985,7 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
         if(keyedAs!=null && keyedAs.equals(typeName) && getKey().equals(key))
             return this; // found it
 
-        for (Child child : children) {
+        for (Child child : children.getChildren()) {
             if (child instanceof NodeChild) {
                 NodeChild n = (NodeChild) child;
                 Dom found = n.dom.resolveReference(key,typeName);
@@ -1242,7 +1265,29 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      * Used by the parser to set a list of children.
      */
     /*package*/ void setChildren(List<Child> children) {
-       this.children = children;
+       this.children = new ChildList(children);
+    }
+
+    /**
+     * Called after an attribute or leaf element of this node has changed,
+     * lets the parent know if it was the key so the parent can index
+     * this node under its new key
+     *
+     * @param kind '@' for an attribute, '<' for a leaf element
+     * @param name the name of the attribute or leaf element
+     */
+    private void keyMayHaveChanged(char kind, String name) {
+        String k = model.key;
+        if (parent == null || k == null || k.charAt(0) != kind) return;
+        
+        int length = (kind == '<') ? k.length() - 2 : k.length() - 1;
+        if (length != name.length() || !k.regionMatches(1, name, 0, length)) return;
+        
+        parent.childKeyChanged();
+    }
+
+    private synchronized void childKeyChanged() {
+        children = children.withoutKeys();
     }
 
     /**
@@ -1314,7 +1359,7 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
             w.writeAttribute(attributeToWrite.getKey(), attributeToWrite.getValue());
         }
 
-        List<Child> localChildren = new ArrayList<Child>(children);
+        List<Child> localChildren = children.getChildren();
         for (Child c : localChildren)
             c.writeTo(w);
 
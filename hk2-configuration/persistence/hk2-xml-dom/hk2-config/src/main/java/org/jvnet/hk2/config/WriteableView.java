@@ -235,23 +235,18 @@ public class WriteableView implements InvocationHandler, Transactor, ConfigView
                 // parent will equal Resources
                 Dom parent = thisview.parent();
 
-                // siblings will contain all ConnectorConnectionPools under
-                // Resources
-                List<Dom> siblings = parent != null
-                        ? parent.domNodeByTypeElements(thisview.getProxyType())
-                        : new ArrayList<Dom>();
-
-                // Iterate through each sibling element and see if anyone has
-                // same key. If true throw an exception after unlocking this
-                // element
-                for (Dom sibling : siblings) {
-                    String siblingKey = sibling.getKey();
-                    if (newValue.equals(siblingKey)) {
-                        bean.getLock().unlock();
-                        throw new IllegalArgumentException(
-                            "Keys cannot be duplicate. Old value of this key " +
-                            "property, " + oldKeyValue + "will be retained");
-                    }
+                // Look up a ConnectorConnectionPool under Resources that
+                // already has the same key. If there is one throw an
+                // exception after unlocking this element
+                Dom sibling = (parent != null && newValue instanceof String)
+                        ? parent.domNodeByTypeElement(thisview.getProxyType(), (String) newValue)
+                        : null;
+
+                if (sibling != null) {
+                    bean.getLock().unlock();
+                    throw new IllegalArgumentException(
+                        "Keys cannot be duplicate. Old value of this key " +
+                        "property, " + oldKeyValue + "will be retained");
                 }
             }
         }
@@ -0,0 +1,119 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.hk2.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for the by-name index of {@link ChildList}
+ * 
+ * @author jwells
+ *
+ */
+public class ChildListTest {
+    private final static String ALICE = "alice";
+    private final static String BOB = "bob";
+    private final static String CAROL = "carol";
+    
+    /**
+     * Lookups of small and of large lists (which are indexed)
+     * must give the children in document order
+     */
+    @Test
+    public void testLookupsKeepDocumentOrder() {
+        for (int size : new int[] { 3, 1000 }) {
+            List<Dom.Child> children = new ArrayList<Dom.Child>();
+            for (int lcv = 0; lcv < size; lcv++) {
+                String name = (lcv % 2 == 0) ? ALICE : BOB;
+                children.add(new Dom.LeafChild(name, name + lcv));
+            }
+            
+            ChildList childList = new ChildList(children);
+            
+            assertEquals(size, childList.size());
+            assertSame(children.get(0), childList.first(ALICE));
+            assertSame(children.get(1), childList.first(BOB));
+            assertNull(childList.first(CAROL));
+            assertTrue(childList.named(CAROL).isEmpty());
+            assertEquals(new HashSet<String>(Arrays.asList(ALICE, BOB)), childList.names());
+            
+            List<Dom.Child> bobs = childList.named(BOB);
+            assertEquals(size / 2, bobs.size());
+            for (int lcv = 0; lcv < bobs.size(); lcv++) {
+                assertEquals(BOB + (2 * lcv + 1), ((Dom.LeafChild) bobs.get(lcv)).value);
+            }
+        }
+    }
+    
+    /**
+     * A copy can be changed and does not change
+     * the ChildList it was copied from
+     */
+    @Test
+    public void testCopyIsIndependent() {
+        List<Dom.Child> children = new ArrayList<Dom.Child>();
+        for (int lcv = 0; lcv < 20; lcv++) {
+            children.add(new Dom.LeafChild(ALICE, ALICE + lcv));
+        }
+        
+        ChildList original = new ChildList(children);
+        assertEquals(20, original.named(ALICE).size());
+        
+        List<Dom.Child> copy = original.copy();
+        copy.add(0, new Dom.LeafChild(CAROL, CAROL));
+        ChildList changed = new ChildList(copy);
+        
+        assertNull(original.first(CAROL));
+        assertEquals(CAROL, ((Dom.LeafChild) changed.first(CAROL)).value);
+        assertEquals(20, changed.named(ALICE).size());
+        assertEquals(21, changed.getChildren().size());
+    }
+}
@@ -153,6 +153,26 @@ public class Generator {
     public static CtClass generate(AltClass convertMe,
             CtClass superClazz,
             ClassPool defaultClassPool) throws Throwable {
+        return generate(convertMe, superClazz, defaultClassPool, null);
+    }
+    
+    /**
+     * Converts the given interface into a JAXB implementation proxy
+     * and tells the caller which interfaces its children have, so
+     * that a build time generator can also convert those
+     * 
+     * @param convertMe The interface to convert
+     * @param superClazz The class the proxy extends
+     * @param defaultClassPool The pool to create the proxy in
+     * @param childInterfaces If not null the fully qualified names of the
+     * interfaces of the children of convertMe are added to this set
+     * @return The proxy
+     * @throws Throwable
+     */
+    public static CtClass generate(AltClass convertMe,
+            CtClass superClazz,
+            ClassPool defaultClassPool,
+            Set<String> childInterfaces) throws Throwable {
         String modelOriginalInterface = convertMe.getName();
         
         String modelTranslatedClass = Utilities.getProxyNameFromInterfaceName(modelOriginalInterface);
@@ -775,6 +795,12 @@ public class Generator {
                 compiledModel,
                 defaultClassPool);
         
+        if (childInterfaces != null) {
+            for (ParentedModel child : compiledModel.getAllChildren()) {
+                childInterfaces.add(child.getChildInterface());
+            }
+        }
+        
         return targetCtClass;
     }
     
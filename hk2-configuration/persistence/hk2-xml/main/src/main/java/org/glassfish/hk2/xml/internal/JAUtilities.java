@@ -100,8 +100,14 @@ public class JAUtilities {
     public final static String JAXB_DEFAULT_DEFAULT = "\u0000";
     
     private final ClassReflectionHelper classReflectionHelper;
-    private final ClassPool defaultClassPool;
-    private final CtClass superClazz;
+    
+    /**
+     * Only created when a proxy must be generated, so that nothing
+     * of javassist is loaded when all of the proxies were generated
+     * at build time
+     */
+    private ClassPool defaultClassPool;
+    private CtClass superClazz;
     
     private final Computer computer;
     private final LRUHybridCache<Class<?>, ModelImpl> interface2ModelCache;
@@ -130,19 +136,7 @@ public class JAUtilities {
     }
     
     /* package */ JAUtilities(ClassReflectionHelper classReflectionHelper) {
-        defaultClassPool = ClassPool.getDefault();
-        
-        for (ClassLoader cl : getClassLoaders(this.getClass())) {
-            defaultClassPool.appendClassPath(new LoaderClassPath(cl));
-        }
-        
         this.classReflectionHelper = classReflectionHelper;
-        try {
-            superClazz = defaultClassPool.get(BaseHK2JAXBBean.class.getName());
-        }
-        catch (NotFoundException e) {
-            throw new MultiException(e);
-        }
         
         computer = new Computer(this);
         interface2ModelCache = new LRUHybridCache<Class<?>, ModelImpl>(Integer.MAX_VALUE - 1, computer);
@@ -216,11 +210,34 @@ public class JAUtilities {
         }
     }
     
-    private CtClass getBaseClass() {
+    private synchronized void initializeClassPool() {
+        if (defaultClassPool != null) return;
+        
+        ClassPool pool = ClassPool.getDefault();
+        
+        for (ClassLoader cl : getClassLoaders(this.getClass())) {
+            pool.appendClassPath(new LoaderClassPath(cl));
+        }
+        
+        try {
+            superClazz = pool.get(BaseHK2JAXBBean.class.getName());
+        }
+        catch (NotFoundException e) {
+            throw new MultiException(e);
+        }
+        
+        defaultClassPool = pool;
+    }
+    
+    private synchronized CtClass getBaseClass() {
+        initializeClassPool();
+        
         return superClazz;
     }
     
-    private ClassPool getClassPool() {
+    private synchronized ClassPool getClassPool() {
+        initializeClassPool();
+        
         return defaultClassPool;
     }
     
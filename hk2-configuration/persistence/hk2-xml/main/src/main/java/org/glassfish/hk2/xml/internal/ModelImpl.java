@@ -113,6 +113,9 @@ public class ModelImpl implements Model {
     private String valueProperty;
     private ChildDataModel valueData;
     
+    /** Calculated at runtime lazily, where the beans of this model keep their properties */
+    private transient volatile SlotLayout slotLayout;
+    
     public ModelImpl() {
     }
     
@@ -336,6 +339,22 @@ public class ModelImpl implements Model {
         }
     }
     
+    /**
+     * Gets the slots the beans of this model keep their properties in
+     * 
+     * @return The slot layout of this model, which is the same for every call
+     */
+    public SlotLayout getSlotLayout() {
+        if (slotLayout != null) return slotLayout;
+        
+        synchronized (lock) {
+            if (slotLayout != null) return slotLayout;
+            
+            slotLayout = new SlotLayout(allChildren);
+            return slotLayout;
+        }
+    }
+    
     public Collection<ParentedModel> getAllChildren() {
         synchronized (lock) {
             return Collections.unmodifiableCollection(childrenByName.values());
@@ -0,0 +1,187 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.xml.internal;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The places the properties of the beans of one model are stored in.
+ * Every property of the model gets a slot.  The slots of primitive
+ * non-child properties are kept unboxed in an array of longs and
+ * the other slots are kept in an array of Objects
+ * 
+ * @author jwells
+ *
+ */
+public class SlotLayout implements Serializable {
+    private static final long serialVersionUID = -3484471802311436011L;
+    
+    /** The kind of a slot that holds an Object */
+    public final static char REFERENCE = 'L';
+    
+    private final static Map<String, Character> PRIMITIVE_KINDS = new HashMap<String, Character>();
+    
+    static {
+        PRIMITIVE_KINDS.put("boolean", 'Z');
+        PRIMITIVE_KINDS.put("byte", 'B');
+        PRIMITIVE_KINDS.put("char", 'C');
+        PRIMITIVE_KINDS.put("short", 'S');
+        PRIMITIVE_KINDS.put("int", 'I');
+        PRIMITIVE_KINDS.put("float", 'F');
+        PRIMITIVE_KINDS.put("long", 'J');
+        PRIMITIVE_KINDS.put("double", 'D');
+    }
+    
+    private final HashMap<String, Integer> slots;
+    private final String names[];
+    private final char kinds[];
+    private final int offsets[];
+    private final int numReferences;
+    private final int numPrimitives;
+    
+    /* package */ SlotLayout(Map<String, ChildDescriptor> allChildren) {
+        int size = allChildren.size();
+        
+        slots = new HashMap<String, Integer>();
+        names = new String[size];
+        kinds = new char[size];
+        offsets = new int[size];
+        
+        int slot = 0;
+        int references = 0;
+        int primitives = 0;
+        for (Map.Entry<String, ChildDescriptor> entry : allChildren.entrySet()) {
+            Character kind = null;
+            
+            ChildDataModel childData = entry.getValue().getChildDataModel();
+            if (childData != null) {
+                kind = PRIMITIVE_KINDS.get(childData.getChildType());
+            }
+            
+            slots.put(entry.getKey(), slot);
+            names[slot] = entry.getKey();
+            if (kind == null) {
+                kinds[slot] = REFERENCE;
+                offsets[slot] = references++;
+            }
+            else {
+                kinds[slot] = kind;
+                offsets[slot] = primitives++;
+            }
+            
+            slot++;
+        }
+        
+        numReferences = references;
+        numPrimitives = primitives;
+    }
+    
+    /**
+     * Returns the slot of the given property
+     * 
+     * @param propName The xml name of the property
+     * @return The slot of the property, or -1 if the
+     * model has no such property
+     */
+    public int getSlot(String propName) {
+        Integer retVal = slots.get(propName);
+        if (retVal == null) return -1;
+        
+        return retVal;
+    }
+    
+    /**
+     * @return The number of slots, one per property of the model
+     */
+    public int getNumSlots() {
+        return names.length;
+    }
+    
+    /**
+     * @param slot A slot of this layout
+     * @return The xml name of the property in the slot
+     */
+    public String getName(int slot) {
+        return names[slot];
+    }
+    
+    /**
+     * Returns the kind of the slot, which is either {@link #REFERENCE}
+     * or the JVM descriptor character of the primitive type of the slot
+     * 
+     * @param slot A slot of this layout
+     * @return The kind of the slot
+     */
+    public char getKind(int slot) {
+        return kinds[slot];
+    }
+    
+    /**
+     * @param slot A slot of this layout
+     * @return The index of the slot in the array of Objects
+     * or the array of primitives, depending on its kind
+     */
+    public int getOffset(int slot) {
+        return offsets[slot];
+    }
+    
+    /**
+     * @return The number of slots that hold Objects
+     */
+    public int getNumReferences() {
+        return numReferences;
+    }
+    
+    /**
+     * @return The number of slots that hold primitives
+     */
+    public int getNumPrimitives() {
+        return numPrimitives;
+    }
+    
+    @Override
+    public String toString() {
+        return "SlotLayout(references=" + numReferences + ",primitives=" + numPrimitives +
+                "," + System.identityHashCode(this) + ")";
+    }
+}
@@ -101,7 +101,7 @@ public class XmlStreamImpl {
             
             switch(event) {
             case XMLStreamConstants.START_ELEMENT:
-                String elementTag = reader.getName().getLocalPart();
+                String elementTag = reader.getLocalName();
                 if (DEBUG_PARSING) {
                     Logger.getLogger().debug("XmlServiceDebug starting document tag " + elementTag);
                 }
@@ -144,11 +144,7 @@ public class XmlStreamImpl {
             Map<String, String> namespaceMap) throws Exception {
         listener.beforeUnmarshal(target, parent);
         
-        Map<String, List<BaseHK2JAXBBean>> listChildren = new HashMap<String, List<BaseHK2JAXBBean>>();
-        Map<String, List<BaseHK2JAXBBean>> arrayChildren = new HashMap<String, List<BaseHK2JAXBBean>>();
-        
-        Map<String, List<Object>> listNonChild = new HashMap<String, List<Object>>();
-        Map<String, ArrayInformation> arrayNonChild = new HashMap<String, ArrayInformation>();
+        PendingChildren pending = new PendingChildren();
         
         ModelImpl targetModel = target._getModel();
         Map<String, ChildDataModel> nonChildProperties = targetModel.getNonChildProperties();
@@ -171,8 +167,7 @@ public class XmlStreamImpl {
             Class<?> childType = targetModel.getNonChildType(attributeName);
             
             if (!childDataModel.isReference()) {
-                Object convertedValue = Utilities.getDefaultValue(attributeValue, childType, namespaceMap);
-                target._setProperty(attributeName, convertedValue);
+                setValue(target, attributeName, attributeValue, childType, namespaceMap);
             }
             else {
                 if (DEBUG_PARSING) {
@@ -199,20 +194,13 @@ public class XmlStreamImpl {
             
             switch(event) {
             case XMLStreamConstants.START_ELEMENT:
-                String elementTag = reader.getName().getLocalPart();
+                String elementTag = reader.getLocalName();
                 
                 if (DEBUG_PARSING) {
                     Logger.getLogger().debug("XmlServiceDebug starting parse of element " + elementTag);
                 }
                 
-                Map<String, String> effectiveNamespaceMap = null;
-                {
-                    effectiveNamespaceMap = new HashMap<String, String>(namespaceMap);
-                    int namespaceCount = reader.getNamespaceCount();
-                    for (int nLcv = 0; nLcv < namespaceCount; nLcv++) {
-                        effectiveNamespaceMap.put(reader.getNamespacePrefix(nLcv), reader.getNamespaceURI(nLcv));
-                    }
-                }
+                Map<String, String> effectiveNamespaceMap = getEffectiveNamespaceMap(reader, namespaceMap);
                 
                 ChildDataModel cdm = nonChildProperties.get(elementTag);
                 if (cdm != null && Format.ELEMENT.equals(cdm.getFormat())) {
@@ -226,31 +214,17 @@ public class XmlStreamImpl {
                             
                             Object convertedValue = Utilities.getDefaultValue(elementValue, listType, effectiveNamespaceMap);
                             
-                            List<Object> listObjects = listNonChild.get(elementTag);
-                            if (listObjects == null) {
-                                listObjects = new LinkedList<Object>();
-                                listNonChild.put(elementTag, listObjects);
-                            }
-                            
-                            listObjects.add(convertedValue);
+                            pending.addListNonChild(elementTag, convertedValue);
                         }
                         else if (childType.isArray() && !byte.class.equals(childType.getComponentType())) {
                             Class<?> aType = childType.getComponentType();
                             
                             Object convertedValue = Utilities.getDefaultValue(elementValue, aType, effectiveNamespaceMap);
                             
-                            ArrayInformation ai = arrayNonChild.get(elementTag);
-                            if (ai == null) {
-                                ai = new ArrayInformation(aType);
-                                arrayNonChild.put(elementTag, ai);
-                            }
-                            
-                            ai.add(convertedValue);
+                            pending.addArrayNonChild(elementTag, aType, convertedValue);
                         }
                         else {
-                            Object convertedValue = Utilities.getDefaultValue(elementValue, childType, effectiveNamespaceMap);
-                        
-                            target._setProperty(elementTag, convertedValue);
+                            setValue(target, elementTag, elementValue, childType, effectiveNamespaceMap);
                         }
                     }
                     else {
@@ -292,20 +266,10 @@ public class XmlStreamImpl {
                         target._setProperty(elementTag, realThing);
                     }
                     else if (informedChild.getChildType().equals(ChildType.LIST)) {
-                        List<BaseHK2JAXBBean> cList = listChildren.get(elementTag);
-                        if (cList == null) {
-                            cList = new ArrayList<BaseHK2JAXBBean>();
-                            listChildren.put(elementTag, cList);
-                        }
-                        cList.add(hk2Root);
+                        pending.addListChild(elementTag, hk2Root);
                     }
                     else if (informedChild.getChildType().equals(ChildType.ARRAY)) {
-                        List<BaseHK2JAXBBean> cList = arrayChildren.get(elementTag);
-                        if (cList == null) {
-                            cList = new LinkedList<BaseHK2JAXBBean>();
-                            arrayChildren.put(elementTag, cList);
-                        }
-                        cList.add(hk2Root);
+                        pending.addArrayChild(elementTag, hk2Root);
                     }
                     
                     break;
@@ -322,8 +286,7 @@ public class XmlStreamImpl {
                             elementTag,
                             effectiveNamespaceMap,
                             elementTag,
-                            listChildren,
-                            arrayChildren);
+                            pending);
                     break;
                 }
                 
@@ -343,54 +306,11 @@ public class XmlStreamImpl {
                     Class<?> childType = valueModel.getChildTypeAsClass();
                     String propName = targetModel.getValueProperty();
                     
-                    Object convertedValue = Utilities.getDefaultValue(text, childType, namespaceMap);
-                    
-                    target._setProperty(propName, convertedValue);
+                    setValue(target, propName, text, childType, namespaceMap);
                 }
                 break;
             case XMLStreamConstants.END_ELEMENT:
-                for (Map.Entry<String, List<BaseHK2JAXBBean>> entry : listChildren.entrySet()) {
-                    // Kind of cheating with the erasure, but hey, it works!
-                    target._setProperty(entry.getKey(), entry.getValue());
-                }
-                
-                for (Map.Entry<String, List<BaseHK2JAXBBean>> entry : arrayChildren.entrySet()) {
-                    String childTag = entry.getKey();
-                    ParentedModel pn = targetModel.getChild(childTag);
-                    Class<?> childType = pn.getChildModel().getOriginalInterfaceAsClass();
-                    
-                    List<BaseHK2JAXBBean> individuals = entry.getValue();
-                    
-                    Object actualArray = Array.newInstance(childType, individuals.size());
-                    
-                    int index = 0;
-                    for (BaseHK2JAXBBean individual : individuals) {
-                        Array.set(actualArray, index++, individual);
-                    }
-                    
-                    target._setProperty(childTag, actualArray);
-                }
-                
-                for (Map.Entry<String, List<Object>> entry : listNonChild.entrySet()) {
-                    String childTag = entry.getKey();
-                    List<Object> value = entry.getValue();
-                    
-                    target._setProperty(childTag, value);
-                }
-                
-                for (Map.Entry<String, ArrayInformation> entry : arrayNonChild.entrySet()) {
-                    String childTag = entry.getKey();
-                    ArrayInformation ai = entry.getValue();
-                    
-                    Object actualArray = Array.newInstance(ai.getAType(), ai.getValues().size());
-                    
-                    int lcv = 0;
-                    for (Object value : ai.getValues()) {
-                        Array.set(actualArray, lcv++, value);
-                    }
-                    
-                    target._setProperty(childTag, actualArray);
-                }
+                pending.setAll(target, targetModel);
                 
                 listener.afterUnmarshal(target, parent);
                 
@@ -420,6 +340,69 @@ public class XmlStreamImpl {
         
     }
     
+    /**
+     * The namespace map of an element only differs from that of its
+     * parent if the element declares namespaces, which most do not
+     */
+    private static Map<String, String> getEffectiveNamespaceMap(XMLStreamReader reader, Map<String, String> namespaceMap) {
+        int namespaceCount = reader.getNamespaceCount();
+        if (namespaceCount == 0) return namespaceMap;
+        
+        Map<String, String> retVal = new HashMap<String, String>(namespaceMap);
+        for (int nLcv = 0; nLcv < namespaceCount; nLcv++) {
+            retVal.put(reader.getNamespacePrefix(nLcv), reader.getNamespaceURI(nLcv));
+        }
+        
+        return retVal;
+    }
+    
+    /**
+     * Sets a single valued non-child property.  Primitive values are
+     * parsed and set without being boxed
+     */
+    private static void setValue(BaseHK2JAXBBean target,
+            String propName,
+            String value,
+            Class<?> childType,
+            Map<String, String> namespaceMap) {
+        if (value != null && !JAUtilities.JAXB_DEFAULT_DEFAULT.equals(value) && childType.isPrimitive()) {
+            if (int.class.equals(childType)) {
+                target._setProperty(propName, Integer.parseInt(value));
+                return;
+            }
+            if (long.class.equals(childType)) {
+                target._setProperty(propName, Long.parseLong(value));
+                return;
+            }
+            if (boolean.class.equals(childType)) {
+                target._setProperty(propName, Boolean.parseBoolean(value));
+                return;
+            }
+            if (short.class.equals(childType)) {
+                target._setProperty(propName, Short.parseShort(value));
+                return;
+            }
+            if (byte.class.equals(childType)) {
+                target._setProperty(propName, Byte.parseByte(value));
+                return;
+            }
+            if (char.class.equals(childType)) {
+                target._setProperty(propName, value.charAt(0));
+                return;
+            }
+            if (float.class.equals(childType)) {
+                target._setProperty(propName, Float.parseFloat(value));
+                return;
+            }
+            if (double.class.equals(childType)) {
+                target._setProperty(propName, Double.parseDouble(value));
+                return;
+            }
+        }
+        
+        target._setProperty(propName, Utilities.getDefaultValue(value, childType, namespaceMap));
+    }
+    
     private static String advanceNonChildElement(XMLStreamReader reader, String outerTag) throws Exception {
         String retVal = null;
         
@@ -464,8 +447,7 @@ public class XmlStreamImpl {
             String outerElementTag,
             Map<String, String> namespaceMap,
             String xmlWrapper,
-            Map<String, List<BaseHK2JAXBBean>> listChildren,
-            Map<String, List<BaseHK2JAXBBean>> arrayChildren) throws Exception {
+            PendingChildren pending) throws Exception {
         ModelImpl targetModel = target._getModel();
         Map<String, ParentedModel> childProperties = targetModel.getChildrenByName();
         
@@ -484,13 +466,9 @@ public class XmlStreamImpl {
             
             switch (event) {
             case XMLStreamConstants.START_ELEMENT:
-                String elementTag = reader.getName().getLocalPart();
+                String elementTag = reader.getLocalName();
                 
-                Map<String, String> effectiveNamespaceMap = new HashMap<String, String>(namespaceMap);
-                int namespaceCount = reader.getNamespaceCount();
-                for (int nLcv = 0; nLcv < namespaceCount; nLcv++) {
-                    effectiveNamespaceMap.put(reader.getNamespacePrefix(nLcv), reader.getNamespaceURI(nLcv));
-                }
+                Map<String, String> effectiveNamespaceMap = getEffectiveNamespaceMap(reader, namespaceMap);
                 
                 ParentedModel informedChild = childProperties.get(elementTag);
                 if (informedChild != null && GeneralUtilities.safeEquals(xmlWrapper, informedChild.getXmlWrapperTag())) {
@@ -508,26 +486,15 @@ public class XmlStreamImpl {
                         target._setProperty(elementTag, hk2Root);
                     }
                     else if (informedChild.getChildType().equals(ChildType.LIST)) {
-                        List<BaseHK2JAXBBean> cList = listChildren.get(elementTag);
-                        if (cList == null) {
-                            cList = new ArrayList<BaseHK2JAXBBean>();
-                            listChildren.put(elementTag, cList);
-                        }
-                        cList.add(hk2Root);
+                        pending.addListChild(elementTag, hk2Root);
                     }
                     else if (informedChild.getChildType().equals(ChildType.ARRAY)) {
-                        List<BaseHK2JAXBBean> cList = arrayChildren.get(elementTag);
-                        if (cList == null) {
-                            cList = new LinkedList<BaseHK2JAXBBean>();
-                            arrayChildren.put(elementTag, cList);
-                        }
-                        cList.add(hk2Root);
+                        pending.addArrayChild(elementTag, hk2Root);
                     }
                     
                 }
                 break;
             case XMLStreamConstants.END_ELEMENT:
-                reader.getName().getLocalPart();
                 return;
             default:
                 // All others ignored
@@ -552,7 +519,7 @@ public class XmlStreamImpl {
             
             if (XMLStreamConstants.END_ELEMENT != event) continue;
                 
-            String elementTag = reader.getName().getLocalPart();
+            String elementTag = reader.getLocalName();
             if (skipOverTag.equals(elementTag)) return;
         }
     }
@@ -707,9 +674,123 @@ public class XmlStreamImpl {
         indenter.writeEndElement();
     }
     
+    /**
+     * The children and values of an element that can only be set once
+     * the element has ended.  The maps are only created when needed,
+     * since most elements have none of these
+     */
+    private static class PendingChildren {
+        private Map<String, List<BaseHK2JAXBBean>> listChildren;
+        private Map<String, List<BaseHK2JAXBBean>> arrayChildren;
+        private Map<String, List<Object>> listNonChild;
+        private Map<String, ArrayInformation> arrayNonChild;
+        
+        private void addListChild(String childTag, BaseHK2JAXBBean child) {
+            if (listChildren == null) {
+                listChildren = new HashMap<String, List<BaseHK2JAXBBean>>();
+            }
+            
+            List<BaseHK2JAXBBean> cList = listChildren.get(childTag);
+            if (cList == null) {
+                cList = new ArrayList<BaseHK2JAXBBean>();
+                listChildren.put(childTag, cList);
+            }
+            cList.add(child);
+        }
+        
+        private void addArrayChild(String childTag, BaseHK2JAXBBean child) {
+            if (arrayChildren == null) {
+                arrayChildren = new HashMap<String, List<BaseHK2JAXBBean>>();
+            }
+            
+            List<BaseHK2JAXBBean> cList = arrayChildren.get(childTag);
+            if (cList == null) {
+                cList = new ArrayList<BaseHK2JAXBBean>();
+                arrayChildren.put(childTag, cList);
+            }
+            cList.add(child);
+        }
+        
+        private void addListNonChild(String childTag, Object value) {
+            if (listNonChild == null) {
+                listNonChild = new HashMap<String, List<Object>>();
+            }
+            
+            List<Object> listObjects = listNonChild.get(childTag);
+            if (listObjects == null) {
+                listObjects = new ArrayList<Object>();
+                listNonChild.put(childTag, listObjects);
+            }
+            listObjects.add(value);
+        }
+        
+        private void addArrayNonChild(String childTag, Class<?> aType, Object value) {
+            if (arrayNonChild == null) {
+                arrayNonChild = new HashMap<String, ArrayInformation>();
+            }
+            
+            ArrayInformation ai = arrayNonChild.get(childTag);
+            if (ai == null) {
+                ai = new ArrayInformation(aType);
+                arrayNonChild.put(childTag, ai);
+            }
+            ai.add(value);
+        }
+        
+        private void setAll(BaseHK2JAXBBean target, ModelImpl targetModel) {
+            if (listChildren != null) {
+                for (Map.Entry<String, List<BaseHK2JAXBBean>> entry : listChildren.entrySet()) {
+                    // Kind of cheating with the erasure, but hey, it works!
+                    target._setProperty(entry.getKey(), entry.getValue());
+                }
+            }
+            
+            if (arrayChildren != null) {
+                for (Map.Entry<String, List<BaseHK2JAXBBean>> entry : arrayChildren.entrySet()) {
+                    String childTag = entry.getKey();
+                    ParentedModel pn = targetModel.getChild(childTag);
+                    Class<?> childType = pn.getChildModel().getOriginalInterfaceAsClass();
+                    
+                    List<BaseHK2JAXBBean> individuals = entry.getValue();
+                    
+                    Object actualArray = Array.newInstance(childType, individuals.size());
+                    
+                    int index = 0;
+                    for (BaseHK2JAXBBean individual : individuals) {
+                        Array.set(actualArray, index++, individual);
+                    }
+                    
+                    target._setProperty(childTag, actualArray);
+                }
+            }
+            
+            if (listNonChild != null) {
+                for (Map.Entry<String, List<Object>> entry : listNonChild.entrySet()) {
+                    target._setProperty(entry.getKey(), entry.getValue());
+                }
+            }
+            
+            if (arrayNonChild != null) {
+                for (Map.Entry<String, ArrayInformation> entry : arrayNonChild.entrySet()) {
+                    String childTag = entry.getKey();
+                    ArrayInformation ai = entry.getValue();
+                    
+                    Object actualArray = Array.newInstance(ai.getAType(), ai.getValues().size());
+                    
+                    int lcv = 0;
+                    for (Object value : ai.getValues()) {
+                        Array.set(actualArray, lcv++, value);
+                    }
+                    
+                    target._setProperty(childTag, actualArray);
+                }
+            }
+        }
+    }
+    
     private static class ArrayInformation {
         private final Class<?> aType;
-        private final List<Object> values = new LinkedList<Object>();
+        private final List<Object> values = new ArrayList<Object>();
         
         private ArrayInformation(Class<?> aType) {
             this.aType = aType;
@@ -103,11 +103,12 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
     public final static char XML_PATH_SEPARATOR = '/';
     
     /**
-     * All fields, including child lists and direct children
+     * All fields, including child lists and direct children,
+     * in the slots given to them by the model
      */
-    private HashMap<String, Object> beanLikeMap = new HashMap<String, Object>();
+    private BeanLikeMap beanLikeMap = new BeanLikeMap(_getModel().getSlotLayout());
     
-    private HashMap<String, Object> backupMap = null;
+    private BeanLikeMap backupMap = null;
     
     /**
      * All children whose type has an identifier.  First key is the xml parameter name, second
@@ -343,7 +344,7 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
                     }
                 
                     if (backupMap == null) {
-                        backupMap = new HashMap<String, Object>(beanLikeMap);
+                        backupMap = new BeanLikeMap(beanLikeMap);
                     }
                 
                     beanLikeMap.put(propName, propValue);
@@ -363,51 +364,93 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
     public void _setProperty(String propName, byte propValue) {
         if (propName == null) throw new IllegalArgumentException("properyName may not be null");
         
+        if (_setPrimitiveProperty(propName, 'B', propValue)) return;
+        
         _setProperty(propName, (Byte) propValue);
     }
     
     public void _setProperty(String propName, boolean propValue) {
         if (propName == null) throw new IllegalArgumentException("properyName may not be null");
         
+        if (_setPrimitiveProperty(propName, 'Z', propValue ? 1L : 0L)) return;
+        
         _setProperty(propName, (Boolean) propValue);
     }
     
     public void _setProperty(String propName, char propValue) {
         if (propName == null) throw new IllegalArgumentException("properyName may not be null");
         
+        if (_setPrimitiveProperty(propName, 'C', propValue)) return;
+        
         _setProperty(propName, (Character) propValue);
     }
     
     public void _setProperty(String propName, short propValue) {
         if (propName == null) throw new IllegalArgumentException("properyName may not be null");
         
+        if (_setPrimitiveProperty(propName, 'S', propValue)) return;
+        
         _setProperty(propName, (Short) propValue);
     }
     
     public void _setProperty(String propName, int propValue) {
         if (propName == null) throw new IllegalArgumentException("properyName may not be null");
         
+        if (_setPrimitiveProperty(propName, 'I', propValue)) return;
+        
         _setProperty(propName, (Integer) propValue);
     }
     
     public void _setProperty(String propName, float propValue) {
         if (propName == null) throw new IllegalArgumentException("properyName may not be null");
         
+        if (_setPrimitiveProperty(propName, 'F', Float.floatToRawIntBits(propValue))) return;
+        
         _setProperty(propName, (Float) propValue);
     }
     
     public void _setProperty(String propName, long propValue) {
         if (propName == null) throw new IllegalArgumentException("properyName may not be null");
         
+        if (_setPrimitiveProperty(propName, 'J', propValue)) return;
+        
         _setProperty(propName, (Long) propValue);
     }
     
     public void _setProperty(String propName, double propValue) {
         if (propName == null) throw new IllegalArgumentException("properyName may not be null");
         
+        if (_setPrimitiveProperty(propName, 'D', Double.doubleToRawLongBits(propValue))) return;
+        
         _setProperty(propName, (Double) propValue);
     }
     
+    /**
+     * Sets a primitive property straight into its slot without
+     * boxing it.  This can only be done while the bean is not
+     * yet part of a tree, as otherwise the change must go
+     * through the listeners and the hub
+     * 
+     * @return false if the property was not set, in which case
+     * the caller must set the boxed value instead
+     */
+    private boolean _setPrimitiveProperty(String propName, char kind, long bits) {
+        if (changeControl != null) return false;
+        
+        if (DEBUG_GETS_AND_SETS) {
+            // Hidden behind static because of potential expensive toString costs
+            Logger.getLogger().debug("XmlService setting primitive property " + propName + " of kind " + kind + " to bits " + bits + " in " + this);
+        }
+        
+        if (active) {
+            synchronized (this) {
+                return beanLikeMap.putBits(propName, kind, bits);
+            }
+        }
+        
+        return beanLikeMap.putBits(propName, kind, bits);
+    }
+    
     private Object _getProperty(String propName, Class<?> expectedClass) {
         return _getProperty(propName, expectedClass, null);
     }
@@ -920,15 +963,15 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
         if (changeControl == null) {
             if (active) {
                 synchronized (this) {
-                    return Collections.unmodifiableMap(new HashMap<String, Object>(beanLikeMap));
+                    return Collections.unmodifiableMap(beanLikeMap.toMap());
                 }
             }
-            return Collections.unmodifiableMap(new HashMap<String, Object>(beanLikeMap));
+            return Collections.unmodifiableMap(beanLikeMap.toMap());
         }
         
         changeControl.getReadLock().lock();
         try {
-            return Collections.unmodifiableMap(new HashMap<String, Object>(beanLikeMap));
+            return Collections.unmodifiableMap(beanLikeMap.toMap());
         }
         finally {
             changeControl.getReadLock().unlock();
@@ -1120,7 +1163,7 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
         
         WriteableType wt = wbd.getWriteableType(xmlPath);
         
-        HashMap<String, Object> modified = new HashMap<String, Object>(beanLikeMap);
+        HashMap<String, Object> modified = beanLikeMap.toMap();
         modified.put(propName, propValue);
             
         wt.modifyInstance(instanceName, modified);
@@ -1136,7 +1179,7 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
      */
     public boolean _changeInHub(List<PropertyChangeEvent> events, WriteableBeanDatabase wbd) {
         WriteableType wt = wbd.getWriteableType(xmlPath);
-        HashMap<String, Object> modified = new HashMap<String, Object>(beanLikeMap);
+        HashMap<String, Object> modified = beanLikeMap.toMap();
         List<PropertyChangeEvent> effectiveChanges = new ArrayList<PropertyChangeEvent>(events.size());
         
         for (PropertyChangeEvent event : events) {
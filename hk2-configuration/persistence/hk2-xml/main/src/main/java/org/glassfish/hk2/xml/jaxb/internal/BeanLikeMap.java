@@ -0,0 +1,235 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.xml.jaxb.internal;
+
+import java.io.Serializable;
+import java.util.HashMap;
+
+import org.glassfish.hk2.xml.internal.SlotLayout;
+
+/**
+ * The properties of a bean, kept in the slots given to them by
+ * the {@link SlotLayout} of the model of the bean.  Primitive
+ * properties are kept unboxed.  A property the layout knows
+ * nothing about, or a primitive property set to a value that
+ * is not of its type (such as null), is kept in an overflow map.
+ * <p>
+ * Like the HashMap it replaces this distinguishes between
+ * a property set to null and a property that was never set.
+ * This class is not thread safe, the bean does the locking
+ * 
+ * @author jwells
+ *
+ */
+final class BeanLikeMap implements Serializable {
+    private static final long serialVersionUID = 3218446357402961183L;
+    
+    private final SlotLayout layout;
+    private final Object references[];
+    private final long primitives[];
+    
+    /** One bit per slot, set if the slot has been given a value */
+    private final long set[];
+    
+    private HashMap<String, Object> overflow;
+    
+    /* package */ BeanLikeMap(SlotLayout layout) {
+        this.layout = layout;
+        
+        references = new Object[layout.getNumReferences()];
+        primitives = new long[layout.getNumPrimitives()];
+        set = new long[(layout.getNumSlots() + 63) >>> 6];
+    }
+    
+    /* package */ BeanLikeMap(BeanLikeMap copyMe) {
+        layout = copyMe.layout;
+        
+        references = copyMe.references.clone();
+        primitives = copyMe.primitives.clone();
+        set = copyMe.set.clone();
+        
+        if (copyMe.overflow != null) {
+            overflow = new HashMap<String, Object>(copyMe.overflow);
+        }
+    }
+    
+    /* package */ Object get(String propName) {
+        int slot = layout.getSlot(propName);
+        if (slot >= 0 && isSet(slot)) {
+            return getSlot(slot);
+        }
+        
+        if (overflow == null) return null;
+        return overflow.get(propName);
+    }
+    
+    /* package */ boolean containsKey(String propName) {
+        int slot = layout.getSlot(propName);
+        if (slot >= 0 && isSet(slot)) return true;
+        
+        if (overflow == null) return false;
+        return overflow.containsKey(propName);
+    }
+    
+    /* package */ void put(String propName, Object value) {
+        int slot = layout.getSlot(propName);
+        if (slot >= 0) {
+            char kind = layout.getKind(slot);
+            
+            if (kind == SlotLayout.REFERENCE) {
+                references[layout.getOffset(slot)] = value;
+                markSet(slot, propName);
+                return;
+            }
+            
+            if (isOfKind(kind, value)) {
+                primitives[layout.getOffset(slot)] = toBits(kind, value);
+                markSet(slot, propName);
+                return;
+            }
+            
+            set[slot >>> 6] &= ~(1L << slot);
+        }
+        
+        if (overflow == null) {
+            overflow = new HashMap<String, Object>();
+        }
+        overflow.put(propName, value);
+    }
+    
+    /**
+     * Sets a primitive property without boxing it
+     * 
+     * @param propName The name of the property
+     * @param kind The JVM descriptor character of the type of the value
+     * @param bits The value, as returned by {@link #toBits(char, Object)}
+     * @return false if the property does not have a slot of the given kind,
+     * in which case nothing was set
+     */
+    /* package */ boolean putBits(String propName, char kind, long bits) {
+        int slot = layout.getSlot(propName);
+        if (slot < 0 || layout.getKind(slot) != kind) return false;
+        
+        primitives[layout.getOffset(slot)] = bits;
+        markSet(slot, propName);
+        
+        return true;
+    }
+    
+    /**
+     * @return A new map with all of the properties that are set
+     */
+    /* package */ HashMap<String, Object> toMap() {
+        HashMap<String, Object> retVal = new HashMap<String, Object>();
+        
+        int numSlots = layout.getNumSlots();
+        for (int slot = 0; slot < numSlots; slot++) {
+            if (!isSet(slot)) continue;
+            
+            retVal.put(layout.getName(slot), getSlot(slot));
+        }
+        
+        if (overflow != null) {
+            retVal.putAll(overflow);
+        }
+        
+        return retVal;
+    }
+    
+    private boolean isSet(int slot) {
+        return (set[slot >>> 6] & (1L << slot)) != 0L;
+    }
+    
+    private void markSet(int slot, String propName) {
+        set[slot >>> 6] |= (1L << slot);
+        
+        if (overflow != null) {
+            overflow.remove(propName);
+        }
+    }
+    
+    private Object getSlot(int slot) {
+        char kind = layout.getKind(slot);
+        if (kind == SlotLayout.REFERENCE) {
+            return references[layout.getOffset(slot)];
+        }
+        
+        return fromBits(kind, primitives[layout.getOffset(slot)]);
+    }
+    
+    private static boolean isOfKind(char kind, Object value) {
+        switch (kind) {
+        case 'Z': return value instanceof Boolean;
+        case 'B': return value instanceof Byte;
+        case 'C': return value instanceof Character;
+        case 'S': return value instanceof Short;
+        case 'I': return value instanceof Integer;
+        case 'F': return value instanceof Float;
+        case 'J': return value instanceof Long;
+        case 'D': return value instanceof Double;
+        default: return false;
+        }
+    }
+    
+    /* package */ static long toBits(char kind, Object value) {
+        switch (kind) {
+        case 'Z': return ((Boolean) value).booleanValue() ? 1L : 0L;
+        case 'C': return ((Character) value).charValue();
+        case 'F': return Float.floatToRawIntBits(((Float) value).floatValue());
+        case 'D': return Double.doubleToRawLongBits(((Double) value).doubleValue());
+        default: return ((Number) value).longValue();
+        }
+    }
+    
+    private static Object fromBits(char kind, long bits) {
+        switch (kind) {
+        case 'Z': return (bits != 0L);
+        case 'B': return (byte) bits;
+        case 'C': return (char) bits;
+        case 'S': return (short) bits;
+        case 'I': return (int) bits;
+        case 'F': return Float.intBitsToFloat((int) bits);
+        case 'J': return bits;
+        case 'D': return Double.longBitsToDouble(bits);
+        default: throw new AssertionError("Unknown kind " + kind);
+        }
+    }
+}
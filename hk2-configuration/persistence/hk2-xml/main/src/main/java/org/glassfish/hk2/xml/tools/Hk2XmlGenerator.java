@@ -46,6 +46,11 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
 import java.util.Set;
 
 import javassist.ClassPool;
@@ -59,6 +64,7 @@ import javax.annotation.processing.SupportedAnnotationTypes;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
 import javax.tools.Diagnostic.Kind;
 import javax.tools.JavaFileObject;
 
@@ -66,6 +72,12 @@ import org.glassfish.hk2.xml.internal.Generator;
 import org.glassfish.hk2.xml.internal.alt.papi.TypeElementAltClassImpl;
 
 /**
+ * Generates the proxies of the interfaces annotated with
+ * {@link org.glassfish.hk2.xml.api.annotations.Hk2XmlPreGenerate}
+ * at build time, along with the proxies of the interfaces of their
+ * children that are compiled with them.  The XmlService loads
+ * these proxies rather than generating them when first used
+ * 
  * @author jwells
  *
  */
@@ -75,6 +87,9 @@ public class Hk2XmlGenerator extends AbstractProcessor {
     private ClassPool defaultClassPool;
     private CtClass superClazz;
     
+    /** The interfaces whose proxies have already been written, in any round */
+    private final Set<String> generated = new HashSet<String>();
+    
     /**
      * Gets rid of warnings and this code should work with all source versions
      */
@@ -137,24 +152,33 @@ public class Hk2XmlGenerator extends AbstractProcessor {
             RoundEnvironment roundEnv) {
         Filer filer = processingEnv.getFiler();
         
+        Map<String, TypeElement> compiled = null;
+        
         for (TypeElement annotation : annotations) {
             Set<? extends Element> clazzes = roundEnv.getElementsAnnotatedWith(annotation);
             
+            LinkedList<TypeElement> toGenerate = new LinkedList<TypeElement>();
             for (Element clazzElement : clazzes) {
                 if (!(clazzElement instanceof TypeElement)) continue;
                 
-                initializeHk2XmlGenerator();
+                toGenerate.add((TypeElement) clazzElement);
+            }
+            
+            while (!toGenerate.isEmpty()) {
+                TypeElement clazz = toGenerate.removeFirst();
+                if (!generated.add(getBinaryName(clazz))) continue;
                 
-                TypeElement clazz = (TypeElement) clazzElement;
+                initializeHk2XmlGenerator();
                 
                 TypeElementAltClassImpl altClass = new TypeElementAltClassImpl(clazz, processingEnv);
                 
                 try {
-                    CtClass ctClass = Generator.generate(altClass, superClazz, defaultClassPool);
+                    Set<String> childInterfaces = new LinkedHashSet<String>();
+                    CtClass ctClass = Generator.generate(altClass, superClazz, defaultClassPool, childInterfaces);
                     
                     String ctClassName = ctClass.getName();
                     
-                    JavaFileObject jfo = filer.createClassFile(ctClassName, clazzElement);
+                    JavaFileObject jfo = filer.createClassFile(ctClassName, clazz);
                     
                     OutputStream outputStream = jfo.openOutputStream();
                     DataOutputStream dataOutputStream = null;
@@ -170,6 +194,17 @@ public class Hk2XmlGenerator extends AbstractProcessor {
                         
                         outputStream.close();
                     }
+                    
+                    // Children that are not compiled here are left to their own build or to runtime
+                    if (compiled == null) {
+                        compiled = new HashMap<String, TypeElement>();
+                        addTypes(roundEnv.getRootElements(), compiled);
+                    }
+                    
+                    for (String childInterface : childInterfaces) {
+                        TypeElement child = compiled.get(childInterface);
+                        if (child != null) toGenerate.add(child);
+                    }
                 }
                 catch (Throwable e) {
                     String msg = e.getMessage();
@@ -183,5 +218,17 @@ public class Hk2XmlGenerator extends AbstractProcessor {
         
         return true;
     }
+    
+    private void addTypes(Iterable<? extends Element> elements, Map<String, TypeElement> types) {
+        for (TypeElement type : ElementFilter.typesIn(elements)) {
+            types.put(getBinaryName(type), type);
+            
+            addTypes(type.getEnclosedElements(), types);
+        }
+    }
+    
+    private String getBinaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
 
 }
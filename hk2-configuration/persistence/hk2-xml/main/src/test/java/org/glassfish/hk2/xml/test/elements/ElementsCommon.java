@@ -229,6 +229,9 @@ public class ElementsCommon {
         
         Assert.assertEquals(15, root.getOneNumber());
         
+        // Kept unboxed by the bean, but boxed again in the bean-like map
+        Assert.assertEquals(15, ((XmlHk2ConfigurationBean) root)._getBeanLikeMap().get("one-number"));
+        
         List<String> strings = root.getStrings();
         Assert.assertEquals(3, strings.size());
         
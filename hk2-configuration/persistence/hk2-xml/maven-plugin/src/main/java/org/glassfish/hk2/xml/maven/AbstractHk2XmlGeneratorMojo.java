@@ -0,0 +1,254 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.xml.maven;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.FileUtils;
+import org.glassfish.hk2.xml.tools.Hk2XmlGenerator;
+
+/**
+ * Runs the {@link Hk2XmlGenerator} over the sources of a project
+ * so that the proxies of the interfaces annotated with
+ * {@link org.glassfish.hk2.xml.api.annotations.Hk2XmlPreGenerate}
+ * (and of their children) are written next to the compiled classes.
+ * The XmlService then loads these proxies and never needs to start
+ * Javassist for them
+ * 
+ * @author jwells
+ */
+public abstract class AbstractHk2XmlGeneratorMojo extends AbstractMojo {
+    /**
+     * The maven project.
+     *
+     * @parameter expression="${project}" @required @readonly
+     */
+    protected MavenProject project;
+    
+    /**
+     * @parameter
+     */
+    private boolean verbose;
+    
+    /**
+     * @parameter expression="${hk2xml.skip}" default-value="false"
+     */
+    private boolean skip;
+    
+    /**
+     * @parameter expression="${supportedProjectTypes}" default-value="jar"
+     */
+    private String supportedProjectTypes;
+    
+    /**
+     * @parameter expression="${includes}" default-value="**\/*.java"
+     */
+    private String includes;
+    
+    /**
+     * @parameter expression="${excludes}" default-value=""
+     */
+    private String excludes;
+    
+    protected abstract File getSourceDirectory();
+    protected abstract File getOutputDirectory();
+    
+    private void internalExecute() throws Throwable {
+        if (skip) {
+            getLog().info("hk2-xml proxy generation is skipped");
+            return;
+        }
+        
+        List<String> projectTypes = Arrays.asList(supportedProjectTypes.split(","));
+        if(!projectTypes.contains(project.getPackaging())
+                || !getSourceDirectory().exists() 
+                || !getSourceDirectory().isDirectory()){
+            return;
+        }
+        
+        if (!getOutputDirectory().exists()) {
+            if (!getOutputDirectory().mkdirs()) {
+                throw new MojoExecutionException("Could not create output directory " +
+                        getOutputDirectory().getAbsolutePath());
+            }
+        }
+        
+        // Only annotation processing, the classes written are the proxies
+        List<String> options = new ArrayList<String>();
+        options.add("-proc:only");
+        options.add("-d");
+        options.add(getOutputDirectory().getAbsolutePath());
+        options.add("-cp");
+        options.add(getBuildClasspath());
+        List<String> classNames = new ArrayList<String>();
+        classNames.addAll(FileUtils.getFileNames(getSourceDirectory(), includes, excludes,true));
+        
+        if(classNames.isEmpty()){
+            getLog().info("No source file");
+            return;
+        }
+        
+        if(verbose){
+            getLog().info("");
+            getLog().info("-- AnnotationProcessing Command Line --");
+            getLog().info("");
+            getLog().info(options.toString());
+            getLog().info(classNames.toString());
+            getLog().info("");
+        }
+        
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new MojoExecutionException("hk2-xml-maven-plugin needs a JDK, no system java compiler was found");
+        }
+        
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+        try {
+            Iterable<? extends JavaFileObject> compilationUnits = fileManager.getJavaFileObjectsFromStrings(classNames);
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null, compilationUnits);
+            task.setProcessors(Collections.singleton(new Hk2XmlGenerator()));
+            
+            boolean compilationResult = task.call();
+            if(verbose) {
+                getLog().info("Result: " + (compilationResult ? "OK" : "!!! failed !!!"));
+            }
+            
+            if (!compilationResult) {
+                for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                    if (!Diagnostic.Kind.ERROR.equals(diagnostic.getKind())) continue;
+                    
+                    getLog().error(diagnostic.toString());
+                }
+                
+                throw new MojoFailureException("hk2-xml proxy generation failed for " + getSourceDirectory().getAbsolutePath());
+            }
+        }
+        finally {
+            fileManager.close();
+        }
+        
+        if (getLog().isInfoEnabled()) {
+            getLog().info("hk2-xml proxies written to " + getOutputDirectory().getAbsolutePath());
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.apache.maven.plugin.Mojo#execute()
+     */
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        try {
+          internalExecute();
+        }
+        catch (Throwable th) {
+            if (th instanceof MojoExecutionException) {
+                throw (MojoExecutionException) th;
+            }
+            if (th instanceof MojoFailureException) {
+                throw (MojoFailureException) th;
+            }
+            
+            Throwable cause = th;
+            int lcv = 0;
+            while (cause != null) {
+                getLog().error("Exception from hk2-xml-maven-plugin[" + lcv++ + "]=" + cause.getMessage());
+                
+                cause = cause.getCause();
+            }
+            
+            throw new MojoExecutionException(th.getMessage(), th);
+        }
+    }
+    
+    private String getBuildClasspath() {
+        StringBuilder sb = new StringBuilder();
+        
+        sb.append(project.getBuild().getOutputDirectory());
+        sb.append(File.pathSeparator);
+        
+        if (!getOutputDirectory().getAbsolutePath().equals(
+                project.getBuild().getOutputDirectory())) {
+            
+            sb.append(getOutputDirectory().getAbsolutePath());
+            sb.append(File.pathSeparator);
+        }
+        
+        List<Artifact> artList = new ArrayList<Artifact>(project.getArtifacts());
+        Iterator<Artifact> i = artList.iterator();
+        
+        if (i.hasNext()) {
+            sb.append(i.next().getFile().getPath());
+
+            while (i.hasNext()) {
+                sb.append(File.pathSeparator);
+                sb.append(i.next().getFile().getPath());
+            }
+        }
+        
+        String classpath = sb.toString();
+        if(verbose){
+            getLog().info("");
+            getLog().info("-- Classpath --");
+            getLog().info("");
+            getLog().info(classpath);
+            getLog().info("");
+        }
+        return classpath;
+    }
+}
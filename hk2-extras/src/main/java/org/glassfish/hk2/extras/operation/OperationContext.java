@@ -40,12 +40,14 @@
 package org.glassfish.hk2.extras.operation;
 
 import java.lang.annotation.Annotation;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 
 import org.glassfish.hk2.api.ActiveDescriptor;
 import org.glassfish.hk2.api.Context;
@@ -79,17 +81,20 @@ import org.jvnet.hk2.annotations.Contract;
  * <p>
  * Classes extending this class may also choose to override the method
  * {@link Context#supportsNullCreation()} which returns false by default
+ * <p>
+ * The services of each operation are kept in a separate store with its
+ * own lock, so that lookups in different operations never contend
+ * with each other
  * 
  * @author jwells
  */
 @Contract
 public abstract class OperationContext<T extends Annotation> implements Context<T> {
-    private SingleOperationManager<T> manager;
-    private final HashMap<OperationHandleImpl<T>, LinkedHashMap<ActiveDescriptor<?>, Object>> operationMap =
-            new HashMap<OperationHandleImpl<T>, LinkedHashMap<ActiveDescriptor<?>, Object>>();
-    private final HashSet<ActiveDescriptor<?>> creating = new HashSet<ActiveDescriptor<?>>();
-    private final HashMap<Long, LinkedList<OperationHandleImpl<T>>> closingOperations = new HashMap<Long, LinkedList<OperationHandleImpl<T>>>();
-    private boolean shuttingDown = false;
+    private volatile SingleOperationManager<T> manager;
+    private final ConcurrentHashMap<OperationHandleImpl<T>, OperationServices> operationMap =
+            new ConcurrentHashMap<OperationHandleImpl<T>, OperationServices>();
+    private final ThreadLocal<LinkedList<OperationHandleImpl<T>>> closingOperations = new ThreadLocal<LinkedList<OperationHandleImpl<T>>>();
+    private volatile boolean shuttingDown = false;
 
     /* (non-Javadoc)
      * @see org.glassfish.hk2.api.Context#findOrCreate(org.glassfish.hk2.api.ActiveDescriptor, org.glassfish.hk2.api.ServiceHandle)
@@ -98,15 +103,9 @@ public abstract class OperationContext<T extends Annotation> implements Context<
     @Override
     public <U> U findOrCreate(ActiveDescriptor<U> activeDescriptor,
             ServiceHandle<?> root) {
-        SingleOperationManager<T> localManager;
-        LinkedList<OperationHandleImpl<T>> closingOperationStack;
-        boolean closingOperation;
-        
-        synchronized (this) {
-            localManager = manager;
-            closingOperationStack = closingOperations.get(Thread.currentThread().getId());
-            closingOperation = (closingOperationStack != null && !closingOperationStack.isEmpty());
-        }
+        SingleOperationManager<T> localManager = manager;
+        LinkedList<OperationHandleImpl<T>> closingOperationStack = closingOperations.get();
+        boolean closingOperation = (closingOperationStack != null && !closingOperationStack.isEmpty());
         
         if (localManager == null) {
             throw new IllegalStateException("There is no manager for " +
@@ -115,62 +114,64 @@ public abstract class OperationContext<T extends Annotation> implements Context<
         
         OperationHandleImpl<T> operation = localManager.getCurrentOperationOnThisThread();
         if (operation == null) {
-            synchronized (this) {
-                if (!closingOperation) {
-                    throw new IllegalStateException("There is no current operation of type " +
-                            getScope().getName() + " on thread " + Thread.currentThread().getId());
-                }
-                
-                operation = closingOperationStack.get(0);
+            if (!closingOperation) {
+                throw new IllegalStateException("There is no current operation of type " +
+                        getScope().getName() + " on thread " + Thread.currentThread().getId());
             }
+            
+            operation = closingOperationStack.getFirst();
         }
         
-        LinkedHashMap<ActiveDescriptor<?>, Object> serviceMap;
-        synchronized (this) {
-            serviceMap = operationMap.get(operation);
-            if (serviceMap == null) {
-                if (closingOperation || shuttingDown) {
-                    throw new IllegalStateException("The operation " + operation.getIdentifier() +
-                            " is closing.  A new instance of " + activeDescriptor +
-                            " cannot be created");
-                }
-                
-                serviceMap = new LinkedHashMap<ActiveDescriptor<?>, Object>();
-                operationMap.put(operation, serviceMap);
-            }
-            
-            Object retVal = serviceMap.get(activeDescriptor);
-            if (retVal != null) return (U) retVal;
-            
-            if (supportsNullCreation() && serviceMap.containsKey(activeDescriptor)) {
-                return null;
-            }
-            
+        OperationServices services = operationMap.get(operation);
+        if (services == null) {
             if (closingOperation || shuttingDown) {
                 throw new IllegalStateException("The operation " + operation.getIdentifier() +
                         " is closing.  A new instance of " + activeDescriptor +
-                        " cannot be created after searching existing descriptors");
+                        " cannot be created");
             }
             
-            // retVal is null, and this is not an explicit null, so must actually do the creation
-            while (creating.contains(activeDescriptor)) {
-                try {
-                    this.wait();
+            OperationServices added = new OperationServices();
+            services = operationMap.putIfAbsent(operation, added);
+            if (services == null) services = added;
+        }
+        
+        CountDownLatch created;
+        while (true) {
+            CountDownLatch inFlight;
+            synchronized (services) {
+                Object retVal = services.services.get(activeDescriptor);
+                if (retVal != null) return (U) retVal;
+                
+                if (supportsNullCreation() && services.services.containsKey(activeDescriptor)) {
+                    return null;
                 }
-                catch (InterruptedException e) {
-                    throw new RuntimeException(e);
+                
+                if (closingOperation || shuttingDown || services.closed) {
+                    throw new IllegalStateException("The operation " + operation.getIdentifier() +
+                            " is closing.  A new instance of " + activeDescriptor +
+                            " cannot be created after searching existing descriptors");
+                }
+                
+                if (services.creating == null) {
+                    services.creating = new HashMap<ActiveDescriptor<?>, CountDownLatch>();
+                }
+                
+                inFlight = services.creating.get(activeDescriptor);
+                if (inFlight == null) {
+                    // Not in creating, and not created.  Create it ourselves
+                    created = new CountDownLatch(1);
+                    services.creating.put(activeDescriptor, created);
+                    break;
                 }
             }
             
-            retVal = serviceMap.get(activeDescriptor);
-            if (retVal != null) return (U) retVal;
-            
-            if (supportsNullCreation() && serviceMap.containsKey(activeDescriptor)) {
-                return null;
+            // Another thread is creating it, wait outside of the lock and look again
+            try {
+                inFlight.await();
+            }
+            catch (InterruptedException e) {
+                throw new RuntimeException(e);
             }
-            
-            // Not in creating, and not created.  Create it ourselves
-            creating.add(activeDescriptor);
         }
         
         Object retVal = null;
@@ -185,14 +186,15 @@ public abstract class OperationContext<T extends Annotation> implements Context<
             success = true;
         }
         finally {
-            synchronized (this) {
+            synchronized (services) {
                 if (success) {
-                    serviceMap.put(activeDescriptor, retVal);
+                    services.services.put(activeDescriptor, retVal);
                 }
                 
-                creating.remove(activeDescriptor);
-                this.notifyAll();
+                services.creating.remove(activeDescriptor);
             }
+            
+            created.countDown();
         }
         
         return (U) retVal;
@@ -203,24 +205,18 @@ public abstract class OperationContext<T extends Annotation> implements Context<
      */
     @Override
     public boolean containsKey(ActiveDescriptor<?> descriptor) {
-        SingleOperationManager<T> localManager;
-        synchronized (this) {
-            localManager = manager;
-        }
+        SingleOperationManager<T> localManager = manager;
         if (localManager == null) return false;
         
         OperationHandleImpl<T> operation = localManager.getCurrentOperationOnThisThread();
         if (operation == null) return false;
         
-        synchronized (this) {
-            HashMap<ActiveDescriptor<?>, Object> serviceMap;
-            
-            serviceMap = operationMap.get(operation);
-            if (serviceMap == null) return false;
-            
-            return serviceMap.containsKey(descriptor);
-        }
+        OperationServices services = operationMap.get(operation);
+        if (services == null) return false;
         
+        synchronized (services) {
+            return services.services.containsKey(descriptor);
+        }
     }
 
     /* (non-Javadoc)
@@ -229,43 +225,42 @@ public abstract class OperationContext<T extends Annotation> implements Context<
     @SuppressWarnings("unchecked")
     @Override
     public void destroyOne(ActiveDescriptor<?> descriptor) {
-        synchronized (this) {
-            for (HashMap<ActiveDescriptor<?>, Object> serviceMap : operationMap.values()) {
-                Object killMe = serviceMap.remove(descriptor);
-                if (killMe == null) continue;
-                
-                ((ActiveDescriptor<Object>) descriptor).dispose(killMe);
+        for (OperationServices services : operationMap.values()) {
+            Object killMe;
+            synchronized (services) {
+                killMe = services.services.remove(descriptor);
             }
+            if (killMe == null) continue;
+            
+            ((ActiveDescriptor<Object>) descriptor).dispose(killMe);
         }
     }
     
     @SuppressWarnings("unchecked")
     public void closeOperation(OperationHandleImpl<T> operation) {
-        long tid = Thread.currentThread().getId();
-        HashMap<ActiveDescriptor<?>, Object> serviceMap;
-        LinkedList<OperationHandleImpl<T>> stack;
-        
-        synchronized (this) {
-            stack = closingOperations.get(tid);
-            if (stack == null) {
-                stack = new LinkedList<OperationHandleImpl<T>>();
-                closingOperations.put(tid, stack);
-            }
-            
-            stack.addFirst(operation);
-            
-            serviceMap = operationMap.get(operation);
+        LinkedList<OperationHandleImpl<T>> stack = closingOperations.get();
+        if (stack == null) {
+            stack = new LinkedList<OperationHandleImpl<T>>();
+            closingOperations.set(stack);
         }
         
+        stack.addFirst(operation);
+        
+        OperationServices services = operationMap.get(operation);
+        
         try {
             // Must be done outside of the lock
             
-            if (serviceMap == null) return;
+            if (services == null) return;
         
             // Reverses creation order
             LinkedList<Map.Entry<ActiveDescriptor<?>, Object>> destructionList = new LinkedList<Map.Entry<ActiveDescriptor<?>, Object>>();
-            for (Map.Entry<ActiveDescriptor<?>, Object> entry : serviceMap.entrySet()) {
-                destructionList.addFirst(entry);
+            synchronized (services) {
+                services.closed = true;
+                
+                for (Map.Entry<ActiveDescriptor<?>, Object> entry : services.services.entrySet()) {
+                    destructionList.addFirst(entry);
+                }
             }
             
             for (Map.Entry<ActiveDescriptor<?>, Object> entry : destructionList) {
@@ -281,14 +276,10 @@ public abstract class OperationContext<T extends Annotation> implements Context<
             }
         }
         finally {
-            synchronized (this) {
-                operationMap.remove(operation);
+            operationMap.remove(operation);
             
-                stack.removeFirst();
-                if (stack.isEmpty()) {
-                    closingOperations.remove(tid);
-                }
-            }
+            // The empty stack is kept for the next close on this thread
+            stack.removeFirst();
         }
     }
     
@@ -297,11 +288,8 @@ public abstract class OperationContext<T extends Annotation> implements Context<
      */
     @Override
     public void shutdown() {
-        Set<OperationHandleImpl<T>> toShutDown;
-        synchronized (this) {
-            shuttingDown = true;
-            toShutDown = operationMap.keySet();
-        }
+        shuttingDown = true;
+        List<OperationHandleImpl<T>> toShutDown = new ArrayList<OperationHandleImpl<T>>(operationMap.keySet());
         
         try {
             for (OperationHandleImpl<T> shutDown : toShutDown) {
@@ -309,9 +297,7 @@ public abstract class OperationContext<T extends Annotation> implements Context<
             }
         }
         finally {
-            synchronized (this) {
-                operationMap.clear();
-            }
+            operationMap.clear();
         }
         
     }
@@ -332,7 +318,7 @@ public abstract class OperationContext<T extends Annotation> implements Context<
         return true;
     }
 
-    public synchronized void setOperationManager(SingleOperationManager<T> manager) {
+    public void setOperationManager(SingleOperationManager<T> manager) {
         this.manager = manager;
     }
     
@@ -340,4 +326,17 @@ public abstract class OperationContext<T extends Annotation> implements Context<
     public String toString() {
         return "OperationContext(" + getScope().getName() + "," + System.identityHashCode(this) + ")";
     }
+    
+    /**
+     * The services of a single operation.  All fields are
+     * protected by the lock of this object
+     * 
+     * @author jwells
+     *
+     */
+    private static class OperationServices {
+        private final LinkedHashMap<ActiveDescriptor<?>, Object> services = new LinkedHashMap<ActiveDescriptor<?>, Object>();
+        private HashMap<ActiveDescriptor<?>, CountDownLatch> creating;
+        private boolean closed = false;
+    }
 }
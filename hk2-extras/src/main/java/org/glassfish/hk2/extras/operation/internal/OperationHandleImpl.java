@@ -56,7 +56,7 @@ import org.glassfish.hk2.extras.operation.OperationState;
 public class OperationHandleImpl<T extends Annotation> implements OperationHandle<T> {
     private final SingleOperationManager<T> parent;
     private final OperationIdentifier<T> identifier;
-    private final Object operationLock;
+    private final Object operationLock = new Object();
     private OperationState state;
     private final HashSet<Long> activeThreads = new HashSet<Long>();
     
@@ -66,11 +66,9 @@ public class OperationHandleImpl<T extends Annotation> implements OperationHandl
     /* package */ OperationHandleImpl(
             SingleOperationManager<T> parent,
             OperationIdentifier<T> identifier,
-            Object operationLock,
             ServiceLocator locator) {
         this.parent = parent;
         this.identifier = identifier;
-        this.operationLock = operationLock;
         this.state = OperationState.SUSPENDED;
     }
 
@@ -92,11 +90,10 @@ public class OperationHandleImpl<T extends Annotation> implements OperationHandl
         }
     }
     
-    /**
-     * operationLock must be held
-     */
     /* package */ void shutdownByFiat() {
-        state = OperationState.CLOSED;
+        synchronized (operationLock) {
+            state = OperationState.CLOSED;
+        }
     }
     
     private void checkState() {
@@ -113,7 +110,7 @@ public class OperationHandleImpl<T extends Annotation> implements OperationHandl
     @Override
     public Set<Long> getActiveThreads() {
         synchronized (operationLock) {
-            return Collections.unmodifiableSet(activeThreads);
+            return Collections.unmodifiableSet(new HashSet<Long>(activeThreads));
         }
     }
 
@@ -155,7 +152,7 @@ public class OperationHandleImpl<T extends Annotation> implements OperationHandl
             if (activeThreads.contains(threadId)) return;
             
             // Check parent
-            OperationHandleImpl<T> existing = parent.getCurrentOperationOnThisThread(threadId);
+            OperationHandleImpl<T> existing = parent.associateWithThread(threadId, this);
             if (existing != null) {
                 throw new IllegalStateException("The operation " + existing + " is active on " + threadId);
             }
@@ -164,8 +161,6 @@ public class OperationHandleImpl<T extends Annotation> implements OperationHandl
                 state = OperationState.ACTIVE;
             }
             activeThreads.add(threadId);
-            
-            parent.associateWithThread(threadId, this);
         }
         
     }
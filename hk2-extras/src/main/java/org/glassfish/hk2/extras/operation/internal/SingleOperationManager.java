@@ -41,9 +41,11 @@ package org.glassfish.hk2.extras.operation.internal;
 
 import java.lang.annotation.Annotation;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.glassfish.hk2.api.ActiveDescriptor;
 import org.glassfish.hk2.api.ServiceLocator;
@@ -53,21 +55,26 @@ import org.glassfish.hk2.extras.operation.OperationIdentifier;
 import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
 
 /**
+ * Keeps the open operations of one scope and the association
+ * of threads with those operations.  No lock is held while
+ * creating operations or looking up the operation of a thread,
+ * so that a large number of short lived threads (such as virtual
+ * threads) can each run their own operation without contention
+ * 
  * @author jwells
  *
  */
 public class SingleOperationManager<T extends Annotation> {
     private final static String ID_PREAMBLE = "OperationIdentifier(";
     
-    private final Object operationLock = new Object();
     private final T scope;
-    private final HashMap<OperationIdentifier<T>, OperationHandleImpl<T>> openScopes = new HashMap<OperationIdentifier<T>, OperationHandleImpl<T>>();
-    private final HashMap<Long, OperationHandleImpl<T>> threadToHandleMap = new HashMap<Long, OperationHandleImpl<T>>();
+    private final ConcurrentHashMap<OperationIdentifier<T>, OperationHandleImpl<T>> openScopes = new ConcurrentHashMap<OperationIdentifier<T>, OperationHandleImpl<T>>();
+    private final ConcurrentHashMap<Long, OperationHandleImpl<T>> threadToHandleMap = new ConcurrentHashMap<Long, OperationHandleImpl<T>>();
     private final ServiceLocator locator;
     private final OperationContext<T> context;
-    private long scopedIdentifier;
+    private final AtomicLong scopedIdentifier = new AtomicLong();
     private final ActiveDescriptor<?> operationDescriptor;
-    private boolean closed = false;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
     
     /* package */ @SuppressWarnings("unchecked")
     SingleOperationManager(T scope,
@@ -97,28 +104,33 @@ public class SingleOperationManager<T extends Annotation> {
     
     private OperationIdentifierImpl<T> allocateNewIdentifier() {
         return new OperationIdentifierImpl<T>(
-                ID_PREAMBLE + scopedIdentifier++ + "," + scope.annotationType().getName() + ")",
+                ID_PREAMBLE + scopedIdentifier.getAndIncrement() + "," + scope.annotationType().getName() + ")",
                 scope);
     }
     
     public OperationHandleImpl<T> createOperation() {
+        if (closed.get()) {
+            throw new IllegalStateException("This manager has been closed");
+        }
         
-        synchronized (operationLock) {
-            if (closed) {
-                throw new IllegalStateException("This manager has been closed");
-            }
-            
-            OperationIdentifierImpl<T> id = allocateNewIdentifier();
-            OperationHandleImpl<T> created = new OperationHandleImpl<T>(this, id, operationLock, locator);
-            
-            openScopes.put(id, created);
+        OperationIdentifierImpl<T> id = allocateNewIdentifier();
+        OperationHandleImpl<T> created = new OperationHandleImpl<T>(this, id, locator);
+        
+        openScopes.put(id, created);
+        
+        if (closed.get()) {
+            // Lost a race with shutdown, which may not have seen this operation
+            openScopes.remove(id);
+            created.shutdownByFiat();
             
-            return created;
+            throw new IllegalStateException("This manager has been closed");
         }
+        
+        return created;
     }
 
     /**
-     * Called with the operationLock held
+     * Called with the lock of the operation held
      * 
      * @param closeMe The non-null operation to close
      */
@@ -127,7 +139,7 @@ public class SingleOperationManager<T extends Annotation> {
     }
     
     /**
-     * Explicitly called WITHOUT the operationLock held to avoid any deadlock
+     * Explicitly called WITHOUT the lock of the operation held to avoid any deadlock
      * with the context lock
      * 
      * @param closeMe The non-null operation to close
@@ -137,80 +149,62 @@ public class SingleOperationManager<T extends Annotation> {
     }
     
     /**
-     * OperationLock must be held
+     * Associates the thread with the handle unless another operation
+     * of this scope is already associated with the thread.  Called with
+     * the lock of the operation held
      * 
      * @param threadId The threadId to associate with this handle
      * @param handle The handle to be associated with this thread
+     * @return null if the thread is now associated with the handle,
+     * or the operation that was already associated with the thread
      */
-    /* package */ void associateWithThread(long threadId, OperationHandleImpl<T> handle) {
-        threadToHandleMap.put(threadId, handle);
+    /* package */ OperationHandleImpl<T> associateWithThread(long threadId, OperationHandleImpl<T> handle) {
+        return threadToHandleMap.putIfAbsent(threadId, handle);
     }
     
     /**
-     * OperationLock must be held
+     * Called with the lock of the operation held
      * 
      * @param threadId The threadId to disassociate with this handle
      */
     /* package */ void disassociateThread(long threadId, OperationHandleImpl<T> toRemove) {
-        OperationHandleImpl<T> activeOnThread = threadToHandleMap.get(threadId);
-        if (activeOnThread == null || !activeOnThread.equals(toRemove)) return;
-        
-        threadToHandleMap.remove(threadId);
-    }
-    
-    /**
-     * OperationLock must be held
-     * 
-     * @return The operation associated with the given thread
-     */
-    /* package */ OperationHandleImpl<T> getCurrentOperationOnThisThread(long threadId) {
-        return threadToHandleMap.get(threadId);
+        threadToHandleMap.remove(threadId, toRemove);
     }
     
     /**
-     * OperationLock need NOT be held
+     * No lock need be held
      * 
      * @return The operation associated with the current thread
      */
     public OperationHandleImpl<T> getCurrentOperationOnThisThread() {
-        long threadId = Thread.currentThread().getId();
+        if (closed.get()) return null;
         
-        synchronized (operationLock) {
-            if (closed) return null;
-            return getCurrentOperationOnThisThread(threadId);
-        }
+        return threadToHandleMap.get(Thread.currentThread().getId());
     }
     
     /* package */ Set<OperationHandle<T>> getAllOperations() {
-        HashSet<OperationHandle<T>> retVal = new HashSet<OperationHandle<T>>();
+        if (closed.get()) return Collections.emptySet();
         
-        synchronized (operationLock) {
-            if (closed) return Collections.emptySet();
-            
-            retVal.addAll(openScopes.values());
-            
-            return Collections.unmodifiableSet(retVal);
-        }
+        HashSet<OperationHandle<T>> retVal = new HashSet<OperationHandle<T>>(openScopes.values());
+        
+        return Collections.unmodifiableSet(retVal);
     }
     
     /* package */ void shutdown() {
-        synchronized (operationLock) {
-            if (closed) return;
-            closed = true;
-            
-            for (OperationHandleImpl<T> closeMe : openScopes.values()) {
-                closeMe.shutdownByFiat();
-            }
-            
-            openScopes.clear();
-            threadToHandleMap.clear();
-            
-            ServiceLocatorUtilities.removeOneDescriptor(locator, operationDescriptor);
+        if (!closed.compareAndSet(false, true)) return;
+        
+        for (OperationHandleImpl<T> closeMe : openScopes.values()) {
+            closeMe.shutdownByFiat();
         }
+        
+        openScopes.clear();
+        threadToHandleMap.clear();
+        
+        ServiceLocatorUtilities.removeOneDescriptor(locator, operationDescriptor);
     }
     
     @Override
     public String toString() {
-        return "SingleOperationManager(" + scope.annotationType().getName() + ",closed=" + closed + "," + System.identityHashCode(this) + ")";
+        return "SingleOperationManager(" + scope.annotationType().getName() + ",closed=" + closed.get() + "," + System.identityHashCode(this) + ")";
     }
 }
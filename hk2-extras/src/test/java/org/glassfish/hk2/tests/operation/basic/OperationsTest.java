@@ -41,7 +41,10 @@ package org.glassfish.hk2.tests.operation.basic;
 
 import java.lang.annotation.Annotation;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 
 import org.glassfish.hk2.api.ProxyCtl;
 import org.glassfish.hk2.api.ServiceLocator;
@@ -97,6 +100,9 @@ public class OperationsTest {
     private final static long FIRST_ID = 1;
     private final static long SECOND_ID = 2;
     
+    private final static int THREADS = 16;
+    private final static int OPERATIONS_PER_THREAD = 50;
+    
     public static ServiceLocator createLocator(Class<?>... clazzes) {
         ServiceLocator locator = Utilities.getUniqueLocator(clazzes);
         ExtrasUtilities.enableOperations(locator);
@@ -1082,6 +1088,130 @@ public class OperationsTest {
         operation1.closeOperation();
     }
     
+    /**
+     * Tests that many threads each running their own short
+     * operation get their own services and leave nothing behind
+     * @throws InterruptedException 
+     */
+    @Test // @org.junit.Ignore
+    public void testManyThreadsWithTheirOwnOperations() throws InterruptedException {
+        final ServiceLocator locator = createLocator(BasicOperationScopeContext.class,
+                CountedOperationService.class);
+        
+        final OperationManager operationManager = locator.getService(OperationManager.class);
+        final CountedOperationService service = locator.getService(CountedOperationService.class);
+        
+        CountedOperationService.reset();
+        
+        final List<Throwable> errors = new CopyOnWriteArrayList<Throwable>();
+        final Set<Object> ids = new HashSet<Object>();
+        Thread threads[] = new Thread[THREADS];
+        for (int lcv = 0; lcv < THREADS; lcv++) {
+            threads[lcv] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        for (int lcv = 0; lcv < OPERATIONS_PER_THREAD; lcv++) {
+                            OperationHandle<BasicOperationScope> operation = operationManager.createAndStartOperation(BASIC_OPERATION_ANNOTATION);
+                            
+                            Object id = service.getId();
+                            Assert.assertSame(id, service.getId());
+                            Assert.assertEquals(operation, operationManager.getCurrentOperation(BASIC_OPERATION_ANNOTATION));
+                            
+                            synchronized (ids) {
+                                Assert.assertTrue(ids.add(id));
+                            }
+                            
+                            operation.closeOperation();
+                            
+                            Assert.assertNull(operationManager.getCurrentOperation(BASIC_OPERATION_ANNOTATION));
+                        }
+                    }
+                    catch (Throwable th) {
+                        errors.add(th);
+                    }
+                }
+                
+            });
+            
+            threads[lcv].start();
+        }
+        
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        Assert.assertTrue(errors.toString(), errors.isEmpty());
+        Assert.assertEquals(THREADS * OPERATIONS_PER_THREAD, CountedOperationService.getCreated());
+        Assert.assertEquals(THREADS * OPERATIONS_PER_THREAD, CountedOperationService.getDestroyed());
+        Assert.assertTrue(operationManager.getCurrentOperations(BASIC_OPERATION_ANNOTATION).isEmpty());
+    }
+    
+    /**
+     * Tests that threads sharing one operation all get the
+     * same instance of a service even when they look it up
+     * at the same time
+     * @throws InterruptedException 
+     */
+    @Test // @org.junit.Ignore
+    public void testThreadsSharingAnOperationGetOneService() throws InterruptedException {
+        ServiceLocator locator = createLocator(BasicOperationScopeContext.class,
+                CountedOperationService.class);
+        
+        OperationManager operationManager = locator.getService(OperationManager.class);
+        final CountedOperationService service = locator.getService(CountedOperationService.class);
+        
+        CountedOperationService.reset();
+        
+        final OperationHandle<BasicOperationScope> operation = operationManager.createOperation(BASIC_OPERATION_ANNOTATION);
+        
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Object> ids = new CopyOnWriteArrayList<Object>();
+        final List<Throwable> errors = new CopyOnWriteArrayList<Throwable>();
+        Thread threads[] = new Thread[THREADS];
+        for (int lcv = 0; lcv < THREADS; lcv++) {
+            threads[lcv] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    operation.resume();
+                    try {
+                        start.await();
+                        
+                        ids.add(service.getId());
+                    }
+                    catch (Throwable th) {
+                        errors.add(th);
+                    }
+                    finally {
+                        operation.suspend();
+                    }
+                }
+                
+            });
+            
+            threads[lcv].start();
+        }
+        
+        start.countDown();
+        
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        Assert.assertTrue(errors.toString(), errors.isEmpty());
+        Assert.assertEquals(THREADS, ids.size());
+        for (Object id : ids) {
+            Assert.assertSame(ids.get(0), id);
+        }
+        Assert.assertEquals(1, CountedOperationService.getCreated());
+        
+        operation.closeOperation();
+        
+        Assert.assertEquals(1, CountedOperationService.getDestroyed());
+    }
+    
     private static class Closer implements Runnable {
         private final Object notifier;
         private final OperationHandle<BasicOperationScope> closeMe;
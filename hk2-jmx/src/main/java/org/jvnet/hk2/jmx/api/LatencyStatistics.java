@@ -0,0 +1,133 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.hk2.jmx.api;
+
+import java.beans.ConstructorProperties;
+
+import org.jvnet.hk2.external.runtime.LatencyHistogram;
+
+/**
+ * A summary of a {@link LatencyHistogram} in a form that
+ * JMX clients can display.  All times are in nanoseconds
+ * 
+ * @author jwells
+ *
+ */
+public class LatencyStatistics {
+    private final long count;
+    private final long totalTime;
+    private final long maximumTime;
+    private final long medianTime;
+    private final long percentile99Time;
+    
+    /**
+     * Creates the statistics from their values
+     * 
+     * @param count The number of times recorded
+     * @param totalTime The sum of the times recorded
+     * @param maximumTime The longest time recorded
+     * @param medianTime The upper bound of the 50th percentile
+     * @param percentile99Time The upper bound of the 99th percentile
+     */
+    @ConstructorProperties({"count", "totalTime", "maximumTime", "medianTime", "percentile99Time"})
+    public LatencyStatistics(long count, long totalTime, long maximumTime, long medianTime, long percentile99Time) {
+        this.count = count;
+        this.totalTime = totalTime;
+        this.maximumTime = maximumTime;
+        this.medianTime = medianTime;
+        this.percentile99Time = percentile99Time;
+    }
+    
+    /**
+     * Summarizes the given histogram
+     * 
+     * @param histogram The non-null histogram to summarize
+     */
+    public LatencyStatistics(LatencyHistogram histogram) {
+        this(histogram.getCount(),
+                histogram.getTotalTime(),
+                histogram.getMaximumTime(),
+                histogram.getPercentile(0.5),
+                histogram.getPercentile(0.99));
+    }
+
+    /**
+     * @return The number of times recorded
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return The sum of the times recorded
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * @return The longest time recorded
+     */
+    public long getMaximumTime() {
+        return maximumTime;
+    }
+
+    /**
+     * @return The upper bound of the 50th percentile
+     */
+    public long getMedianTime() {
+        return medianTime;
+    }
+
+    /**
+     * @return The upper bound of the 99th percentile
+     */
+    public long getPercentile99Time() {
+        return percentile99Time;
+    }
+    
+    @Override
+    public String toString() {
+        return "LatencyStatistics(" + count + "," + totalTime + "," + maximumTime + "," +
+                medianTime + "," + percentile99Time + "," + System.identityHashCode(this) + ")";
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.hk2.jmx.api;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.glassfish.hk2.api.MultiException;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.jvnet.hk2.external.runtime.ServiceLocatorRuntimeBean;
+import org.jvnet.hk2.jmx.internal.ServiceLocatorMetricsMXBeanImpl;
+
+/**
+ * Registers the metrics of a ServiceLocator as a
+ * {@link ServiceLocatorMetricsMXBean}.  Exporting the metrics
+ * does not enable them, which is done with the MXBean, the
+ * {@link ServiceLocatorRuntimeBean} or the
+ * org.jvnet.hk2.properties.metrics system property
+ * 
+ * @author jwells
+ *
+ */
+public class ServiceLocatorMetricsExporter {
+    /** The domain of the names the metrics are registered under */
+    public final static String DOMAIN = "org.glassfish.hk2";
+    
+    /**
+     * Returns the name the metrics of the given locator are
+     * registered under, which is of the form
+     * org.glassfish.hk2:type=ServiceLocatorMetrics,name="locatorName"
+     * 
+     * @param locator The non-null locator
+     * @return The name the metrics of the locator are registered under
+     */
+    public static ObjectName getObjectName(ServiceLocator locator) {
+        try {
+            return new ObjectName(DOMAIN + ":type=ServiceLocatorMetrics,name=" + ObjectName.quote(locator.getName()));
+        }
+        catch (JMException e) {
+            throw new MultiException(e);
+        }
+    }
+    
+    /**
+     * Registers the metrics of the locator with the platform MBeanServer
+     * 
+     * @param locator The non-null locator whose metrics should be registered
+     * @return The name the metrics were registered under
+     * @throws MultiException if the metrics could not be registered
+     */
+    public static ObjectName export(ServiceLocator locator) throws MultiException {
+        return export(locator, ManagementFactory.getPlatformMBeanServer());
+    }
+    
+    /**
+     * Registers the metrics of the locator with the given MBeanServer
+     * 
+     * @param locator The non-null locator whose metrics should be registered
+     * @param server The non-null server to register the metrics with
+     * @return The name the metrics were registered under
+     * @throws MultiException if the metrics could not be registered
+     */
+    public static ObjectName export(ServiceLocator locator, MBeanServer server) throws MultiException {
+        ServiceLocatorRuntimeBean runtime = locator.getService(ServiceLocatorRuntimeBean.class);
+        if (runtime == null) {
+            throw new MultiException(new IllegalStateException(
+                    "The locator " + locator + " does not have a ServiceLocatorRuntimeBean"));
+        }
+        
+        ObjectName name = getObjectName(locator);
+        try {
+            server.registerMBean(new ServiceLocatorMetricsMXBeanImpl(locator.getName(), runtime), name);
+        }
+        catch (JMException e) {
+            throw new MultiException(e);
+        }
+        
+        return name;
+    }
+    
+    /**
+     * Removes the metrics of the locator from the given MBeanServer.
+     * Does nothing if they were not registered
+     * 
+     * @param locator The non-null locator whose metrics should be removed
+     * @param server The non-null server the metrics were registered with
+     * @throws MultiException if the metrics could not be removed
+     */
+    public static void unexport(ServiceLocator locator, MBeanServer server) throws MultiException {
+        ObjectName name = getObjectName(locator);
+        if (!server.isRegistered(name)) return;
+        
+        try {
+            server.unregisterMBean(name);
+        }
+        catch (JMException e) {
+            throw new MultiException(e);
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.hk2.jmx.api;
+
+import java.util.Map;
+
+/**
+ * The JMX view of the metrics of one ServiceLocator, as
+ * registered by {@link ServiceLocatorMetricsExporter}.
+ * When metrics are not enabled all counts are zero
+ * 
+ * @author jwells
+ *
+ */
+public interface ServiceLocatorMetricsMXBean {
+    /**
+     * @return The name of the ServiceLocator
+     */
+    public String getLocatorName();
+    
+    /**
+     * @return true if the ServiceLocator is gathering metrics
+     */
+    public boolean isMetricsEnabled();
+    
+    /**
+     * @param enabled true if the ServiceLocator should gather metrics
+     */
+    public void setMetricsEnabled(boolean enabled);
+    
+    /**
+     * Discards all metrics gathered so far
+     */
+    public void clearMetrics();
+    
+    /**
+     * @return The total number of lookups made
+     */
+    public long getLookupCount();
+    
+    /**
+     * @return The number of lookups keyed by contract or
+     * implementation class name
+     */
+    public Map<String, Long> getLookupCountsByContract();
+    
+    /**
+     * @return The number of single service lookups found in the service cache
+     */
+    public long getServiceCacheHits();
+    
+    /**
+     * @return The number of single service lookups not found in the service cache
+     */
+    public long getServiceCacheMisses();
+    
+    /**
+     * @return The number of all services lookups found in the all services cache
+     */
+    public long getAllServicesCacheHits();
+    
+    /**
+     * @return The number of all services lookups not found in the all services cache
+     */
+    public long getAllServicesCacheMisses();
+    
+    /**
+     * @return The service creation times keyed by the implementation
+     * of the descriptor followed by # and its service id
+     */
+    public Map<String, LatencyStatistics> getCreationTimes();
+    
+    /**
+     * @return The time the write lock of the locator was held per commit
+     */
+    public LatencyStatistics getCommitTimes();
+
+}
@@ -0,0 +1,161 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.hk2.jmx.internal;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.jvnet.hk2.external.runtime.LatencyHistogram;
+import org.jvnet.hk2.external.runtime.ServiceLocatorMetrics;
+import org.jvnet.hk2.external.runtime.ServiceLocatorRuntimeBean;
+import org.jvnet.hk2.jmx.api.LatencyStatistics;
+import org.jvnet.hk2.jmx.api.ServiceLocatorMetricsMXBean;
+
+/**
+ * Adapts the metrics of the {@link ServiceLocatorRuntimeBean}
+ * to JMX.  Each attribute takes a fresh snapshot
+ * 
+ * @author jwells
+ *
+ */
+public class ServiceLocatorMetricsMXBeanImpl implements ServiceLocatorMetricsMXBean {
+    private final static LatencyStatistics NO_TIMES = new LatencyStatistics(0L, 0L, 0L, 0L, 0L);
+    
+    private final String locatorName;
+    private final ServiceLocatorRuntimeBean runtime;
+    
+    public ServiceLocatorMetricsMXBeanImpl(String locatorName, ServiceLocatorRuntimeBean runtime) {
+        this.locatorName = locatorName;
+        this.runtime = runtime;
+    }
+
+    @Override
+    public String getLocatorName() {
+        return locatorName;
+    }
+
+    @Override
+    public boolean isMetricsEnabled() {
+        return runtime.isMetricsEnabled();
+    }
+
+    @Override
+    public void setMetricsEnabled(boolean enabled) {
+        runtime.setMetricsEnabled(enabled);
+        
+    }
+
+    @Override
+    public void clearMetrics() {
+        runtime.clearMetrics();
+        
+    }
+
+    @Override
+    public long getLookupCount() {
+        ServiceLocatorMetrics metrics = runtime.getMetrics();
+        return (metrics == null) ? 0L : metrics.getLookupCount();
+    }
+
+    @Override
+    public Map<String, Long> getLookupCountsByContract() {
+        ServiceLocatorMetrics metrics = runtime.getMetrics();
+        if (metrics == null) return Collections.emptyMap();
+        
+        return metrics.getLookupCountsByContract();
+    }
+
+    @Override
+    public long getServiceCacheHits() {
+        ServiceLocatorMetrics metrics = runtime.getMetrics();
+        return (metrics == null) ? 0L : metrics.getServiceCacheHits();
+    }
+
+    @Override
+    public long getServiceCacheMisses() {
+        ServiceLocatorMetrics metrics = runtime.getMetrics();
+        return (metrics == null) ? 0L : metrics.getServiceCacheMisses();
+    }
+
+    @Override
+    public long getAllServicesCacheHits() {
+        ServiceLocatorMetrics metrics = runtime.getMetrics();
+        return (metrics == null) ? 0L : metrics.getAllServicesCacheHits();
+    }
+
+    @Override
+    public long getAllServicesCacheMisses() {
+        ServiceLocatorMetrics metrics = runtime.getMetrics();
+        return (metrics == null) ? 0L : metrics.getAllServicesCacheMisses();
+    }
+
+    @Override
+    public Map<String, LatencyStatistics> getCreationTimes() {
+        ServiceLocatorMetrics metrics = runtime.getMetrics();
+        if (metrics == null) return Collections.emptyMap();
+        
+        Map<String, LatencyStatistics> retVal = new HashMap<String, LatencyStatistics>();
+        for (Map.Entry<ActiveDescriptor<?>, LatencyHistogram> entry : metrics.getCreationTimes().entrySet()) {
+            ActiveDescriptor<?> descriptor = entry.getKey();
+            
+            retVal.put(descriptor.getImplementation() + "#" + descriptor.getServiceId(),
+                    new LatencyStatistics(entry.getValue()));
+        }
+        
+        return retVal;
+    }
+
+    @Override
+    public LatencyStatistics getCommitTimes() {
+        ServiceLocatorMetrics metrics = runtime.getMetrics();
+        if (metrics == null) return NO_TIMES;
+        
+        return new LatencyStatistics(metrics.getCommitTimes());
+    }
+    
+    @Override
+    public String toString() {
+        return "ServiceLocatorMetricsMXBeanImpl(" + locatorName + "," + System.identityHashCode(this) + ")";
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.hk2.external.runtime;
+
+/**
+ * An immutable snapshot of the times recorded for some
+ * operation of the ServiceLocator.  Times are kept in
+ * buckets whose upper bounds are powers of two nanoseconds,
+ * so percentiles are accurate to within a factor of two
+ * 
+ * @author jwells
+ *
+ */
+public interface LatencyHistogram {
+    /**
+     * Returns the number of times recorded
+     * 
+     * @return The number of times recorded
+     */
+    public long getCount();
+    
+    /**
+     * Returns the sum of all times recorded
+     * 
+     * @return The sum of all times recorded in
+     * nanoseconds
+     */
+    public long getTotalTime();
+    
+    /**
+     * Returns the longest time recorded
+     * 
+     * @return The longest time recorded in nanoseconds,
+     * or zero if nothing has been recorded
+     */
+    public long getMaximumTime();
+    
+    /**
+     * Returns an upper bound of the time below which the
+     * given fraction of the recorded times fall
+     * 
+     * @param fraction A number between 0.0 and 1.0 inclusive,
+     * such as 0.99 for the 99th percentile
+     * @return The upper bound in nanoseconds, which is never
+     * more than {@link #getMaximumTime()}, or zero if nothing
+     * has been recorded
+     */
+    public long getPercentile(double fraction);
+    
+    /**
+     * Returns the inclusive upper bound of each bucket in
+     * nanoseconds.  Bucket zero holds only zero, and bucket n
+     * holds the times from 2^(n-1) to 2^n - 1
+     * 
+     * @return A copy of the upper bounds of the buckets, in
+     * the same order as {@link #getBucketCounts()}
+     */
+    public long[] getBucketUpperBounds();
+    
+    /**
+     * Returns the number of times recorded in each bucket
+     * 
+     * @return A copy of the counts of the buckets, in the
+     * same order as {@link #getBucketUpperBounds()}
+     */
+    public long[] getBucketCounts();
+
+}
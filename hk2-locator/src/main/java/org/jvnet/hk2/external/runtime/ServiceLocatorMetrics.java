@@ -0,0 +1,143 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.hk2.external.runtime;
+
+import java.util.Map;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+
+/**
+ * An immutable snapshot of the metrics gathered by a
+ * ServiceLocator since metrics were enabled or last cleared.
+ * Metrics are gathered only when enabled with
+ * {@link ServiceLocatorRuntimeBean#setMetricsEnabled(boolean)}
+ * or with the org.jvnet.hk2.properties.metrics system property.
+ * The counts are gathered without locking, so a snapshot taken
+ * while the locator is in use may be slightly inconsistent
+ * 
+ * @author jwells
+ *
+ */
+public interface ServiceLocatorMetrics {
+    /**
+     * Returns the time at which gathering of these metrics started
+     * 
+     * @return The time at which gathering started, in
+     * milliseconds since the epoch
+     */
+    public long getStartTime();
+    
+    /**
+     * Returns the total number of lookups made, whether for
+     * one service or for all services of a type.  Injection
+     * points count as lookups
+     * 
+     * @return The total number of lookups made
+     */
+    public long getLookupCount();
+    
+    /**
+     * Returns the number of lookups made per contract or
+     * implementation class
+     * 
+     * @return The number of lookups keyed by the name of the
+     * contract or implementation class looked up
+     */
+    public Map<String, Long> getLookupCountsByContract();
+    
+    /**
+     * Returns the number of single service lookups that were
+     * found in the service cache
+     * 
+     * @return The number of single service lookups found in
+     * the service cache
+     */
+    public long getServiceCacheHits();
+    
+    /**
+     * Returns the number of single service lookups that were
+     * not found in the service cache and had to search the
+     * descriptors of the locator
+     * 
+     * @return The number of single service lookups not found
+     * in the service cache
+     */
+    public long getServiceCacheMisses();
+    
+    /**
+     * Returns the number of lookups for all services of a type
+     * that were found in the all services cache
+     * 
+     * @return The number of all services lookups found in the
+     * all services cache
+     */
+    public long getAllServicesCacheHits();
+    
+    /**
+     * Returns the number of lookups for all services of a type
+     * that were not found in the all services cache
+     * 
+     * @return The number of all services lookups not found in
+     * the all services cache
+     */
+    public long getAllServicesCacheMisses();
+    
+    /**
+     * Returns the time taken to create services, per descriptor.
+     * The time of creating a service includes the time taken to
+     * create any services injected into it.  Descriptors that
+     * have been removed from the locator or that were never
+     * added to it are not included
+     * 
+     * @return The creation times keyed by the descriptor of the
+     * services created
+     */
+    public Map<ActiveDescriptor<?>, LatencyHistogram> getCreationTimes();
+    
+    /**
+     * Returns the time the write lock of the locator was held
+     * while committing dynamic configurations
+     * 
+     * @return The time the write lock was held per commit
+     */
+    public LatencyHistogram getCommitTimes();
+
+}
@@ -125,5 +125,38 @@ public interface ServiceLocatorRuntimeBean {
      * until the cache can be built back up
      */
     public void clearReflectionCache();
+    
+    /**
+     * Turns the gathering of lookup, cache, creation and
+     * commit metrics on or off.  Metrics are off by default
+     * unless the org.jvnet.hk2.properties.metrics system
+     * property was true when the ServiceLocator was created.
+     * Turning metrics off discards those gathered so far
+     * 
+     * @param enabled true if metrics should be gathered
+     */
+    public void setMetricsEnabled(boolean enabled);
+    
+    /**
+     * Returns true if metrics are being gathered
+     * 
+     * @return true if metrics are being gathered
+     */
+    public boolean isMetricsEnabled();
+    
+    /**
+     * Returns a snapshot of the metrics gathered since
+     * metrics were enabled or last cleared
+     * 
+     * @return A snapshot of the metrics gathered, or
+     * null if metrics are not enabled
+     */
+    public ServiceLocatorMetrics getMetrics();
+    
+    /**
+     * Discards all metrics gathered so far.  Has no
+     * effect if metrics are not enabled
+     */
+    public void clearMetrics();
 
 }
@@ -0,0 +1,92 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.hk2.internal;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The descriptors visible to a child locator from all of its
+ * ancestors, already merged into ranked order.  The view is
+ * stamped with the index generation of every ancestor at the time
+ * it was created and is only valid until one of them changes.
+ * Only the keys that resolve to descriptors are kept, so the view
+ * cannot grow beyond what the ancestors hold however many distinct
+ * keys are looked up
+ * 
+ * @author jwells
+ *
+ */
+public class AncestorIndexView {
+    private final IndexGenerations generations;
+    private final ConcurrentHashMap<ContractAndNameKey, List<SystemDescriptor<?>>> views =
+            new ConcurrentHashMap<ContractAndNameKey, List<SystemDescriptor<?>>>();
+    
+    /**
+     * Must be created before any of the views are computed
+     * 
+     * @param parent The non-null parent of the locator owning this view
+     */
+    /* package */ AncestorIndexView(ServiceLocatorImpl parent) {
+        generations = new IndexGenerations(parent);
+    }
+    
+    /**
+     * Tells whether or not any ancestor has modified its
+     * indexes since this view was created
+     * 
+     * @param parent The non-null parent of the locator owning this view
+     * @return true if this view can still be used
+     */
+    /* package */ boolean isCurrent(ServiceLocatorImpl parent) {
+        return generations.isCurrent(parent);
+    }
+    
+    /* package */ List<SystemDescriptor<?>> get(ContractAndNameKey key) {
+        return views.get(key);
+    }
+    
+    /* package */ void put(ContractAndNameKey key, List<SystemDescriptor<?>> descriptors) {
+        if (descriptors.isEmpty()) return;
+        
+        views.putIfAbsent(key, descriptors);
+    }
+}
@@ -194,6 +194,16 @@ public class CacheKey {
         return removalName.equals(name);
     }
     
+    /**
+     * Returns the name of the contract under which this
+     * key is removed from the caches
+     * 
+     * @return The removal name, which may be null
+     */
+    public String getRemovalName() {
+        return removalName;
+    }
+    
     public String toString() {
         return "CacheKey(" + Pretty.type(lookupType) + "," + name + "," +
             ((qualifiers == null) ? 0 : qualifiers.length) + "," +
@@ -0,0 +1,329 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.hk2.internal;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.glassfish.hk2.api.Injectee;
+import org.glassfish.hk2.utilities.reflection.Logger;
+import org.glassfish.hk2.utilities.reflection.ReflectionHelper;
+
+/**
+ * Cached reflection for creating and injecting instances of a class.
+ * The members are still called with {@link Constructor#newInstance},
+ * {@link Field#set} and {@link Method#invoke}, no accessor classes are
+ * generated.  What is cached is everything around those calls, prepared
+ * once when the first instance is created rather than every time an
+ * instance is created.  All members are made accessible up front, the
+ * injectees are kept in a flat array in the order in which they are
+ * resolved and every argument list is a precomputed set of indexes into
+ * the array of resolved values
+ * <p>
+ * This class does not change the context class loader, the caller
+ * is responsible for keeping it neutral
+ * 
+ * @author jwells
+ *
+ */
+public class CachedReflectionInjector {
+    private final SystemInjecteeImpl injectees[];
+    
+    private final Constructor<?> constructor;
+    private final int constructorIndexes[];
+    
+    private final Field fields[];
+    private final int fieldIndexes[];
+    
+    private final Method initializers[];
+    private final int initializerIndexes[][];
+    
+    private final Method postConstruct;
+    
+    /**
+     * Prepares the injector
+     * 
+     * @param constructor The constructor to create instances with
+     * @param constructorInjectees The injectees of the constructor
+     * @param fields The fields to inject, each with its single injectee
+     * @param initializers The initializer methods to call, with their injectees
+     * @param postConstruct The post construct method, or null if there is none
+     */
+    /* package */ CachedReflectionInjector(Constructor<?> constructor,
+            List<SystemInjecteeImpl> constructorInjectees,
+            Map<Field, SystemInjecteeImpl> fields,
+            Map<Method, List<SystemInjecteeImpl>> initializers,
+            Method postConstruct) {
+        // Resolution order is the same as that of the reflective path
+        List<SystemInjecteeImpl> all = new ArrayList<SystemInjecteeImpl>();
+        IdentityHashMap<SystemInjecteeImpl, Integer> indexes = new IdentityHashMap<SystemInjecteeImpl, Integer>();
+        
+        addAll(constructorInjectees, all, indexes);
+        for (SystemInjecteeImpl fieldInjectee : fields.values()) {
+            add(fieldInjectee, all, indexes);
+        }
+        for (List<SystemInjecteeImpl> methodInjectees : initializers.values()) {
+            addAll(methodInjectees, all, indexes);
+        }
+        
+        injectees = all.toArray(new SystemInjecteeImpl[all.size()]);
+        
+        this.constructor = constructor;
+        constructorIndexes = getIndexes(constructorInjectees, indexes);
+        
+        this.fields = fields.keySet().toArray(new Field[fields.size()]);
+        fieldIndexes = new int[this.fields.length];
+        int lcv = 0;
+        for (SystemInjecteeImpl fieldInjectee : fields.values()) {
+            fieldIndexes[lcv++] = indexes.get(fieldInjectee);
+        }
+        
+        this.initializers = initializers.keySet().toArray(new Method[initializers.size()]);
+        initializerIndexes = new int[this.initializers.length][];
+        lcv = 0;
+        for (List<SystemInjecteeImpl> methodInjectees : initializers.values()) {
+            initializerIndexes[lcv++] = getIndexes(methodInjectees, indexes);
+        }
+        
+        this.postConstruct = postConstruct;
+        
+        ReflectionHelper.setAccessible(constructor);
+        for (Field field : this.fields) {
+            ReflectionHelper.setAccessible(field);
+        }
+        for (Method initializer : this.initializers) {
+            ReflectionHelper.setAccessible(initializer);
+        }
+        if (postConstruct != null) {
+            ReflectionHelper.setAccessible(postConstruct);
+        }
+    }
+    
+    private static void add(SystemInjecteeImpl injectee, List<SystemInjecteeImpl> all,
+            Map<SystemInjecteeImpl, Integer> indexes) {
+        indexes.put(injectee, all.size());
+        all.add(injectee);
+    }
+    
+    private static void addAll(List<SystemInjecteeImpl> injectees, List<SystemInjecteeImpl> all,
+            Map<SystemInjecteeImpl, Integer> indexes) {
+        for (SystemInjecteeImpl injectee : injectees) {
+            add(injectee, all, indexes);
+        }
+    }
+    
+    /**
+     * The returned array is indexed by the position of the parameter
+     */
+    private static int[] getIndexes(List<SystemInjecteeImpl> injectees, Map<SystemInjecteeImpl, Integer> indexes) {
+        int retVal[] = new int[injectees.size()];
+        for (SystemInjecteeImpl injectee : injectees) {
+            retVal[injectee.getPosition()] = indexes.get(injectee);
+        }
+        
+        return retVal;
+    }
+    
+    /**
+     * Returns the injectees of the class in the order in which they
+     * should be resolved.  The values resolved for them are given to
+     * the other methods of this class in an array of the same order
+     * 
+     * @return The injectees, which must not be modified
+     */
+    /* package */ SystemInjecteeImpl[] getInjectees() {
+        return injectees;
+    }
+    
+    /**
+     * Returns the resolved values as a map, for giving to
+     * instance lifecycle listeners
+     * 
+     * @param resolved The values resolved for the injectees
+     * @return A map from the injectee to its non-null resolved value
+     */
+    /* package */ Map<Injectee, Object> asMap(Object resolved[]) {
+        Map<Injectee, Object> retVal = new LinkedHashMap<Injectee, Object>();
+        for (int lcv = 0; lcv < injectees.length; lcv++) {
+            if (resolved[lcv] == null) continue;
+            
+            retVal.put(injectees[lcv], resolved[lcv]);
+        }
+        
+        return retVal;
+    }
+    
+    /* package */ Object[] getConstructorArguments(Object resolved[]) {
+        return getArguments(constructorIndexes, resolved);
+    }
+    
+    private static Object[] getArguments(int indexes[], Object resolved[]) {
+        Object retVal[] = new Object[indexes.length];
+        for (int lcv = 0; lcv < indexes.length; lcv++) {
+            retVal[lcv] = resolved[indexes[lcv]];
+        }
+        
+        return retVal;
+    }
+    
+    /**
+     * Creates the instance with the given constructor arguments
+     * 
+     * @param args The arguments for the constructor
+     * @return The new instance
+     * @throws Throwable The unwrapped exception thrown by the constructor
+     */
+    /* package */ Object construct(Object args[]) throws Throwable {
+        try {
+            return constructor.newInstance(args);
+        }
+        catch (InvocationTargetException ite) {
+            Throwable targetException = ite.getTargetException();
+            Logger.getLogger().debug(constructor.getDeclaringClass().getName(), constructor.getName(), targetException);
+            throw targetException;
+        }
+    }
+    
+    /* package */ void injectFields(Object instance, Object resolved[]) throws Throwable {
+        for (int lcv = 0; lcv < fields.length; lcv++) {
+            fields[lcv].set(instance, resolved[fieldIndexes[lcv]]);
+        }
+    }
+    
+    /**
+     * Calls the initializer methods
+     * 
+     * @param instance The instance to initialize
+     * @param resolved The values resolved for the injectees
+     * @param neutral true if the context class loader should be set back
+     * to originalCCL after every method
+     * @param originalCCL The context class loader to keep if neutral
+     * @throws Throwable The unwrapped exception thrown by an initializer
+     */
+    /* package */ void injectMethods(Object instance, Object resolved[], boolean neutral, ClassLoader originalCCL) throws Throwable {
+        for (int lcv = 0; lcv < initializers.length; lcv++) {
+            try {
+                invoke(initializers[lcv], instance, getArguments(initializerIndexes[lcv], resolved));
+            }
+            finally {
+                if (neutral) restoreContextClassLoader(originalCCL);
+            }
+        }
+    }
+    
+    /**
+     * Calls the post construct method, if there is one
+     * 
+     * @param instance The instance to call the post construct method of
+     * @throws Throwable The unwrapped exception thrown by the method
+     */
+    /* package */ void postConstruct(Object instance) throws Throwable {
+        if (postConstruct == null) return;
+        
+        invoke(postConstruct, instance, new Object[0]);
+    }
+    
+    private static void invoke(Method method, Object instance, Object args[]) throws Throwable {
+        try {
+            method.invoke(ReflectionHelper.isStatic(method) ? null : instance, args);
+        }
+        catch (InvocationTargetException ite) {
+            Throwable targetException = ite.getTargetException();
+            Logger.getLogger().debug(method.getDeclaringClass().getName(), method.getName(), targetException);
+            throw targetException;
+        }
+    }
+    
+    /**
+     * Gets the context class loader of the current thread
+     * 
+     * @return The current context class loader
+     */
+    /* package */ static ClassLoader getContextClassLoader() {
+        if (System.getSecurityManager() == null) {
+            return Thread.currentThread().getContextClassLoader();
+        }
+        
+        return AccessController.doPrivileged(new PrivilegedAction<ClassLoader>() {
+
+            @Override
+            public ClassLoader run() {
+                return Thread.currentThread().getContextClassLoader();
+            }
+            
+        });
+    }
+    
+    /**
+     * Sets the context class loader of the current thread back
+     * to the given loader, if user code has changed it
+     * 
+     * @param originalCCL The loader to set back
+     */
+    /* package */ static void restoreContextClassLoader(final ClassLoader originalCCL) {
+        if (getContextClassLoader() == originalCCL) return;
+        
+        AccessController.doPrivileged(new PrivilegedAction<Object>() {
+
+            @Override
+            public Object run() {
+                Thread.currentThread().setContextClassLoader(originalCCL);
+                return null;
+            }
+            
+        });
+    }
+    
+    @Override
+    public String toString() {
+        return "CachedReflectionInjector(" + constructor.getDeclaringClass().getName() + "," +
+            System.identityHashCode(this) + ")";
+    }
+}
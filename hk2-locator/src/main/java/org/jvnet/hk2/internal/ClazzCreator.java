@@ -52,6 +52,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.aopalliance.intercept.ConstructorInterceptor;
 import org.aopalliance.intercept.MethodInterceptor;
@@ -84,6 +85,10 @@ public class ClazzCreator<T> implements Creator<T> {
     private Method postConstructMethod;
     private Method preDestroyMethod;
 
+    private volatile CachedReflectionInjector cachedReflectionInjector;
+    private final ConcurrentHashMap<Set<Method>, InterceptorBindings.ProxyClass> proxyClasses =
+            new ConcurrentHashMap<Set<Method>, InterceptorBindings.ProxyClass>();
+
     /* package */ ClazzCreator(ServiceLocatorImpl locator,
             Class<?> implClass) {
         this.locator = locator;
@@ -253,22 +258,67 @@ public class ClazzCreator<T> implements Creator<T> {
         return retVal;
     }
 
-    private Object createMe(Map<SystemInjecteeImpl, Object> resolved) throws Throwable {
-        final Constructor<?> c = (Constructor<?>) myConstructor.baseElement;
+    private Object[] resolveAllDependencies(final ServiceHandle<?> root, SystemInjecteeImpl injectees[]) throws MultiException, IllegalStateException {
+        Collector errorCollector = new Collector();
+
+        final Object retVal[] = new Object[injectees.length];
+
+        for (int lcv = 0; lcv < injectees.length; lcv++) {
+            SystemInjecteeImpl injectee = injectees[lcv];
+            if (injectee.isSelf()) {
+                retVal[lcv] = selfDescriptor;
+                continue;
+            }
+
+            try {
+                retVal[lcv] = locator.getInjectionResolverForInjectee(injectee).resolve(injectee, root);
+            } catch (Throwable th) {
+                errorCollector.addThrowable(th);
+            }
+        }
+
+        if (errorCollector.hasErrors()) {
+            errorCollector.addThrowable(new IllegalArgumentException("While attempting to resolve the dependencies of "
+                    + implClass.getName() + " errors were found"));
+
+            errorCollector.throwIfErrors();
+        }
+
+        return retVal;
+    }
+
+    private Object[] getConstructorArguments(Map<SystemInjecteeImpl, Object> resolved) {
         List<SystemInjecteeImpl> injectees = myConstructor.injectees;
 
         final Object args[] = new Object[injectees.size()];
         for (Injectee injectee : injectees) {
             args[injectee.getPosition()] = resolved.get(injectee);
         }
+
+        return args;
+    }
+
+    /**
+     * Creates the instance, with interception if needed
+     *
+     * @param args The constructor arguments
+     * @param injector The cached reflection injector to construct with if there
+     * is no interception, or null to construct reflectively
+     * @return The new instance
+     * @throws Throwable The unwrapped exception thrown while constructing
+     */
+    private Object createMe(final Object args[], CachedReflectionInjector injector) throws Throwable {
+        final Constructor<?> c = (Constructor<?>) myConstructor.baseElement;
         
         Utilities.Interceptors interceptors = Utilities.getAllInterceptors(locator, selfDescriptor, implClass, c);
-        final Map<Method, List<MethodInterceptor>> methodInterceptors = interceptors.getMethodInterceptors();
+        Map<Method, List<MethodInterceptor>> methodInterceptors = interceptors.getMethodInterceptors();
         List<ConstructorInterceptor> constructorInterceptors = interceptors.getConstructorInterceptors();
         
         if ((methodInterceptors == null || methodInterceptors.isEmpty()) &&
             ((constructorInterceptors == null) || constructorInterceptors.isEmpty())) {
             // No need for any kind of interception
+            if (injector != null) return injector.construct(args);
+
             return ReflectionHelper.makeMe(c, args, locator.getNeutralContextClassLoader()); 
         }
         
@@ -289,6 +339,16 @@ public class ClazzCreator<T> implements Creator<T> {
                 constructorInterceptors,
                 new ConstructorActionImpl<T>(this, methodInterceptors));
     }
+    
+    /**
+     * The proxy classes of this class, keyed by the set
+     * of intercepted methods of the proxy class
+     * 
+     * @return The never null proxy classes created so far
+     */
+    /* package */ ConcurrentHashMap<Set<Method>, InterceptorBindings.ProxyClass> getProxyClasses() {
+        return proxyClasses;
+    }
 
     private void fieldMe(Map<SystemInjecteeImpl, Object> resolved, T t) throws Throwable {
         for (ResolutionInfo ri : myFields) {
@@ -352,6 +412,10 @@ public class ClazzCreator<T> implements Creator<T> {
     @SuppressWarnings("unchecked")
     @Override
     public T create(ServiceHandle<?> root, SystemDescriptor<?> eventThrower) {
+        if (locator.isCachedReflectionInjection()) {
+            return createWithCachedReflection(root, eventThrower);
+        }
+
         String failureLocation = "resolve";
         try {
 
@@ -363,7 +427,7 @@ public class ClazzCreator<T> implements Creator<T> {
             }
 
             failureLocation = "create";
-            T retVal = (T) createMe(allResolved);
+            T retVal = (T) createMe(getConstructorArguments(allResolved), null);
 
             failureLocation = "field inject";
             fieldMe(allResolved, retVal);
@@ -396,6 +460,110 @@ public class ClazzCreator<T> implements Creator<T> {
         }
     }
 
+    private CachedReflectionInjector getCachedReflectionInjector() {
+        CachedReflectionInjector retVal = cachedReflectionInjector;
+        if (retVal != null) return retVal;
+
+        Map<Field, SystemInjecteeImpl> fields = new LinkedHashMap<Field, SystemInjecteeImpl>();
+        for (ResolutionInfo ri : myFields) {
+            SystemInjecteeImpl fieldInjectee = null;
+            for (SystemInjecteeImpl candidate : ri.injectees) {
+                fieldInjectee = candidate;
+            }
+
+            fields.put((Field) ri.baseElement, fieldInjectee);
+        }
+
+        Map<Method, List<SystemInjecteeImpl>> initializers = new LinkedHashMap<Method, List<SystemInjecteeImpl>>();
+        for (ResolutionInfo ri : myInitializers) {
+            initializers.put((Method) ri.baseElement, ri.injectees);
+        }
+
+        // Two threads may both prepare an injector, which is harmless
+        retVal = new CachedReflectionInjector((Constructor<?>) myConstructor.baseElement,
+                myConstructor.injectees,
+                fields,
+                initializers,
+                PostConstruct.class.isAssignableFrom(implClass) ? null : postConstructMethod);
+        cachedReflectionInjector = retVal;
+
+        return retVal;
+    }
+
+    /**
+     * Same as {@link #create(ServiceHandle, SystemDescriptor)} but using
+     * the {@link CachedReflectionInjector} of the class
+     */
+    @SuppressWarnings("unchecked")
+    private T createWithCachedReflection(ServiceHandle<?> root, SystemDescriptor<?> eventThrower) {
+        boolean neutral = locator.getNeutralContextClassLoader();
+        ClassLoader originalCCL = neutral ? CachedReflectionInjector.getContextClassLoader() : null;
+
+        String failureLocation = "prepare";
+        try {
+            CachedReflectionInjector injector = getCachedReflectionInjector();
+
+            failureLocation = "resolve";
+            Object resolved[] = resolveAllDependencies(root, injector.getInjectees());
+
+            Map<Injectee, Object> resolvedMap = null;
+            if (eventThrower != null && eventThrower.hasInstanceListeners()) {
+                resolvedMap = injector.asMap(resolved);
+
+                eventThrower.invokeInstanceListeners(new InstanceLifecycleEventImpl(InstanceLifecycleEventType.PRE_PRODUCTION,
+                    null, resolvedMap, eventThrower));
+            }
+
+            failureLocation = "create";
+            T retVal;
+            try {
+                retVal = (T) createMe(injector.getConstructorArguments(resolved), injector);
+            }
+            finally {
+                if (neutral) CachedReflectionInjector.restoreContextClassLoader(originalCCL);
+            }
+
+            failureLocation = "field inject";
+            injector.injectFields(retVal, resolved);
+
+            failureLocation = "method inject";
+            injector.injectMethods(retVal, resolved, neutral, originalCCL);
+
+            failureLocation = "post construct";
+            if (retVal instanceof PostConstruct) {
+                ((PostConstruct) retVal).postConstruct();
+            }
+            else {
+                try {
+                    injector.postConstruct(retVal);
+                }
+                finally {
+                    if (neutral) CachedReflectionInjector.restoreContextClassLoader(originalCCL);
+                }
+            }
+
+            if (resolvedMap != null) {
+                eventThrower.invokeInstanceListeners(new InstanceLifecycleEventImpl(InstanceLifecycleEventType.POST_PRODUCTION,
+                    retVal, resolvedMap, eventThrower));
+            }
+
+            return retVal;
+        } catch (Throwable th) {
+            if (th instanceof MultiException) {
+                MultiException me = (MultiException) th;
+
+                me.addError(new IllegalStateException("Unable to perform operation: " + failureLocation + " on " + implClass.getName()));
+
+                throw me;
+            }
+
+            MultiException me = new MultiException(th);
+            me.addError(new IllegalStateException("Unable to perform operation: " + failureLocation + " on " + implClass.getName()));
+
+            throw me;
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.jvnet.hk2.internal.Creator#dispose(java.lang.Object)
      */
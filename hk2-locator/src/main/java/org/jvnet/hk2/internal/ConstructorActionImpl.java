@@ -39,8 +39,7 @@
  */
 package org.jvnet.hk2.internal;
 
-import javassist.util.proxy.MethodFilter;
-import javassist.util.proxy.ProxyFactory;
+import javassist.util.proxy.ProxyObject;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
@@ -51,7 +50,6 @@ import java.util.List;
 import java.util.Map;
 
 import org.aopalliance.intercept.MethodInterceptor;
-import org.glassfish.hk2.api.AOPProxyCtl;
 import org.glassfish.hk2.utilities.reflection.Logger;
 
 /**
@@ -59,19 +57,6 @@ import org.glassfish.hk2.utilities.reflection.Logger;
  *
  */
 final class ConstructorActionImpl<T> implements ConstructorAction {
-    private final static Class<?> ADDED_INTERFACES[] = { AOPProxyCtl.class };
-    private final static MethodFilter METHOD_FILTER = new MethodFilter() {
-
-        @Override
-        public boolean isHandled(Method method) {
-            // We do not allow interception of finalize
-            if (method.getName().equals("finalize")) return false;
-            
-            return true;
-        }
-        
-    };
-    
     /**
      * 
      */
@@ -83,8 +68,8 @@ final class ConstructorActionImpl<T> implements ConstructorAction {
     private final Map<Method, List<MethodInterceptor>> methodInterceptors;
 
     /**
-     * @param methodInterceptors
-     * @param clazzCreator TODO
+     * @param clazzCreator The creator of the service
+     * @param methodInterceptors The non-empty method interceptors of the instance
      */
     ConstructorActionImpl(
             ClazzCreator<T> clazzCreator, Map<Method, List<MethodInterceptor>> methodInterceptors) {
@@ -95,16 +80,6 @@ final class ConstructorActionImpl<T> implements ConstructorAction {
     @Override
     public Object makeMe(final Constructor<?> c, final Object[] args, final boolean neutralCCL)
             throws Throwable {
-        final MethodInterceptorHandler methodInterceptor = new MethodInterceptorHandler(
-                clazzCreator.getServiceLocator(),
-                clazzCreator.getUnderlyingDescriptor(),
-                methodInterceptors);
-            
-        final ProxyFactory proxyFactory = new ProxyFactory();
-        proxyFactory.setSuperclass(clazzCreator.getImplClass());
-        proxyFactory.setFilter(METHOD_FILTER);
-        proxyFactory.setInterfaces(ADDED_INTERFACES);
-        
         return AccessController.doPrivileged(new PrivilegedExceptionAction<Object>() {
 
             @Override
@@ -115,7 +90,16 @@ final class ConstructorActionImpl<T> implements ConstructorAction {
                 }
           
                 try {
-                  return proxyFactory.create(c.getParameterTypes(), args, methodInterceptor);
+                  InterceptorBindings bindings = InterceptorBindings.bind(clazzCreator.getImplClass(), c,
+                          methodInterceptors, clazzCreator.getProxyClasses());
+                  
+                  Object proxy = bindings.getProxyConstructor().newInstance(args);
+                  ((ProxyObject) proxy).setHandler(new MethodInterceptorHandler(
+                          clazzCreator.getServiceLocator(),
+                          clazzCreator.getUnderlyingDescriptor(),
+                          bindings));
+                  
+                  return proxy;
                 }
                 catch (InvocationTargetException ite) {
                     Throwable targetException = ite.getTargetException();
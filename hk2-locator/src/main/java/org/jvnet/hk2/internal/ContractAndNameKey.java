@@ -0,0 +1,116 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.hk2.internal;
+
+/**
+ * The key of the indexes of descriptors.  Either the contract
+ * or the name (or both) may be null, in which case the key refers
+ * to the index of the non-null part (or to all descriptors)
+ * 
+ * @author jwells
+ *
+ */
+public class ContractAndNameKey {
+    private final String contract;
+    private final String name;
+    private final int hashCode;
+    
+    public ContractAndNameKey(String contract, String name) {
+        this.contract = contract;
+        this.name = name;
+        
+        int retVal = 0;
+        if (contract != null) {
+            retVal = 31 * contract.hashCode();
+        }
+        if (name != null) {
+            retVal ^= name.hashCode();
+        }
+        
+        hashCode = retVal;
+    }
+    
+    /**
+     * Returns the contract of this key
+     * 
+     * @return The contract, which may be null
+     */
+    public String getContract() {
+        return contract;
+    }
+    
+    /**
+     * Returns the name of this key
+     * 
+     * @return The name, which may be null
+     */
+    public String getName() {
+        return name;
+    }
+    
+    private static boolean safeEquals(String a, String b) {
+        if (a == null) return (b == null);
+        
+        return a.equals(b);
+    }
+    
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (o == null) return false;
+        if (!(o instanceof ContractAndNameKey)) return false;
+        
+        ContractAndNameKey other = (ContractAndNameKey) o;
+        if (hashCode != other.hashCode) return false;
+        
+        return safeEquals(contract, other.contract) && safeEquals(name, other.name);
+    }
+    
+    @Override
+    public String toString() {
+        return "ContractAndNameKey(" + contract + "," + name + "," +
+                System.identityHashCode(this) + ")";
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.hk2.internal;
+
+/**
+ * The index generation of every locator in a chain of
+ * locators, from a given locator up through all of its ancestors.
+ * Anything computed from the indexes of those locators after this
+ * was created is valid for as long as this stays current
+ * 
+ * @author jwells
+ *
+ */
+public class IndexGenerations {
+    private final long generations[];
+    
+    /**
+     * Must be created before anything depending on the
+     * indexes is computed
+     * 
+     * @param first The first locator of the chain, may be null
+     * for an empty chain
+     */
+    /* package */ IndexGenerations(ServiceLocatorImpl first) {
+        int depth = 0;
+        for (ServiceLocatorImpl locator = first; locator != null; locator = locator.getParentLocator()) {
+            depth++;
+        }
+        
+        generations = new long[depth];
+        int lcv = 0;
+        for (ServiceLocatorImpl locator = first; locator != null; locator = locator.getParentLocator()) {
+            generations[lcv++] = locator.getIndexGeneration();
+        }
+    }
+    
+    /**
+     * Tells whether or not any locator in the chain has modified
+     * its indexes since this was created
+     * 
+     * @param first The first locator of the chain, which must be
+     * the same one this was created with
+     * @return true if nothing in the chain has changed
+     */
+    /* package */ boolean isCurrent(ServiceLocatorImpl first) {
+        int lcv = 0;
+        for (ServiceLocatorImpl locator = first; locator != null; locator = locator.getParentLocator()) {
+            if (lcv >= generations.length) return false;
+            if (generations[lcv++] != locator.getIndexGeneration()) return false;
+        }
+        
+        return (lcv == generations.length);
+    }
+}
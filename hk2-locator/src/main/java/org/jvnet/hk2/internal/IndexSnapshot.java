@@ -0,0 +1,120 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.hk2.internal;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable copy of the descriptor indexes of a {@link ServiceLocatorImpl}.
+ * A snapshot is built after the indexes have been modified and is then
+ * published via a volatile reference, so that lookups can read the indexes
+ * without taking the locator lock
+ * 
+ * @author jwells
+ *
+ */
+public class IndexSnapshot {
+    private final List<SystemDescriptor<?>> allDescriptors;
+    private final HashMap<String, List<SystemDescriptor<?>>> byAdvertisedContract;
+    private final HashMap<String, List<SystemDescriptor<?>>> byName;
+    private final HashMap<ContractAndNameKey, List<SystemDescriptor<?>>> byContractAndName;
+    
+    /**
+     * Must be called with the locator lock held
+     * 
+     * @param allDescriptors The list of all descriptors
+     * @param byAdvertisedContract The index of descriptors by contract
+     * @param byName The index of descriptors by name
+     * @param byContractAndName The index of descriptors by contract and name
+     */
+    /* package */ IndexSnapshot(IndexedListData allDescriptors,
+            Map<String, IndexedListData> byAdvertisedContract,
+            Map<String, IndexedListData> byName,
+            Map<ContractAndNameKey, IndexedListData> byContractAndName) {
+        this.allDescriptors = allDescriptors.getImmutableSortedList();
+        this.byAdvertisedContract = copyIndex(byAdvertisedContract);
+        this.byName = copyIndex(byName);
+        this.byContractAndName = copyIndex(byContractAndName);
+    }
+    
+    private static <K> HashMap<K, List<SystemDescriptor<?>>> copyIndex(Map<K, IndexedListData> index) {
+        HashMap<K, List<SystemDescriptor<?>>> retVal =
+                new HashMap<K, List<SystemDescriptor<?>>>((index.size() * 4 / 3) + 1);
+        
+        for (Map.Entry<K, IndexedListData> entry : index.entrySet()) {
+            retVal.put(entry.getKey(), entry.getValue().getImmutableSortedList());
+        }
+        
+        return retVal;
+    }
+    
+    /**
+     * Gets the descriptors from the index selected by the given key
+     * 
+     * @param key The key selecting the contract, the name, both
+     * or neither
+     * @return A non-null, possibly empty, sorted list of descriptors
+     */
+    public List<SystemDescriptor<?>> getIndexedDescriptors(ContractAndNameKey key) {
+        List<SystemDescriptor<?>> retVal;
+        if (key.getName() != null) {
+            if (key.getContract() != null) {
+                retVal = byContractAndName.get(key);
+            }
+            else {
+                retVal = byName.get(key.getName());
+            }
+        }
+        else if (key.getContract() != null) {
+            retVal = byAdvertisedContract.get(key.getContract());
+        }
+        else {
+            retVal = allDescriptors;
+        }
+        
+        if (retVal == null) return Collections.emptyList();
+        
+        return retVal;
+    }
+}
@@ -43,6 +43,7 @@ package org.jvnet.hk2.internal;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.ListIterator;
 
 /**
@@ -57,6 +58,7 @@ import java.util.ListIterator;
 public class IndexedListData {
     private final ArrayList<SystemDescriptor<?>> unsortedList = new ArrayList<SystemDescriptor<?>>();
     private volatile boolean sorted = true;
+    private volatile List<SystemDescriptor<?>> immutableList = null;
     
     public Collection<SystemDescriptor<?>> getSortedList() {
         if (sorted) return unsortedList;
@@ -76,8 +78,29 @@ public class IndexedListData {
         }
     }
     
+    /**
+     * Returns a sorted copy of this list that will never be modified.
+     * The copy is kept until the next modification of this list, so
+     * unchanged lists are not copied again
+     * 
+     * @return A non-null, unmodifiable and sorted copy of this list
+     */
+    public List<SystemDescriptor<?>> getImmutableSortedList() {
+        List<SystemDescriptor<?>> retVal = immutableList;
+        if (retVal != null) return retVal;
+        
+        synchronized (this) {
+            if (immutableList != null) return immutableList;
+            
+            immutableList = Collections.unmodifiableList(
+                    new ArrayList<SystemDescriptor<?>>(getSortedList()));
+            return immutableList;
+        }
+    }
+    
     public synchronized void addDescriptor(SystemDescriptor<?> descriptor) {
         unsortedList.add(descriptor);
+        immutableList = null;
         
         if (unsortedList.size() > 1) {
             sorted = false;
@@ -95,6 +118,7 @@ public class IndexedListData {
             SystemDescriptor<?> candidate = iterator.next();
             if (ServiceLocatorImpl.DESCRIPTOR_COMPARATOR.compare(descriptor, candidate) == 0) {
                 iterator.remove();
+                immutableList = null;
                 break;
             }
         }
@@ -119,6 +143,7 @@ public class IndexedListData {
     public synchronized void unSort() {
         if (unsortedList.size() > 1) {
             sorted = false;
+            immutableList = null;
         }
     }
     
@@ -128,6 +153,7 @@ public class IndexedListData {
         }
         
         unsortedList.clear();
+        immutableList = null;
     }
     
     public synchronized int size() {
@@ -0,0 +1,179 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.hk2.internal;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javassist.util.proxy.MethodFilter;
+import javassist.util.proxy.ProxyFactory;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.glassfish.hk2.api.AOPProxyCtl;
+
+/**
+ * The method interceptors of one instance of a service.  The interception
+ * services are asked for the interceptors of every instance created, since
+ * their answers may change over time.  The proxy class of a set of
+ * intercepted methods is created once and gives every method a position, the
+ * chain of a method is found by that position in the chains of the instance.
+ * The proxy class only overrides the intercepted methods, so the other methods
+ * of an intercepted service are plain calls
+ * 
+ * @author jwells
+ *
+ */
+final class InterceptorBindings {
+    private final ProxyClass proxyClass;
+    private final MethodInterceptor chains[][];
+    
+    private InterceptorBindings(ProxyClass proxyClass, Map<Method, List<MethodInterceptor>> methodInterceptors) {
+        this.proxyClass = proxyClass;
+        
+        chains = new MethodInterceptor[proxyClass.indexes.size()][];
+        for (Map.Entry<Method, List<MethodInterceptor>> entry : methodInterceptors.entrySet()) {
+            chains[proxyClass.indexes.get(entry.getKey())] =
+                    entry.getValue().toArray(new MethodInterceptor[entry.getValue().size()]);
+        }
+    }
+    
+    /**
+     * Creates the bindings of an instance, creating the proxy class the first
+     * time a service is created with this set of intercepted methods
+     * 
+     * @param implClass The class of the service
+     * @param c The constructor of the service
+     * @param methodInterceptors The non-empty method interceptors of the instance
+     * @param proxyClasses The proxy classes of the service already created,
+     * keyed by the set of intercepted methods
+     * @return The bindings of the instance
+     * @throws NoSuchMethodException If the proxy does not have the constructor
+     */
+    /* package */ static InterceptorBindings bind(Class<?> implClass, Constructor<?> c,
+            Map<Method, List<MethodInterceptor>> methodInterceptors,
+            ConcurrentHashMap<Set<Method>, ProxyClass> proxyClasses) throws NoSuchMethodException {
+        ProxyClass proxyClass = proxyClasses.get(methodInterceptors.keySet());
+        if (proxyClass == null) {
+            ProxyClass created = new ProxyClass(implClass, c, methodInterceptors.keySet());
+            
+            proxyClass = proxyClasses.putIfAbsent(created.intercepted, created);
+            if (proxyClass == null) proxyClass = created;
+        }
+        
+        return new InterceptorBindings(proxyClass, methodInterceptors);
+    }
+    
+    /**
+     * The constructor of the proxy class that matches the constructor
+     * of the service
+     * 
+     * @return The constructor to create the proxy with
+     */
+    /* package */ Constructor<?> getProxyConstructor() {
+        return proxyClass.constructor;
+    }
+    
+    /**
+     * Returns the interceptor chain of a method the proxy handler was called with
+     * 
+     * @param proxyMethod The method the proxy handler was called with
+     * @return The interceptors of the method, or null if it is not intercepted
+     */
+    /* package */ MethodInterceptor[] getChain(Method proxyMethod) {
+        Integer index = proxyClass.indexes.get(proxyMethod);
+        if (index == null) return null;
+        
+        return chains[index];
+    }
+    
+    /**
+     * A proxy class overriding a set of intercepted methods, and the
+     * position of each of those methods.  Shared by all the instances
+     * intercepted on the same methods
+     * 
+     * @author jwells
+     *
+     */
+    /* package */ static final class ProxyClass {
+        private final static Class<?> ADDED_INTERFACES[] = { AOPProxyCtl.class };
+        
+        private final Set<Method> intercepted;
+        private final Map<Method, Integer> indexes;
+        private final Constructor<?> constructor;
+        
+        private ProxyClass(Class<?> implClass, Constructor<?> c, Set<Method> methods) throws NoSuchMethodException {
+            intercepted = Collections.unmodifiableSet(new HashSet<Method>(methods));
+            
+            HashMap<Method, Integer> positions = new HashMap<Method, Integer>();
+            for (Method method : intercepted) {
+                positions.put(method, positions.size());
+            }
+            indexes = positions;
+            
+            ProxyFactory proxyFactory = new ProxyFactory();
+            proxyFactory.setSuperclass(implClass);
+            proxyFactory.setFilter(new MethodFilter() {
+
+                @Override
+                public boolean isHandled(Method method) {
+                    if (method.getName().equals(AOPProxyCtl.UNDERLYING_METHOD_NAME)) return true;
+                    
+                    // We do not allow interception of finalize
+                    if (method.getName().equals("finalize")) return false;
+                    
+                    return intercepted.contains(method);
+                }
+                
+            });
+            proxyFactory.setInterfaces(ADDED_INTERFACES);
+            
+            Class<?> proxyClass = proxyFactory.createClass();
+            constructor = proxyClass.getConstructor(c.getParameterTypes());
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.hk2.internal;
+
+import org.jvnet.hk2.external.runtime.LatencyHistogram;
+
+/**
+ * An immutable snapshot of a {@link LatencyRecorder}
+ * 
+ * @author jwells
+ *
+ */
+public class LatencyHistogramImpl implements LatencyHistogram {
+    private final long counts[];
+    private final long count;
+    private final long totalTime;
+    private final long maximumTime;
+    
+    /* package */ LatencyHistogramImpl(long counts[], long totalTime, long maximumTime) {
+        this.counts = counts;
+        this.totalTime = totalTime;
+        this.maximumTime = maximumTime;
+        
+        long sum = 0L;
+        for (long bucketCount : counts) {
+            sum += bucketCount;
+        }
+        count = sum;
+    }
+
+    /* (non-Javadoc)
+     * @see org.jvnet.hk2.external.runtime.LatencyHistogram#getCount()
+     */
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    /* (non-Javadoc)
+     * @see org.jvnet.hk2.external.runtime.LatencyHistogram#getTotalTime()
+     */
+    @Override
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    /* (non-Javadoc)
+     * @see org.jvnet.hk2.external.runtime.LatencyHistogram#getMaximumTime()
+     */
+    @Override
+    public long getMaximumTime() {
+        return maximumTime;
+    }
+
+    /* (non-Javadoc)
+     * @see org.jvnet.hk2.external.runtime.LatencyHistogram#getPercentile(double)
+     */
+    @Override
+    public long getPercentile(double fraction) {
+        if (fraction < 0.0 || fraction > 1.0) {
+            throw new IllegalArgumentException("The fraction must be between 0.0 and 1.0, it was " + fraction);
+        }
+        if (count == 0L) return 0L;
+        
+        long needed = (long) Math.ceil(fraction * count);
+        if (needed < 1L) needed = 1L;
+        
+        long seen = 0L;
+        for (int lcv = 0; lcv < counts.length; lcv++) {
+            seen += counts[lcv];
+            if (seen >= needed) {
+                return Math.min(LatencyRecorder.getBucketUpperBound(lcv), maximumTime);
+            }
+        }
+        
+        // Counts that were updated while the snapshot was taken
+        return maximumTime;
+    }
+
+    /* (non-Javadoc)
+     * @see org.jvnet.hk2.external.runtime.LatencyHistogram#getBucketUpperBounds()
+     */
+    @Override
+    public long[] getBucketUpperBounds() {
+        long retVal[] = new long[counts.length];
+        for (int lcv = 0; lcv < counts.length; lcv++) {
+            retVal[lcv] = LatencyRecorder.getBucketUpperBound(lcv);
+        }
+        
+        return retVal;
+    }
+
+    /* (non-Javadoc)
+     * @see org.jvnet.hk2.external.runtime.LatencyHistogram#getBucketCounts()
+     */
+    @Override
+    public long[] getBucketCounts() {
+        return counts.clone();
+    }
+    
+    @Override
+    public String toString() {
+        return "LatencyHistogramImpl(" + count + "," + totalTime + "," + maximumTime + "," + System.identityHashCode(this) + ")";
+    }
+
+}
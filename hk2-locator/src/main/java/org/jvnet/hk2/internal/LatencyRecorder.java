@@ -0,0 +1,125 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.hk2.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.jvnet.hk2.external.runtime.LatencyHistogram;
+
+/**
+ * Records times into buckets whose upper bounds are powers of
+ * two nanoseconds.  The operations timed (service creation and
+ * commits) are far more expensive than an atomic update, and
+ * updates for different times land in different buckets, so the
+ * buckets are not striped
+ * 
+ * @author jwells
+ *
+ */
+public class LatencyRecorder {
+    /* package */ final static int NUMBER_OF_BUCKETS = 64;
+    
+    private final AtomicLongArray buckets = new AtomicLongArray(NUMBER_OF_BUCKETS);
+    private final AtomicLong totalTime = new AtomicLong();
+    private final AtomicLong maximumTime = new AtomicLong();
+    
+    /**
+     * Records one time
+     * 
+     * @param nanos The time to record in nanoseconds.  Negative
+     * times are recorded as zero
+     */
+    public void record(long nanos) {
+        if (nanos < 0L) nanos = 0L;
+        
+        buckets.getAndIncrement(getBucket(nanos));
+        totalTime.getAndAdd(nanos);
+        
+        long currentMaximum = maximumTime.get();
+        while (nanos > currentMaximum) {
+            if (maximumTime.compareAndSet(currentMaximum, nanos)) break;
+            
+            currentMaximum = maximumTime.get();
+        }
+    }
+    
+    /**
+     * Returns an immutable copy of the times recorded so far
+     * 
+     * @return A snapshot of this recorder
+     */
+    public LatencyHistogram snapshot() {
+        long counts[] = new long[NUMBER_OF_BUCKETS];
+        for (int lcv = 0; lcv < NUMBER_OF_BUCKETS; lcv++) {
+            counts[lcv] = buckets.get(lcv);
+        }
+        
+        return new LatencyHistogramImpl(counts, totalTime.get(), maximumTime.get());
+    }
+    
+    /**
+     * Bucket zero holds zero and bucket n holds 2^(n-1) through 2^n - 1
+     * 
+     * @param nanos A non-negative time
+     * @return The bucket the time belongs in
+     */
+    /* package */ static int getBucket(long nanos) {
+        return NUMBER_OF_BUCKETS - Long.numberOfLeadingZeros(nanos);
+    }
+    
+    /**
+     * Returns the largest time that belongs in the given bucket
+     * 
+     * @param bucket A bucket between zero and 63
+     * @return The inclusive upper bound of the bucket
+     */
+    /* package */ static long getBucketUpperBound(int bucket) {
+        // For bucket 63 this overflows to Long.MAX_VALUE
+        return (1L << bucket) - 1L;
+    }
+    
+    @Override
+    public String toString() {
+        return "LatencyRecorder(" + totalTime.get() + "," + maximumTime.get() + "," + System.identityHashCode(this) + ")";
+    }
+
+}
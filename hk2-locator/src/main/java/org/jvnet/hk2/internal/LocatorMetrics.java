@@ -0,0 +1,155 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.hk2.internal;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.utilities.general.StripedCounter;
+import org.jvnet.hk2.external.runtime.LatencyHistogram;
+import org.jvnet.hk2.external.runtime.ServiceLocatorMetrics;
+
+/**
+ * The metrics being gathered by one ServiceLocator.  The locator
+ * only holds one of these while metrics are enabled, so that
+ * when they are disabled the only cost is a null check
+ * 
+ * @author jwells
+ *
+ */
+public class LocatorMetrics {
+    private final long startTime = System.currentTimeMillis();
+    
+    private final StripedCounter serviceLookups = new StripedCounter();
+    private final StripedCounter serviceCacheMisses = new StripedCounter();
+    private final StripedCounter allServicesLookups = new StripedCounter();
+    private final StripedCounter allServicesCacheMisses = new StripedCounter();
+    private final ConcurrentHashMap<String, StripedCounter> lookupsByContract =
+            new ConcurrentHashMap<String, StripedCounter>();
+    
+    private final ConcurrentHashMap<ActiveDescriptor<?>, LatencyRecorder> creationTimes =
+            new ConcurrentHashMap<ActiveDescriptor<?>, LatencyRecorder>();
+    private final LatencyRecorder commitTimes = new LatencyRecorder();
+    
+    /* package */ void serviceLookup(String contract) {
+        serviceLookups.increment();
+        contractLookup(contract);
+    }
+    
+    /* package */ void allServicesLookup(String contract) {
+        allServicesLookups.increment();
+        contractLookup(contract);
+    }
+    
+    private void contractLookup(String contract) {
+        StripedCounter counter = lookupsByContract.get(contract);
+        if (counter == null) {
+            StripedCounter newCounter = new StripedCounter();
+            
+            counter = lookupsByContract.putIfAbsent(contract, newCounter);
+            if (counter == null) counter = newCounter;
+        }
+        
+        counter.increment();
+    }
+    
+    /* package */ void serviceCacheMiss() {
+        serviceCacheMisses.increment();
+    }
+    
+    /* package */ void allServicesCacheMiss() {
+        allServicesCacheMisses.increment();
+    }
+    
+    /* package */ void serviceCreated(ActiveDescriptor<?> descriptor, long nanos) {
+        LatencyRecorder recorder = creationTimes.get(descriptor);
+        if (recorder == null) {
+            LatencyRecorder newRecorder = new LatencyRecorder();
+            
+            recorder = creationTimes.putIfAbsent(descriptor, newRecorder);
+            if (recorder == null) recorder = newRecorder;
+        }
+        
+        recorder.record(nanos);
+    }
+    
+    /* package */ void descriptorRemoved(ActiveDescriptor<?> descriptor) {
+        creationTimes.remove(descriptor);
+    }
+    
+    /* package */ void committed(long nanos) {
+        commitTimes.record(nanos);
+    }
+    
+    /* package */ ServiceLocatorMetrics snapshot() {
+        Map<String, Long> byContract = new HashMap<String, Long>();
+        for (Map.Entry<String, StripedCounter> entry : lookupsByContract.entrySet()) {
+            byContract.put(entry.getKey(), entry.getValue().sum());
+        }
+        
+        Map<ActiveDescriptor<?>, LatencyHistogram> creations = new HashMap<ActiveDescriptor<?>, LatencyHistogram>();
+        for (Map.Entry<ActiveDescriptor<?>, LatencyRecorder> entry : creationTimes.entrySet()) {
+            creations.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        
+        // Misses are read first so that hits are never negative
+        long serviceMisses = serviceCacheMisses.sum();
+        long allServicesMisses = allServicesCacheMisses.sum();
+        
+        return new ServiceLocatorMetricsImpl(startTime,
+                Collections.unmodifiableMap(byContract),
+                Math.max(serviceLookups.sum() - serviceMisses, 0L),
+                serviceMisses,
+                Math.max(allServicesLookups.sum() - allServicesMisses, 0L),
+                allServicesMisses,
+                Collections.unmodifiableMap(creations),
+                commitTimes.snapshot());
+    }
+    
+    @Override
+    public String toString() {
+        return "LocatorMetrics(" + startTime + "," + System.identityHashCode(this) + ")";
+    }
+
+}
@@ -40,12 +40,23 @@
 
 package org.jvnet.hk2.internal;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 
 import org.glassfish.hk2.api.ActiveDescriptor;
 import org.glassfish.hk2.api.DescriptorFileFinder;
@@ -56,6 +67,7 @@ import org.glassfish.hk2.api.MultiException;
 import org.glassfish.hk2.api.Populator;
 import org.glassfish.hk2.api.PopulatorPostProcessor;
 import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.utilities.BinaryDescriptorFormat;
 import org.glassfish.hk2.utilities.ClasspathDescriptorFileFinder;
 import org.glassfish.hk2.utilities.DescriptorImpl;
 
@@ -65,6 +77,34 @@ import org.glassfish.hk2.utilities.DescriptorImpl;
  * @author jwells
  */
 public class PopulatorImpl implements Populator {
+    private final static String POPULATOR_THREADS_PROPERTY = "org.jvnet.hk2.properties.populator.threads";
+    private final static String LAZY_METADATA_PROPERTY = "org.jvnet.hk2.properties.populator.lazyMetadata";
+    
+    /**
+     * The number of threads that read the descriptor files of one populate
+     * call.  With one thread the files are read by the caller
+     */
+    private final static int POPULATOR_THREADS = AccessController.doPrivileged(new PrivilegedAction<Integer>() {
+        @Override
+        public Integer run() {
+            return Integer.getInteger(POPULATOR_THREADS_PROPERTY, 1);
+        }
+            
+    });
+    
+    /**
+     * If true the metadata of descriptors read from text files is
+     * only parsed when it is first used
+     */
+    private final static boolean LAZY_METADATA = AccessController.doPrivileged(new PrivilegedAction<Boolean>() {
+        @Override
+        public Boolean run() {
+            return Boolean.parseBoolean(
+                System.getProperty(LAZY_METADATA_PROPERTY, "false"));
+        }
+            
+    });
+    
     private final ServiceLocator serviceLocator;
     private final DynamicConfigurationService dcs;
     
@@ -115,63 +155,58 @@ public class PopulatorImpl implements Populator {
 
         DynamicConfiguration config = dcs.createDynamicConfiguration();
 
-        int lcv = 0;
-        for (InputStream is : descriptorFileInputStreams) {
-            String identifier = (descriptorInformation == null) ? null : descriptorInformation.get(lcv) ;
-            lcv++;
-
-            BufferedReader br = new BufferedReader(new InputStreamReader(is));
-
-            try {
-                boolean readOne = false;
-
-                do {
-                    DescriptorImpl descriptorImpl = new DescriptorImpl();
-
-                    try {
-                        readOne = descriptorImpl.readObject(br);
-                    }
-                    catch (IOException ioe) {
-                        if (identifier != null) {
-                            collector.addThrowable(new IOException("InputStream with identifier \"" + identifier + "\" failed", ioe));
-                        }
-                        else {
-                            collector.addThrowable(ioe);
-                        }
-                    }
-
-                    if (readOne) {
-                            
-                        for (PopulatorPostProcessor pp : postProcessors) {
-                            try {
-                                descriptorImpl = pp.process(serviceLocator, descriptorImpl);
-                            }
-                            catch (Throwable th) {
-                                if (identifier != null) {
-                                    collector.addThrowable(new IOException("InputStream with identifier \"" + identifier + "\" failed", th));
-                                }
-                                else {
-                                    collector.addThrowable(th);
-                                }
-                                descriptorImpl = null;
-                            }
-
-                            if (descriptorImpl == null) {
-                                break;
-                            }
-                        }
-                            
-                        if (descriptorImpl != null) {
-                            descriptors.add(config.bind(descriptorImpl, false));
-                        }
+        ExecutorService pool = null;
+        if (POPULATOR_THREADS > 1 && descriptorFileInputStreams.size() > 1) {
+            pool = Executors.newFixedThreadPool(
+                    Math.min(POPULATOR_THREADS, descriptorFileInputStreams.size()),
+                    new PopulatorThreadFactory());
+        }
+        
+        try {
+            List<FutureTask<ParsedFile>> parsedFiles = new ArrayList<FutureTask<ParsedFile>>(descriptorFileInputStreams.size());
+            for (final InputStream is : descriptorFileInputStreams) {
+                FutureTask<ParsedFile> parsedFile = new FutureTask<ParsedFile>(new Callable<ParsedFile>() {
 
+                    @Override
+                    public ParsedFile call() throws Exception {
+                        return parse(is);
                     }
-                } while (readOne);
-
-            } finally {
-                br.close();
+                    
+                });
+                
+                parsedFiles.add(parsedFile);
+                if (pool != null) pool.execute(parsedFile);
+            }
+            
+            // The files are bound in the order they were found, however they were read
+            int lcv = 0;
+            for (FutureTask<ParsedFile> parsedFile : parsedFiles) {
+                String identifier = (descriptorInformation == null) ? null : descriptorInformation.get(lcv) ;
+                lcv++;
+                
+                if (pool == null) parsedFile.run();
+                
+                ParsedFile parsed;
+                try {
+                    parsed = getUninterruptibly(parsedFile);
+                }
+                catch (ExecutionException ee) {
+                    addThrowable(collector, identifier, ee.getCause());
+                    continue;
+                }
+                
+                for (DescriptorImpl descriptorImpl : parsed.descriptors) {
+                    bindOne(descriptorImpl, identifier, postProcessors, collector, config, descriptors);
+                }
+                
+                if (parsed.error != null) {
+                    addThrowable(collector, identifier, parsed.error);
+                }
             }
         }
+        finally {
+            if (pool != null) pool.shutdown();
+        }
         
         // Prior to commit!
         collector.throwIfErrors();
@@ -181,6 +216,108 @@ public class PopulatorImpl implements Populator {
         return descriptors;
     }
 
+    /**
+     * Reads all of the descriptors of one file and closes it.  The descriptors
+     * read before an error in the file are kept along with the error
+     */
+    private static ParsedFile parse(InputStream is) throws IOException {
+        ParsedFile retVal = new ParsedFile();
+        
+        BufferedInputStream bis = new BufferedInputStream(is);
+        try {
+            if (BinaryDescriptorFormat.isBinary(bis)) {
+                retVal.descriptors = BinaryDescriptorFormat.read(bis);
+                return retVal;
+            }
+            
+            BufferedReader br = new BufferedReader(new InputStreamReader(bis));
+            
+            boolean readOne = false;
+            do {
+                DescriptorImpl descriptorImpl = new DescriptorImpl();
+                
+                readOne = descriptorImpl.readObject(br, LAZY_METADATA);
+                if (readOne) {
+                    retVal.descriptors.add(descriptorImpl);
+                }
+            } while (readOne);
+        }
+        catch (IOException ioe) {
+            // From looking for the binary header, from the binary format, which is read
+            // all or nothing, or from the text format, which keeps what came before
+            retVal.error = ioe;
+        }
+        finally {
+            bis.close();
+        }
+        
+        return retVal;
+    }
+    
+    private static <T> T getUninterruptibly(Future<T> future) throws ExecutionException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                }
+                catch (InterruptedException ie) {
+                    interrupted = true;
+                }
+            }
+        }
+        finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void bindOne(DescriptorImpl descriptorImpl,
+            String identifier,
+            PopulatorPostProcessor postProcessors[],
+            Collector collector,
+            DynamicConfiguration config,
+            List<ActiveDescriptor<?>> descriptors) {
+        for (PopulatorPostProcessor pp : postProcessors) {
+            try {
+                descriptorImpl = pp.process(serviceLocator, descriptorImpl);
+            }
+            catch (Throwable th) {
+                addThrowable(collector, identifier, th);
+                descriptorImpl = null;
+            }
+
+            if (descriptorImpl == null) {
+                return;
+            }
+        }
+        
+        descriptors.add(config.bind(descriptorImpl, false));
+    }
+    
+    private static void addThrowable(Collector collector, String identifier, Throwable th) {
+        if (identifier != null) {
+            collector.addThrowable(new IOException("InputStream with identifier \"" + identifier + "\" failed", th));
+        }
+        else {
+            collector.addThrowable(th);
+        }
+    }
+
+    private static class ParsedFile {
+        private List<DescriptorImpl> descriptors = new LinkedList<DescriptorImpl>();
+        private IOException error;
+    }
+    
+    private static class PopulatorThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread retVal = new Thread(runnable, PopulatorImpl.class.getSimpleName() + "-" + System.currentTimeMillis());
+            retVal.setDaemon(true);
+            
+            return retVal;
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.glassfish.hk2.api.Populator#populate()
      */
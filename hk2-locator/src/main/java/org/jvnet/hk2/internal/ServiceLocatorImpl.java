@@ -49,11 +49,13 @@ import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -102,6 +104,7 @@ import org.glassfish.hk2.api.ServiceHandle;
 import org.glassfish.hk2.api.ServiceLocator;
 import org.glassfish.hk2.api.ServiceLocatorFactory;
 import org.glassfish.hk2.api.ServiceLocatorState;
+import org.glassfish.hk2.api.ServiceSupplier;
 import org.glassfish.hk2.api.TwoPhaseResource;
 import org.glassfish.hk2.api.TwoPhaseTransactionData;
 import org.glassfish.hk2.api.Unqualified;
@@ -111,7 +114,7 @@ import org.glassfish.hk2.api.Validator;
 import org.glassfish.hk2.api.messaging.Topic;
 import org.glassfish.hk2.utilities.BuilderHelper;
 import org.glassfish.hk2.utilities.InjecteeImpl;
-import org.glassfish.hk2.utilities.cache.CacheKeyFilter;
+import org.glassfish.hk2.utilities.cache.CacheKeyIndexer;
 import org.glassfish.hk2.utilities.cache.CacheUtilities;
 import org.glassfish.hk2.utilities.cache.ComputationErrorException;
 import org.glassfish.hk2.utilities.cache.WeakCARCache;
@@ -145,12 +148,16 @@ public class ServiceLocatorImpl implements ServiceLocator {
             
     });
 
+    private final static String CACHED_REFLECTION_INJECTION_PROPERTY = "org.jvnet.hk2.properties.cachedReflectionInjection";
+    private final static String METRICS_PROPERTY = "org.jvnet.hk2.properties.metrics";
+
     private final static int CACHE_SIZE = 20000;
     private final static Object sLock = new Object();
     private static long currentLocatorId = 0L;
 
     /* package */ final static DescriptorComparator DESCRIPTOR_COMPARATOR = new DescriptorComparator();
     private final static ServiceHandleComparator HANDLE_COMPARATOR = new ServiceHandleComparator();
+    private final static ContractAndNameKey ALL_DESCRIPTORS_KEY = new ContractAndNameKey(null, null);
 
     private final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
     private final WriteLock wLock = readWriteLock.writeLock();
@@ -160,6 +167,9 @@ public class ServiceLocatorImpl implements ServiceLocator {
     private final long id;
     private final ServiceLocatorImpl parent;
     private volatile boolean neutralContextClassLoader = true;
+    private final boolean cachedReflectionInjection = getBooleanProperty(CACHED_REFLECTION_INJECTION_PROPERTY);
+    private final Object metricsLock = new Object();
+    private volatile LocatorMetrics metrics = getBooleanProperty(METRICS_PROPERTY) ? new LocatorMetrics() : null;
     private final ClassReflectionHelper classReflectionHelper = new ClassReflectionHelperImpl();
     private final PerLocatorUtilities perLocatorUtilities = new PerLocatorUtilities(this);
 
@@ -168,10 +178,17 @@ public class ServiceLocatorImpl implements ServiceLocator {
             new HashMap<String, IndexedListData>();
     private final HashMap<String, IndexedListData> descriptorsByName =
             new HashMap<String, IndexedListData>();
+    private final HashMap<ContractAndNameKey, IndexedListData> descriptorsByContractAndName =
+            new HashMap<ContractAndNameKey, IndexedListData>();
+    private volatile IndexSnapshot indexSnapshot = null;
+    private volatile long indexGeneration = 0L;
+    private volatile AncestorIndexView ancestorIndexView = null;
+    private boolean modifyingIndexes = false;
     private final Context<Singleton> singletonContext = new SingletonContext(this);
     private final Context<PerLookup> perLookupContext = new PerLookupContext();
     private final LinkedHashSet<ValidationService> allValidators =
             new LinkedHashSet<ValidationService>();
+    private volatile boolean hasValidators = false;
     private final LinkedList<ErrorService> errorHandlers =
             new LinkedList<ErrorService>();
     private final LinkedList<ServiceHandle<?>> configListeners =
@@ -307,63 +324,36 @@ public class ServiceLocatorImpl implements ServiceLocator {
             boolean getLocals) {
         if (filter == null) throw new IllegalArgumentException("filter is null");
 
-        LinkedList<SystemDescriptor<?>> retVal;
-        rLock.lock();
-        try {
-            Collection<SystemDescriptor<?>> sortMeOut;
-            if (filter instanceof IndexedFilter) {
-                IndexedFilter df = (IndexedFilter) filter;
-
-                if (df.getName() != null) {
-                    Collection<SystemDescriptor<?>> scopedByName;
-
-                    String name = df.getName();
-
-                    IndexedListData ild = descriptorsByName.get(name);
-                    scopedByName = (ild == null) ? null : ild.getSortedList();
-                    if (scopedByName == null) {
-                        scopedByName = Collections.emptyList();
-                    }
-
-                    if (df.getAdvertisedContract() != null) {
-                        sortMeOut = new LinkedList<SystemDescriptor<?>>();
-
-                        for (SystemDescriptor<?> candidate : scopedByName) {
-                            if (candidate.getAdvertisedContracts().contains(df.getAdvertisedContract())) {
-                                sortMeOut.add(candidate);
-                            }
-                        }
-                    }
-                    else {
-                        sortMeOut = scopedByName;
-                    }
-                }
-                else if (df.getAdvertisedContract() != null) {
-                    String advertisedContract = df.getAdvertisedContract();
-
-                    IndexedListData ild = descriptorsByAdvertisedContract.get(advertisedContract);
-                    sortMeOut = (ild == null) ? null : ild.getSortedList();
-                    if (sortMeOut == null) {
-                        sortMeOut = Collections.emptyList();
-
-                    }
-                }
-                else {
-                    sortMeOut = allDescriptors.getSortedList();
-                }
+        ContractAndNameKey indexKey = getIndexKey(filter);
+        
+        LinkedList<SystemDescriptor<?>> retVal = new LinkedList<SystemDescriptor<?>>();
+        if (!doValidation || !hasValidators()) {
+            List<SystemDescriptor<?>> ancestors;
+            if (getParents && parent != null) {
+                ancestors = getAncestorDescriptors(indexKey);
             }
             else {
-                sortMeOut = allDescriptors.getSortedList();
+                ancestors = Collections.emptyList();
             }
-
-            retVal = new LinkedList<SystemDescriptor<?>>();
-
-            for (SystemDescriptor<?> candidate : sortMeOut) {
+            
+            mergeDescriptors(getIndexSnapshot().getIndexedDescriptors(indexKey),
+                    ancestors,
+                    filter,
+                    getLocals,
+                    retVal);
+            
+            return retVal;
+        }
+        
+        // Validators must be called with the lock held
+        rLock.lock();
+        try {
+            for (SystemDescriptor<?> candidate : getIndexSnapshot().getIndexedDescriptors(indexKey)) {
                 if (!getLocals && DescriptorVisibility.LOCAL.equals(candidate.getDescriptorVisibility())) {
                     continue;
                 }
 
-                if (doValidation && !validate(candidate, onBehalfOf, filter)) continue;
+                if (!validate(candidate, onBehalfOf, filter)) continue;
 
                 if (filter.matches(candidate)) {
                     retVal.add(candidate);
@@ -387,6 +377,157 @@ public class ServiceLocatorImpl implements ServiceLocator {
 
         return retVal;
     }
+    
+    private static ContractAndNameKey getIndexKey(Filter filter) {
+        if (!(filter instanceof IndexedFilter)) return ALL_DESCRIPTORS_KEY;
+        
+        IndexedFilter df = (IndexedFilter) filter;
+        return new ContractAndNameKey(df.getAdvertisedContract(), df.getName());
+    }
+    
+    /**
+     * Merges two lists that are both in ranked order, adding those
+     * descriptors that match the filter to the end of the given list
+     * 
+     * @param locals The indexed descriptors from this locator
+     * @param ancestors The indexed descriptors visible from the ancestors
+     * @param filter The filter to apply to every descriptor, may be null
+     * @param getLocals If false descriptors from this locator with LOCAL visibility are skipped
+     * @param addToMe The list to add the results to
+     */
+    private static void mergeDescriptors(List<SystemDescriptor<?>> locals,
+            List<SystemDescriptor<?>> ancestors,
+            Filter filter,
+            boolean getLocals,
+            List<SystemDescriptor<?>> addToMe) {
+        Iterator<SystemDescriptor<?>> localIterator = locals.iterator();
+        Iterator<SystemDescriptor<?>> ancestorIterator = ancestors.iterator();
+        
+        SystemDescriptor<?> local = localIterator.hasNext() ? localIterator.next() : null;
+        SystemDescriptor<?> ancestor = ancestorIterator.hasNext() ? ancestorIterator.next() : null;
+        while (local != null || ancestor != null) {
+            SystemDescriptor<?> candidate;
+            if (ancestor == null ||
+                    (local != null && DESCRIPTOR_COMPARATOR.compare(local, ancestor) <= 0)) {
+                candidate = local;
+                local = localIterator.hasNext() ? localIterator.next() : null;
+                
+                if (!getLocals && DescriptorVisibility.LOCAL.equals(candidate.getDescriptorVisibility())) {
+                    continue;
+                }
+            }
+            else {
+                candidate = ancestor;
+                ancestor = ancestorIterator.hasNext() ? ancestorIterator.next() : null;
+            }
+            
+            if (filter == null || filter.matches(candidate)) {
+                addToMe.add(candidate);
+            }
+        }
+    }
+    
+    /**
+     * Gets the descriptors from the indexes of all ancestors of this
+     * locator that a child of this locator can see.  The result is
+     * kept until one of the ancestors modifies its indexes
+     * 
+     * @param indexKey The key of the index to use
+     * @return A non-null list of descriptors in ranked order
+     */
+    private List<SystemDescriptor<?>> getAncestorDescriptors(ContractAndNameKey indexKey) {
+        AncestorIndexView view = ancestorIndexView;
+        if (view == null || !view.isCurrent(parent)) {
+            view = new AncestorIndexView(parent);
+            ancestorIndexView = view;
+        }
+        
+        List<SystemDescriptor<?>> retVal = view.get(indexKey);
+        if (retVal != null) return retVal;
+        
+        retVal = parent.getVisibleDescriptors(indexKey);
+        view.put(indexKey, retVal);
+        
+        return retVal;
+    }
+    
+    /**
+     * Gets the descriptors from the indexes of this locator and all
+     * of its ancestors that a child of this locator can see
+     * 
+     * @param indexKey The key of the index to use
+     * @return A non-null unmodifiable list of descriptors in ranked order
+     */
+    private List<SystemDescriptor<?>> getVisibleDescriptors(ContractAndNameKey indexKey) {
+        List<SystemDescriptor<?>> locals = getIndexSnapshot().getIndexedDescriptors(indexKey);
+        List<SystemDescriptor<?>> ancestors;
+        if (parent != null) {
+            ancestors = getAncestorDescriptors(indexKey);
+        }
+        else {
+            ancestors = Collections.emptyList();
+        }
+        
+        ArrayList<SystemDescriptor<?>> retVal = new ArrayList<SystemDescriptor<?>>(locals.size() + ancestors.size());
+        mergeDescriptors(locals, ancestors, null, false, retVal);
+        
+        return Collections.unmodifiableList(retVal);
+    }
+
+    /**
+     * Gets the current snapshot of the indexes.  If the indexes have been
+     * modified since the last snapshot was taken a new one is built.  Snapshots
+     * built while this thread is modifying the indexes are never published
+     * 
+     * @return The non-null snapshot of the current indexes
+     */
+    private IndexSnapshot getIndexSnapshot() {
+        IndexSnapshot retVal = indexSnapshot;
+        if (retVal != null) return retVal;
+        
+        rLock.lock();
+        try {
+            retVal = indexSnapshot;
+            if (retVal != null) return retVal;
+            
+            retVal = new IndexSnapshot(allDescriptors,
+                    descriptorsByAdvertisedContract,
+                    descriptorsByName,
+                    descriptorsByContractAndName);
+            if (!modifyingIndexes) {
+                indexSnapshot = retVal;
+            }
+            
+            return retVal;
+        }
+        finally {
+            rLock.unlock();
+        }
+    }
+    
+    /**
+     * Must be called with the write lock held.  Discards the snapshot
+     * and every ancestor view built by the children of this locator
+     */
+    private void indexesModified() {
+        indexSnapshot = null;
+        indexGeneration++;
+    }
+    
+    /* package */ long getIndexGeneration() {
+        return indexGeneration;
+    }
+    
+    /* package */ ServiceLocatorImpl getParentLocator() {
+        return parent;
+    }
+    
+    /* package */ boolean hasValidators() {
+        if (hasValidators) return true;
+        if (parent == null) return false;
+        
+        return parent.hasValidators();
+    }
 
     private List<ActiveDescriptor<?>> protectedGetDescriptors(final Filter filter) {
         return AccessController.doPrivileged(new PrivilegedAction<List<ActiveDescriptor<?>>>() {
@@ -736,6 +877,48 @@ public class ServiceLocatorImpl implements ServiceLocator {
         return internalGetService(contractOrImpl, name, null, qualifiers);
     }
     
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.api.ServiceLocator#getServiceSupplier(java.lang.Class, java.lang.annotation.Annotation[])
+     */
+    @Override
+    public <T> ServiceSupplier<T> getServiceSupplier(Class<T> contractOrImpl, Annotation... qualifiers) throws MultiException {
+        return getServiceSupplier((Type) contractOrImpl, qualifiers);
+    }
+
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.api.ServiceLocator#getServiceSupplier(java.lang.reflect.Type, java.lang.annotation.Annotation[])
+     */
+    @Override
+    public <T> ServiceSupplier<T> getServiceSupplier(Type contractOrImpl, Annotation... qualifiers) throws MultiException {
+        checkState();
+        if (contractOrImpl == null) throw new IllegalArgumentException();
+
+        Class<?> rawType = ReflectionHelper.getRawClass(contractOrImpl);
+        if (rawType == null) {
+            throw new IllegalArgumentException("Invalid contract or implementation " + contractOrImpl + " passed to getServiceSupplier");
+        }
+
+        if (Provider.class.equals(rawType) || Iterable.class.equals(rawType) ||
+                IterableProvider.class.equals(rawType) || Topic.class.equals(rawType)) {
+            throw new IllegalArgumentException("A service supplier can not be created for " + rawType.getName());
+        }
+
+        return new ServiceSupplierImpl<T>(this, contractOrImpl, qualifiers);
+    }
+
+    /**
+     * Finds the descriptor getService would use for the given contract
+     *
+     * @param contractOrImpl The non-null contract or implementation
+     * @param qualifiers The qualifiers the service must have
+     * @return The best descriptor, or null if none was found
+     */
+    /* package */ <T> ActiveDescriptor<T> getServiceDescriptor(Type contractOrImpl, Annotation... qualifiers) throws MultiException {
+        checkState();
+
+        return internalGetDescriptor(null, contractOrImpl, null, null, false, false, qualifiers);
+    }
+    
     private <T> T internalGetService(Type contractOrImpl, String name, Unqualified unqualified, Annotation... qualifiers) {
         return internalGetService(contractOrImpl, name, unqualified, false, qualifiers);
         
@@ -936,9 +1119,12 @@ public class ServiceLocatorImpl implements ServiceLocator {
             allDescriptors.clear();
             descriptorsByAdvertisedContract.clear();
             descriptorsByName.clear();
+            descriptorsByContractAndName.clear();
+            indexesModified();
             allResolvers.clear();
             injecteeToResolverCache.clear();
             allValidators.clear();
+            hasValidators = false;
             errorHandlers.clear();
             igdCache.clear();
             igashCache.clear();
@@ -1173,15 +1359,25 @@ public class ServiceLocatorImpl implements ServiceLocator {
         }
     }
 
-    private final WeakCARCache<IgdCacheKey, IgdValue> igdCache = CacheUtilities.createWeakCARCache(
+    private final static CacheKeyIndexer<IgdCacheKey> IGD_CACHE_KEY_INDEXER = new CacheKeyIndexer<IgdCacheKey>() {
+        @Override
+        public String getIndex(IgdCacheKey key) {
+            return key.cacheKey.getRemovalName();
+        }
+    };
+    
+    private final WeakCARCache<IgdCacheKey, IgdValue> igdCache = CacheUtilities.createConcurrentWeakCARCache(
             new Computable<IgdCacheKey, IgdValue>() {
                 @Override
                 public IgdValue compute(final IgdCacheKey key) {
                     return igdCacheCompute(key);
                 }
-            }, CACHE_SIZE, false);
+            }, CACHE_SIZE, IGD_CACHE_KEY_INDEXER);
     
     private IgdValue igdCacheCompute(final IgdCacheKey key) {
+        final LocatorMetrics currentMetrics = metrics;
+        if (currentMetrics != null) currentMetrics.serviceCacheMiss();
+
         final List<SystemDescriptor<?>> candidates = getDescriptors(key.filter, key.onBehalfOf, true, false, true);
         final ImmediateResults immediate = narrow(ServiceLocatorImpl.this, // locator
                 candidates, // candidates
@@ -1255,6 +1451,9 @@ public class ServiceLocatorImpl implements ServiceLocator {
                 qualifiers,
                 filter);
 
+        final LocatorMetrics currentMetrics = metrics;
+        if (currentMetrics != null) currentMetrics.serviceLookup(rawClass.getName());
+
         rLock.lock();
         try {
             final IgdValue value = igdCache.compute(igdCacheKey);
@@ -1387,10 +1586,13 @@ public class ServiceLocatorImpl implements ServiceLocator {
     }
 
     final private WeakCARCache<IgdCacheKey, IgdValue> igashCache =
-            CacheUtilities.createWeakCARCache(new Computable<IgdCacheKey, IgdValue>() {
+            CacheUtilities.createConcurrentWeakCARCache(new Computable<IgdCacheKey, IgdValue>() {
         @Override
         public IgdValue compute(final IgdCacheKey key) {
 
+            final LocatorMetrics currentMetrics = metrics;
+            if (currentMetrics != null) currentMetrics.allServicesCacheMiss();
+
             List<SystemDescriptor<?>> candidates = getDescriptors(key.filter, null, true, false, true);
             ImmediateResults immediate = narrow(ServiceLocatorImpl.this,
                     candidates,
@@ -1410,7 +1612,7 @@ public class ServiceLocatorImpl implements ServiceLocator {
             
             return new IgdValue(results, immediate);
         }
-    }, CACHE_SIZE, false);
+    }, CACHE_SIZE, IGD_CACHE_KEY_INDEXER);
 
     private List<?> internalGetAllServiceHandles(
             Type contractOrImpl,
@@ -1447,6 +1649,9 @@ public class ServiceLocatorImpl implements ServiceLocator {
                 qualifiers,
                 filter);
 
+        final LocatorMetrics currentMetrics = metrics;
+        if (currentMetrics != null) currentMetrics.allServicesLookup(name);
+
         rLock.lock();
         try {
             final IgdValue value = igashCache.compute(igdCacheKey);
@@ -1804,7 +2009,10 @@ public class ServiceLocatorImpl implements ServiceLocator {
 
     @SuppressWarnings("unchecked")
     private void removeConfigurationInternal(List<SystemDescriptor<?>> unbinds) {
+        final LocatorMetrics currentMetrics = metrics;
         for (SystemDescriptor<?> unbind : unbinds) {
+            if (currentMetrics != null) currentMetrics.descriptorRemoved(unbind);
+
             if ((BIND_TRACING_PATTERN != null) && doTrace(unbind)) {
                 Logger.getLogger().debug("HK2 Bind Tracing: Removing Descriptor " + unbind);
                 if (BIND_TRACING_STACKS) {
@@ -1831,12 +2039,23 @@ public class ServiceLocatorImpl implements ServiceLocator {
                         descriptorsByName.remove(unbindName);
                     }
                 }
+                
+                for (String advertisedContract : unbind.getAdvertisedContracts()) {
+                    ContractAndNameKey key = new ContractAndNameKey(advertisedContract, unbindName);
+                    
+                    ild = descriptorsByContractAndName.get(key);
+                    if (ild == null) continue;
+                    
+                    ild.removeDescriptor(unbind);
+                    if (ild.isEmpty()) descriptorsByContractAndName.remove(key);
+                }
             }
 
             if (unbind.getAdvertisedContracts().contains(ValidationService.class.getName())) {
                 ServiceHandle<ValidationService> handle = (ServiceHandle<ValidationService>) getServiceHandle(unbind);
                 ValidationService vs = handle.getService();
                 allValidators.remove(vs);
+                hasValidators = !allValidators.isEmpty();
             }
             
             if (unbind.isReified()) {
@@ -1922,12 +2141,25 @@ public class ServiceLocatorImpl implements ServiceLocator {
                 }
 
                 ild.addDescriptor(sd);
+
+                for (String advertisedContract : sd.getAdvertisedContracts()) {
+                    ContractAndNameKey key = new ContractAndNameKey(advertisedContract, name);
+                    
+                    ild = descriptorsByContractAndName.get(key);
+                    if (ild == null) {
+                        ild = new IndexedListData();
+                        descriptorsByContractAndName.put(key, ild);
+                    }
+
+                    ild.addDescriptor(sd);
+                }
             }
 
             if (sd.getAdvertisedContracts().contains(ValidationService.class.getName())) {
                 ServiceHandle<ValidationService> handle = getServiceHandle((ActiveDescriptor<ValidationService>) sd);
                 ValidationService vs = handle.getService();
                 allValidators.add(vs);
+                hasValidators = true;
             }
         }
 
@@ -2017,16 +2249,8 @@ public class ServiceLocatorImpl implements ServiceLocator {
         wLock.lock();
         try {
             for (String affectedContract : affectedContracts) {
-                final String fAffectedContract = affectedContract;
-                final CacheKeyFilter<IgdCacheKey> cacheKeyFilter = new CacheKeyFilter<IgdCacheKey>() {
-                    @Override
-                    public boolean matches(IgdCacheKey key) {
-                        return key.cacheKey.matchesRemovalName(fAffectedContract);
-                    }
-                };
-
-                igdCache.releaseMatching(cacheKeyFilter);
-                igashCache.releaseMatching(cacheKeyFilter);
+                igdCache.releaseIndex(affectedContract);
+                igashCache.releaseIndex(affectedContract);
             }
         } finally {
             wLock.unlock();
@@ -2114,12 +2338,27 @@ public class ServiceLocatorImpl implements ServiceLocator {
         MultiException configurationError = null;
 
         wLock.lock();
+        final LocatorMetrics currentMetrics = metrics;
+        final long lockedAt = (currentMetrics == null) ? 0L : System.nanoTime();
         try {
             checkData = checkConfiguration(dci);  // Does as much preliminary checking as possible
 
-            removeConfigurationInternal(checkData.getUnbinds());
+            // Lookups made while the indexes are in flux must not publish a snapshot
+            List<SystemDescriptor<?>> thingsAdded;
+            boolean wasModifyingIndexes = modifyingIndexes;
+            indexesModified();
+            modifyingIndexes = true;
+            try {
+                removeConfigurationInternal(checkData.getUnbinds());
 
-            List<SystemDescriptor<?>> thingsAdded = addConfigurationInternal(dci);
+                thingsAdded = addConfigurationInternal(dci);
+            }
+            finally {
+                modifyingIndexes = wasModifyingIndexes;
+                
+                // Discards any ancestor views children built from the partial indexes
+                indexesModified();
+            }
 
             reup(thingsAdded,
                     checkData.getInstanceLifecycleModificationsMade(),
@@ -2140,6 +2379,7 @@ public class ServiceLocatorImpl implements ServiceLocator {
                 errorServices = new LinkedList<ErrorService>(errorHandlers);
             }
             
+            if (currentMetrics != null) currentMetrics.committed(System.nanoTime() - lockedAt);
             wLock.unlock();
             
             if (errorServices != null && !errorServices.isEmpty()) {
@@ -2591,6 +2831,30 @@ public class ServiceLocatorImpl implements ServiceLocator {
         return parent;
     }
 
+    private static boolean getBooleanProperty(final String property) {
+        return AccessController.doPrivileged(new PrivilegedAction<Boolean>() {
+            @Override
+            public Boolean run() {
+                return Boolean.parseBoolean(
+                    System.getProperty(property, "false"));
+            }
+
+        });
+    }
+
+    /**
+     * Returns true if services created by this locator should be created
+     * and injected with a {@link CachedReflectionInjector} prepared on first use
+     * rather than by preparing the reflective calls on every creation.  Set with the
+     * org.jvnet.hk2.properties.cachedReflectionInjection system property when
+     * the locator is created
+     *
+     * @return true if cached reflection injection is in use
+     */
+    /* package */ boolean isCachedReflectionInjection() {
+        return cachedReflectionInjection;
+    }
+
     @Override
     public boolean getNeutralContextClassLoader() {
         return neutralContextClassLoader;
@@ -2674,6 +2938,33 @@ public class ServiceLocatorImpl implements ServiceLocator {
         return classReflectionHelper.size();
     }
 
+    /**
+     * Returns the metrics being gathered by this locator
+     *
+     * @return The metrics being gathered, or null if
+     * metrics are not enabled
+     */
+    /* package */ LocatorMetrics getMetrics() {
+        return metrics;
+    }
+
+    /* package */ void setMetricsEnabled(boolean enabled) {
+        synchronized (metricsLock) {
+            if (!enabled) {
+                metrics = null;
+            }
+            else if (metrics == null) {
+                metrics = new LocatorMetrics();
+            }
+        }
+    }
+
+    /* package */ void clearMetrics() {
+        synchronized (metricsLock) {
+            if (metrics != null) metrics = new LocatorMetrics();
+        }
+    }
+
     /* package */ void clearReflectionCache() {
         wLock.lock();
         try {
@@ -2693,6 +2984,8 @@ public class ServiceLocatorImpl implements ServiceLocator {
                 myList.unSort();
             }
             
+            indexesModified();
+            
             return retVal;
         }
         finally {
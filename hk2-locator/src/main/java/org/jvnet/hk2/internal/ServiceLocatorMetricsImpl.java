@@ -0,0 +1,161 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.hk2.internal;
+
+import java.util.Map;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.jvnet.hk2.external.runtime.LatencyHistogram;
+import org.jvnet.hk2.external.runtime.ServiceLocatorMetrics;
+
+/**
+ * An immutable snapshot of {@link LocatorMetrics}
+ * 
+ * @author jwells
+ *
+ */
+public class ServiceLocatorMetricsImpl implements ServiceLocatorMetrics {
+    private final long startTime;
+    private final Map<String, Long> lookupsByContract;
+    private final long serviceCacheHits;
+    private final long serviceCacheMisses;
+    private final long allServicesCacheHits;
+    private final long allServicesCacheMisses;
+    private final Map<ActiveDescriptor<?>, LatencyHistogram> creationTimes;
+    private final LatencyHistogram commitTimes;
+    
+    /* package */ ServiceLocatorMetricsImpl(long startTime,
+            Map<String, Long> lookupsByContract,
+            long serviceCacheHits,
+            long serviceCacheMisses,
+            long allServicesCacheHits,
+            long allServicesCacheMisses,
+            Map<ActiveDescriptor<?>, LatencyHistogram> creationTimes,
+            LatencyHistogram commitTimes) {
+        this.startTime = startTime;
+        this.lookupsByContract = lookupsByContract;
+        this.serviceCacheHits = serviceCacheHits;
+        this.serviceCacheMisses = serviceCacheMisses;
+        this.allServicesCacheHits = allServicesCacheHits;
+        this.allServicesCacheMisses = allServicesCacheMisses;
+        this.creationTimes = creationTimes;
+        this.commitTimes = commitTimes;
+    }
+
+    /* (non-Javadoc)
+     * @see org.jvnet.hk2.external.runtime.ServiceLocatorMetrics#getStartTime()
+     */
+    @Override
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /* (non-Javadoc)
+     * @see org.jvnet.hk2.external.runtime.ServiceLocatorMetrics#getLookupCount()
+     */
+    @Override
+    public long getLookupCount() {
+        return serviceCacheHits + serviceCacheMisses + allServicesCacheHits + allServicesCacheMisses;
+    }
+
+    /* (non-Javadoc)
+     * @see org.jvnet.hk2.external.runtime.ServiceLocatorMetrics#getLookupCountsByContract()
+     */
+    @Override
+    public Map<String, Long> getLookupCountsByContract() {
+        return lookupsByContract;
+    }
+
+    /* (non-Javadoc)
+     * @see org.jvnet.hk2.external.runtime.ServiceLocatorMetrics#getServiceCacheHits()
+     */
+    @Override
+    public long getServiceCacheHits() {
+        return serviceCacheHits;
+    }
+
+    /* (non-Javadoc)
+     * @see org.jvnet.hk2.external.runtime.ServiceLocatorMetrics#getServiceCacheMisses()
+     */
+    @Override
+    public long getServiceCacheMisses() {
+        return serviceCacheMisses;
+    }
+
+    /* (non-Javadoc)
+     * @see org.jvnet.hk2.external.runtime.ServiceLocatorMetrics#getAllServicesCacheHits()
+     */
+    @Override
+    public long getAllServicesCacheHits() {
+        return allServicesCacheHits;
+    }
+
+    /* (non-Javadoc)
+     * @see org.jvnet.hk2.external.runtime.ServiceLocatorMetrics#getAllServicesCacheMisses()
+     */
+    @Override
+    public long getAllServicesCacheMisses() {
+        return allServicesCacheMisses;
+    }
+
+    /* (non-Javadoc)
+     * @see org.jvnet.hk2.external.runtime.ServiceLocatorMetrics#getCreationTimes()
+     */
+    @Override
+    public Map<ActiveDescriptor<?>, LatencyHistogram> getCreationTimes() {
+        return creationTimes;
+    }
+
+    /* (non-Javadoc)
+     * @see org.jvnet.hk2.external.runtime.ServiceLocatorMetrics#getCommitTimes()
+     */
+    @Override
+    public LatencyHistogram getCommitTimes() {
+        return commitTimes;
+    }
+    
+    @Override
+    public String toString() {
+        return "ServiceLocatorMetricsImpl(" + getLookupCount() + "," + serviceCacheHits + "," + serviceCacheMisses +
+                "," + allServicesCacheHits + "," + allServicesCacheMisses + "," + System.identityHashCode(this) + ")";
+    }
+
+}
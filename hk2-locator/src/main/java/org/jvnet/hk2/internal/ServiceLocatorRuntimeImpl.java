@@ -45,6 +45,7 @@ import javax.inject.Singleton;
 import org.glassfish.hk2.api.DescriptorVisibility;
 import org.glassfish.hk2.api.ServiceLocator;
 import org.glassfish.hk2.api.Visibility;
+import org.jvnet.hk2.external.runtime.ServiceLocatorMetrics;
 import org.jvnet.hk2.external.runtime.ServiceLocatorRuntimeBean;
 
 /**
@@ -119,4 +120,41 @@ public class ServiceLocatorRuntimeImpl implements ServiceLocatorRuntimeBean {
 
     }
 
+    /* (non-Javadoc)
+     * @see org.jvnet.hk2.external.runtime.ServiceLocatorRuntimeBean#setMetricsEnabled(boolean)
+     */
+    @Override
+    public void setMetricsEnabled(boolean enabled) {
+        locator.setMetricsEnabled(enabled);
+        
+    }
+
+    /* (non-Javadoc)
+     * @see org.jvnet.hk2.external.runtime.ServiceLocatorRuntimeBean#isMetricsEnabled()
+     */
+    @Override
+    public boolean isMetricsEnabled() {
+        return locator.getMetrics() != null;
+    }
+
+    /* (non-Javadoc)
+     * @see org.jvnet.hk2.external.runtime.ServiceLocatorRuntimeBean#getMetrics()
+     */
+    @Override
+    public ServiceLocatorMetrics getMetrics() {
+        LocatorMetrics metrics = locator.getMetrics();
+        if (metrics == null) return null;
+        
+        return metrics.snapshot();
+    }
+
+    /* (non-Javadoc)
+     * @see org.jvnet.hk2.external.runtime.ServiceLocatorRuntimeBean#clearMetrics()
+     */
+    @Override
+    public void clearMetrics() {
+        locator.clearMetrics();
+        
+    }
+
 }
@@ -0,0 +1,132 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.jvnet.hk2.internal;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.MultiException;
+import org.glassfish.hk2.api.ServiceSupplier;
+import org.glassfish.hk2.utilities.reflection.Pretty;
+import org.glassfish.hk2.utilities.reflection.ReflectionHelper;
+
+/**
+ * Remembers the descriptor found for its contract along with the
+ * index generations of the locator and its ancestors at the time of
+ * the lookup.  While the generations are current the descriptor is
+ * used to create the service directly, skipping the lookup caches
+ * <p>
+ * Validation is done on every lookup, so when there are validators
+ * the lookup is done every time.  A lookup that finds nothing is not
+ * remembered, since a just-in-time resolver may yet find a service
+ * 
+ * @author jwells
+ * @param <T> The type of service supplied
+ *
+ */
+public class ServiceSupplierImpl<T> implements ServiceSupplier<T> {
+    private final ServiceLocatorImpl locator;
+    private final Type contractOrImpl;
+    private final Class<?> rawType;
+    private final Annotation qualifiers[];
+    
+    private volatile Binding<T> binding;
+    
+    /* package */ ServiceSupplierImpl(ServiceLocatorImpl locator,
+            Type contractOrImpl,
+            Annotation qualifiers[]) {
+        this.locator = locator;
+        this.contractOrImpl = contractOrImpl;
+        this.rawType = ReflectionHelper.getRawClass(contractOrImpl);
+        this.qualifiers = qualifiers;
+    }
+
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.api.ServiceSupplier#get()
+     */
+    @Override
+    public T get() throws MultiException {
+        ActiveDescriptor<T> descriptor = getActiveDescriptor();
+        if (descriptor == null) return null;
+        
+        return Utilities.createService(descriptor, null, locator, null, rawType);
+    }
+
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.api.ServiceSupplier#getActiveDescriptor()
+     */
+    @Override
+    public ActiveDescriptor<T> getActiveDescriptor() throws MultiException {
+        Binding<T> current = binding;
+        if (current != null && current.generations.isCurrent(locator)) {
+            return current.descriptor;
+        }
+        
+        // Must be taken before the lookup, so a change during the lookup is noticed next time
+        IndexGenerations generations = new IndexGenerations(locator);
+        
+        ActiveDescriptor<T> descriptor = locator.getServiceDescriptor(contractOrImpl, qualifiers);
+        if (descriptor == null || locator.hasValidators()) {
+            binding = null;
+            return descriptor;
+        }
+        
+        binding = new Binding<T>(descriptor, generations);
+        return descriptor;
+    }
+    
+    @Override
+    public String toString() {
+        return "ServiceSupplierImpl(" + Pretty.type(contractOrImpl) + "," + Pretty.array(qualifiers) + "," +
+            locator + "," + System.identityHashCode(this) + ")";
+    }
+    
+    private static class Binding<T> {
+        private final ActiveDescriptor<T> descriptor;
+        private final IndexGenerations generations;
+        
+        private Binding(ActiveDescriptor<T> descriptor, IndexGenerations generations) {
+            this.descriptor = descriptor;
+            this.generations = generations;
+        }
+    }
+}
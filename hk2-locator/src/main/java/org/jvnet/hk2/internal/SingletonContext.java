@@ -45,6 +45,7 @@ import java.lang.annotation.Annotation;
 import java.util.Comparator;
 import java.util.List;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Singleton;
 
@@ -64,7 +65,7 @@ import org.glassfish.hk2.utilities.reflection.Logger;
  */
 @Singleton
 public class SingletonContext implements Context<Singleton> {
-    private int generationNumber = Integer.MIN_VALUE;
+    private final AtomicInteger generationNumber = new AtomicInteger(Integer.MIN_VALUE);
     private final ServiceLocatorImpl locator;
 
     private final Cache<ContextualInput<Object>, Object> valueCache =
@@ -83,7 +84,9 @@ public class SingletonContext implements Context<Singleton> {
             final Object createdVal = activeDescriptor.create(a.getRoot());
             activeDescriptor.setCache(createdVal);
             if (activeDescriptor instanceof SystemDescriptor) {
-                ((SystemDescriptor<?>) activeDescriptor).setSingletonGeneration(generationNumber++);
+                // Singletons may be created on many threads at once, and every one must get
+                // its own generation or GenerationComparator would drop it from shutdown
+                ((SystemDescriptor<?>) activeDescriptor).setSingletonGeneration(generationNumber.getAndIncrement());
             }
 
             return createdVal;
@@ -117,6 +120,11 @@ public class SingletonContext implements Context<Singleton> {
     @Override
     public <T> T findOrCreate(ActiveDescriptor<T> activeDescriptor,
             ServiceHandle<?> root) {
+        // Every singleton is created on the thread that first asks for it, while
+        // other threads asking for the same descriptor wait for that creation.  Those
+        // already created are found without going through the cache at all
+        T cachedVal = activeDescriptor.getCache();
+        if (cachedVal != null) return cachedVal;
 
         try {
             return (T)valueCache.compute(new ContextualInput<Object>((ActiveDescriptor<Object>) activeDescriptor, root));
@@ -96,8 +96,8 @@ public class SystemDescriptor<T> implements ActiveDescriptor<T>, Closeable {
     private volatile boolean closed = false;
 
     private final Object cacheLock = new Object();
-    private boolean cacheSet = false;
-    private T cachedValue;
+    private volatile boolean cacheSet = false;
+    private volatile T cachedValue;
 
     // These are used when we are doing the reifying ourselves
     private Class<?> implClass;
@@ -118,7 +118,7 @@ public class SystemDescriptor<T> implements ActiveDescriptor<T>, Closeable {
 
     private final Set<IndexedListData> myLists = new HashSet<IndexedListData>();
 
-    private int singletonGeneration = Integer.MAX_VALUE;
+    private volatile int singletonGeneration = Integer.MAX_VALUE;
 
     /* package */ @SuppressWarnings("unchecked")
     SystemDescriptor(Descriptor baseDescriptor, boolean requiresDeepCopy, ServiceLocatorImpl locator, Long serviceId) {
@@ -455,6 +455,10 @@ public class SystemDescriptor<T> implements ActiveDescriptor<T>, Closeable {
         this.factoryServiceId = factoryServiceId;
     }
 
+    /* package */ boolean hasInstanceListeners() {
+        return !instanceListeners.isEmpty();
+    }
+
     /* package */ void invokeInstanceListeners(InstanceLifecycleEvent event) {
         for (InstanceLifecycleListener listener : instanceListeners) {
             listener.lifecycleEvent(event);
@@ -466,6 +470,21 @@ public class SystemDescriptor<T> implements ActiveDescriptor<T>, Closeable {
      */
     @Override
     public T create(ServiceHandle<?> root) {
+        LocatorMetrics metrics = sdLocator.getMetrics();
+        
+        // Descriptors never added to the locator have no id and are not timed
+        if (metrics == null || id == null) return internalCreate(root);
+
+        long start = System.nanoTime();
+        try {
+            return internalCreate(root);
+        }
+        finally {
+            metrics.serviceCreated(this, System.nanoTime() - start);
+        }
+    }
+
+    private T internalCreate(ServiceHandle<?> root) {
         checkState();
 
         try {
@@ -0,0 +1,129 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.tests.locator.cachedreflection;
+
+import org.glassfish.hk2.api.MultiException;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.tests.locator.utilities.LocatorHelper;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for creating services with the cached reflection injection strategy
+ * 
+ * @author jwells
+ *
+ */
+public class CachedReflectionInjectionTest {
+    private final static String CACHED_REFLECTION_INJECTION_PROPERTY = "org.jvnet.hk2.properties.cachedReflectionInjection";
+    
+    private ServiceLocator locator;
+    
+    @Before
+    public void before() {
+        String original = System.getProperty(CACHED_REFLECTION_INJECTION_PROPERTY);
+        System.setProperty(CACHED_REFLECTION_INJECTION_PROPERTY, "true");
+        try {
+            locator = LocatorHelper.getServiceLocator(Dependency.class,
+                    InjectedService.class,
+                    ClassLoaderChangingService.class,
+                    FailingInitializerService.class);
+        }
+        finally {
+            if (original == null) {
+                System.clearProperty(CACHED_REFLECTION_INJECTION_PROPERTY);
+            }
+            else {
+                System.setProperty(CACHED_REFLECTION_INJECTION_PROPERTY, original);
+            }
+        }
+    }
+    
+    /**
+     * Tests that constructor, field and method injection and post
+     * construct all happen, in that order, with private members
+     */
+    @Test
+    public void testAllInjectionPoints() {
+        // More than once so that the prepared injector is used
+        for (int lcv = 0; lcv < 3; lcv++) {
+            InjectedService service = locator.getService(InjectedService.class);
+            
+            Assert.assertNotNull(service.getConstructorDependency());
+            Assert.assertNotNull(service.getFieldDependency());
+            Assert.assertNotNull(service.getFirstMethodDependency());
+            Assert.assertNotNull(service.getSecondMethodDependency());
+            Assert.assertNotSame(service.getFirstMethodDependency(), service.getSecondMethodDependency());
+            Assert.assertTrue(service.isFieldSetBeforeMethod());
+            Assert.assertTrue(service.isPostConstructCalled());
+        }
+    }
+    
+    /**
+     * Tests that the context class loader is the same after
+     * creating a service that changes it
+     */
+    @Test
+    public void testContextClassLoaderStaysNeutral() {
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        
+        Assert.assertNotNull(locator.getService(ClassLoaderChangingService.class));
+        
+        Assert.assertSame(original, Thread.currentThread().getContextClassLoader());
+    }
+    
+    /**
+     * Tests that the exception thrown by an initializer is
+     * reported along with where it happened
+     */
+    @Test
+    public void testInitializerFailure() {
+        try {
+            locator.getService(FailingInitializerService.class);
+            Assert.fail("Initializer should have failed");
+        }
+        catch (MultiException me) {
+            Assert.assertTrue(me.getMessage(), me.getMessage().contains(FailingInitializerService.EXPECTED));
+            Assert.assertTrue(me.getMessage(), me.getMessage().contains("method inject"));
+        }
+    }
+}
@@ -45,6 +45,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -56,6 +57,7 @@ import org.glassfish.hk2.api.Populator;
 import org.glassfish.hk2.api.PopulatorPostProcessor;
 import org.glassfish.hk2.api.ServiceLocator;
 import org.glassfish.hk2.tests.locator.utilities.LocatorHelper;
+import org.glassfish.hk2.utilities.BinaryDescriptorFormat;
 import org.glassfish.hk2.utilities.BuilderHelper;
 import org.glassfish.hk2.utilities.DescriptorImpl;
 import org.glassfish.hk2.utilities.DuplicatePostProcessor;
@@ -83,6 +85,11 @@ public class DynamicPopulateTest {
     private final static String DUMMY_IMPL_9 = "com.acme.dummy.Dummy9";
     private final static String DUMMY_IMPL_10 = "com.acme.dummy.Dummy10";
     private final static String DUMMY_IMPL_11 = "com.acme.dummy.Dummy11";
+    private final static String DUMMY_IMPL_12 = "com.acme.dummy.Dummy12";
+    private final static String DUMMY_IMPL_13 = "com.acme.dummy.Dummy13";
+    private final static String DUMMY_IMPL_14 = "com.acme.dummy.Dummy14";
+    private final static String DUMMY_IMPL_15 = "com.acme.dummy.Dummy15";
+    private final static String DUMMY_IMPL_16 = "com.acme.dummy.Dummy16";
     
     private final static String KEY = "key";
     private final static String VALUE = "value";
@@ -528,17 +535,135 @@ public class DynamicPopulateTest {
         Assert.assertEquals(1, lucky11list.size());
     }
     
+    /**
+     * Tests that a file in the binary format is populated
+     * and run through the post processors
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testBinaryPopulation() throws IOException {
+        DescriptorImpl di = new DescriptorImpl();
+        di.setImplementation(DUMMY_IMPL_12);
+        di.addAdvertisedContract(DUMMY_IMPL_12);
+        
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        BinaryDescriptorFormat.write(Collections.singletonList(di), baos);
+        
+        DynamicConfigurationService dcs = locator.getService(DynamicConfigurationService.class);
+        Assert.assertNotNull(dcs);
+        
+        Populator populator = dcs.getPopulator();
+        
+        ByteArrayInputStream bais = new ByteArrayInputStream(baos.toByteArray());
+        List<ActiveDescriptor<?>> populated = populator.populate(new MyDescriptorFinder(bais),
+                new MetadataPostProcessor(locator));
+        Assert.assertEquals(1, populated.size());
+        
+        ActiveDescriptor<?> ad = locator.getBestDescriptor(BuilderHelper.createContractFilter(DUMMY_IMPL_12));
+        Assert.assertNotNull(ad);
+        
+        Assert.assertEquals(DUMMY_IMPL_12, ad.getImplementation());
+        Assert.assertEquals(VALUE, ad.getMetadata().get(KEY).get(0));
+    }
+    
+    /**
+     * Tests that a truncated binary file fails the populate and
+     * nothing from it is added
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testTruncatedBinaryFile() throws IOException {
+        DescriptorImpl di = new DescriptorImpl();
+        di.setImplementation(DUMMY_IMPL_13);
+        di.addAdvertisedContract(DUMMY_IMPL_13);
+        
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        BinaryDescriptorFormat.write(Collections.singletonList(di), baos);
+        
+        byte asBytes[] = baos.toByteArray();
+        byte truncated[] = new byte[asBytes.length - 2];
+        System.arraycopy(asBytes, 0, truncated, 0, truncated.length);
+        
+        DynamicConfigurationService dcs = locator.getService(DynamicConfigurationService.class);
+        Assert.assertNotNull(dcs);
+        
+        Populator populator = dcs.getPopulator();
+        
+        try {
+            populator.populate(new MyDescriptorFinder(new ByteArrayInputStream(truncated)));
+            Assert.fail("Should not have succeded, the binary file was truncated");
+        }
+        catch (MultiException me) {
+            Assert.assertTrue(me.getErrors().get(0) instanceof IOException);
+        }
+        
+        Assert.assertNull(locator.getBestDescriptor(BuilderHelper.createContractFilter(DUMMY_IMPL_13)));
+    }
+    
+    /**
+     * Tests that the descriptors of several files are populated in the
+     * order of the files, however many threads read them
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testSeveralFilesPopulatedInOrder() throws IOException {
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        PrintWriter pw = new PrintWriter(first);
+        for (String impl : new String[] { DUMMY_IMPL_14, DUMMY_IMPL_15 }) {
+            DescriptorImpl di = new DescriptorImpl();
+            di.setImplementation(impl);
+            di.addAdvertisedContract(impl);
+            di.addMetadata(KEY, VALUE);
+            
+            di.writeObject(pw);
+        }
+        pw.close();
+        
+        DescriptorImpl di_16 = new DescriptorImpl();
+        di_16.setImplementation(DUMMY_IMPL_16);
+        di_16.addAdvertisedContract(DUMMY_IMPL_16);
+        
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        BinaryDescriptorFormat.write(Collections.singletonList(di_16), second);
+        
+        DynamicConfigurationService dcs = locator.getService(DynamicConfigurationService.class);
+        Assert.assertNotNull(dcs);
+        
+        Populator populator = dcs.getPopulator();
+        
+        List<ActiveDescriptor<?>> populated = populator.populate(new MyDescriptorFinder(
+                new ByteArrayInputStream(first.toByteArray()),
+                new ByteArrayInputStream(second.toByteArray())), new MetadataPostProcessor2());
+        
+        Assert.assertEquals(3, populated.size());
+        Assert.assertEquals(DUMMY_IMPL_14, populated.get(0).getImplementation());
+        Assert.assertEquals(DUMMY_IMPL_15, populated.get(1).getImplementation());
+        Assert.assertEquals(DUMMY_IMPL_16, populated.get(2).getImplementation());
+        
+        List<String> values = populated.get(0).getMetadata().get(KEY);
+        Assert.assertEquals(2, values.size());
+        Assert.assertEquals(VALUE, values.get(0));
+        Assert.assertEquals(VALUE2, values.get(1));
+        
+        Assert.assertEquals(VALUE2, populated.get(2).getMetadata().get(KEY).get(0));
+    }
+    
     private static class MyDescriptorFinder implements DescriptorFileFinder {
-        private final ByteArrayInputStream bais;
+        private final ByteArrayInputStream baiss[];
         
-        private MyDescriptorFinder(ByteArrayInputStream bais) {
-            this.bais = bais;
+        private MyDescriptorFinder(ByteArrayInputStream... baiss) {
+            this.baiss = baiss;
         }
 
         @Override
         public List<InputStream> findDescriptorFiles() throws IOException {
             LinkedList<InputStream> retVal = new LinkedList<InputStream>();
-            retVal.add(bais);
+            for (ByteArrayInputStream bais : baiss) {
+                retVal.add(bais);
+            }
             
             return retVal;
         }
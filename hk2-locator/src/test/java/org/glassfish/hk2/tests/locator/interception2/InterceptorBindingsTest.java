@@ -0,0 +1,251 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.tests.locator.interception2;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Singleton;
+
+import org.aopalliance.intercept.ConstructorInterceptor;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.Filter;
+import org.glassfish.hk2.api.InterceptionService;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.tests.locator.utilities.LocatorHelper;
+import org.glassfish.hk2.utilities.BuilderHelper;
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests that the interceptors of a service are asked for with every
+ * instance created and that the proxies only override intercepted methods
+ * 
+ * @author jwells
+ *
+ */
+public class InterceptorBindingsTest {
+    private final static String INTERCEPTED = "intercepted";
+    private final static String PLAIN = "plain";
+    
+    /**
+     * Tests that a service created after an interception service is
+     * added or removed sees the new set of interceptors
+     */
+    @Test
+    public void testInterceptorsFollowInterceptionServices() {
+        ServiceLocator locator = LocatorHelper.getServiceLocator(TwoMethodService.class);
+        
+        Assert.assertEquals(INTERCEPTED, locator.getService(TwoMethodService.class).intercepted());
+        
+        ActiveDescriptor<?> added = ServiceLocatorUtilities.addClasses(locator,
+                ReverseInterceptionService.class).get(0);
+        
+        Assert.assertEquals(reverse(INTERCEPTED), locator.getService(TwoMethodService.class).intercepted());
+        Assert.assertEquals(reverse(INTERCEPTED), locator.getService(TwoMethodService.class).intercepted());
+        
+        ServiceLocatorUtilities.removeOneDescriptor(locator, added);
+        
+        Assert.assertEquals(INTERCEPTED, locator.getService(TwoMethodService.class).intercepted());
+    }
+    
+    /**
+     * Tests that methods without interceptors are not overridden
+     * by the proxy but still work
+     */
+    @Test
+    public void testOnlyInterceptedMethodsAreProxied() throws Exception {
+        ServiceLocator locator = LocatorHelper.getServiceLocator(TwoMethodService.class,
+                ReverseInterceptionService.class);
+        
+        TwoMethodService tms = locator.getService(TwoMethodService.class);
+        Assert.assertNotSame(TwoMethodService.class, tms.getClass());
+        
+        Assert.assertEquals(reverse(INTERCEPTED), tms.intercepted());
+        Assert.assertEquals(PLAIN, tms.plain());
+        
+        tms.getClass().getDeclaredMethod(INTERCEPTED);
+        try {
+            tms.getClass().getDeclaredMethod(PLAIN);
+            Assert.fail("The method " + PLAIN + " should not have been proxied");
+        }
+        catch (NoSuchMethodException expected) {
+            // Expected
+        }
+    }
+    
+    /**
+     * Tests that an interception service whose answers change
+     * over time is asked again for every new instance, and that
+     * every instance gets its own interceptors
+     */
+    @Test
+    public void testInterceptorsAskedForWithEveryInstance() {
+        ServiceLocator locator = LocatorHelper.getServiceLocator(TwoMethodService.class,
+                SwitchableInterceptionService.class);
+        SwitchableInterceptionService switchable = locator.getService(SwitchableInterceptionService.class);
+        
+        Assert.assertEquals(INTERCEPTED, locator.getService(TwoMethodService.class).intercepted());
+        
+        switchable.setIntercepting(true);
+        
+        TwoMethodService first = locator.getService(TwoMethodService.class);
+        TwoMethodService second = locator.getService(TwoMethodService.class);
+        Assert.assertEquals(reverse(INTERCEPTED), first.intercepted());
+        Assert.assertEquals(reverse(INTERCEPTED), second.intercepted());
+        Assert.assertEquals(2, switchable.getInterceptorsCreated());
+        
+        switchable.setIntercepting(false);
+        
+        Assert.assertEquals(INTERCEPTED, locator.getService(TwoMethodService.class).intercepted());
+        
+        // Already created instances keep their interceptors
+        Assert.assertEquals(reverse(INTERCEPTED), first.intercepted());
+    }
+    
+    private static String reverse(String s) {
+        return new StringBuilder(s).reverse().toString();
+    }
+    
+    /**
+     * A service with one intercepted and one plain method
+     */
+    public static class TwoMethodService {
+        /**
+         * @return The name of this method
+         */
+        public String intercepted() {
+            return INTERCEPTED;
+        }
+        
+        /**
+         * @return The name of this method
+         */
+        public String plain() {
+            return PLAIN;
+        }
+    }
+    
+    /**
+     * Reverses the String returned by the intercepted method
+     */
+    @Singleton
+    public static class ReverseInterceptionService implements InterceptionService {
+        private final MethodInterceptor reverser = new MethodInterceptor() {
+
+            @Override
+            public Object invoke(MethodInvocation invocation) throws Throwable {
+                return reverse((String) invocation.proceed());
+            }
+            
+        };
+
+        @Override
+        public Filter getDescriptorFilter() {
+            return BuilderHelper.createContractFilter(TwoMethodService.class.getName());
+        }
+
+        @Override
+        public List<MethodInterceptor> getMethodInterceptors(Method method) {
+            if (!INTERCEPTED.equals(method.getName())) return null;
+            
+            return Collections.singletonList(reverser);
+        }
+
+        @Override
+        public List<ConstructorInterceptor> getConstructorInterceptors(
+                Constructor<?> constructor) {
+            return null;
+        }
+        
+    }
+    
+    /**
+     * Reverses the String returned by the intercepted method only
+     * while switched on, with a new interceptor every time it is asked
+     */
+    @Singleton
+    public static class SwitchableInterceptionService implements InterceptionService {
+        private volatile boolean intercepting = false;
+        private final AtomicInteger interceptorsCreated = new AtomicInteger();
+        
+        private void setIntercepting(boolean intercepting) {
+            this.intercepting = intercepting;
+        }
+        
+        private int getInterceptorsCreated() {
+            return interceptorsCreated.get();
+        }
+
+        @Override
+        public Filter getDescriptorFilter() {
+            return BuilderHelper.createContractFilter(TwoMethodService.class.getName());
+        }
+
+        @Override
+        public List<MethodInterceptor> getMethodInterceptors(Method method) {
+            if (!intercepting || !INTERCEPTED.equals(method.getName())) return null;
+            
+            interceptorsCreated.incrementAndGet();
+            return Collections.<MethodInterceptor>singletonList(new MethodInterceptor() {
+
+                @Override
+                public Object invoke(MethodInvocation invocation) throws Throwable {
+                    return reverse((String) invocation.proceed());
+                }
+                
+            });
+        }
+
+        @Override
+        public List<ConstructorInterceptor> getConstructorInterceptors(
+                Constructor<?> constructor) {
+            return null;
+        }
+        
+    }
+}
@@ -44,10 +44,12 @@ import java.util.List;
 
 import javax.inject.Inject;
 
+import org.glassfish.hk2.api.ActiveDescriptor;
 import org.glassfish.hk2.api.ClassAnalyzer;
 import org.glassfish.hk2.api.Descriptor;
 import org.glassfish.hk2.api.DynamicConfiguration;
 import org.glassfish.hk2.api.DynamicConfigurationService;
+import org.glassfish.hk2.api.Filter;
 import org.glassfish.hk2.api.InjectionResolver;
 import org.glassfish.hk2.api.ServiceLocator;
 import org.glassfish.hk2.api.ServiceLocatorFactory;
@@ -100,6 +102,10 @@ public class ParentedTest {
     private final static String PARENT9 = "Parent9";
     private final static String CHILD9 = "Child9";
     
+    private final static String GRANDPARENT10 = "Grandparent10";
+    private final static String PARENT10 = "Parent10";
+    private final static String CHILD10 = "Child10";
+    
     /**
      * Tests three generations of locators
      */
@@ -327,4 +333,49 @@ public class ParentedTest {
         Assert.assertEquals(1, child.getAllServices(ServiceLocatorRuntimeBean.class).size());
         Assert.assertEquals(1, child.getAllServices(threeThirtyLiteral.getType(), new NamedImpl(InjectionResolver.SYSTEM_RESOLVER_NAME)).size());
     }
+    
+    /**
+     * Tests that a child sees the modifications made in its ancestors
+     * after it has already looked up descriptors from them
+     */
+    @Test
+    public void testChildSeesModificationsOfAncestors() {
+        ServiceLocator grandparent = factory.create(GRANDPARENT10);
+        ServiceLocator parent = factory.create(PARENT10, grandparent);
+        ServiceLocator child = factory.create(CHILD10, parent);
+        
+        Filter filter = BuilderHelper.createContractFilter(SimpleService.class.getName());
+        
+        ActiveDescriptor<?> inParent = ServiceLocatorUtilities.addOneConstant(parent, new SimpleService());
+        ActiveDescriptor<?> inChild = ServiceLocatorUtilities.addOneConstant(child, new SimpleService());
+        
+        List<ActiveDescriptor<?>> descriptors = child.getDescriptors(filter);
+        Assert.assertEquals(2, descriptors.size());
+        Assert.assertEquals(inChild, descriptors.get(0));
+        Assert.assertEquals(inParent, descriptors.get(1));
+        
+        ActiveDescriptor<?> inGrandparent = ServiceLocatorUtilities.addOneConstant(grandparent, new SimpleService());
+        
+        descriptors = child.getDescriptors(filter);
+        Assert.assertEquals(3, descriptors.size());
+        Assert.assertEquals(inChild, descriptors.get(0));
+        Assert.assertEquals(inParent, descriptors.get(1));
+        Assert.assertEquals(inGrandparent, descriptors.get(2));
+        
+        // Changing the rank must re-order the merged results
+        inGrandparent.setRanking(10);
+        
+        descriptors = child.getDescriptors(filter);
+        Assert.assertEquals(3, descriptors.size());
+        Assert.assertEquals(inGrandparent, descriptors.get(0));
+        Assert.assertEquals(inChild, descriptors.get(1));
+        Assert.assertEquals(inParent, descriptors.get(2));
+        
+        ServiceLocatorUtilities.removeOneDescriptor(parent, inParent);
+        
+        descriptors = child.getDescriptors(filter);
+        Assert.assertEquals(2, descriptors.size());
+        Assert.assertEquals(inGrandparent, descriptors.get(0));
+        Assert.assertEquals(inChild, descriptors.get(1));
+    }
 }
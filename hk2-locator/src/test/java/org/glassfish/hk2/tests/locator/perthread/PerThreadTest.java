@@ -41,9 +41,14 @@
 package org.glassfish.hk2.tests.locator.perthread;
 
 import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import junit.framework.Assert;
 
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.ServiceHandle;
 import org.glassfish.hk2.api.ServiceLocator;
 import org.glassfish.hk2.tests.locator.utilities.LocatorHelper;
 import org.glassfish.hk2.utilities.PerThreadScopeModule;
@@ -280,6 +285,100 @@ public class PerThreadTest {
         }
     }
     
+    /**
+     * Tests that the services of the current thread can be
+     * destroyed, as is done by threads of a pool between tasks
+     */
+    @Test // @org.junit.Ignore
+    public void testDestroyPerThreadServices() {
+        ServiceLocator locator = LocatorHelper.create();
+        ServiceLocatorUtilities.enablePerThreadScope(locator);
+        ServiceLocatorUtilities.addClasses(locator, Pants.class, Belt.class);
+        
+        Belt belt1 = locator.getService(Belt.class);
+        Pants pants1 = locator.getService(Pants.class);
+        Assert.assertSame(belt1, locator.getService(Belt.class));
+        
+        ServiceLocatorUtilities.destroyPerThreadServices(locator);
+        
+        Assert.assertTrue(belt1.isDestroyed());
+        
+        Belt belt2 = locator.getService(Belt.class);
+        Assert.assertNotSame(belt1, belt2);
+        Assert.assertFalse(belt2.isDestroyed());
+        Assert.assertNotSame(pants1, locator.getService(Pants.class));
+        
+        // Does nothing on a locator without the PerThread scope
+        ServiceLocatorUtilities.destroyPerThreadServices(LocatorHelper.create());
+    }
+    
+    /**
+     * Tests that destroying the handle of a PerThread service
+     * does not destroy the instance, which lives as long as its thread
+     */
+    @Test // @org.junit.Ignore
+    public void testDestroyHandleDoesNotDestroyInstance() {
+        ServiceLocator locator = LocatorHelper.create();
+        ServiceLocatorUtilities.enablePerThreadScope(locator);
+        ServiceLocatorUtilities.addClasses(locator, Belt.class);
+        
+        ServiceHandle<Belt> handle = locator.getServiceHandle(Belt.class);
+        Belt belt = handle.getService();
+        
+        handle.destroy();
+        
+        Assert.assertFalse(belt.isDestroyed());
+        Assert.assertSame(belt, locator.getService(Belt.class));
+    }
+    
+    /**
+     * Tests that the index of an unbound service is given to the
+     * next service and that a thread still holding the instance of
+     * the unbound service gets an instance of the new one
+     * 
+     * @throws Exception
+     */
+    @Test // @org.junit.Ignore
+    public void testUnboundServiceIndexIsReused() throws Exception {
+        final ServiceLocator locator = LocatorHelper.create();
+        ServiceLocatorUtilities.enablePerThreadScope(locator);
+        ActiveDescriptor<?> pantsDescriptor = ServiceLocatorUtilities.addClasses(locator, Pants.class).get(0);
+        
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Assert.assertNotNull(pool.submit(new Callable<Pants>() {
+
+                @Override
+                public Pants call() {
+                    return locator.getService(Pants.class);
+                }
+                
+            }).get());
+            Assert.assertNotNull(locator.getService(Pants.class));
+            
+            ServiceLocatorUtilities.removeOneDescriptor(locator, pantsDescriptor);
+            ServiceLocatorUtilities.addClasses(locator, Belt.class);
+            
+            Belt belt = locator.getService(Belt.class);
+            Assert.assertNotNull(belt);
+            Assert.assertSame(belt, locator.getService(Belt.class));
+            
+            Object otherThreadBelt = pool.submit(new Callable<Object>() {
+
+                @Override
+                public Object call() {
+                    return locator.getService(Belt.class);
+                }
+                
+            }).get();
+            Assert.assertTrue(otherThreadBelt instanceof Belt);
+            Assert.assertNotSame(belt, otherThreadBelt);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+    
     public class StoreRunner implements Runnable {
         private final ServiceLocator locator;
         private ClothingStore store;
@@ -0,0 +1,216 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.tests.locator.runtime;
+
+import java.util.List;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.tests.locator.utilities.LocatorHelper;
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
+import org.junit.Assert;
+import org.junit.Test;
+import org.jvnet.hk2.external.runtime.LatencyHistogram;
+import org.jvnet.hk2.external.runtime.ServiceLocatorMetrics;
+import org.jvnet.hk2.external.runtime.ServiceLocatorRuntimeBean;
+import org.jvnet.hk2.internal.LatencyRecorder;
+
+/**
+ * Tests for the metrics of the ServiceLocatorRuntimeBean
+ * 
+ * @author jwells
+ *
+ */
+public class MetricsTest {
+    /**
+     * Tests that metrics are off unless asked for
+     */
+    @Test // @org.junit.Ignore
+    public void testMetricsDisabledByDefault() {
+        ServiceLocator locator = LocatorHelper.create();
+        ServiceLocatorRuntimeBean bean = locator.getService(ServiceLocatorRuntimeBean.class);
+        
+        Assert.assertFalse(bean.isMetricsEnabled());
+        Assert.assertNull(bean.getMetrics());
+        
+        // Clearing when off leaves them off
+        bean.clearMetrics();
+        Assert.assertFalse(bean.isMetricsEnabled());
+    }
+    
+    /**
+     * Tests that lookups and the service cache are counted
+     */
+    @Test // @org.junit.Ignore
+    public void testLookupsAreCounted() {
+        ServiceLocator locator = LocatorHelper.create();
+        ServiceLocatorRuntimeBean bean = locator.getService(ServiceLocatorRuntimeBean.class);
+        
+        ServiceLocatorUtilities.addClasses(locator, SimpleService.class);
+        
+        bean.setMetricsEnabled(true);
+        Assert.assertTrue(bean.isMetricsEnabled());
+        
+        Assert.assertNotNull(locator.getService(SimpleService.class));
+        Assert.assertNotNull(locator.getService(SimpleService.class));
+        Assert.assertEquals(1, locator.getAllServices(SimpleService.class).size());
+        
+        ServiceLocatorMetrics metrics = bean.getMetrics();
+        
+        Assert.assertEquals(3L, metrics.getLookupCount());
+        Assert.assertEquals(new Long(3L), metrics.getLookupCountsByContract().get(SimpleService.class.getName()));
+        Assert.assertEquals(1L, metrics.getServiceCacheMisses());
+        Assert.assertEquals(1L, metrics.getServiceCacheHits());
+        Assert.assertEquals(1L, metrics.getAllServicesCacheMisses());
+        Assert.assertEquals(0L, metrics.getAllServicesCacheHits());
+        
+        // The snapshot does not change
+        Assert.assertNotNull(locator.getService(SimpleService.class));
+        Assert.assertEquals(3L, metrics.getLookupCount());
+        Assert.assertEquals(4L, bean.getMetrics().getLookupCount());
+    }
+    
+    /**
+     * Tests that creation times are kept per descriptor and
+     * dropped when the descriptor is removed
+     */
+    @Test // @org.junit.Ignore
+    public void testCreationTimesPerDescriptor() {
+        ServiceLocator locator = LocatorHelper.create();
+        ServiceLocatorRuntimeBean bean = locator.getService(ServiceLocatorRuntimeBean.class);
+        bean.setMetricsEnabled(true);
+        
+        List<ActiveDescriptor<?>> added = ServiceLocatorUtilities.addClasses(locator, SimpleService.class);
+        ActiveDescriptor<?> descriptor = added.get(0);
+        
+        Assert.assertNotNull(locator.getService(SimpleService.class));
+        Assert.assertNotNull(locator.getService(SimpleService.class));
+        
+        LatencyHistogram creations = bean.getMetrics().getCreationTimes().get(descriptor);
+        Assert.assertNotNull(creations);
+        Assert.assertEquals(2L, creations.getCount());
+        Assert.assertTrue(creations.getTotalTime() >= creations.getMaximumTime());
+        Assert.assertTrue(creations.getPercentile(0.5) <= creations.getMaximumTime());
+        
+        ServiceLocatorUtilities.removeOneDescriptor(locator, descriptor);
+        
+        Assert.assertNull(bean.getMetrics().getCreationTimes().get(descriptor));
+    }
+    
+    /**
+     * Tests that commits are timed
+     */
+    @Test // @org.junit.Ignore
+    public void testCommitsAreTimed() {
+        ServiceLocator locator = LocatorHelper.create();
+        ServiceLocatorRuntimeBean bean = locator.getService(ServiceLocatorRuntimeBean.class);
+        bean.setMetricsEnabled(true);
+        
+        Assert.assertEquals(0L, bean.getMetrics().getCommitTimes().getCount());
+        
+        ServiceLocatorUtilities.addClasses(locator, SimpleService.class);
+        ServiceLocatorUtilities.addClasses(locator, SimpleService.class);
+        
+        Assert.assertEquals(2L, bean.getMetrics().getCommitTimes().getCount());
+    }
+    
+    /**
+     * Tests that clearing and disabling discards what was gathered
+     */
+    @Test // @org.junit.Ignore
+    public void testClearAndDisable() {
+        ServiceLocator locator = LocatorHelper.create();
+        ServiceLocatorRuntimeBean bean = locator.getService(ServiceLocatorRuntimeBean.class);
+        ServiceLocatorUtilities.addClasses(locator, SimpleService.class);
+        bean.setMetricsEnabled(true);
+        
+        Assert.assertNotNull(locator.getService(SimpleService.class));
+        Assert.assertEquals(1L, bean.getMetrics().getLookupCount());
+        
+        bean.clearMetrics();
+        Assert.assertTrue(bean.isMetricsEnabled());
+        Assert.assertEquals(0L, bean.getMetrics().getLookupCount());
+        Assert.assertTrue(bean.getMetrics().getCreationTimes().isEmpty());
+        
+        bean.setMetricsEnabled(false);
+        Assert.assertNotNull(locator.getService(SimpleService.class));
+        Assert.assertNull(bean.getMetrics());
+        
+        bean.setMetricsEnabled(true);
+        Assert.assertEquals(0L, bean.getMetrics().getLookupCount());
+    }
+    
+    /**
+     * Tests the buckets and percentiles of a histogram
+     */
+    @Test // @org.junit.Ignore
+    public void testHistogramBuckets() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        
+        LatencyHistogram empty = recorder.snapshot();
+        Assert.assertEquals(0L, empty.getCount());
+        Assert.assertEquals(0L, empty.getPercentile(0.99));
+        
+        for (int lcv = 0; lcv < 99; lcv++) {
+            recorder.record(100L);
+        }
+        recorder.record(5000L);
+        
+        LatencyHistogram histogram = recorder.snapshot();
+        Assert.assertEquals(100L, histogram.getCount());
+        Assert.assertEquals(99L * 100L + 5000L, histogram.getTotalTime());
+        Assert.assertEquals(5000L, histogram.getMaximumTime());
+        
+        // 100 is in the bucket from 64 to 127
+        Assert.assertEquals(127L, histogram.getPercentile(0.5));
+        Assert.assertEquals(127L, histogram.getPercentile(0.99));
+        Assert.assertEquals(5000L, histogram.getPercentile(1.0));
+        
+        long bounds[] = histogram.getBucketUpperBounds();
+        long counts[] = histogram.getBucketCounts();
+        Assert.assertEquals(bounds.length, counts.length);
+        Assert.assertEquals(0L, bounds[0]);
+        Assert.assertEquals(Long.MAX_VALUE, bounds[bounds.length - 1]);
+        Assert.assertEquals(99L, counts[7]);
+        Assert.assertEquals(1L, counts[13]);
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.tests.locator.servicesupplier;
+
+import java.util.List;
+
+import javax.inject.Provider;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.IterableProvider;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.api.ServiceSupplier;
+import org.glassfish.hk2.tests.locator.utilities.LocatorHelper;
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ServiceLocator#getServiceSupplier(Class, java.lang.annotation.Annotation...)}
+ * 
+ * @author jwells
+ *
+ */
+public class ServiceSupplierTest {
+    /**
+     * Tests that a per lookup service is created on every get
+     * and a singleton only once
+     */
+    @Test
+    public void testScopesAreHonored() {
+        ServiceLocator locator = LocatorHelper.getServiceLocator(PerLookupService.class);
+        
+        ServiceSupplier<PerLookupService> perLookup = locator.getServiceSupplier(PerLookupService.class);
+        PerLookupService first = perLookup.get();
+        Assert.assertNotNull(first);
+        Assert.assertNotSame(first, perLookup.get());
+        
+        ServiceLocatorUtilities.addClasses(locator, SingletonService.class);
+        
+        ServiceSupplier<SingletonService> singleton = locator.getServiceSupplier(SingletonService.class);
+        SingletonService single = singleton.get();
+        Assert.assertNotNull(single);
+        Assert.assertSame(single, singleton.get());
+        Assert.assertSame(single, locator.getService(SingletonService.class));
+    }
+    
+    /**
+     * Tests that the supplier follows the best service as services
+     * are added and removed
+     */
+    @Test
+    public void testSupplierFollowsConfigurationChanges() {
+        ServiceLocator locator = LocatorHelper.getServiceLocator();
+        
+        ServiceSupplier<SimpleContract> supplier = locator.getServiceSupplier(SimpleContract.class);
+        Assert.assertNull(supplier.get());
+        Assert.assertNull(supplier.getActiveDescriptor());
+        
+        ServiceLocatorUtilities.addClasses(locator, PerLookupService.class);
+        Assert.assertTrue(supplier.get() instanceof PerLookupService);
+        
+        List<ActiveDescriptor<?>> added = ServiceLocatorUtilities.addClasses(locator, SingletonService.class);
+        Assert.assertTrue(supplier.get() instanceof SingletonService);
+        Assert.assertEquals(added.get(0), supplier.getActiveDescriptor());
+        
+        ServiceLocatorUtilities.removeOneDescriptor(locator, added.get(0));
+        Assert.assertTrue(supplier.get() instanceof PerLookupService);
+    }
+    
+    /**
+     * Tests that the supplier of a child notices changes
+     * in the parent
+     */
+    @Test
+    public void testSupplierFollowsParentChanges() {
+        ServiceLocator parent = LocatorHelper.getServiceLocator(PerLookupService.class);
+        ServiceLocator child = LocatorHelper.create(parent);
+        
+        ServiceSupplier<SimpleContract> supplier = child.getServiceSupplier(SimpleContract.class);
+        Assert.assertTrue(supplier.get() instanceof PerLookupService);
+        
+        ServiceLocatorUtilities.addClasses(parent, SingletonService.class);
+        Assert.assertTrue(supplier.get() instanceof SingletonService);
+    }
+    
+    /**
+     * Tests that providers can not be supplied
+     */
+    @Test
+    public void testProvidersRejected() {
+        ServiceLocator locator = LocatorHelper.getServiceLocator();
+        
+        try {
+            locator.getServiceSupplier(Provider.class);
+            Assert.fail("Provider should not be suppliable");
+        }
+        catch (IllegalArgumentException iae) {
+            // expected
+        }
+        
+        try {
+            locator.getServiceSupplier(IterableProvider.class);
+            Assert.fail("IterableProvider should not be suppliable");
+        }
+        catch (IllegalArgumentException iae) {
+            // expected
+        }
+    }
+    
+    /**
+     * Tests that a supplier can not be used after
+     * the locator has been shut down
+     */
+    @Test(expected=IllegalStateException.class)
+    public void testSupplierAfterShutdown() {
+        ServiceLocator locator = LocatorHelper.getServiceLocator(PerLookupService.class);
+        
+        ServiceSupplier<SimpleContract> supplier = locator.getServiceSupplier(SimpleContract.class);
+        Assert.assertNotNull(supplier.get());
+        
+        locator.shutdown();
+        
+        supplier.get();
+    }
+}
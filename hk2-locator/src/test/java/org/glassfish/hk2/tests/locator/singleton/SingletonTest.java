@@ -51,6 +51,7 @@ import org.glassfish.hk2.api.ServiceLocator;
 import org.glassfish.hk2.api.ServiceLocatorFactory;
 import org.glassfish.hk2.tests.locator.utilities.LocatorHelper;
 import org.glassfish.hk2.utilities.BuilderHelper;
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
 import org.junit.Test;
 
 /**
@@ -64,6 +65,8 @@ public class SingletonTest {
     private final static String TEST_NAME2 = "SingletonTest2";
     private final static ServiceLocator locator2 = LocatorHelper.create(TEST_NAME2, new SingletonModule2());
     
+    private final static ServiceLocator locator3 = LocatorHelper.create();
+    
     private final static int NUM_THREADS = 20;
     private final Object lock = new Object();
     private int threadsRun = 0;
@@ -120,6 +123,57 @@ public class SingletonTest {
         Assert.assertTrue(triple.getWasPreDestroyed());
     }
     
+    /**
+     * Two singletons that need each other, each created on its own
+     * thread, must fail with a cycle error rather than wait forever
+     * 
+     * @throws InterruptedException
+     */
+    @Test
+    public void testCycleAcrossThreadsIsDetected() throws InterruptedException {
+        ServiceLocatorUtilities.addClasses(locator3, CrossThreadCycleA.class, CrossThreadCycleB.class);
+        
+        CycleWorker workerA = new CycleWorker(CrossThreadCycleA.class);
+        CycleWorker workerB = new CycleWorker(CrossThreadCycleB.class);
+        
+        Thread threadA = new Thread(workerA);
+        Thread threadB = new Thread(workerB);
+        
+        threadA.start();
+        threadB.start();
+        
+        threadA.join(20 * 1000);
+        threadB.join(20 * 1000);
+        
+        Assert.assertFalse(threadA.isAlive());
+        Assert.assertFalse(threadB.isAlive());
+        
+        Assert.assertNotNull(workerA.error);
+        Assert.assertNotNull(workerB.error);
+        Assert.assertTrue(workerA.error.toString().contains("circular dependency") ||
+                workerB.error.toString().contains("circular dependency"));
+    }
+    
+    private class CycleWorker implements Runnable {
+        private final Class<?> lookMeUp;
+        private volatile Throwable error;
+        
+        private CycleWorker(Class<?> lookMeUp) {
+            this.lookMeUp = lookMeUp;
+        }
+
+        @Override
+        public void run() {
+            try {
+                locator3.getService(lookMeUp);
+            }
+            catch (Throwable th) {
+                error = th;
+            }
+        }
+        
+    }
+    
     private class MyWorker implements Runnable {
         private final ServiceHandle<?> handle;
         
@@ -0,0 +1,215 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.tests.locator.warmup;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.MultiException;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.api.WarmUpReport;
+import org.glassfish.hk2.tests.locator.utilities.LocatorHelper;
+import org.glassfish.hk2.utilities.BuilderHelper;
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ServiceLocatorUtilities#warmUp(ServiceLocator, java.util.concurrent.Executor)}
+ * 
+ * @author jwells
+ *
+ */
+public class WarmUpTest {
+    private final static List<Class<?>> CREATED = new LinkedList<Class<?>>();
+    private static volatile CountDownLatch rendezvous;
+    
+    /* package */ static void created(Object service) {
+        synchronized (CREATED) {
+            CREATED.add(service.getClass());
+        }
+    }
+    
+    /* package */ static void rendezvous() {
+        CountDownLatch latch = rendezvous;
+        latch.countDown();
+        
+        try {
+            if (!latch.await(20, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("The other service was never created in parallel");
+            }
+        }
+        catch (InterruptedException ie) {
+            throw new IllegalStateException(ie);
+        }
+    }
+    
+    @Before
+    public void before() {
+        synchronized (CREATED) {
+            CREATED.clear();
+        }
+        
+        rendezvous = new CountDownLatch(2);
+    }
+    
+    /**
+     * Tests that a service is only created after all of the
+     * services it depends on, including those it depends
+     * on through a service of another scope
+     */
+    @Test
+    public void testDependenciesCreatedFirst() {
+        ServiceLocator locator = LocatorHelper.getServiceLocator(TopService.class,
+                MiddleService.class,
+                PerLookupService.class,
+                BottomService.class);
+        
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            WarmUpReport report = ServiceLocatorUtilities.warmUp(locator, executor);
+            
+            Assert.assertTrue(report.getFailures().isEmpty());
+            
+            synchronized (CREATED) {
+                Assert.assertEquals(3, CREATED.size());
+                Assert.assertEquals(BottomService.class, CREATED.get(0));
+                Assert.assertEquals(MiddleService.class, CREATED.get(1));
+                Assert.assertEquals(TopService.class, CREATED.get(2));
+            }
+            
+            ActiveDescriptor<?> top = locator.getBestDescriptor(BuilderHelper.createContractFilter(TopService.class.getName()));
+            Assert.assertTrue(report.getCreatedServices().contains(top));
+            Assert.assertTrue(report.getCreationTime(top) >= 0);
+            
+            ActiveDescriptor<?> perLookup = locator.getBestDescriptor(BuilderHelper.createContractFilter(PerLookupService.class.getName()));
+            Assert.assertFalse(report.getCreatedServices().contains(perLookup));
+            Assert.assertEquals(-1L, report.getCreationTime(perLookup));
+            
+            Assert.assertTrue(report.getElapsedTime() >= report.getCreationTime(top));
+            
+            // And they were not created again
+            TopService topService = locator.getService(TopService.class);
+            Assert.assertSame(locator.getService(MiddleService.class), topService.getMiddle());
+            Assert.assertSame(locator.getService(BottomService.class), topService.getMiddle().getPerLookup().getBottom());
+            
+            synchronized (CREATED) {
+                Assert.assertEquals(3, CREATED.size());
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+    
+    /**
+     * Tests that services that do not depend on each other
+     * are created at the same time
+     */
+    @Test
+    public void testIndependentServicesCreatedInParallel() {
+        ServiceLocator locator = LocatorHelper.getServiceLocator(RendezvousServiceA.class,
+                RendezvousServiceB.class);
+        
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            WarmUpReport report = ServiceLocatorUtilities.warmUp(locator, executor);
+            
+            Assert.assertTrue(report.getFailures().toString(), report.getFailures().isEmpty());
+            Assert.assertEquals(0L, rendezvous.getCount());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+    
+    /**
+     * Tests that a service that fails is reported and does not
+     * stop other services from being created
+     */
+    @Test
+    public void testFailuresAreReported() {
+        ServiceLocator locator = LocatorHelper.getServiceLocator(FailingService.class,
+                BottomService.class);
+        
+        WarmUpReport report = ServiceLocatorUtilities.warmUp(locator);
+        
+        ActiveDescriptor<?> failing = locator.getBestDescriptor(BuilderHelper.createContractFilter(FailingService.class.getName()));
+        MultiException me = report.getFailures().get(failing);
+        Assert.assertNotNull(me);
+        Assert.assertTrue(me.getMessage(), me.getMessage().contains(FailingService.EXPECTED));
+        Assert.assertEquals(1, report.getFailures().size());
+        
+        ActiveDescriptor<?> bottom = locator.getBestDescriptor(BuilderHelper.createContractFilter(BottomService.class.getName()));
+        Assert.assertTrue(report.getCreatedServices().contains(bottom));
+    }
+    
+    /**
+     * Tests that the services of the parent are not created
+     * by the warm up of the child
+     */
+    @Test
+    public void testParentServicesNotCreated() {
+        ServiceLocator parent = LocatorHelper.getServiceLocator(BottomService.class);
+        ServiceLocator child = LocatorHelper.create(parent);
+        ServiceLocatorUtilities.addClasses(child, MiddleService.class, PerLookupService.class);
+        
+        WarmUpReport report = ServiceLocatorUtilities.warmUp(child);
+        
+        Assert.assertTrue(report.getFailures().isEmpty());
+        
+        ActiveDescriptor<?> bottom = parent.getBestDescriptor(BuilderHelper.createContractFilter(BottomService.class.getName()));
+        Assert.assertFalse(report.getCreatedServices().contains(bottom));
+        
+        // Created as a dependency of MiddleService in any case
+        synchronized (CREATED) {
+            Assert.assertEquals(2, CREATED.size());
+            Assert.assertEquals(BottomService.class, CREATED.get(0));
+            Assert.assertEquals(MiddleService.class, CREATED.get(1));
+        }
+    }
+}
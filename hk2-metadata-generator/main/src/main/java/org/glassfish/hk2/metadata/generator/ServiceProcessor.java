@@ -40,6 +40,7 @@
 package org.glassfish.hk2.metadata.generator;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Writer;
 import java.util.ArrayList;
@@ -61,6 +62,7 @@ import javax.tools.FileObject;
 import javax.tools.StandardLocation;
 
 import org.glassfish.hk2.api.MultiException;
+import org.glassfish.hk2.utilities.BinaryDescriptorFormat;
 import org.glassfish.hk2.utilities.DescriptorImpl;
 
 /**
@@ -70,10 +72,11 @@ import org.glassfish.hk2.utilities.DescriptorImpl;
  *
  */
 @SupportedAnnotationTypes("org.jvnet.hk2.annotations.Service")
-@SupportedOptions("org.glassfish.hk2.metadata.location")
+@SupportedOptions({ "org.glassfish.hk2.metadata.location", "org.glassfish.hk2.metadata.binary" })
 public class ServiceProcessor extends AbstractProcessor {
     private static final String LOCATION_OPTION = "org.glassfish.hk2.metadata.location";
     private static final String LOCATION_DEFAULT = "META-INF/hk2-locator/default";
+    private static final String BINARY_OPTION = "org.glassfish.hk2.metadata.binary";
     
     private final TreeSet<DescriptorImpl> allDescriptors = new TreeSet<DescriptorImpl>(new DescriptorComparitor());
     private final ArrayList<Element> originators = new ArrayList<Element>();
@@ -157,6 +160,18 @@ public class ServiceProcessor extends AbstractProcessor {
                 "", location, 
                 originators.toArray(new Element[originators.size()]));
         
+        if (Boolean.parseBoolean(processingEnv.getOptions().get(BINARY_OPTION))) {
+            OutputStream outputStream = fileObject.openOutputStream();
+            try {
+                BinaryDescriptorFormat.write(allDescriptors, outputStream);
+            }
+            finally {
+                outputStream.close();
+            }
+            
+            return;
+        }
+        
         Writer fileWriter = fileObject.openWriter();
         PrintWriter printWriter = null;
         try {
@@ -154,6 +154,11 @@ public interface RunLevelController {
      * this controller.  The values can be:<OL>
      * <LI>FULLY_THREADED: Use maximumUseableThreads to complete any task</LI>
      * <LI>USE_NO_THREADS: Never create a thread, use the callers thread always</LI>
+     * <LI>DEPENDENCY_GRAPH: Use maximumUseableThreads and start services as
+     * soon as the services they inject have started, even if that is before the
+     * lower levels have finished</LI>
+     * <LI>THREAD_PER_SERVICE: Start every service in a task of its own, with at
+     * most maximumUseableThreads of them running at once</LI>
      * </OL>
      * 
      * @param policy The policy that should be used by this controller
@@ -188,8 +193,8 @@ public interface RunLevelController {
      * 
      * @return The currently installed executor.  Will
      * not return null (the default executor implementation
-     * will be returned if the user has not supplied an
-     * executor)
+     * for the current threading policy will be returned if
+     * the user has not supplied an executor)
      */
     public Executor getExecutor();
     
@@ -267,6 +272,55 @@ public interface RunLevelController {
          * and only one extra thread will be used per non-hung
          * proceedTo
          */
-        USE_NO_THREADS
+        USE_NO_THREADS,
+        
+        /**
+         * The RunLevelController will use as many threads as it
+         * needs (but controlled by the MaximumUseableThreads value)
+         * and will not wait for one level to finish before starting
+         * the services of the next level.  Instead the services of
+         * all the levels up to the proposed level are put into a graph
+         * based on the {@link RunLevel} services they inject (directly
+         * or through services of other scopes), and a service is started
+         * as soon as all of the services it depends on have been started.
+         * Services that are ready at the same time are started in level
+         * order, and within a level in the order given by the {@link Sorter}s.
+         * <p>
+         * Levels are still achieved one at a time: the current level only
+         * becomes N (and {@link RunLevelListener#onProgress} is only called
+         * for N) once every service at N and below has been started.
+         * Errors and cancellation take the system back down to the last
+         * achieved level, as with FULLY_THREADED.  Going down is done one
+         * level at a time, as with FULLY_THREADED.  A service that injects
+         * a service of a higher level is started before it, so that the
+         * validation of the higher level service happens as it does when
+         * going up one level at a time.
+         * <p>
+         * Only services that do not rely on services of lower levels that they
+         * do not inject should use this policy, since such services might
+         * now be started before those lower levels have been achieved.
+         * When the {@code org.glassfish.hk2.runlevel.internal.CurrentTaskFuture}
+         * logger is at FINE the longest chain of dependent services (the critical
+         * path) is logged for every level achieved
+         */
+        DEPENDENCY_GRAPH,
+        
+        /**
+         * The RunLevelController will go up one level at a time as
+         * with FULLY_THREADED, but every service is started in a task
+         * of its own on the executor, and the MaximumUseableThreads
+         * value is the number of services that may be starting at once.
+         * The first time a service would have to wait for a service being
+         * started by another task it is put back at the end of the queue,
+         * so that waiting services do not use up that maximum.
+         * <p>
+         * This policy is meant for services that block while starting
+         * (for example to open connections) and for executors that can
+         * cheaply create a thread per task.  If no executor has been set
+         * then on a JVM with virtual threads every service is started on
+         * a virtual thread of its own, and otherwise the default executor
+         * is used.  Going down is done as with FULLY_THREADED
+         */
+        THREAD_PER_SERVICE
     }
 }
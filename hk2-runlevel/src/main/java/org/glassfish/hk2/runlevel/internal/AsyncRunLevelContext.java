@@ -40,15 +40,18 @@
 
 package org.glassfish.hk2.runlevel.internal;
 
+import java.lang.reflect.Method;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Timer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -104,29 +107,28 @@ public class AsyncRunLevelContext {
             THREAD_FACTORY);
     
     /**
-     * The backing maps for this context.
+     * The backing maps for this context.  Services that have already
+     * been created are found without taking the lock of this context
      */
     private final Map<ActiveDescriptor<?>, Object> backingMap =
-            new HashMap<ActiveDescriptor<?>, Object>();
+            new ConcurrentHashMap<ActiveDescriptor<?>, Object>();
     
     /*
      * The within level errors thrown.  This prevents double
      * starting a service that failed within a level
      */
     private final Map<ActiveDescriptor<?>, Throwable> levelErrorMap =
-            new HashMap<ActiveDescriptor<?>, Throwable>();
+            new ConcurrentHashMap<ActiveDescriptor<?>, Throwable>();
     
     private boolean wasCancelled = false;
     
     /**
-     * The set of services currently being created
+     * The set of services currently being created.  A thread claims a
+     * service by putting its {@link Creation} here, and threads that need
+     * the same service wait on that creation alone
      */
-    private final HashMap<ActiveDescriptor<?>, Long> creatingDescriptors = new HashMap<ActiveDescriptor<?>, Long>();
-    
-    /**
-     * The set of descriptors that have been hard cancelled
-     */
-    private final HashSet<ActiveDescriptor<?>> hardCancelledDescriptors = new HashSet<ActiveDescriptor<?>>();
+    private final ConcurrentHashMap<ActiveDescriptor<?>, Creation> creatingDescriptors =
+            new ConcurrentHashMap<ActiveDescriptor<?>, Creation>();
     
     private final LinkedList<ActiveDescriptor<?>> orderedCreationList = new LinkedList<ActiveDescriptor<?>>();
     
@@ -177,23 +179,17 @@ public class AsyncRunLevelContext {
             }
         }
         
-        U retVal = null;
-        
-        int localCurrentLevel;
-        Integer localModeOverride;
-        long tid = -1L;
-        
-        synchronized (this) {
-            localModeOverride = modeOverride;
-            
-            retVal = (U) backingMap.get(activeDescriptor);
-            if (retVal != null) {
-                if (DEBUG_CONTEXT) {
-                    hk2Logger.debug("AsyncRunLevelController found " + oneLineDescriptor);
-                }
-                return retVal;
+        U retVal = (U) backingMap.get(activeDescriptor);
+        if (retVal != null) {
+            if (DEBUG_CONTEXT) {
+                hk2Logger.debug("AsyncRunLevelController found " + oneLineDescriptor);
             }
-            
+            return retVal;
+        }
+        
+        long tid = Thread.currentThread().getId();
+        Creation creation = null;
+        while (creation == null) {
             Throwable previousException = levelErrorMap.get(activeDescriptor);
             if (previousException != null) {
                 if (DEBUG_CONTEXT) {
@@ -207,86 +203,109 @@ public class AsyncRunLevelContext {
                 throw new RuntimeException(previousException);
             }
             
-            if (hardCancelledDescriptors.contains(activeDescriptor)) {
-                if (DEBUG_CONTEXT) {
-                    hk2Logger.debug("AsyncRunLevelController hard cancelled " + oneLineDescriptor);
-                }
-                throw new MultiException(new WasCancelledException(activeDescriptor), false);
-            }
-            
-            while (creatingDescriptors.containsKey(activeDescriptor)) {
-                if (DEBUG_CONTEXT) {
-                    hk2Logger.debug("AsyncRunLevelController already being created " + oneLineDescriptor);
-                }
+            Creation existing = creatingDescriptors.get(activeDescriptor);
+            if (existing == null) {
+                Creation mine = new Creation(tid);
                 
-                long holdingLock = creatingDescriptors.get(activeDescriptor);
-                if (holdingLock == Thread.currentThread().getId()) {
-                    if (DEBUG_CONTEXT) {
-                        hk2Logger.debug("AsyncRunLevelController circular dependency " + oneLineDescriptor);
+                existing = creatingDescriptors.putIfAbsent(activeDescriptor, mine);
+                if (existing == null) {
+                    // Another thread may have finished it between the lookup and the claim
+                    retVal = (U) backingMap.get(activeDescriptor);
+                    if (retVal == null && !levelErrorMap.containsKey(activeDescriptor)) {
+                        creation = mine;
+                        break;
                     }
-                    throw new MultiException(new IllegalStateException(
-                            "Circular dependency involving " + activeDescriptor.getImplementation() +
-                            " was found.  Full descriptor is " + activeDescriptor));
-                }
-                
-                if (throwWouldBlock) {
-                    if (DEBUG_CONTEXT) {
-                        hk2Logger.debug("AsyncRunLevelController would block optimization " + oneLineDescriptor);
+                    
+                    creatingDescriptors.remove(activeDescriptor, mine);
+                    mine.finished();
+                    
+                    if (retVal != null) {
+                        if (DEBUG_CONTEXT) {
+                            hk2Logger.debug("AsyncRunLevelController second chance found " + oneLineDescriptor);
+                        }
+                        return retVal;
                     }
-                    throw new MultiException(new WouldBlockException(activeDescriptor), false);
-                }
-                
-                try {
-                    this.wait();
-                }
-                catch (InterruptedException ie) {
-                    throw new MultiException(ie);
+                    
+                    continue;
                 }
             }
+            
             if (DEBUG_CONTEXT) {
-                hk2Logger.debug("AsyncRunLevelController finished creating wait for " + oneLineDescriptor);
+                hk2Logger.debug("AsyncRunLevelController already being created " + oneLineDescriptor);
             }
             
-            retVal = (U) backingMap.get(activeDescriptor);
-            if (retVal != null) {
+            if (existing.isHardCancelled()) {
                 if (DEBUG_CONTEXT) {
-                    hk2Logger.debug("AsyncRunLevelController second chance found " + oneLineDescriptor);
+                    hk2Logger.debug("AsyncRunLevelController hard cancelled " + oneLineDescriptor);
                 }
-                return retVal;
+                throw new MultiException(new WasCancelledException(activeDescriptor), false);
             }
             
-            previousException = levelErrorMap.get(activeDescriptor);
-            if (previousException != null) {
+            if (existing.getThreadId() == tid) {
                 if (DEBUG_CONTEXT) {
-                    hk2Logger.debug("AsyncRunLevelController service already threw " + oneLineDescriptor);
-                }
-                
-                if (previousException instanceof RuntimeException) {
-                    throw (RuntimeException) previousException;
+                    hk2Logger.debug("AsyncRunLevelController circular dependency " + oneLineDescriptor);
                 }
-                
-                throw new RuntimeException(previousException);
+                throw new MultiException(new IllegalStateException(
+                        "Circular dependency involving " + activeDescriptor.getImplementation() +
+                        " was found.  Full descriptor is " + activeDescriptor));
             }
             
-            if (hardCancelledDescriptors.contains(activeDescriptor)) {
+            if (throwWouldBlock) {
                 if (DEBUG_CONTEXT) {
-                    hk2Logger.debug("AsyncRunLevelController second chance hard cancel " + oneLineDescriptor);
+                    hk2Logger.debug("AsyncRunLevelController would block optimization " + oneLineDescriptor);
                 }
-                throw new MultiException(new WasCancelledException(activeDescriptor), false);
+                throw new MultiException(new WouldBlockException(activeDescriptor), false);
+            }
+            
+            try {
+                existing.await();
+            }
+            catch (InterruptedException ie) {
+                throw new MultiException(ie);
             }
             
-            tid = Thread.currentThread().getId();
             if (DEBUG_CONTEXT) {
-                hk2Logger.debug("AsyncRunLevelController am creating " + oneLineDescriptor + " in thread " + tid);
+                hk2Logger.debug("AsyncRunLevelController finished creating wait for " + oneLineDescriptor);
             }
-            creatingDescriptors.put(activeDescriptor, tid);
+            
+            retVal = (U) backingMap.get(activeDescriptor);
+            if (retVal != null) {
+                if (DEBUG_CONTEXT) {
+                    hk2Logger.debug("AsyncRunLevelController second chance found " + oneLineDescriptor);
+                }
+                return retVal;
+            }
+        }
+        
+        if (DEBUG_CONTEXT) {
+            hk2Logger.debug("AsyncRunLevelController am creating " + oneLineDescriptor + " in thread " + tid);
+        }
+        
+        int localCurrentLevel;
+        Integer localModeOverride;
+        
+        synchronized (this) {
+            localModeOverride = modeOverride;
             
             localCurrentLevel = currentLevel;
             if (currentTask != null && currentTask.isUp()) {
-                localCurrentLevel++;
-                
-                if (localCurrentLevel > currentTask.getProposedLevel()) {
+                if (currentTask.getDelegate().isDependencyGraph()) {
+                    // Services of every level up to the proposed level may be started at once,
+                    // but a RunLevel service may only need services of its own level or lower
                     localCurrentLevel = currentTask.getProposedLevel();
+                    
+                    ActiveDescriptor<?> rootDescriptor = (root == null) ? null : root.getActiveDescriptor();
+                    if (rootDescriptor != null && RunLevel.class.getName().equals(rootDescriptor.getScope())) {
+                        int rootLevel = Utilities.getRunLevelValue(locator, rootDescriptor);
+                        if (rootLevel < localCurrentLevel) localCurrentLevel = rootLevel;
+                    }
+                }
+                else {
+                    localCurrentLevel++;
+                
+                    if (localCurrentLevel > currentTask.getProposedLevel()) {
+                        localCurrentLevel = currentTask.getProposedLevel();
+                    }
                 }
             }
         }
@@ -332,8 +351,9 @@ public class AsyncRunLevelContext {
             throw new RuntimeException(th);
         }
         finally {
+            MultiException cancelledException = null;
             synchronized (this) {
-                boolean hardCancelled = hardCancelledDescriptors.remove(activeDescriptor);
+                boolean hardCancelled = creation.isHardCancelled();
                 
                 if (retVal != null) {
                     if (!hardCancelled) {
@@ -349,20 +369,11 @@ public class AsyncRunLevelContext {
                         // are going to pretend it failed.  Putting it in the lists
                         // above will ensure it gets properly shutdown
                         
-                        MultiException cancelledException = new MultiException(new WasCancelledException(activeDescriptor), false);
+                        cancelledException = new MultiException(new WasCancelledException(activeDescriptor), false);
                         
                         if (!hardCancelled) {
                             levelErrorMap.put(activeDescriptor, cancelledException);
                         }
-                        
-                        creatingDescriptors.remove(activeDescriptor);
-                        this.notifyAll();
-                        if (DEBUG_CONTEXT) {
-                            hk2Logger.debug("AsyncRunLevelController other threads notified cancellation path for " +
-                                oneLineDescriptor + " in thread " + tid);
-                        }
-                        
-                        throw cancelledException;
                     }
                 }
                 else if (error != null) {
@@ -372,11 +383,18 @@ public class AsyncRunLevelContext {
                 }
                 
                 creatingDescriptors.remove(activeDescriptor);
-                this.notifyAll();
-                if (DEBUG_CONTEXT) {
-                    hk2Logger.debug("AsyncRunLevelController other threads notified for " +
-                        oneLineDescriptor + " in thread " + tid);
-                }
+            }
+            
+            // Only the threads waiting for this service are woken up
+            creation.finished();
+            if (DEBUG_CONTEXT) {
+                hk2Logger.debug("AsyncRunLevelController other threads notified " +
+                    ((cancelledException != null) ? "cancellation path " : "") + "for " +
+                    oneLineDescriptor + " in thread " + tid);
+            }
+            
+            if (cancelledException != null) {
+                throw cancelledException;
             }
         }
     }
@@ -388,15 +406,11 @@ public class AsyncRunLevelContext {
      * @return true if already created, false otherwise
      */
     public boolean containsKey(ActiveDescriptor<?> descriptor) {
-        synchronized (this) {
-            return backingMap.containsKey(descriptor);
-        }
+        return backingMap.containsKey(descriptor);
     }
     
     /* package */ boolean wouldBlockRightNow(ActiveDescriptor<?> desc) {
-        synchronized (this) {
-            return creatingDescriptors.containsKey(desc);
-        }
+        return creatingDescriptors.containsKey(desc);
     }
     
     /**
@@ -405,9 +419,10 @@ public class AsyncRunLevelContext {
      * @param descriptor the non-null descriptor to hard cancel
      */
     /* package */ void hardCancelOne(ActiveDescriptor<?> descriptor) {
-        if (creatingDescriptors.containsKey(descriptor)) {
+        Creation creation = creatingDescriptors.get(descriptor);
+        if (creation != null) {
             // This guy has been hard-cancelled, mark it down
-            hardCancelledDescriptors.add(descriptor);
+            creation.hardCancel();
         }
     }
     
@@ -418,11 +433,8 @@ public class AsyncRunLevelContext {
      */
     @SuppressWarnings("unchecked")
     public void destroyOne(ActiveDescriptor<?> descriptor) {
-        Object retVal = null;
-        synchronized (this) {
-            retVal = backingMap.remove(descriptor);
-            if (retVal == null) return;
-        }
+        Object retVal = backingMap.remove(descriptor);
+        if (retVal == null) return;
             
         ((ActiveDescriptor<Object>) descriptor).dispose(retVal);
     }
@@ -476,6 +488,11 @@ public class AsyncRunLevelContext {
     }
     
     /* package */ synchronized Executor getExecutor() {
+        if (executor == DEFAULT_EXECUTOR &&
+                policy.equals(RunLevelController.ThreadingPolicy.THREAD_PER_SERVICE)) {
+            return PerServiceExecutorHolder.EXECUTOR;
+        }
+        
         return executor;
     }
     
@@ -502,6 +519,31 @@ public class AsyncRunLevelContext {
         
     }
     
+    /**
+     * Removes every service above the given level, wherever it is in the
+     * creation order.  The services of a dependency graph are not created
+     * level by level, so the services of different levels are interleaved
+     * 
+     * @param level The level services must be above to be removed
+     * @return The services above the level, the last one created first
+     */
+    /* package */ List<ActiveDescriptor<?>> getOrderedListOfServicesAboveLevel(int level) {
+        synchronized (this) {
+            LinkedList<ActiveDescriptor<?>> retVal = new LinkedList<ActiveDescriptor<?>>();
+            
+            for (Iterator<ActiveDescriptor<?>> it = orderedCreationList.iterator(); it.hasNext(); ) {
+                ActiveDescriptor<?> candidate = it.next();
+                
+                if (Utilities.getRunLevelValue(locator, candidate) <= level) continue;
+                
+                it.remove();
+                retVal.add(candidate);
+            }
+            
+            return retVal;
+        }
+    }
+    
     /**
      * This method is called to change the proceedTo level of the system
      * @param level The level to change to
@@ -512,18 +554,22 @@ public class AsyncRunLevelContext {
     public RunLevelFuture proceedTo(int level) throws CurrentlyRunningException {
         CurrentTaskFutureWrapper localTask;
         synchronized (this) {
-            boolean fullyThreaded = policy.equals(RunLevelController.ThreadingPolicy.FULLY_THREADED);
+            boolean fullyThreaded = !policy.equals(RunLevelController.ThreadingPolicy.USE_NO_THREADS);
+            boolean dependencyGraph = policy.equals(RunLevelController.ThreadingPolicy.DEPENDENCY_GRAPH);
+            boolean threadPerService = policy.equals(RunLevelController.ThreadingPolicy.THREAD_PER_SERVICE);
             
             if (currentTask != null) {
                 throw new CurrentlyRunningException(currentTask);
             }
             
             currentTask = new CurrentTaskFutureWrapper(new CurrentTaskFuture(this,
-                    executor,
+                    getExecutor(),
                     locator,
                     level,
                     maxThreads,
                     fullyThreaded,
+                    dependencyGraph,
+                    threadPerService,
                     cancelTimeout,
                     timer));
             
@@ -584,6 +630,67 @@ public class AsyncRunLevelContext {
         this.modeOverride = modeOverride;
     }
     
+    /**
+     * A service being created by one thread.  Other threads that need
+     * the same service wait for this creation to finish
+     */
+    private static class Creation {
+        private final long threadId;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile boolean hardCancelled;
+        
+        private Creation(long threadId) {
+            this.threadId = threadId;
+        }
+        
+        private long getThreadId() {
+            return threadId;
+        }
+        
+        private void await() throws InterruptedException {
+            done.await();
+        }
+        
+        private void finished() {
+            done.countDown();
+        }
+        
+        private void hardCancel() {
+            hardCancelled = true;
+        }
+        
+        private boolean isHardCancelled() {
+            return hardCancelled;
+        }
+    }
+    
+    /**
+     * The executor used by THREAD_PER_SERVICE when the user has not set one.
+     * It is only created if that policy is used
+     */
+    private static class PerServiceExecutorHolder {
+        private static final Executor EXECUTOR = createPerServiceExecutor();
+    }
+    
+    /**
+     * On a JVM with virtual threads every task gets a virtual thread
+     * of its own, otherwise the default executor is used
+     * 
+     * @return The executor for THREAD_PER_SERVICE
+     */
+    private static Executor createPerServiceExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            
+            return (Executor) factory.invoke(null);
+        }
+        catch (Exception e) {
+            logger.log(Level.FINE, "Virtual threads are not available, using the default executor", e);
+            
+            return DEFAULT_EXECUTOR;
+        }
+    }
+    
     private static class RunLevelControllerThread extends Thread {
         private RunLevelControllerThread(Runnable r) {
             super(r);
@@ -40,15 +40,23 @@
 
 package org.glassfish.hk2.runlevel.internal;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.glassfish.hk2.api.ActiveDescriptor;
 import org.glassfish.hk2.api.Descriptor;
@@ -75,11 +83,15 @@ import org.glassfish.hk2.runlevel.utilities.Utilities;
  *
  */
 public class CurrentTaskFuture implements ChangeableRunLevelFuture {
+    private static final Logger logger = Logger.getLogger(CurrentTaskFuture.class.getName());
+    
     private final AsyncRunLevelContext asyncContext;
     private final Executor executor;
     private final ServiceLocator locator;
     private int proposedLevel;
     private final boolean useThreads;
+    private final boolean dependencyGraph;
+    private final boolean threadPerService;
     private final List<ServiceHandle<RunLevelListener>> allListenerHandles;
     private final List<ServiceHandle<ProgressStartedListener>> allProgressStartedHandles;
     private final List<ServiceHandle<Sorter>> allSorterHandles;
@@ -100,6 +112,8 @@ public class CurrentTaskFuture implements ChangeableRunLevelFuture {
             int proposedLevel,
             int maxThreads,
             boolean useThreads,
+            boolean dependencyGraph,
+            boolean threadPerService,
             long cancelTimeout,
             Timer timer) {
         this.asyncContext = asyncContext;
@@ -107,6 +121,8 @@ public class CurrentTaskFuture implements ChangeableRunLevelFuture {
         this.locator = locator;
         this.proposedLevel = proposedLevel;
         this.useThreads = useThreads;
+        this.dependencyGraph = dependencyGraph && useThreads;
+        this.threadPerService = threadPerService && useThreads;
         this.maxThreads = maxThreads;
         this.cancelTimeout = cancelTimeout;
         this.timer = timer;
@@ -127,6 +143,7 @@ public class CurrentTaskFuture implements ChangeableRunLevelFuture {
                     allSorterHandles,
                     maxThreads,
                     useThreads,
+                    this.dependencyGraph,
                     cancelTimeout);
         }
         else {
@@ -169,6 +186,17 @@ public class CurrentTaskFuture implements ChangeableRunLevelFuture {
         }
     }
     
+    /**
+     * Tells whether this job starts services by the DEPENDENCY_GRAPH
+     * policy, in which case services of any level up to the proposed
+     * level may be started before the lower levels have been achieved
+     * 
+     * @return true if services are started by their dependencies
+     */
+    /* package */ boolean isDependencyGraph() {
+        return dependencyGraph;
+    }
+    
     @Override
     public boolean isUp() {
         synchronized (this) {
@@ -278,6 +306,7 @@ public class CurrentTaskFuture implements ChangeableRunLevelFuture {
                             allSorterHandles,
                             maxThreads,
                             useThreads,
+                            dependencyGraph,
                             cancelTimeout);
                     needGo = true;
                 }
@@ -448,6 +477,23 @@ public class CurrentTaskFuture implements ChangeableRunLevelFuture {
         return errorInfo;
     }
     
+    private static List<ServiceHandle<?>> applySorters(List<ServiceHandle<Sorter>> sorters,
+            List<ServiceHandle<?>> jobs) {
+        List<ServiceHandle<?>> retVal = jobs;
+        
+        for (ServiceHandle<Sorter> sorterHandle : sorters) {
+            Sorter sorter = sorterHandle.getService();
+            if (sorter == null) continue;
+            
+            List<ServiceHandle<?>> sortedList = sorter.sort(retVal);
+            if (sortedList == null) continue;
+            
+            retVal = sortedList;
+        }
+        
+        return retVal;
+    }
+    
     private interface AllTheWay {
         /**
          * The method to call on the internal job
@@ -470,6 +516,7 @@ public class CurrentTaskFuture implements ChangeableRunLevelFuture {
         private int goingTo;
         private final int maxThreads;
         private final boolean useThreads;
+        private final boolean dependencyGraph;
         private final CurrentTaskFuture future;
         private final List<ServiceHandle<RunLevelListener>> listeners;
         private final List<ServiceHandle<Sorter>> sorters;
@@ -477,6 +524,7 @@ public class CurrentTaskFuture implements ChangeableRunLevelFuture {
         
         private int workingOn;
         private UpOneLevel currentJob;
+        private UpByDependencies currentGraph;
         private boolean cancelled = false;
         private boolean done = false;
         private boolean repurposed = false;
@@ -487,12 +535,14 @@ public class CurrentTaskFuture implements ChangeableRunLevelFuture {
                 List<ServiceHandle<Sorter>> sorters,
                 int maxThreads,
                 boolean useThreads,
+                boolean dependencyGraph,
                 long cancelTimeout) {
             this.goingTo = goingTo;
             this.future = future;
             this.listeners = listeners;
             this.maxThreads = maxThreads;
             this.useThreads = useThreads;
+            this.dependencyGraph = dependencyGraph;
             this.sorters = sorters;
             this.cancelTimeout = cancelTimeout;
             
@@ -503,7 +553,12 @@ public class CurrentTaskFuture implements ChangeableRunLevelFuture {
             synchronized (lock) {
                 cancelled = true;
                 asyncContext.levelCancelled();
-                currentJob.cancel();
+                if (currentGraph != null) {
+                    currentGraph.cancel();
+                }
+                else if (!dependencyGraph) {
+                    currentJob.cancel();
+                }
             }
         }
         
@@ -540,7 +595,50 @@ public class CurrentTaskFuture implements ChangeableRunLevelFuture {
             }
         }
         
+        private int getGoingTo() {
+            synchronized (lock) {
+                return goingTo;
+            }
+        }
+        
         private void go() {
+            if (dependencyGraph) {
+                UpByDependencies graph;
+                synchronized (lock) {
+                    if (cancelled) {
+                        graph = null;
+                    }
+                    else if (workingOn >= goingTo) {
+                        if (!repurposed) {
+                            asyncContext.jobDone();
+                    
+                            done = true;
+                        }
+                        
+                        lock.notifyAll();
+                        return;
+                    }
+                    else {
+                        graph = new UpByDependencies(workingOn,
+                                goingTo,
+                                this,
+                                sorters,
+                                maxThreads,
+                                cancelTimeout);
+                        currentGraph = graph;
+                    }
+                }
+                
+                if (graph == null) {
+                    // Cancelled between two graphs
+                    graphComplete(null, false);
+                    return;
+                }
+                
+                graph.start();
+                return;
+            }
+            
             if (useThreads) {
                 synchronized (lock) {
                     workingOn++;
@@ -648,6 +746,68 @@ public class CurrentTaskFuture implements ChangeableRunLevelFuture {
                 go();
             }
         }
+        
+        /**
+         * Called by the dependency graph each time a level has been achieved,
+         * in level order
+         * 
+         * @param level The level every service of which has been started
+         */
+        private void graphLevelComplete(int level) {
+            synchronized (lock) {
+                workingOn = level;
+            }
+            
+            asyncContext.setCurrentLevel(level);
+            invokeOnProgress(future, level, listeners);
+        }
+        
+        /**
+         * Called by the dependency graph once it has no more services to start
+         * 
+         * @param accumulatedExceptions The errors of the services that failed, or null
+         * @param overshot true if the proposed level was lowered while the graph was
+         * running, in which case services above it may have been started
+         */
+        private void graphComplete(MultiException accumulatedExceptions, boolean overshot) {
+            asyncContext.clearErrors();
+            
+            boolean localCancelled;
+            boolean localRepurposed;
+            synchronized (lock) {
+                currentGraph = null;
+                localCancelled = cancelled;
+                localRepurposed = repurposed;
+            }
+            
+            if (accumulatedExceptions != null || localCancelled) {
+                int achieved = asyncContext.getCurrentLevel();
+                
+                DownAllTheWay downer = new DownAllTheWay(achieved, null, null);
+                downer.run();
+                
+                if (accumulatedExceptions == null) {
+                    invokeOnCancelled(future, achieved, listeners);
+                }
+                
+                synchronized (lock) {
+                    done = true;
+                    this.exception = accumulatedExceptions;
+                    lock.notifyAll();
+                    
+                    asyncContext.jobDone();
+                }
+                
+                return;
+            }
+            
+            if (overshot && !localRepurposed) {
+                DownAllTheWay downer = new DownAllTheWay(asyncContext.getCurrentLevel(), null, null);
+                downer.run();
+            }
+            
+            go();
+        }
     }
     
     private class UpOneLevel implements Runnable {
@@ -668,6 +828,7 @@ public class CurrentTaskFuture implements ChangeableRunLevelFuture {
         private int numJobsRunning = 0;
         private boolean hardCancelled = false;
         private final HashSet<ServiceHandle<?>> outstandingHandles = new HashSet<ServiceHandle<?>>();
+        private final HashSet<ActiveDescriptor<?>> alreadyTried = new HashSet<ActiveDescriptor<?>>();
         
         private UpOneLevel(int paramUpToThisLevel,
                 UpAllTheWay master,
@@ -727,22 +888,6 @@ public class CurrentTaskFuture implements ChangeableRunLevelFuture {
             return numJobsRunning;
         }
         
-        private List<ServiceHandle<?>> applySorters(List<ServiceHandle<?>> jobs) {
-            List<ServiceHandle<?>> retVal = jobs;
-            
-            for (ServiceHandle<Sorter> sorterHandle : sorters) {
-                Sorter sorter = sorterHandle.getService();
-                if (sorter == null) continue;
-                
-                List<ServiceHandle<?>> sortedList = sorter.sort(retVal);
-                if (sortedList == null) continue;
-                
-                retVal = sortedList;
-            }
-            
-            return retVal;
-        }
-
         @Override
         public void run() {
             Object jobsLock = new Object();
@@ -765,7 +910,7 @@ public class CurrentTaskFuture implements ChangeableRunLevelFuture {
                 
             });
             
-            jobs = applySorters(jobs);
+            jobs = applySorters(sorters, jobs);
             
             numJobs = jobs.size();
             if (numJobs <= 0) {
@@ -773,6 +918,16 @@ public class CurrentTaskFuture implements ChangeableRunLevelFuture {
                 return;
             }
             
+            if (threadPerService) {
+                // Every service gets a task of its own, with at most maxThreads running at once
+                int toStart = (numJobs < maxThreads) ? numJobs : maxThreads;
+                for (int lcv = 0; lcv < toStart; lcv++) {
+                    startNextService(jobs);
+                }
+                
+                return;
+            }
+            
             int runnersToCreate = ((numJobs < maxThreads) ? numJobs : maxThreads) - 1;
             if (!useThreads) runnersToCreate = 0;
             
@@ -786,6 +941,99 @@ public class CurrentTaskFuture implements ChangeableRunLevelFuture {
             myRunner.run();
         }
         
+        /**
+         * Takes the next service from the queue and starts it in a
+         * task of its own
+         * 
+         * @param jobs The services of this level not yet started
+         */
+        private void startNextService(final List<ServiceHandle<?>> jobs) {
+            final ServiceHandle<?> job;
+            synchronized (queueLock) {
+                if (jobs.isEmpty()) return;
+                
+                job = jobs.remove(0);
+                jobRunning(job);
+            }
+            
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    boolean completed = runService(job, jobs);
+                    
+                    boolean startNext;
+                    synchronized (lock) {
+                        startNext = !hardCancelled;
+                    }
+                    
+                    if (startNext) {
+                        // The next service gets a new task, this one is done
+                        startNextService(jobs);
+                    }
+                    
+                    if (completed) {
+                        jobComplete();
+                    }
+                }
+                
+            });
+        }
+        
+        /**
+         * Starts one service in the current task.  The first time a service
+         * would have to wait for a service being started by another task it
+         * is put back at the end of the queue instead, so that waiting services
+         * do not use up the maximum number of threads.  The second time it waits
+         * 
+         * @param job The service to start
+         * @param jobs The services of this level not yet started
+         * @return false if the service was put back on the queue
+         */
+        private boolean runService(ServiceHandle<?> job, List<ServiceHandle<?>> jobs) {
+            boolean block;
+            synchronized (queueLock) {
+                block = !alreadyTried.add(job.getActiveDescriptor());
+            }
+            
+            job.setServiceData(!block);
+            try {
+                boolean ok;
+                synchronized (lock) {
+                    ok = (!cancelled && (accumulatedExceptions == null));
+                }
+                
+                if (ok) {
+                    job.getService();
+                }
+            }
+            catch (MultiException me) {
+                if (!block && isWouldBlock(me)) {
+                    synchronized (queueLock) {
+                        jobs.add(job);
+                    }
+                    
+                    return false;
+                }
+                
+                if (!isWasCancelled(me)) {
+                    fail(me, job.getActiveDescriptor());
+                }
+            }
+            catch (Throwable th) {
+                fail(th, job.getActiveDescriptor());
+            }
+            finally {
+                job.setServiceData(null);
+                
+                synchronized (queueLock) {
+                    jobFinished(job);
+                }
+            }
+            
+            return true;
+        }
+        
         private void fail(Throwable th, Descriptor descriptor) {
             synchronized (lock) {
                 if (hardCancelled) return;
@@ -840,6 +1088,613 @@ public class CurrentTaskFuture implements ChangeableRunLevelFuture {
         }
     }
     
+    /**
+     * Starts the services of every level from the current level up to
+     * the proposed level, each as soon as the {@link RunLevel} services
+     * it depends on have been started, rather than one level at a time.
+     * The levels are still reported as achieved in order
+     * 
+     * @author jwells
+     *
+     */
+    private class UpByDependencies {
+        private final Object lock = new Object();
+        private final int fromLevel;
+        private final int toLevel;
+        private final UpAllTheWay master;
+        private final List<ServiceHandle<Sorter>> sorters;
+        private final int maxThreads;
+        private final long cancelTimeout;
+        
+        /** Services whose dependencies have all been started, lowest level first */
+        private final PriorityQueue<GraphNode> ready = new PriorityQueue<GraphNode>();
+        /** The number of services not yet finished, per level */
+        private final int remaining[];
+        /** The service of each level that finished last, the end of its critical path */
+        private final GraphNode lastFinished[];
+        private final HashSet<ServiceHandle<?>> outstandingHandles = new HashSet<ServiceHandle<?>>();
+        
+        private int nextLevel;
+        private int goingTo;
+        private int workers;
+        private boolean reporting;
+        private boolean stopped;
+        private boolean cancelling;
+        private boolean finished;
+        private boolean hardCancelled;
+        /** The lowest level with a service that failed, which can not be achieved */
+        private int failedLevel;
+        private MultiException accumulatedExceptions;
+        private GraphCancelTimer hardCanceller;
+        
+        private UpByDependencies(int fromLevel,
+                int toLevel,
+                UpAllTheWay master,
+                List<ServiceHandle<Sorter>> sorters,
+                int maxThreads,
+                long cancelTimeout) {
+            this.fromLevel = fromLevel;
+            this.toLevel = toLevel;
+            this.master = master;
+            this.sorters = sorters;
+            this.maxThreads = (maxThreads < 1) ? 1 : maxThreads;
+            this.cancelTimeout = cancelTimeout;
+            
+            remaining = new int[toLevel - fromLevel];
+            lastFinished = new GraphNode[toLevel - fromLevel];
+            nextLevel = fromLevel + 1;
+            goingTo = toLevel;
+            failedLevel = toLevel + 1;
+        }
+        
+        /**
+         * Builds the graph and starts the first services, on a thread of the executor
+         */
+        private void start() {
+            synchronized (lock) {
+                workers = 1;
+            }
+            
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        build();
+                    }
+                    catch (Throwable th) {
+                        fail(th, null, fromLevel + 1);
+                    }
+                    
+                    // This thread will take one of the ready services itself
+                    spawnWorkers(1);
+                    
+                    work();
+                }
+                
+            });
+        }
+        
+        private void build() {
+            List<ServiceHandle<?>> all = locator.getAllServiceHandles(new IndexedFilter() {
+
+                @Override
+                public boolean matches(Descriptor d) {
+                    int level = Utilities.getRunLevelValue(locator, d);
+                    
+                    return (level > fromLevel) && (level <= toLevel);
+                }
+
+                @Override
+                public String getAdvertisedContract() {
+                    return RunLevel.class.getName();
+                }
+
+                @Override
+                public String getName() {
+                    return null;
+                }
+                
+            });
+            
+            List<List<ServiceHandle<?>>> byLevel = new ArrayList<List<ServiceHandle<?>>>(remaining.length);
+            for (int lcv = 0; lcv < remaining.length; lcv++) {
+                byLevel.add(new LinkedList<ServiceHandle<?>>());
+            }
+            
+            for (ServiceHandle<?> handle : all) {
+                int level = Utilities.getRunLevelValue(locator, handle.getActiveDescriptor());
+                
+                byLevel.get(level - fromLevel - 1).add(handle);
+            }
+            
+            HashMap<ActiveDescriptor<?>, GraphNode> nodes = new HashMap<ActiveDescriptor<?>, GraphNode>();
+            for (int lcv = 0; lcv < remaining.length; lcv++) {
+                List<ServiceHandle<?>> jobs = applySorters(sorters, byLevel.get(lcv));
+                
+                int rank = 0;
+                for (ServiceHandle<?> job : jobs) {
+                    GraphNode node = new GraphNode(job, fromLevel + 1 + lcv, rank++);
+                    if (nodes.containsKey(node.descriptor)) continue;
+                    
+                    nodes.put(node.descriptor, node);
+                    remaining[lcv]++;
+                }
+            }
+            
+            for (GraphNode node : nodes.values()) {
+                HashSet<ActiveDescriptor<?>> dependencies = new HashSet<ActiveDescriptor<?>>();
+                findDependencies(node.descriptor, new HashSet<ActiveDescriptor<?>>(), dependencies);
+                
+                for (ActiveDescriptor<?> dependency : dependencies) {
+                    GraphNode first = nodes.get(dependency);
+                    if (first == null || first == node) continue;
+                    
+                    GraphNode then = node;
+                    if (first.level > node.level) {
+                        // A service must not need a service of a higher level, so
+                        // it goes first and the validation happens when it injects it
+                        then = first;
+                        first = node;
+                    }
+                    
+                    if (first.dependents.contains(then)) continue;
+                    
+                    first.dependents.add(then);
+                    then.dependencies.add(first);
+                }
+            }
+            
+            breakCycles(nodes.values());
+            
+            synchronized (lock) {
+                for (GraphNode node : nodes.values()) {
+                    node.unmet = node.dependencies.size();
+                    if (node.unmet == 0) ready.add(node);
+                }
+            }
+        }
+        
+        /**
+         * Finds the {@link RunLevel} services that the given service injects,
+         * looking through the services of other scopes that it injects
+         */
+        private void findDependencies(ActiveDescriptor<?> descriptor,
+                HashSet<ActiveDescriptor<?>> visited,
+                HashSet<ActiveDescriptor<?>> found) {
+            if (!visited.add(descriptor)) return;
+            
+            try {
+                if (!descriptor.isReified()) {
+                    descriptor = locator.reifyDescriptor(descriptor);
+                }
+            }
+            catch (MultiException me) {
+                // Left for the locator to report when the service is started
+                return;
+            }
+            
+            for (Injectee ip : descriptor.getInjectees()) {
+                ActiveDescriptor<?> childService;
+                try {
+                    childService = locator.getInjecteeDescriptor(ip);
+                }
+                catch (MultiException me) {
+                    continue;
+                }
+                
+                if (childService == null) continue;
+                
+                if (RunLevel.class.getName().equals(childService.getScope())) {
+                    found.add(childService);
+                    continue;
+                }
+                
+                findDependencies(childService, visited, found);
+            }
+        }
+        
+        /**
+         * Services that depend on each other (for example through a Provider) are
+         * left to the locator, which will create them in whatever order they ask
+         * for each other.  Here the edges into any service that could never become
+         * ready are removed
+         */
+        private void breakCycles(Collection<GraphNode> nodes) {
+            LinkedList<GraphNode> sorted = new LinkedList<GraphNode>();
+            for (GraphNode node : nodes) {
+                node.unmet = node.dependencies.size();
+                if (node.unmet == 0) sorted.add(node);
+            }
+            
+            while (!sorted.isEmpty()) {
+                GraphNode node = sorted.removeFirst();
+                for (GraphNode dependent : node.dependents) {
+                    if (--dependent.unmet == 0) sorted.add(dependent);
+                }
+            }
+            
+            for (GraphNode node : nodes) {
+                if (node.unmet == 0) continue;
+                
+                Iterator<GraphNode> iterator = node.dependencies.iterator();
+                while (iterator.hasNext()) {
+                    GraphNode dependency = iterator.next();
+                    if (dependency.unmet == 0) continue;
+                    
+                    dependency.dependents.remove(node);
+                    iterator.remove();
+                }
+            }
+        }
+        
+        /**
+         * The loop of each worker thread, which starts services until
+         * there are none ready to be started
+         */
+        private void work() {
+            for (;;) {
+                // Levels with nothing left to start are reported before a service is taken
+                reportLevels();
+                
+                GraphNode node = takeNext();
+                if (node == null) break;
+                
+                runOne(node);
+                
+                finishOne(node);
+            }
+            
+            reportLevels();
+        }
+        
+        private GraphNode takeNext() {
+            int localGoingTo = master.getGoingTo();
+            
+            synchronized (lock) {
+                goingTo = localGoingTo;
+                
+                while (!stopped && !hardCancelled) {
+                    GraphNode node = ready.poll();
+                    if (node == null) break;
+                    
+                    if (node.level > goingTo) {
+                        // The proposed level was lowered, this one need not be started
+                        node.startNanos = node.endNanos = System.nanoTime();
+                        nodeDone(node);
+                        continue;
+                    }
+                    
+                    outstandingHandles.add(node.handle);
+                    return node;
+                }
+                
+                workers--;
+                return null;
+            }
+        }
+        
+        private void runOne(GraphNode node) {
+            ServiceHandle<?> fService = node.handle;
+            
+            node.startNanos = System.nanoTime();
+            fService.setServiceData(Boolean.FALSE);
+            try {
+                fService.getService();
+            }
+            catch (MultiException me) {
+                if (!isWasCancelled(me)) {
+                    fail(me, node.descriptor, node.level);
+                }
+            }
+            catch (Throwable th) {
+                fail(th, node.descriptor, node.level);
+            }
+            finally {
+                fService.setServiceData(null);
+                node.endNanos = System.nanoTime();
+            }
+        }
+        
+        private void finishOne(GraphNode node) {
+            synchronized (lock) {
+                if (hardCancelled) return;
+                
+                outstandingHandles.remove(node.handle);
+                nodeDone(node);
+            }
+            
+            // This thread will take one of the ready services itself
+            spawnWorkers(1);
+        }
+        
+        /**
+         * Starts enough workers for the services that are ready, up to the maximum
+         * 
+         * @param taking The number of ready services the calling thread will take itself
+         */
+        private void spawnWorkers(int taking) {
+            int toSpawn;
+            synchronized (lock) {
+                toSpawn = Math.min(maxThreads - workers, ready.size() - taking);
+                if (stopped || hardCancelled || toSpawn < 0) toSpawn = 0;
+                
+                workers += toSpawn;
+            }
+            
+            for (int lcv = 0; lcv < toSpawn; lcv++) {
+                executor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        work();
+                    }
+                    
+                });
+            }
+        }
+        
+        /**
+         * Called with the lock held once a service has been started or skipped
+         */
+        private void nodeDone(GraphNode node) {
+            int index = node.level - fromLevel - 1;
+            remaining[index]--;
+            
+            GraphNode last = lastFinished[index];
+            if (last == null || node.endNanos >= last.endNanos) {
+                lastFinished[index] = node;
+            }
+            
+            for (GraphNode dependent : node.dependents) {
+                if (dependent.criticalPredecessor == null ||
+                        node.endNanos >= dependent.criticalPredecessor.endNanos) {
+                    dependent.criticalPredecessor = node;
+                }
+                
+                if (--dependent.unmet == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        
+        /**
+         * Reports the levels that have been achieved, in order, from whatever thread
+         * gets here first.  Once nothing is left to report it checks for completion
+         */
+        private void reportLevels() {
+            int localGoingTo = master.getGoingTo();
+            
+            for (;;) {
+                int level;
+                GraphNode last;
+                synchronized (lock) {
+                    goingTo = localGoingTo;
+                    
+                    if (reporting) return;
+                    
+                    // After an error the levels below the failed service are still achieved
+                    if (cancelling || hardCancelled ||
+                            nextLevel > toLevel ||
+                            nextLevel > goingTo ||
+                            nextLevel >= failedLevel ||
+                            remaining[nextLevel - fromLevel - 1] > 0) {
+                        break;
+                    }
+                    
+                    level = nextLevel++;
+                    last = lastFinished[level - fromLevel - 1];
+                    reporting = true;
+                }
+                
+                try {
+                    logCriticalPath(level, last);
+                    
+                    master.graphLevelComplete(level);
+                }
+                finally {
+                    localGoingTo = master.getGoingTo();
+                    
+                    synchronized (lock) {
+                        reporting = false;
+                    }
+                }
+            }
+            
+            complete(false);
+        }
+        
+        /**
+         * Tells the master that this graph is done, either because every service has
+         * been started and every level reported or because it was stopped and no
+         * services are still running
+         * 
+         * @param force true if this is a hard cancel, which does not wait for running services
+         */
+        private void complete(boolean force) {
+            MultiException localExceptions;
+            boolean localOvershot;
+            synchronized (lock) {
+                if (finished) return;
+                
+                if (!force) {
+                    if (reporting || workers > 0) return;
+                    
+                    if (!stopped &&
+                            (nextLevel <= toLevel) &&
+                            (nextLevel <= goingTo)) {
+                        // A level is still to be reported by another thread
+                        return;
+                    }
+                }
+                
+                finished = true;
+                if (hardCanceller != null) {
+                    hardCanceller.cancel();
+                    hardCanceller = null;
+                }
+                
+                localExceptions = accumulatedExceptions;
+                localOvershot = (goingTo < toLevel);
+            }
+            
+            master.graphComplete(localExceptions, localOvershot);
+        }
+        
+        private void fail(Throwable th, Descriptor descriptor, int level) {
+            synchronized (lock) {
+                if (hardCancelled) return;
+            }
+            
+            ErrorInformation info = invokeOnError(CurrentTaskFuture.this, th,
+                    ErrorInformation.ErrorAction.GO_TO_NEXT_LOWER_LEVEL_AND_STOP,
+                    master.listeners,
+                    descriptor);
+            
+            if (ErrorInformation.ErrorAction.IGNORE.equals(info.getAction())) return;
+            
+            synchronized (lock) {
+                if (accumulatedExceptions == null) {
+                    accumulatedExceptions = new MultiException();
+                }
+                
+                accumulatedExceptions.addError(th);
+                stopped = true;
+                
+                if (level < failedLevel) failedLevel = level;
+            }
+        }
+        
+        /**
+         * Called with the master lock held.  No more services are started, and
+         * those that are running are given the cancel timeout to finish
+         */
+        private void cancel() {
+            boolean idle;
+            synchronized (lock) {
+                stopped = true;
+                cancelling = true;
+                
+                if (!outstandingHandles.isEmpty()) {
+                    hardCanceller = new GraphCancelTimer(this);
+                    timer.schedule(hardCanceller, cancelTimeout);
+                }
+                
+                idle = (workers == 0) && !reporting && !finished;
+            }
+            
+            if (idle) {
+                // Nothing is running that would notice, so complete on another thread
+                executor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        complete(false);
+                    }
+                    
+                });
+            }
+        }
+        
+        private void hardCancel() {
+            synchronized (asyncContext) {
+                HashSet<ServiceHandle<?>> poisonMe;
+                synchronized (lock) {
+                    if (finished) return;
+                    
+                    hardCancelled = true;
+                    
+                    poisonMe = new HashSet<ServiceHandle<?>>(outstandingHandles);
+                    outstandingHandles.clear();
+                }
+                
+                for (ServiceHandle<?> handle : poisonMe) {
+                    asyncContext.hardCancelOne(handle.getActiveDescriptor());
+                }
+            }
+            
+            complete(true);
+        }
+        
+        private void logCriticalPath(int level, GraphNode last) {
+            if (!logger.isLoggable(Level.FINE)) return;
+            
+            if (last == null) {
+                logger.log(Level.FINE, "RunLevel {0} had no services to start", level);
+                return;
+            }
+            
+            LinkedList<GraphNode> path = new LinkedList<GraphNode>();
+            for (GraphNode node = last; node != null; node = node.criticalPredecessor) {
+                path.addFirst(node);
+            }
+            
+            StringBuilder sb = new StringBuilder();
+            for (GraphNode node : path) {
+                if (sb.length() > 0) sb.append(" -> ");
+                
+                sb.append(node.descriptor.getImplementation());
+                sb.append('(').append(node.level).append(',');
+                sb.append(TimeUnit.NANOSECONDS.toMillis(node.endNanos - node.startNanos)).append("ms)");
+            }
+            
+            long total = TimeUnit.NANOSECONDS.toMillis(last.endNanos - path.getFirst().startNanos);
+            
+            logger.log(Level.FINE, "RunLevel {0} critical path took {1}ms: {2}",
+                    new Object[] { level, total, sb.toString() });
+        }
+    }
+    
+    /**
+     * A service in the dependency graph of {@link UpByDependencies}.
+     * All fields other than the handle are guarded by the lock of the graph
+     */
+    private static class GraphNode implements Comparable<GraphNode> {
+        private final ServiceHandle<?> handle;
+        private final ActiveDescriptor<?> descriptor;
+        private final int level;
+        private final int rank;
+        private final List<GraphNode> dependencies = new LinkedList<GraphNode>();
+        private final List<GraphNode> dependents = new LinkedList<GraphNode>();
+        
+        private int unmet;
+        private GraphNode criticalPredecessor;
+        private long startNanos;
+        private long endNanos;
+        
+        private GraphNode(ServiceHandle<?> handle, int level, int rank) {
+            this.handle = handle;
+            this.descriptor = handle.getActiveDescriptor();
+            this.level = level;
+            this.rank = rank;
+        }
+
+        @Override
+        public int compareTo(GraphNode o) {
+            if (level != o.level) return (level < o.level) ? -1 : 1;
+            if (rank != o.rank) return (rank < o.rank) ? -1 : 1;
+            return 0;
+        }
+        
+        @Override
+        public String toString() {
+            return "GraphNode(" + descriptor.getImplementation() + "," + level + "," + rank + ")";
+        }
+    }
+    
+    private static class GraphCancelTimer extends TimerTask {
+        private final UpByDependencies parent;
+        
+        private GraphCancelTimer(UpByDependencies parent) {
+            this.parent = parent;
+        }
+
+        @Override
+        public void run() {
+            parent.hardCancel();
+        }
+    }
+    
     /**
      * Goes down all the way to the proposed level
      * 
@@ -953,8 +1808,12 @@ public class CurrentTaskFuture implements ChangeableRunLevelFuture {
                 // then we are officially at the next level
                 asyncContext.setCurrentLevel(proceedingTo);
                 
-                // But we don't call the proceedTo until all those services are gone
-                List<ActiveDescriptor<?>> localQueue = asyncContext.getOrderedListOfServicesAtLevel(workingOn);
+                // But we don't call the proceedTo until all those services are gone.
+                // An error or a cancel takes down everything above the level going to,
+                // which a dependency graph may have started at any level
+                List<ActiveDescriptor<?>> localQueue = (future == null) ?
+                        asyncContext.getOrderedListOfServicesAboveLevel(getGoingTo()) :
+                        asyncContext.getOrderedListOfServicesAtLevel(workingOn);
                 synchronized(this) {
                     queue = localQueue;
                 }
@@ -0,0 +1,195 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.runlevel.tests.graph;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.glassfish.hk2.api.MultiException;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.runlevel.RunLevelController;
+import org.glassfish.hk2.runlevel.RunLevelFuture;
+import org.glassfish.hk2.runlevel.tests.utilities.Utilities;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link RunLevelController.ThreadingPolicy#DEPENDENCY_GRAPH} policy
+ * 
+ * @author jwells
+ *
+ */
+public class GraphTest {
+    /* package */ final static int ONE = 1;
+    /* package */ final static int TWO = 2;
+    /* package */ final static int THREE = 3;
+    /* package */ final static int FIVE = 5;
+    
+    /* package */ static CountDownLatch levelTwoStarted;
+    /* package */ static CountDownLatch levelThreeStarted;
+    /* package */ static volatile boolean levelThreeDestroyed;
+    
+    private static RunLevelController getController(ServiceLocator locator) {
+        RunLevelController controller = locator.getService(RunLevelController.class);
+        controller.setThreadingPolicy(RunLevelController.ThreadingPolicy.DEPENDENCY_GRAPH);
+        
+        return controller;
+    }
+    
+    /**
+     * A level two service that does not need the slow level one
+     * service is started while the level one service is still running,
+     * but the levels are still achieved in order
+     */
+    @Test
+    public void testLevelsOverlap() {
+        levelTwoStarted = new CountDownLatch(1);
+        
+        ServiceLocator locator = Utilities.getServiceLocator(
+                WaitsForLevelTwoService.class,
+                LevelTwoService.class,
+                ProgressRecorder.class);
+        
+        RunLevelController controller = getController(locator);
+        
+        controller.proceedTo(TWO);
+        
+        Assert.assertTrue(locator.getService(WaitsForLevelTwoService.class).sawLevelTwo());
+        Assert.assertEquals(TWO, controller.getCurrentRunLevel());
+        
+        // Every level from the initial one is reported, one after the other
+        List<Integer> levels = locator.getService(ProgressRecorder.class).getLevels();
+        Assert.assertEquals(TWO, levels.get(levels.size() - 1).intValue());
+        
+        int expected = levels.get(0);
+        for (Integer level : levels) {
+            Assert.assertEquals(expected++, level.intValue());
+        }
+    }
+    
+    /**
+     * A failure takes the controller down to the highest level
+     * all of whose services had been started
+     */
+    @Test
+    public void testErrorGoesToAchievedLevel() {
+        ServiceLocator locator = Utilities.getServiceLocator(
+                LevelThreeErrorService.class);
+        
+        RunLevelController controller = getController(locator);
+        
+        try {
+            controller.proceedTo(FIVE);
+            Assert.fail("Should have failed at level three");
+        }
+        catch (MultiException me) {
+            // Expected
+        }
+        
+        Assert.assertEquals(TWO, controller.getCurrentRunLevel());
+    }
+    
+    /**
+     * A failure destroys the services the graph had already started
+     * above the achieved level, even those created before a service
+     * of a lower level
+     */
+    @Test
+    public void testErrorDestroysHigherLevelServices() {
+        levelThreeStarted = new CountDownLatch(1);
+        levelThreeDestroyed = false;
+        
+        ServiceLocator locator = Utilities.getServiceLocator(
+                EarlyLevelThreeService.class,
+                WaitsForLevelThreeService.class,
+                LevelTwoFailsAfterThreeService.class);
+        
+        RunLevelController controller = getController(locator);
+        
+        try {
+            controller.proceedTo(FIVE);
+            Assert.fail("Should have failed at level two");
+        }
+        catch (MultiException me) {
+            // Expected
+        }
+        
+        Assert.assertEquals(ONE, controller.getCurrentRunLevel());
+        Assert.assertTrue(levelThreeDestroyed);
+    }
+    
+    /**
+     * A service that injects a service of a higher level is still
+     * started first, so the validation fails as it does level by level
+     * 
+     * @throws TimeoutException 
+     * @throws InterruptedException 
+     */
+    @Test
+    public void testLowerLevelMayNotNeedHigherLevel() throws InterruptedException, TimeoutException {
+        ServiceLocator locator = Utilities.getServiceLocator(
+                NeedsLevelThreeService.class,
+                LevelThreeService.class);
+        
+        RunLevelController controller = getController(locator);
+        
+        RunLevelFuture future = controller.proceedToAsync(THREE);
+        
+        try {
+            future.get(20, TimeUnit.SECONDS);
+            Assert.fail("Should have failed as a service at level one depends on a service at level three");
+        }
+        catch (ExecutionException ee) {
+            MultiException me = (MultiException) ee.getCause();
+            MultiException me1 = (MultiException) me.getErrors().get(0);
+            Throwable th = me1.getErrors().get(0);
+            
+            Assert.assertTrue(th instanceof IllegalStateException);
+            Assert.assertTrue(th.getMessage().contains(" but it has a run level of "));
+        }
+        
+        Assert.assertEquals(0, controller.getCurrentRunLevel());
+    }
+
+}
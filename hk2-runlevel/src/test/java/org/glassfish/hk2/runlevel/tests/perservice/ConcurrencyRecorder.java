@@ -0,0 +1,118 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.runlevel.tests.perservice;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.inject.Singleton;
+
+/**
+ * Records how many services were starting at once
+ * 
+ * @author jwells
+ *
+ */
+@Singleton
+public class ConcurrencyRecorder {
+    private CyclicBarrier barrier;
+    private boolean barrierBroken;
+    private int running;
+    private int maximumAtOnce;
+    private int started;
+    
+    /* package */ synchronized void setBarrier(int parties) {
+        barrier = new CyclicBarrier(parties);
+    }
+    
+    /* package */ void start() {
+        CyclicBarrier localBarrier;
+        synchronized (this) {
+            started++;
+            running++;
+            if (running > maximumAtOnce) maximumAtOnce = running;
+            
+            localBarrier = barrier;
+        }
+        
+        try {
+            if (localBarrier != null) {
+                localBarrier.await(20, TimeUnit.SECONDS);
+            }
+            else {
+                Thread.sleep(50);
+            }
+        }
+        catch (BrokenBarrierException e) {
+            broken();
+        }
+        catch (TimeoutException e) {
+            broken();
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        finally {
+            synchronized (this) {
+                running--;
+            }
+        }
+    }
+    
+    private synchronized void broken() {
+        barrierBroken = true;
+    }
+    
+    /* package */ synchronized boolean isBarrierBroken() {
+        return barrierBroken;
+    }
+    
+    /* package */ synchronized int getMaximumAtOnce() {
+        return maximumAtOnce;
+    }
+    
+    /* package */ synchronized int getStarted() {
+        return started;
+    }
+
+}
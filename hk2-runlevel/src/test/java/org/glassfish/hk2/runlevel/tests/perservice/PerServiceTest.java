@@ -0,0 +1,146 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.runlevel.tests.perservice;
+
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.runlevel.RunLevelController;
+import org.glassfish.hk2.runlevel.tests.utilities.Utilities;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link RunLevelController.ThreadingPolicy#THREAD_PER_SERVICE} policy
+ * 
+ * @author jwells
+ *
+ */
+public class PerServiceTest {
+    /* package */ final static int ONE = 1;
+    
+    private static RunLevelController getController(ServiceLocator locator, int maxThreads) {
+        RunLevelController controller = locator.getService(RunLevelController.class);
+        controller.setThreadingPolicy(RunLevelController.ThreadingPolicy.THREAD_PER_SERVICE);
+        controller.setMaximumUseableThreads(maxThreads);
+        
+        return controller;
+    }
+    
+    /**
+     * Services that block until all of them are starting
+     * can only get through if they each have a thread
+     */
+    @Test
+    public void testBlockingServicesStartAtOnce() {
+        ServiceLocator locator = Utilities.getServiceLocator(
+                ConcurrencyRecorder.class,
+                BlockingService1.class,
+                BlockingService2.class,
+                BlockingService3.class,
+                BlockingService4.class);
+        
+        ConcurrencyRecorder recorder = locator.getService(ConcurrencyRecorder.class);
+        recorder.setBarrier(4);
+        
+        RunLevelController controller = getController(locator, 4);
+        Assert.assertNotNull(controller.getExecutor());
+        
+        controller.proceedTo(ONE);
+        
+        Assert.assertEquals(ONE, controller.getCurrentRunLevel());
+        Assert.assertEquals(4, recorder.getStarted());
+        Assert.assertEquals(4, recorder.getMaximumAtOnce());
+        Assert.assertFalse(recorder.isBarrierBroken());
+    }
+    
+    /**
+     * The maximum number of threads limits how many
+     * services are starting at once
+     */
+    @Test
+    public void testMaximumThreadsIsAConcurrencyLimit() {
+        ServiceLocator locator = Utilities.getServiceLocator(
+                ConcurrencyRecorder.class,
+                BlockingService1.class,
+                BlockingService2.class,
+                BlockingService3.class,
+                BlockingService4.class);
+        
+        ConcurrencyRecorder recorder = locator.getService(ConcurrencyRecorder.class);
+        
+        RunLevelController controller = getController(locator, 2);
+        
+        controller.proceedTo(ONE);
+        
+        Assert.assertEquals(ONE, controller.getCurrentRunLevel());
+        Assert.assertEquals(4, recorder.getStarted());
+        Assert.assertTrue(recorder.getMaximumAtOnce() <= 2);
+    }
+    
+    /**
+     * Services that need a service being started by another task
+     * wait for it, and it is only created once
+     */
+    @Test
+    public void testSharedServiceIsWaitedFor() {
+        SlowSharedService.reset();
+        
+        ServiceLocator locator = Utilities.getServiceLocator(
+                ConcurrencyRecorder.class,
+                SlowSharedService.class,
+                NeedsSharedService1.class,
+                NeedsSharedService2.class);
+        
+        RunLevelController controller = getController(locator, 8);
+        
+        controller.proceedTo(ONE);
+        
+        Assert.assertEquals(ONE, controller.getCurrentRunLevel());
+        Assert.assertEquals(1, SlowSharedService.getCreations());
+        
+        SlowSharedService shared = locator.getService(SlowSharedService.class);
+        Assert.assertSame(shared, locator.getService(NeedsSharedService1.class).getShared());
+        Assert.assertSame(shared, locator.getService(NeedsSharedService2.class).getShared());
+        
+        controller.proceedTo(0);
+        Assert.assertEquals(0, controller.getCurrentRunLevel());
+    }
+
+}
@@ -40,6 +40,7 @@
 
 package org.jvnet.hk2.testing.junit;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
@@ -64,6 +65,7 @@ import org.glassfish.hk2.api.DynamicConfiguration;
 import org.glassfish.hk2.api.DynamicConfigurationService;
 import org.glassfish.hk2.api.ServiceLocator;
 import org.glassfish.hk2.api.ServiceLocatorFactory;
+import org.glassfish.hk2.utilities.BinaryDescriptorFormat;
 import org.glassfish.hk2.utilities.DescriptorImpl;
 import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
 import org.junit.Before;
@@ -319,7 +321,22 @@ public class HK2Runner {
             URL url = resources.nextElement();
            
             try {
-                InputStream urlStream = url.openStream();
+                InputStream urlStream = new BufferedInputStream(url.openStream());
+                
+                if (BinaryDescriptorFormat.isBinary(urlStream)) {
+                    try {
+                        for (DescriptorImpl bindMe : BinaryDescriptorFormat.read(urlStream)) {
+                            if (!excludes.contains(bindMe.getImplementation())) {
+                                config.bind(bindMe);
+                            }
+                        }
+                    }
+                    finally {
+                        urlStream.close();
+                    }
+                    
+                    continue;
+                }
                 
                 BufferedReader reader = new BufferedReader(new InputStreamReader(urlStream));
                 
@@ -39,6 +39,7 @@
  */
 package org.jvnet.hk2.testing.junit;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
@@ -90,6 +91,7 @@ import org.glassfish.hk2.external.org.objectweb.asm.ClassVisitor;
 import org.glassfish.hk2.external.org.objectweb.asm.Opcodes;
 
 import org.glassfish.hk2.utilities.AbstractActiveDescriptor;
+import org.glassfish.hk2.utilities.BinaryDescriptorFormat;
 import org.glassfish.hk2.utilities.Binder;
 import org.glassfish.hk2.utilities.BuilderHelper;
 import org.glassfish.hk2.utilities.DescriptorImpl;
@@ -1245,8 +1247,11 @@ public class ServiceLocatorTestRule<T> extends ExternalResource implements Binde
 
   /**
    * {@linkplain URL#openStream() Opens an <code>InputStream</code>}
-   * to the supplied {@link URL}, wraps a {@link BufferedReader}
-   * around it, and calls the {@link #bind(DynamicConfiguration,
+   * to the supplied {@link URL} and binds the descriptors {@linkplain
+   * BinaryDescriptorFormat#read(InputStream) it holds} if it is in
+   * the {@linkplain BinaryDescriptorFormat#isBinary(InputStream)
+   * binary format}, or otherwise wraps a {@link BufferedReader}
+   * around it and calls the {@link #bind(DynamicConfiguration,
    * BufferedReader)} method.
    *
    * @param configuration a {@link DynamicConfiguration} that will
@@ -1262,20 +1267,26 @@ public class ServiceLocatorTestRule<T> extends ExternalResource implements Binde
    * files
    *
    * @see #bind(DynamicConfiguration, BufferedReader)
+   *
+   * @see BinaryDescriptorFormat
    */
   private static final void bind(final DynamicConfiguration configuration, final URL locatorResource) throws IOException {
     assertNotNull(configuration);
     if (locatorResource != null) {
-      final BufferedReader reader = new BufferedReader(new InputStreamReader(locatorResource.openStream()));
+      final InputStream stream = new BufferedInputStream(locatorResource.openStream());
       try {
-        bind(configuration, reader);
-      } finally {
-        if (reader != null) {
-          try {
-            reader.close();
-          } catch (final IOException ignore) {
-            
+        if (BinaryDescriptorFormat.isBinary(stream)) {
+          for (final DescriptorImpl descriptor : BinaryDescriptorFormat.read(stream)) {
+            configuration.bind(descriptor);
           }
+        } else {
+          bind(configuration, new BufferedReader(new InputStreamReader(stream)));
+        }
+      } finally {
+        try {
+          stream.close();
+        } catch (final IOException ignore) {
+          
         }
       }
     }
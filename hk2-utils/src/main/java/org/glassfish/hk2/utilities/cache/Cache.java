@@ -62,7 +62,9 @@ public class Cache<K,V> implements Computable<K,V> {
     /**
      * Should a cycle be detected during computation of a value
      * for given key, this interface allows client code to register
-     * a callback that would get invoked in such a case.
+     * a callback that would get invoked in such a case.  A cycle
+     * is also detected when a thread would wait for a computation
+     * that is itself, through other threads, waiting for that thread.
      *
      * @param <K> Key type.
      */
@@ -162,6 +164,12 @@ public class Cache<K,V> implements Computable<K,V> {
     };
 
     private final ConcurrentHashMap<K, OriginThreadAwareFuture> cache = new ConcurrentHashMap<K, OriginThreadAwareFuture>();
+
+    /**
+     * The computations that threads are currently blocked on, keyed by the
+     * id of the blocked thread.  Used to detect cycles that span threads
+     */
+    private final ConcurrentHashMap<Long, OriginThreadAwareFuture> waitingThreads = new ConcurrentHashMap<Long, OriginThreadAwareFuture>();
     private final Computable<K, V> computable;
 
     /**
@@ -189,6 +197,7 @@ public class Cache<K,V> implements Computable<K,V> {
     @Override
     public V compute(final K key) {
         while (true) {
+            Long waitingThreadId = null;
             OriginThreadAwareFuture f = cache.get(key);
             if (f == null) {
                 OriginThreadAwareFuture ft = new OriginThreadAwareFuture(this, key);
@@ -200,10 +209,23 @@ public class Cache<K,V> implements Computable<K,V> {
                 }
             } else {
                 final long tid = f.threadId;
-                
-                if ((tid != -1) && (Thread.currentThread().getId() == f.threadId)) {
+                final long myId = Thread.currentThread().getId();
+
+                if ((tid != -1) && (myId == tid)) {
                     cycleHandler.handleCycle(key);
                 }
+                else if (tid != -1) {
+                    // Another thread is computing the value, we are about to wait for it
+                    waitingThreadId = myId;
+                    waitingThreads.put(waitingThreadId, f);
+
+                    if (isWaitingOnItself(f, myId)) {
+                        waitingThreads.remove(waitingThreadId);
+                        waitingThreadId = null;
+
+                        cycleHandler.handleCycle(key);
+                    }
+                }
             }
             try {
                 return f.get();
@@ -221,10 +243,40 @@ public class Cache<K,V> implements Computable<K,V> {
                 }
 
                 throw new RuntimeException(cause);
+            } finally {
+                if (waitingThreadId != null) {
+                    waitingThreads.remove(waitingThreadId);
+                }
             }
         }
     }
 
+    /**
+     * Follows the chain of threads computing the value the given thread is
+     * about to wait for, and the values those threads are in turn waiting for.
+     * If the chain leads back to the given thread the wait would never end
+     *
+     * @param f The computation the thread is about to wait for
+     * @param myId The id of the thread about to wait
+     * @return true if waiting for f would be a cycle across threads
+     */
+    private boolean isWaitingOnItself(OriginThreadAwareFuture f, long myId) {
+        OriginThreadAwareFuture current = f;
+
+        // Bounded in case there is a cycle amongst other threads
+        int maxHops = waitingThreads.size() + 1;
+        for (int hops = 0; hops < maxHops; hops++) {
+            long owner = current.threadId;
+            if (owner == -1) return false;
+            if (owner == myId) return true;
+
+            current = waitingThreads.get(owner);
+            if (current == null) return false;
+        }
+
+        return false;
+    }
+
     /**
      * Empty cache.
      */
@@ -39,6 +39,7 @@
  */
 package org.glassfish.hk2.utilities.cache;
 
+import org.glassfish.hk2.utilities.cache.internal.ConcurrentWeakCARCacheImpl;
 import org.glassfish.hk2.utilities.cache.internal.WeakCARCacheImpl;
 
 /**
@@ -64,5 +65,38 @@ public class CacheUtilities {
     public static <K,V> WeakCARCache<K,V> createWeakCARCache(Computable<K,V> computable, int maxSize, boolean isWeak) {
         return new WeakCARCacheImpl<K,V>(computable, maxSize, isWeak);
     }
+    
+    /**
+     * Returns a WEAKCarCache with the given computable and the given maximum value size of the cache.
+     * The keys of the cache are hard, and every key with a value is filed under the index returned
+     * by the given indexer.  This allows {@link WeakCARCache#releaseIndex(String)} to remove entries
+     * in time proportional to the number of entries removed rather than the size of the cache
+     * 
+     * @param computable The computable that is used to get the V from the given K
+     * @param maxSize The maximumSize of the cache
+     * @param indexer The non-null indexer used to file the keys of the cache
+     * @return A WeakCARCache that is empty
+     */
+    public static <K,V> WeakCARCache<K,V> createWeakCARCache(Computable<K,V> computable, int maxSize, CacheKeyIndexer<K> indexer) {
+        if (indexer == null) throw new IllegalArgumentException("indexer is null");
+        
+        return new WeakCARCacheImpl<K,V>(computable, maxSize, false, indexer);
+    }
+    
+    /**
+     * Returns a WEAKCarCache with hard keys that calls the given computable for a miss without
+     * holding the lock of the cache.  A slow computation therefore only holds up the threads that
+     * miss on the same key, which wait for it rather than computing the value again.  Hits do not
+     * lock the cache
+     * 
+     * @param computable The computable that is used to get the V from the given K.  It may be
+     * called by several threads at once for different keys
+     * @param maxSize The maximumSize of the cache
+     * @param indexer The indexer used to file the keys of the cache, may be null
+     * @return A WeakCARCache that is empty
+     */
+    public static <K,V> WeakCARCache<K,V> createConcurrentWeakCARCache(Computable<K,V> computable, int maxSize, CacheKeyIndexer<K> indexer) {
+        return new ConcurrentWeakCARCacheImpl<K,V>(computable, maxSize, indexer);
+    }
 
 }
@@ -158,6 +158,18 @@ public interface WeakCARCache<K,V> {
      */
     public void releaseMatching(CacheKeyFilter<K> filter);
     
+    /**
+     * Releases all key/value pairs that were filed under the given
+     * index by the {@link CacheKeyIndexer} of this cache.  Only the
+     * entries filed under the index are visited
+     * 
+     * @param index The index of the key/value pairs to release.  If
+     * null this method does nothing
+     * @throws IllegalStateException if this cache was created without
+     * a {@link CacheKeyIndexer}
+     */
+    public void releaseIndex(String index);
+    
     /**
      * Causes stale references to be cleared from the data
      * structures.  Since this is a weak cache the references
@@ -0,0 +1,315 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.utilities.cache.internal;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.glassfish.hk2.utilities.cache.CacheKeyFilter;
+import org.glassfish.hk2.utilities.cache.CacheKeyIndexer;
+import org.glassfish.hk2.utilities.cache.Computable;
+import org.glassfish.hk2.utilities.cache.ComputationErrorException;
+
+/**
+ * A {@link WeakCARCacheImpl} that computes misses outside of the
+ * lock of the cache.  Only the CAR bookkeeping of adding the computed
+ * value is done with the lock held, so a slow computation does not
+ * hold up misses on other keys.  Threads that miss on a key that is
+ * already being computed wait for that computation rather than
+ * doing it again, unless waiting would deadlock, in which case
+ * they compute the value themselves without caching it
+ * <p>
+ * Values computed while the cache is cleared or has keys removed
+ * are returned but not kept, since they may have been computed from
+ * the state that caused the removal
+ * 
+ * @author jwells
+ *
+ */
+public class ConcurrentWeakCARCacheImpl<K,V> extends WeakCARCacheImpl<K,V> {
+    private final Computable<K,V> computable;
+    
+    private final ConcurrentHashMap<K, Miss<V>> inFlight = new ConcurrentHashMap<K, Miss<V>>();
+    
+    /** The misses threads are waiting for, keyed by the id of the waiting thread */
+    private final ConcurrentHashMap<Long, Miss<V>> waitingThreads = new ConcurrentHashMap<Long, Miss<V>>();
+    
+    /** Incremented with the lock held whenever anything is removed from the cache */
+    private volatile long removals = 0L;
+    
+    /**
+     * Creates a cache with hard keys that computes misses outside of its lock
+     * 
+     * @param computable The computable that is used to get the V from the given K
+     * @param maxSize The maximum size of the cache
+     * @param indexer The indexer of the keys, may be null
+     */
+    public ConcurrentWeakCARCacheImpl(Computable<K,V> computable, int maxSize, CacheKeyIndexer<K> indexer) {
+        super(computable, maxSize, false, indexer);
+        
+        this.computable = computable;
+    }
+
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.utilities.cache.WeakCARCache#compute(java.lang.Object)
+     */
+    @Override
+    public V compute(K key) {
+        V value = getCachedValue(key);
+        if (value != null) return value;
+        
+        long myId = Thread.currentThread().getId();
+        
+        Miss<V> miss = inFlight.get(key);
+        if (miss == null) {
+            Miss<V> newMiss = new Miss<V>(myId);
+            
+            miss = inFlight.putIfAbsent(key, newMiss);
+            if (miss == null) {
+                return computeMiss(key, newMiss);
+            }
+        }
+        
+        if (miss.owner == myId) {
+            // The computation of this key needs this key
+            return computeUncached(key);
+        }
+        
+        waitingThreads.put(myId, miss);
+        try {
+            if (isWaitingOnItself(miss, myId)) {
+                return computeUncached(key);
+            }
+            
+            return miss.await();
+        }
+        finally {
+            waitingThreads.remove(myId);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private V computeMiss(K key, Miss<V> miss) {
+        V value;
+        try {
+            // The thread that last computed this key may have added
+            // it after this thread looked but before this miss was filed
+            value = getValueFromT(key);
+            if (value == null) {
+                long removalsAtStart = removals;
+                
+                try {
+                    value = computable.compute(key);
+                }
+                catch (ComputationErrorException cee) {
+                    // In this case the value should not be kept in the cache
+                    value = (V) cee.getComputation();
+                    removalsAtStart = -1L;
+                }
+                
+                synchronized (this) {
+                    if (removalsAtStart == removals && getValueFromT(key) == null) {
+                        addValue(key, value);
+                    }
+                }
+            }
+        }
+        catch (RuntimeException re) {
+            inFlight.remove(key, miss);
+            miss.fail(re);
+            throw re;
+        }
+        catch (Error e) {
+            inFlight.remove(key, miss);
+            miss.fail(e);
+            throw e;
+        }
+        
+        inFlight.remove(key, miss);
+        miss.succeed(value);
+        
+        return value;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private V computeUncached(K key) {
+        try {
+            return computable.compute(key);
+        }
+        catch (ComputationErrorException cee) {
+            return (V) cee.getComputation();
+        }
+    }
+    
+    /**
+     * Follows the chain of threads computing the miss the given thread
+     * is about to wait for, and the misses those threads are in turn
+     * waiting for.  If the chain leads back to the given thread the
+     * wait would never end
+     * 
+     * @param miss The miss the thread is about to wait for
+     * @param myId The id of the thread about to wait
+     * @return true if waiting for the miss would be a cycle across threads
+     */
+    private boolean isWaitingOnItself(Miss<V> miss, long myId) {
+        Miss<V> current = miss;
+        
+        // Bounded in case there is a cycle amongst other threads
+        int maxHops = waitingThreads.size() + 1;
+        for (int hops = 0; hops < maxHops; hops++) {
+            long owner = current.owner;
+            if (owner == -1L) return false;
+            if (owner == myId) return true;
+            
+            current = waitingThreads.get(owner);
+            if (current == null) return false;
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Must be called with this lock held.  Misses already being
+     * computed are forgotten, so that later misses compute again
+     * rather than wait for a value that will not be kept
+     */
+    private void removed() {
+        removals++;
+        inFlight.clear();
+    }
+
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.utilities.cache.WeakCARCache#clear()
+     */
+    @Override
+    public synchronized void clear() {
+        super.clear();
+        removed();
+    }
+
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.utilities.cache.WeakCARCache#remove(java.lang.Object)
+     */
+    @Override
+    public synchronized boolean remove(K key) {
+        boolean retVal = super.remove(key);
+        removed();
+        
+        return retVal;
+    }
+
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.utilities.cache.WeakCARCache#releaseMatching(org.glassfish.hk2.utilities.cache.CacheKeyFilter)
+     */
+    @Override
+    public synchronized void releaseMatching(CacheKeyFilter<K> filter) {
+        super.releaseMatching(filter);
+        removed();
+    }
+
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.utilities.cache.WeakCARCache#releaseIndex(java.lang.String)
+     */
+    @Override
+    public synchronized void releaseIndex(String indexName) {
+        super.releaseIndex(indexName);
+        removed();
+    }
+    
+    @Override
+    public String toString() {
+        return "ConcurrentWeakCARCacheImpl(t1size=" + getT1Size() + ",t2Size=" + getT2Size() +
+                ",b1Size=" + getB1Size() + ",b2Size=" + getB2Size() + ",p=" + getP() + "," +
+                "inFlight=" + inFlight.size() + ",hitRate=" + getHitRate() + "%," + System.identityHashCode(this) + ")";
+    }
+    
+    /**
+     * A value being computed by one thread that other threads may wait for
+     */
+    private static class Miss<V> {
+        /** The id of the computing thread, or -1 once the computation is done */
+        private volatile long owner;
+        private final CountDownLatch done = new CountDownLatch(1);
+        
+        // Published by the latch
+        private V value;
+        private Throwable failure;
+        
+        private Miss(long owner) {
+            this.owner = owner;
+        }
+        
+        private void succeed(V value) {
+            this.value = value;
+            owner = -1L;
+            done.countDown();
+        }
+        
+        private void fail(Throwable failure) {
+            this.failure = failure;
+            owner = -1L;
+            done.countDown();
+        }
+        
+        private V await() {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        done.await();
+                        break;
+                    }
+                    catch (InterruptedException ie) {
+                        interrupted = true;
+                    }
+                }
+            }
+            finally {
+                if (interrupted) Thread.currentThread().interrupt();
+            }
+            
+            if (failure == null) return value;
+            if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+            throw (Error) failure;
+        }
+    }
+
+}
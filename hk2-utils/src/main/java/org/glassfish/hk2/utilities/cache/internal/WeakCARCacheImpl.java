@@ -39,14 +39,18 @@
  */
 package org.glassfish.hk2.utilities.cache.internal;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicLong;
 
 import org.glassfish.hk2.utilities.cache.CacheKeyFilter;
+import org.glassfish.hk2.utilities.cache.CacheKeyIndexer;
 import org.glassfish.hk2.utilities.cache.Computable;
 import org.glassfish.hk2.utilities.cache.ComputationErrorException;
 import org.glassfish.hk2.utilities.cache.WeakCARCache;
 import org.glassfish.hk2.utilities.general.GeneralUtilities;
+import org.glassfish.hk2.utilities.general.StripedCounter;
 import org.glassfish.hk2.utilities.general.WeakHashClock;
 import org.glassfish.hk2.utilities.general.WeakHashLRU;
 
@@ -70,12 +74,37 @@ public class WeakCARCacheImpl<K,V> implements WeakCARCache<K, V> {
     // The target size of t1, adaptive
     private int p = 0;
     
-    private final AtomicLong hits = new AtomicLong(0L);
-    private final AtomicLong tries = new AtomicLong(0L);
+    // Striped so that threads hitting the cache do not contend, replaced on clear
+    private volatile StripedCounter hits = new StripedCounter();
+    private volatile StripedCounter tries = new StripedCounter();
+    
+    // The keys with values (those in t1 or t2) filed by index, null if there is no indexer
+    private final CacheKeyIndexer<K> indexer;
+    private final HashMap<String, HashSet<K>> index;
     
     public WeakCARCacheImpl(Computable<K,V> computable, int maxSize, boolean isWeak) {
+        this(computable, maxSize, isWeak, null);
+    }
+    
+    /**
+     * Creates a cache whose keys are filed under the index returned by
+     * the given indexer
+     * 
+     * @param computable The computable that is used to get the V from the given K
+     * @param maxSize The maximum size of the cache
+     * @param isWeak if true the keys are weak.  Must be false if indexer is not null
+     * @param indexer The indexer of the keys, may be null
+     */
+    public WeakCARCacheImpl(Computable<K,V> computable, int maxSize, boolean isWeak, CacheKeyIndexer<K> indexer) {
+        if (isWeak && indexer != null) {
+            // The index would keep the weak keys from going away
+            throw new IllegalArgumentException("A cache with weak keys may not be indexed");
+        }
+        
         this.computable = computable;
         this.maxSize = maxSize;
+        this.indexer = indexer;
+        this.index = (indexer == null) ? null : new HashMap<String, HashSet<K>>();
         
         t1 = GeneralUtilities.getWeakHashClock(isWeak);
         t2 = GeneralUtilities.getWeakHashClock(isWeak);
@@ -83,23 +112,41 @@ public class WeakCARCacheImpl<K,V> implements WeakCARCache<K, V> {
         b2 = GeneralUtilities.getWeakHashLRU(isWeak);
     }
     
-    private V getValueFromT(K key) {
+    /* package */ V getValueFromT(K key) {
         CarValue<V> cValue = t1.get(key);
         if (cValue != null) {
-            // So fast
-            cValue.referenceBit = true;
+            // So fast.  Only written when clear so hot keys stay in every reader's cache
+            if (!cValue.referenceBit) cValue.referenceBit = true;
             return cValue.value;
         }
         
         cValue = t2.get(key);
         if (cValue != null) {
             // So fast
-            cValue.referenceBit = true;
+            if (!cValue.referenceBit) cValue.referenceBit = true;
             return cValue.value;
         }
         
         return null;
     }
+    
+    /**
+     * Looks the key up in the cache without computing it, counting
+     * the try and any hit
+     * 
+     * @param key The key to look up
+     * @return The cached value, or null if not in the cache
+     */
+    /* package */ V getCachedValue(K key) {
+        tries.increment();
+        
+        V value = getValueFromT(key);
+        if (value != null) {
+            hits.increment();
+        }
+        
+        return value;
+    }
 
     /* (non-Javadoc)
      * @see org.glassfish.hk2.utilities.cache.WeakCARCache#compute(java.lang.Object)
@@ -107,18 +154,13 @@ public class WeakCARCacheImpl<K,V> implements WeakCARCache<K, V> {
     @SuppressWarnings("unchecked")
     @Override
     public V compute(K key) {
-        tries.getAndIncrement();
-        
-        V value = getValueFromT(key);
-        if (value != null) {
-            hits.getAndIncrement();
-            return value;
-        }
+        V value = getCachedValue(key);
+        if (value != null) return value;
         
         synchronized (this) {
             value = getValueFromT(key);
             if (value != null) {
-                hits.getAndIncrement();
+                hits.increment();
                 return value;
             }
             
@@ -132,62 +174,113 @@ public class WeakCARCacheImpl<K,V> implements WeakCARCache<K, V> {
                 return (V) cee.getComputation();
             }
             
-            int cacheSize = getValueSize();
-            if (cacheSize >= maxSize) {
-                replace();
-            
-                boolean inB1 = b1.contains(key);
-                boolean inB2 = b2.contains(key);
-                if (!inB1 && !inB2) {
-                    if ((t1.size() + b1.size()) >= maxSize) {
-                        b1.remove();
-                    }
-                    else if ((t1.size() + t2.size() + b1.size() + b2.size()) >= (2 * maxSize)) {
-                        b2.remove();
-                    }
-                }
-            }
+            addValue(key, value);
+        }
+        
+        return value;
+    }
+    
+    /**
+     * Adds a newly computed value to the cache, evicting as
+     * the CAR algorithm requires.  Must be called with this
+     * lock held
+     * 
+     * @param key The key that missed
+     * @param value The value computed for the key
+     */
+    /* package */ void addValue(K key, V value) {
+        int cacheSize = getValueSize();
+        if (cacheSize >= maxSize) {
+            replace();
         
             boolean inB1 = b1.contains(key);
             boolean inB2 = b2.contains(key);
-        
             if (!inB1 && !inB2) {
-                t1.put(key, new CarValue<V>(value));
-            }
-            else if (inB1) {
-                int b1size = b1.size();
-                if (b1size == 0) b1size = 1;  // Can happen in a weak situation, we fake the one
-            
-                int b2size = b2.size();
-            
-                int ratio = b2size / b1size;  // integer division
-                if (ratio <= 0) ratio = 1;
-            
-                p = p + ratio;
-                if (p > maxSize) p = maxSize;
-            
-                b1.remove(key);
-                t2.put(key, new CarValue<V>(value));
-            }
-            else {
-                // Must be in B2
-                int b2size = b2.size();
-                if (b2size == 0) b2size = 1;  // Can happen in a weak situation, we fake the one
-            
-                int b1size = b1.size();
-            
-                int ratio = b1size / b2size;
-                if (ratio <= 0) ratio = 1;
-            
-                p = p - ratio;
-                if (p < 0) p = 0;
-            
-                b2.remove(key);
-                t2.put(key, new CarValue<V>(value));
+                if ((t1.size() + b1.size()) >= maxSize) {
+                    b1.remove();
+                }
+                else if ((t1.size() + t2.size() + b1.size() + b2.size()) >= (2 * maxSize)) {
+                    b2.remove();
+                }
             }
         }
+    
+        boolean inB1 = b1.contains(key);
+        boolean inB2 = b2.contains(key);
+    
+        if (!inB1 && !inB2) {
+            t1.put(key, new CarValue<V>(value));
+            addToIndex(key);
+        }
+        else if (inB1) {
+            int b1size = b1.size();
+            if (b1size == 0) b1size = 1;  // Can happen in a weak situation, we fake the one
         
-        return value;
+            int b2size = b2.size();
+        
+            int ratio = b2size / b1size;  // integer division
+            if (ratio <= 0) ratio = 1;
+        
+            p = p + ratio;
+            if (p > maxSize) p = maxSize;
+        
+            b1.remove(key);
+            t2.put(key, new CarValue<V>(value));
+            addToIndex(key);
+        }
+        else {
+            // Must be in B2
+            int b2size = b2.size();
+            if (b2size == 0) b2size = 1;  // Can happen in a weak situation, we fake the one
+        
+            int b1size = b1.size();
+        
+            int ratio = b1size / b2size;
+            if (ratio <= 0) ratio = 1;
+        
+            p = p - ratio;
+            if (p < 0) p = 0;
+        
+            b2.remove(key);
+            t2.put(key, new CarValue<V>(value));
+            addToIndex(key);
+        }
+    }
+    
+    /**
+     * Must be called with this lock held
+     */
+    private void addToIndex(K key) {
+        if (indexer == null) return;
+        
+        String indexName = indexer.getIndex(key);
+        if (indexName == null) return;
+        
+        HashSet<K> keys = index.get(indexName);
+        if (keys == null) {
+            keys = new HashSet<K>();
+            index.put(indexName, keys);
+        }
+        
+        keys.add(key);
+    }
+    
+    /**
+     * Must be called with this lock held
+     */
+    private void removeFromIndex(K key) {
+        if (indexer == null) return;
+        
+        String indexName = indexer.getIndex(key);
+        if (indexName == null) return;
+        
+        HashSet<K> keys = index.get(indexName);
+        if (keys == null) return;
+        
+        keys.remove(key);
+        if (keys.isEmpty()) {
+            index.remove(indexName);
+        }
     }
     
     private void replace() {
@@ -204,6 +297,7 @@ public class WeakCARCacheImpl<K,V> implements WeakCARCache<K, V> {
                     
                     t1.remove(entry.getKey());
                     b1.add(entry.getKey());
+                    removeFromIndex(entry.getKey());
                 }
                 else {
                     CarValue<V> entryValue = entry.getValue();
@@ -221,6 +315,7 @@ public class WeakCARCacheImpl<K,V> implements WeakCARCache<K, V> {
                     
                     t2.remove(entry.getKey());
                     b2.add(entry.getKey());
+                    removeFromIndex(entry.getKey());
                 }
                 else {
                     CarValue<V> entryValue = entry.getValue();
@@ -255,11 +350,14 @@ public class WeakCARCacheImpl<K,V> implements WeakCARCache<K, V> {
         t2.clear();
         b1.clear();
         b2.clear();
+        if (index != null) {
+            index.clear();
+        }
         
         p = 0;
         
-        tries.set(0);
-        hits.set(0);
+        tries = new StripedCounter();
+        hits = new StripedCounter();
     }
 
     /* (non-Javadoc)
@@ -283,6 +381,8 @@ public class WeakCARCacheImpl<K,V> implements WeakCARCache<K, V> {
      */
     @Override
     public synchronized boolean remove(K key) {
+        removeFromIndex(key);
+        
         if (t1.remove(key) == null) {
             if (t2.remove(key) == null) {
                 if (!b1.remove(key)) {
@@ -309,6 +409,42 @@ public class WeakCARCacheImpl<K,V> implements WeakCARCache<K, V> {
         b1.releaseMatching(filter);
         t1.releaseMatching(filter);
         t2.releaseMatching(filter);
+        
+        if (index == null) return;
+        
+        Iterator<HashSet<K>> indexIterator = index.values().iterator();
+        while (indexIterator.hasNext()) {
+            HashSet<K> keys = indexIterator.next();
+            
+            Iterator<K> keyIterator = keys.iterator();
+            while (keyIterator.hasNext()) {
+                if (filter.matches(keyIterator.next())) {
+                    keyIterator.remove();
+                }
+            }
+            
+            if (keys.isEmpty()) {
+                indexIterator.remove();
+            }
+        }
+    }
+    
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.utilities.cache.WeakCARCache#releaseIndex(java.lang.String)
+     */
+    @Override
+    public synchronized void releaseIndex(String indexName) {
+        if (index == null) throw new IllegalStateException("This cache has no indexer");
+        if (indexName == null) return;
+        
+        HashSet<K> keys = index.remove(indexName);
+        if (keys == null) return;
+        
+        for (K key : keys) {
+            if (t1.remove(key) == null) {
+                t2.remove(key);
+            }
+        }
     }
 
     /* (non-Javadoc)
@@ -387,8 +523,8 @@ public class WeakCARCacheImpl<K,V> implements WeakCARCache<K, V> {
     
     @Override
     public double getHitRate() {
-        long localHits = hits.get();
-        long localTries = tries.get();
+        long localHits = hits.sum();
+        long localTries = tries.sum();
         if (localTries == 0) localTries = 1;
         
         return ((double) localHits / (double) localTries) * (double) 100.00;
@@ -1336,9 +1336,9 @@ public final class ReflectionHelper {
      * Sets this accessible object to be accessible using the permissions of
      * the hk2-locator bundle (which will need the required grant)
      *
-     * @param ao The object to change
+     * @param ao The non-null object to change
      */
-    private static void setAccessible(final AccessibleObject ao) {
+    public static void setAccessible(final AccessibleObject ao) {
         if (ao.isAccessible()) return;
         
         AccessController.doPrivileged(new PrivilegedAction<Object>() {
@@ -0,0 +1,330 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.hk2.utilities.cache.test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.glassfish.hk2.utilities.cache.CacheUtilities;
+import org.glassfish.hk2.utilities.cache.Computable;
+import org.glassfish.hk2.utilities.cache.ComputationErrorException;
+import org.glassfish.hk2.utilities.cache.WeakCARCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the cache that computes misses outside of its lock
+ * 
+ * @author jwells
+ *
+ */
+public class ConcurrentWeakCARCacheTest {
+    private final static String SLOW = "slow";
+    private final static String FAST = "fast";
+    private final static int SMALL_CACHE_SIZE = 10;
+    private final static int NUM_THREADS = 8;
+    
+    /**
+     * Tests that the keys move through the CAR lists exactly
+     * as they do in the original cache
+     */
+    @Test // @org.junit.Ignore
+    public void testSameListsAsWeakCARCache() {
+        WeakCARCache<Integer, Integer> original = CacheUtilities.createWeakCARCache(
+                new IdentityComputable(), SMALL_CACHE_SIZE, false);
+        WeakCARCache<Integer, Integer> concurrent = CacheUtilities.createConcurrentWeakCARCache(
+                new IdentityComputable(), SMALL_CACHE_SIZE, null);
+        
+        int keys[] = { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 0, 1, 11, 12, 2, 2, 13, 0, 14, 15, 1, 3, 16 };
+        for (int key : keys) {
+            Assert.assertEquals(new Integer(key), original.compute(key));
+            Assert.assertEquals(new Integer(key), concurrent.compute(key));
+            
+            Assert.assertEquals(original.getT1Size(), concurrent.getT1Size());
+            Assert.assertEquals(original.getT2Size(), concurrent.getT2Size());
+            Assert.assertEquals(original.getB1Size(), concurrent.getB1Size());
+            Assert.assertEquals(original.getB2Size(), concurrent.getB2Size());
+            Assert.assertEquals(original.getP(), concurrent.getP());
+        }
+        
+        Assert.assertEquals(original.getHitRate(), concurrent.getHitRate(), 0.0);
+    }
+    
+    /**
+     * Tests that a slow miss does not hold up a miss on another key
+     * 
+     * @throws Exception
+     */
+    @Test // @org.junit.Ignore
+    public void testSlowMissDoesNotBlockOtherMisses() throws Exception {
+        final BlockingComputable computable = new BlockingComputable();
+        final WeakCARCache<String, String> cache = CacheUtilities.createConcurrentWeakCARCache(
+                computable, SMALL_CACHE_SIZE, null);
+        
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> slow = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return cache.compute(SLOW);
+                }
+                
+            });
+            
+            Assert.assertTrue(computable.started.await(20, TimeUnit.SECONDS));
+            
+            // Would hang if the slow computation held the lock of the cache
+            Assert.assertEquals(FAST, cache.compute(FAST));
+            Assert.assertFalse(slow.isDone());
+            
+            computable.release.countDown();
+            Assert.assertEquals(SLOW, slow.get(20, TimeUnit.SECONDS));
+        }
+        finally {
+            computable.release.countDown();
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Tests that threads missing on the same key wait for one
+     * computation of it
+     * 
+     * @throws Exception
+     */
+    @Test // @org.junit.Ignore
+    public void testDuplicateMissesAreCoalesced() throws Exception {
+        final BlockingComputable computable = new BlockingComputable();
+        final WeakCARCache<String, String> cache = CacheUtilities.createConcurrentWeakCARCache(
+                computable, SMALL_CACHE_SIZE, null);
+        
+        ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+        try {
+            Future<?> results[] = new Future<?>[NUM_THREADS];
+            for (int lcv = 0; lcv < NUM_THREADS; lcv++) {
+                results[lcv] = executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return cache.compute(SLOW);
+                    }
+                    
+                });
+            }
+            
+            Assert.assertTrue(computable.started.await(20, TimeUnit.SECONDS));
+            
+            // Give the other threads time to find the miss in flight
+            Thread.sleep(100);
+            computable.release.countDown();
+            
+            for (Future<?> result : results) {
+                Assert.assertEquals(SLOW, result.get(20, TimeUnit.SECONDS));
+            }
+            
+            Assert.assertEquals(1, computable.calls.get());
+            Assert.assertEquals(1, cache.getValueSize());
+        }
+        finally {
+            computable.release.countDown();
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Tests that a computation that needs its own key does not deadlock
+     */
+    @Test // @org.junit.Ignore
+    public void testRecursiveMissDoesNotDeadlock() {
+        RecursiveComputable computable = new RecursiveComputable();
+        WeakCARCache<Integer, Integer> cache = CacheUtilities.createConcurrentWeakCARCache(
+                computable, SMALL_CACHE_SIZE, null);
+        computable.cache = cache;
+        
+        Assert.assertEquals(new Integer(3), cache.compute(3));
+        Assert.assertEquals(1, cache.getValueSize());
+    }
+    
+    /**
+     * Tests that failures are not cached and that values the computable
+     * asks not to keep are returned but not cached
+     */
+    @Test // @org.junit.Ignore
+    public void testFailuresAreNotCached() {
+        FailingComputable computable = new FailingComputable();
+        WeakCARCache<String, String> cache = CacheUtilities.createConcurrentWeakCARCache(
+                computable, SMALL_CACHE_SIZE, null);
+        
+        try {
+            cache.compute(SLOW);
+            Assert.fail("Should have failed");
+        }
+        catch (IllegalStateException expected) {
+            // Expected
+        }
+        
+        Assert.assertEquals(FAST, cache.compute(FAST));
+        Assert.assertEquals(0, cache.getValueSize());
+        
+        computable.fail = false;
+        Assert.assertEquals(SLOW, cache.compute(SLOW));
+        Assert.assertEquals(1, cache.getValueSize());
+    }
+    
+    /**
+     * Tests that a value computed while the cache is cleared is
+     * returned but not kept
+     * 
+     * @throws Exception
+     */
+    @Test // @org.junit.Ignore
+    public void testValueComputedAcrossClearIsNotKept() throws Exception {
+        final BlockingComputable computable = new BlockingComputable();
+        final WeakCARCache<String, String> cache = CacheUtilities.createConcurrentWeakCARCache(
+                computable, SMALL_CACHE_SIZE, null);
+        
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> slow = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return cache.compute(SLOW);
+                }
+                
+            });
+            
+            Assert.assertTrue(computable.started.await(20, TimeUnit.SECONDS));
+            
+            cache.clear();
+            
+            computable.release.countDown();
+            Assert.assertEquals(SLOW, slow.get(20, TimeUnit.SECONDS));
+            
+            Assert.assertEquals(0, cache.getValueSize());
+        }
+        finally {
+            computable.release.countDown();
+            executor.shutdownNow();
+        }
+    }
+    
+    private static class IdentityComputable implements Computable<Integer, Integer> {
+        @Override
+        public Integer compute(Integer key) {
+            return key;
+        }
+        
+    }
+    
+    /**
+     * Blocks computations of the slow key until released
+     */
+    private static class BlockingComputable implements Computable<String, String> {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public String compute(String key) {
+            if (!SLOW.equals(key)) return key;
+            
+            calls.incrementAndGet();
+            started.countDown();
+            
+            try {
+                if (!release.await(20, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("Never released");
+                }
+            }
+            catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            
+            return key;
+        }
+        
+    }
+    
+    /**
+     * Computes a key by looking it up again from within the computation
+     */
+    private static class RecursiveComputable implements Computable<Integer, Integer> {
+        private WeakCARCache<Integer, Integer> cache;
+        private int depth = 0;
+
+        @Override
+        public Integer compute(Integer key) {
+            depth++;
+            try {
+                if (depth == 1) {
+                    return cache.compute(key);
+                }
+                
+                return key;
+            }
+            finally {
+                depth--;
+            }
+        }
+        
+    }
+    
+    private static class FailingComputable implements Computable<String, String> {
+        private volatile boolean fail = true;
+
+        @Override
+        public String compute(String key) {
+            if (FAST.equals(key)) {
+                throw new ComputationErrorException(key);
+            }
+            
+            if (fail) throw new IllegalStateException("Expected failure");
+            
+            return key;
+        }
+        
+    }
+
+}
@@ -43,6 +43,7 @@ import java.util.LinkedList;
 import java.util.Random;
 
 import org.glassfish.hk2.utilities.cache.CacheKeyFilter;
+import org.glassfish.hk2.utilities.cache.CacheKeyIndexer;
 import org.glassfish.hk2.utilities.cache.CacheUtilities;
 import org.glassfish.hk2.utilities.cache.Computable;
 import org.glassfish.hk2.utilities.cache.WeakCARCache;
@@ -743,6 +744,57 @@ public class WeakCARCacheTest {
     
     private final static int CONCURRENT_ITERATIONS = 100000;
     
+    /**
+     * Tests that releasing an index removes exactly the
+     * keys filed under that index
+     */
+    @Test
+    public void testReleaseIndex() {
+        WeakCARCache<String, Integer> cache = CacheUtilities.createWeakCARCache(TO_INTEGER, SMALL_CACHE_SIZE,
+                new CacheKeyIndexer<String>() {
+
+            @Override
+            public String getIndex(String key) {
+                // Even numbers under one index, odd under the other
+                return ((Integer.parseInt(key) % 2) == 0) ? "even" : "odd";
+            }
+            
+        });
+        
+        for (int lcv = 0; lcv < SMALL_CACHE_SIZE; lcv++) {
+            cache.compute(Integer.toString(lcv));
+        }
+        
+        Assert.assertEquals(SMALL_CACHE_SIZE, cache.getValueSize());
+        
+        cache.releaseIndex("even");
+        Assert.assertEquals(SMALL_CACHE_SIZE / 2, cache.getValueSize());
+        
+        // Releasing it again does nothing
+        cache.releaseIndex("even");
+        cache.releaseIndex("none");
+        Assert.assertEquals(SMALL_CACHE_SIZE / 2, cache.getValueSize());
+        
+        cache.compute(ZERO);
+        Assert.assertEquals((SMALL_CACHE_SIZE / 2) + 1, cache.getValueSize());
+        
+        cache.releaseIndex("odd");
+        Assert.assertEquals(1, cache.getValueSize());
+        
+        cache.releaseIndex("even");
+        Assert.assertEquals(0, cache.getValueSize());
+    }
+    
+    /**
+     * Tests that a cache without an indexer can not release an index
+     */
+    @Test(expected=IllegalStateException.class)
+    public void testReleaseIndexWithoutIndexer() {
+        WeakCARCache<String, Integer> cache = CacheUtilities.createWeakCARCache(TO_INTEGER, SMALL_CACHE_SIZE, false);
+        
+        cache.releaseIndex(ZERO);
+    }
+    
     private static class Runner implements Runnable {
         private final Random RANDOM;
         private final WeakCARCache<Integer, Integer> cache;
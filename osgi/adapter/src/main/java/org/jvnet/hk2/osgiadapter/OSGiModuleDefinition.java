@@ -57,6 +57,7 @@ import java.util.jar.Manifest;
 import java.util.logging.Level;
 
 import org.glassfish.hk2.api.Descriptor;
+import org.glassfish.hk2.utilities.BinaryDescriptorFormat;
 import org.glassfish.hk2.utilities.DescriptorImpl;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -291,7 +292,14 @@ public class OSGiModuleDefinition implements ModuleDefinition, Serializable {
                         List<Descriptor> descriptors = new ArrayList<Descriptor>();
 
                         try {
-                            is = url.openStream();
+                            is = new BufferedInputStream(url.openStream());
+
+                            if (BinaryDescriptorFormat.isBinary(is)) {
+                                descriptors.addAll(BinaryDescriptorFormat.read(is));
+                                
+                                result.addDescriptors(serviceLocatorName, descriptors);
+                                continue;
+                            }
 
                             BufferedReader br = new BufferedReader(new InputStreamReader(is));
 